@@ -0,0 +1,79 @@
+package code;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
+
+import util.StringIntegerCursor;
+import util.StringIntegerList;
+
+/**
+ * Compares the record size and the time of writing, reading back and
+ * streaming over a 2000 entry {@link StringIntegerList} in the binary format
+ * with the GZIP'ed text of the legacy format, which readFields() still
+ * accepts.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class BinaryFormatBenchmark {
+
+	private static final int LEMMAS = 2_000;
+	private static final int ROUNDS = 500;
+
+	public static void main(String[] args) throws IOException {
+		Map<String, Integer> map = new HashMap<>();
+		for (int i = 0; i < LEMMAS; i++)
+			map.put("lemma" + i, i % 97 + 1);
+		StringIntegerList siList = new StringIntegerList(map);
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		DataInputBuffer in = new DataInputBuffer();
+
+		// warm up
+		roundTrip(siList, out, in, true, ROUNDS / 10);
+		roundTrip(siList, out, in, false, ROUNDS / 10);
+
+		long start = System.currentTimeMillis();
+		long legacyBytes = roundTrip(siList, out, in, true, ROUNDS);
+		long legacyMillis = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		long binaryBytes = roundTrip(siList, out, in, false, ROUNDS);
+		long binaryMillis = System.currentTimeMillis() - start;
+
+		System.out.println("legacy format: " + legacyBytes + " bytes per record, " + ROUNDS
+				+ " write + read rounds took " + legacyMillis + " millis");
+		System.out.println("binary format: " + binaryBytes + " bytes per record, " + ROUNDS
+				+ " write + read rounds took " + binaryMillis + " millis");
+	}
+
+	/**
+	 * @return the bytes of the last record
+	 */
+	private static long roundTrip(StringIntegerList siList, DataOutputBuffer out,
+			DataInputBuffer in, boolean legacy, int rounds) throws IOException {
+		for (int i = 0; i < rounds; i++) {
+			out.reset();
+			if (legacy)
+				WritableUtils.writeCompressedString(out, siList.toString());
+			else
+				siList.write(out);
+			in.reset(out.getData(), out.getLength());
+			siList.readFields(in);
+
+			// the binary format is only decoded here
+			int entries = 0;
+			StringIntegerCursor cursor = siList.cursor();
+			while (cursor.next())
+				if (cursor.getCount() > 0)
+					entries++;
+			if (entries != LEMMAS)
+				throw new IllegalStateException("lost entries: " + entries);
+		}
+		return out.getLength();
+	}
+}
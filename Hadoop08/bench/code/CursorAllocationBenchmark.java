@@ -0,0 +1,100 @@
+package code;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import util.StringInteger;
+import util.StringIntegerCursor;
+import util.StringIntegerList;
+
+/**
+ * Compares the bytes allocated and the time taken for streaming over the
+ * lemma indexes in test_data with a {@link StringIntegerCursor} versus
+ * through {@link StringIntegerList}'s object API.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class CursorAllocationBenchmark {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int ROUNDS = 20_000;
+
+	public static void main(String[] args) throws IOException {
+		List<byte[]> values = readLemmaIndexValues();
+		StringIntegerList siList = new StringIntegerList();
+		StringIntegerCursor cursor = StringIntegerCursor.forText();
+
+		// warm up both paths, so class loading does not count
+		streamWithList(values, siList, 1_000);
+		streamWithCursor(values, cursor, 1_000);
+
+		long bytesAtStart = allocatedBytes();
+		long start = System.currentTimeMillis();
+		long entries = streamWithList(values, siList, ROUNDS);
+		long listMillis = System.currentTimeMillis() - start;
+		long listBytes = allocatedBytes() - bytesAtStart;
+
+		bytesAtStart = allocatedBytes();
+		start = System.currentTimeMillis();
+		if (streamWithCursor(values, cursor, ROUNDS) != entries)
+			throw new IllegalStateException("the cursor found other entries");
+		long cursorMillis = System.currentTimeMillis() - start;
+		long cursorBytes = allocatedBytes() - bytesAtStart;
+
+		System.out.println(entries + " entries, list API: " + (double) listBytes / entries
+				+ " bytes allocated per entry, " + listMillis + " millis");
+		System.out.println(entries + " entries, cursor: " + (double) cursorBytes / entries
+				+ " bytes allocated per entry, " + cursorMillis + " millis");
+	}
+
+	private static long streamWithList(List<byte[]> values, StringIntegerList siList, int rounds)
+			throws IOException {
+		long entries = 0;
+		for (int i = 0; i < rounds; i++)
+			for (byte[] value : values) {
+				siList.readFromText(value, 0, value.length);
+				for (StringInteger lemmaFreq : siList.getIndices())
+					if (siList.getMap().get(lemmaFreq.getString()) > 0)
+						entries++;
+			}
+		return entries;
+	}
+
+	private static long streamWithCursor(List<byte[]> values, StringIntegerCursor cursor,
+			int rounds) throws IOException {
+		long entries = 0;
+		for (int i = 0; i < rounds; i++)
+			for (byte[] value : values) {
+				cursor.reset(value, 0, value.length);
+				while (cursor.next())
+					if (cursor.getLemma().length() > 0 && cursor.getCount() > 0)
+						entries++;
+			}
+		return entries;
+	}
+
+	private static List<byte[]> readLemmaIndexValues() throws IOException {
+		List<Path> paths = new ArrayList<>();
+		paths.add(Paths.get("test_data", "ProfessionClassifierMapredTest", "article_index.txt"));
+		paths.add(Paths.get("test_data", "InvertedIndexMapredTest", "inverted_index_test_input"));
+
+		List<byte[]> values = new ArrayList<>();
+		for (Path path : paths)
+			for (String line : Files.readAllLines(path, UTF8))
+				values.add(line.substring(line.indexOf('<')).getBytes(UTF8));
+		return values;
+	}
+
+	private static long allocatedBytes() {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -0,0 +1,149 @@
+package code;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Random;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+
+import util.XMLInputFormat.XMLRecordReader;
+
+/**
+ * Throughput of the block-buffered {@link XMLRecordReader} on the synthetic
+ * dump of {@link XMLInputFormatTest}, compared with reading byte by byte as
+ * the reader did before. Then the same for a local copy of the dump, read
+ * through a stream and mapped (see {@link XMLRecordReader#MMAP_KEY}).
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class XMLRecordReaderBenchmark {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final byte[] START_TAG = "<page>".getBytes(UTF8);
+	private static final byte[] END_TAG = "</page>".getBytes(UTF8);
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws IOException, InterruptedException {
+		byte[] file = XMLInputFormatTest.syntheticDump(4000, new Random(1));
+
+		// warm up
+		int expected = countRecords(file);
+		if (countRecordsByteByByte(file) != expected)
+			throw new IllegalStateException("the readers found different records");
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+			countRecordsByteByByte(file);
+		long byteByByteNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+			countRecords(file);
+		long blockNanos = System.nanoTime() - start;
+
+		double megabytes = (double) ROUNDS * file.length / (1 << 20);
+		System.out.println("XMLRecordReader MB/s on " + file.length / (1 << 20) + " MB, "
+				+ expected + " records, byte by byte: "
+				+ Math.round(megabytes * 1e9 / byteByByteNanos) + ", block-buffered: "
+				+ Math.round(megabytes * 1e9 / blockNanos));
+
+		Path path = Files.createTempFile("dump", ".xml");
+		try {
+			Files.write(path, file);
+
+			// warm up
+			if (countRecords(path, false) != expected || countRecords(path, true) != expected)
+				throw new IllegalStateException("the readers found different records");
+
+			start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++)
+				countRecords(path, false);
+			long streamNanos = System.nanoTime() - start;
+
+			start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++)
+				countRecords(path, true);
+			long mappedNanos = System.nanoTime() - start;
+
+			System.out.println("XMLRecordReader MB/s on a local " + file.length / (1 << 20)
+					+ " MB file, stream: " + Math.round(megabytes * 1e9 / streamNanos)
+					+ ", mapped: " + Math.round(megabytes * 1e9 / mappedNanos));
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	private static int countRecords(Path path, boolean mapped) throws IOException,
+			InterruptedException {
+		long length = Files.size(path);
+		XMLRecordReader reader = mapped ? new XMLRecordReader(FileChannel.open(path,
+				StandardOpenOption.READ), 0, length, START_TAG, END_TAG,
+				XMLRecordReader.DEFAULT_MAP_SIZE) : new XMLRecordReader(Files.newInputStream(path),
+				0, length, START_TAG, END_TAG, XMLRecordReader.DEFAULT_BUFFER_SIZE);
+
+		int count = 0;
+		while (reader.nextKeyValue())
+			if (reader.getCurrentRecord().remaining() > 0)
+				count++;
+		reader.close();
+		return count;
+	}
+
+	private static int countRecords(byte[] file) throws IOException, InterruptedException {
+		XMLRecordReader reader = new XMLRecordReader(new ByteArrayInputStream(file), 0,
+				file.length, START_TAG, END_TAG, XMLRecordReader.DEFAULT_BUFFER_SIZE);
+		int count = 0;
+		while (reader.nextKeyValue())
+			count++;
+		reader.close();
+		return count;
+	}
+
+	/**
+	 * The loop the reader used before, reading and buffering one byte at a
+	 * time.
+	 */
+	private static int countRecordsByteByByte(byte[] file) throws IOException {
+		InputStream in = new ByteArrayInputStream(file);
+		DataOutputBuffer buffer = new DataOutputBuffer();
+		Text value = new Text();
+
+		int count = 0;
+		while (readUntilMatch(in, START_TAG, null)) {
+			buffer.write(START_TAG);
+			if (!readUntilMatch(in, END_TAG, buffer))
+				break;
+			value.set(buffer.getData(), 0, buffer.getLength());
+			buffer.reset();
+			count++;
+		}
+		return count;
+	}
+
+	private static boolean readUntilMatch(InputStream in, byte[] match, DataOutputBuffer buffer)
+			throws IOException {
+		int i = 0;
+		while (true) {
+			int b = in.read();
+			if (b == -1)
+				return false;
+			if (buffer != null)
+				buffer.write(b);
+
+			if (b == match[i]) {
+				i++;
+				if (i >= match.length)
+					return true;
+			} else
+				i = 0;
+		}
+	}
+}
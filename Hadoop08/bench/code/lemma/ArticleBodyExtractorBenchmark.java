@@ -0,0 +1,91 @@
+package code.lemma;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * Compares the micros per page of the StAX parsing the mapper used before (a
+ * new factory per page, on the re-encoded String), the same with a cached
+ * factory and the {@link ArticleBodyExtractor} on the record bytes, for the
+ * pages of <code>test_data/LemmaIndexMapredTest</code>.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class ArticleBodyExtractorBenchmark {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int ROUNDS = 200;
+
+	public static void main(String[] args) throws IOException, XMLStreamException {
+		ArticleBodyExtractor extractor = new ArticleBodyExtractor();
+
+		// what WikipediaPage.getRawXML() and RawWikipediaPage.getRawBytes()
+		// return
+		List<String> pages = new ArrayList<>();
+		List<byte[]> records = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(
+				Paths.get("test_data", "LemmaIndexMapredTest"))) {
+			for (Path file : files)
+				if (!file.getFileName().toString().endsWith(" - text")) {
+					byte[] record = Files.readAllBytes(file);
+					records.add(record);
+					pages.add(new String(record, UTF8));
+				}
+		}
+
+		// warm up
+		for (int i = 0; i < pages.size(); i++) {
+			getArticleBodyWithNewFactory(pages.get(i));
+			LemmaIndexMapred.LemmaIndexMapper.getArticleBody(pages.get(i));
+			extractor.extract(records.get(i), 0, records.get(i).length);
+		}
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+			for (String page : pages)
+				getArticleBodyWithNewFactory(page);
+		long newFactoryNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+			for (String page : pages)
+				LemmaIndexMapred.LemmaIndexMapper.getArticleBody(page);
+		long cachedFactoryNanos = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+			for (byte[] record : records)
+				extractor.extract(record, 0, record.length);
+		long extractorNanos = System.nanoTime() - start;
+
+		int count = ROUNDS * pages.size();
+		System.out.println("micros per page, StAX with new factory: " + newFactoryNanos / 1000
+				/ count + ", StAX with cached factory: " + cachedFactoryNanos / 1000 / count
+				+ ", extractor: " + extractorNanos / 1000 / count);
+	}
+
+	private static String getArticleBodyWithNewFactory(String rawXML) throws XMLStreamException {
+		XMLStreamReader xmlStreamReader = XMLInputFactory.newInstance().createXMLStreamReader(
+				new ByteArrayInputStream(rawXML.getBytes(UTF8)));
+
+		while (xmlStreamReader.hasNext())
+			if (xmlStreamReader.next() == XMLStreamConstants.START_ELEMENT
+					&& xmlStreamReader.getLocalName().equals("text"))
+				return xmlStreamReader.getElementText();
+
+		throw new IllegalStateException("no article found in XML");
+	}
+}
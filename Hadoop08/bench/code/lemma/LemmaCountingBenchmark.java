@@ -0,0 +1,74 @@
+package code.lemma;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+
+import util.StringIntegerList;
+
+/**
+ * Bytes allocated per article from the lemmas to the serialized output value,
+ * for collecting the lemmas in a list and counting them afterwards, and for
+ * streaming them into a {@link LemmaCounter}. Measured with the suffix
+ * lemmatizer, whose allocations do not hide the ones of counting.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class LemmaCountingBenchmark {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int ROUNDS = 20;
+
+	public static void main(String[] args) throws IOException {
+		String article = new String(Files.readAllBytes(Paths.get("test_data",
+				"LemmaIndexMapredTest", "Battle of Tsushima - text")), UTF8);
+		List<String> stopWords = Files.readAllLines(Paths.get("stopwords.csv"), UTF8);
+		Tokenizer tokenizer = new Tokenizer(new HashSet<>(stopWords), new SuffixLemmatizer());
+
+		LemmaCounter counter = new LemmaCounter();
+		StringIntegerList streamed = new StringIntegerList();
+		DataOutputBuffer out = new DataOutputBuffer();
+
+		long collectingBytes = 0;
+		long streamingBytes = 0;
+		// the first round warms up
+		for (int round = 0; round <= ROUNDS; round++) {
+			long before = allocatedBytes();
+			StringIntegerList collected = new StringIntegerList(
+					LemmaIndexMapred.LemmaIndexMapper.countLemmas(tokenizer.getLemmas(article)));
+			out.reset();
+			collected.write(out);
+			long collecting = allocatedBytes() - before;
+
+			before = allocatedBytes();
+			counter.clear();
+			tokenizer.countLemmas(article, counter);
+			streamed.clear();
+			counter.writeTo(streamed);
+			out.reset();
+			streamed.write(out);
+			long streaming = allocatedBytes() - before;
+
+			if (round > 0) {
+				collectingBytes += collecting;
+				streamingBytes += streaming;
+			}
+		}
+
+		System.out.println("allocated per article, collecting: " + collectingBytes / ROUNDS
+				+ " bytes, streaming: " + streamingBytes / ROUNDS + " bytes");
+	}
+
+	private static long allocatedBytes() {
+		com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		return threads.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
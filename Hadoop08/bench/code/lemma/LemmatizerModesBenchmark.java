@@ -0,0 +1,68 @@
+package code.lemma;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lemmatizes the noise-free articles of
+ * <code>test_data/LemmaIndexMapredTest</code> in each {@link Lemmatizer.Mode}
+ * and prints the articles per second. Each measurement starts with a fresh
+ * {@link LemmaCache}, as the rounds after the first one would only hit the
+ * cache; the pipelines are loaded and warmed up before.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class LemmatizerModesBenchmark {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int ROUNDS = 10;
+
+	public static void main(String[] args) throws IOException {
+		List<String> articles = readArticles(Paths.get("test_data", "LemmaIndexMapredTest"));
+
+		for (Lemmatizer.Mode mode : Lemmatizer.Mode.values()) {
+			// loads the pipeline
+			create(mode).lemmatize(articles.get(0), new LemmaCounter());
+
+			long start = System.currentTimeMillis();
+			for (int round = 0; round < ROUNDS; round++) {
+				Lemmatizer lemmatizer = create(mode);
+				for (String article : articles)
+					lemmatizer.lemmatize(article, new LemmaCounter());
+			}
+			long millis = Math.max(1, System.currentTimeMillis() - start);
+
+			System.out.println(mode + ": " + ROUNDS * articles.size() * 1000 / millis
+					+ " articles/sec");
+		}
+	}
+
+	private static Lemmatizer create(Lemmatizer.Mode mode) {
+		LemmaCache cache = new LemmaCache(LemmaCache.DEFAULT_CAPACITY);
+		switch (mode) {
+		case MORPHOLOGY:
+			return new MorphologyLemmatizer(SharedPipeline.get(MorphologyLemmatizer.ANNOTATORS,
+					true), cache);
+		case SUFFIX:
+			return new SuffixLemmatizer();
+		default:
+			return new FullLemmatizer(SharedPipeline.get(FullLemmatizer.ANNOTATORS, true), cache);
+		}
+	}
+
+	private static List<String> readArticles(Path dir) throws IOException {
+		List<String> articles = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "* - text")) {
+			for (Path file : files)
+				articles.add(Tokenizer.removeNoise(new String(Files.readAllBytes(file), UTF8)));
+		}
+		return articles;
+	}
+}
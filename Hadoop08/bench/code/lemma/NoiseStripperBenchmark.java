@@ -0,0 +1,79 @@
+package code.lemma;
+
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.regex.Pattern;
+
+/**
+ * Compares the throughput of {@link Tokenizer#buildNoisePattern()} with the
+ * {@link NoiseStripper} on the longest test article, and on a text of
+ * '|a ' where each '|' lets the regular expression scan to the end of the
+ * text looking for a '='. Last the stripper alone on a text of unclosed
+ * infoboxes, file links and references.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class NoiseStripperBenchmark {
+
+	private static final Pattern NOISE_PATTERN = Tokenizer.buildNoisePattern();
+
+	private static final int ROUNDS = 200;
+
+	public static void main(String[] args) throws Exception {
+		NoiseStripper stripper = new NoiseStripper();
+
+		String article = new String(Files.readAllBytes(Paths.get("test_data",
+				"LemmaIndexMapredTest", "Battle of Tsushima - text")), Charset.forName("UTF-8"));
+
+		// warm up
+		removeNoiseWithRegex(article);
+		stripper.strip(article);
+
+		long start = System.currentTimeMillis();
+		for (int i = 0; i < ROUNDS / 10; i++)
+			removeNoiseWithRegex(article);
+		double regexMillis = (System.currentTimeMillis() - start) / (ROUNDS / 10.0);
+
+		start = System.currentTimeMillis();
+		for (int i = 0; i < ROUNDS; i++)
+			stripper.strip(article);
+		double stripperMillis = (System.currentTimeMillis() - start) / (double) ROUNDS;
+
+		System.out.println(article.length() + " chars, regex: " + regexMillis
+				+ " millis per article, stripper: " + stripperMillis + " millis per article");
+
+		StringBuilder pipes = new StringBuilder();
+		for (int i = 0; i < 5_000; i++)
+			pipes.append("|a ");
+		String pipesDoc = pipes.toString();
+
+		start = System.currentTimeMillis();
+		removeNoiseWithRegex(pipesDoc);
+		regexMillis = System.currentTimeMillis() - start;
+
+		start = System.currentTimeMillis();
+		stripper.strip(pipesDoc);
+		stripperMillis = System.currentTimeMillis() - start;
+
+		System.out.println(pipesDoc.length() + " chars of '|a ', regex: " + regexMillis
+				+ " millis, stripper: " + stripperMillis + " millis");
+
+		StringBuilder unclosed = new StringBuilder();
+		for (int i = 0; i < 20_000; i++)
+			unclosed.append("{{Infobox x [[File:y <ref z ");
+		String unclosedDoc = unclosed.toString();
+
+		start = System.currentTimeMillis();
+		stripper.strip(unclosedDoc);
+		stripperMillis = System.currentTimeMillis() - start;
+
+		System.out.println(unclosedDoc.length() + " chars of unclosed infoboxes, files and refs,"
+				+ " stripper: " + stripperMillis + " millis");
+	}
+
+	private static String removeNoiseWithRegex(String documentText) {
+		documentText = NOISE_PATTERN.matcher(documentText).replaceAll(" ").trim();
+		return documentText.replaceAll("\\s+", " ");
+	}
+}
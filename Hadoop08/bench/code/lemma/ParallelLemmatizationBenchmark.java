@@ -0,0 +1,89 @@
+package code.lemma;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+
+/**
+ * Lemmatizes the articles of <code>test_data/LemmaIndexMapredTest</code> with
+ * up to as many threads as there are cores, each with its own
+ * {@link Tokenizer} on the shared pipeline and lemma cache, like the threads
+ * of a multithreaded {@link LemmaIndexMapred.LemmaIndexMapper} do. Each thread
+ * gets the same amount of work, so linear scaling keeps the time constant.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class ParallelLemmatizationBenchmark {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int ROUNDS = 8;
+
+	public static void main(String[] args) throws Exception {
+		final List<String> articles = readArticles(Paths.get("test_data",
+				"LemmaIndexMapredTest"));
+
+		final Set<String> stopWords = new HashSet<>(Files.readAllLines(
+				Paths.get("stopwords.csv"), UTF8));
+		final StanfordCoreNLP pipeline = SharedPipeline.get(FullLemmatizer.ANNOTATORS, true);
+		final LemmaCache cache = new LemmaCache(LemmaCache.DEFAULT_CAPACITY);
+		final ThreadLocal<Tokenizer> tokenizers = new ThreadLocal<Tokenizer>() {
+			@Override
+			protected Tokenizer initialValue() {
+				return new Tokenizer(stopWords, new FullLemmatizer(pipeline, cache));
+			}
+		};
+
+		int cores = Runtime.getRuntime().availableProcessors();
+		long singleThreadMillis = 0;
+		for (int threads = 1; threads <= cores; threads *= 2) {
+			ExecutorService executor = Executors.newFixedThreadPool(threads);
+			try {
+				long start = System.currentTimeMillis();
+
+				List<Future<List<String>>> results = new ArrayList<>();
+				for (int round = 0; round < ROUNDS * threads; round++)
+					for (final String article : articles)
+						results.add(executor.submit(new Callable<List<String>>() {
+							@Override
+							public List<String> call() {
+								return tokenizers.get().getLemmas(article);
+							}
+						}));
+				for (Future<List<String>> result : results)
+					result.get();
+
+				long millis = System.currentTimeMillis() - start;
+				if (threads == 1)
+					singleThreadMillis = millis;
+				System.out.println(threads + " threads: " + results.size() + " articles in "
+						+ millis + " millis, speedup " + (double) singleThreadMillis * threads
+						/ Math.max(1, millis));
+			} finally {
+				executor.shutdown();
+			}
+		}
+	}
+
+	private static List<String> readArticles(Path dir) throws IOException {
+		List<String> articles = new ArrayList<>();
+		try (DirectoryStream<Path> files = Files.newDirectoryStream(dir, "* - text")) {
+			for (Path file : files)
+				articles.add(new String(Files.readAllBytes(file), UTF8));
+		}
+		return articles;
+	}
+}
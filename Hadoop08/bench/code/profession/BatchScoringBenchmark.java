@@ -0,0 +1,49 @@
+package code.profession;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Random;
+
+import util.StringIntegerList;
+
+/**
+ * Compares the micros per person of scoring one person at a time with
+ * scoring in batches ({@link ProfessionModel.Batch}), on the synthetic model
+ * and people of {@link ProfessionModelTest}: 2000 professions, 1000 people.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class BatchScoringBenchmark {
+
+	private static final int ROUNDS = 5;
+
+	public static void main(String[] args) throws IOException {
+		Random random = new Random(11);
+		ProfessionModel model = new ProfessionModel(ProfessionModelTest.syntheticModel(2000,
+				random));
+		List<StringIntegerList> people = ProfessionModelTest.syntheticPeople(1000, random);
+
+		// warm up
+		List<String> expected = ProfessionModelTest.classifyByPerson(model, people);
+		if (!expected.equals(ProfessionModelTest.classifyInBatches(model, people, 64)))
+			throw new IllegalStateException("the batches found other professions");
+
+		long start = System.nanoTime();
+		for (int i = 0; i < ROUNDS; i++)
+			ProfessionModelTest.classifyByPerson(model, people);
+		long byPersonNanos = System.nanoTime() - start;
+
+		System.out.print("micros per person, one at a time: " + byPersonNanos / 1000 / ROUNDS
+				/ people.size());
+		for (int batchSize : new int[] { 16, 64, 256 }) {
+			start = System.nanoTime();
+			for (int i = 0; i < ROUNDS; i++)
+				ProfessionModelTest.classifyInBatches(model, people, batchSize);
+			long batchNanos = System.nanoTime() - start;
+
+			System.out.print(", in batches of " + batchSize + ": " + batchNanos / 1000 / ROUNDS
+					/ people.size());
+		}
+		System.out.println();
+	}
+}
@@ -2,9 +2,8 @@ package code.articles;
 
 import java.io.IOException;
 import java.net.URISyntaxException;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Set;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -19,8 +18,13 @@ import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 
 import util.HDFSUtils;
+import util.MembershipFilter;
+import util.PageIndex;
+import util.PageIndexInputFormat;
+import util.WikipediaPageFilter;
 import util.WikipediaPageInputFormat;
-import edu.umd.cloud9.collection.wikipedia.WikipediaPage;
+import util.WikipediaPageView;
+import util.WikipediaPageViewInputFormat;
 
 /**
  * This class is used for Section A of assignment 1. You are supposed to run the
@@ -31,39 +35,86 @@ import edu.umd.cloud9.collection.wikipedia.WikipediaPage;
  */
 public class GetArticlesMapred {
 
-	public static class GetArticlesMapper extends Mapper<LongWritable, WikipediaPage, Text, Text> {
+	/**
+	 * Writes the raw XML of the pages whose titles are in the people list.
+	 * {@link code.lemma.PeopleLemmaIndexMapred} does the same filtering and
+	 * lemmatizes the pages right away.
+	 */
+	public static class GetArticlesMapper extends Mapper<LongWritable, WikipediaPageView, Text, Text> {
 
-		// used to store people names to match up with Wikipedia articles
-		public static Set<String> wantedTitles;
+		// used to store people names to match up with Wikipedia articles,
+		// mapped from the side file built by main
+		private MembershipFilter wantedTitles;
 
 		Log LOG = LogFactory.getLog(GetArticlesMapper.class);
 
-		private static final Path PEOPLE_FILEPATH = new Path("people.txt");
+		public static final Path PEOPLE_FILEPATH = new Path("people.txt");
 
 		@Override
-		protected void setup(Mapper<LongWritable, WikipediaPage, Text, Text>.Context context)
+		protected void setup(Mapper<LongWritable, WikipediaPageView, Text, Text>.Context context)
 				throws IOException, InterruptedException {
-			// read from people file in HDFS, add each line to people set
-			final List<String> lines = HDFSUtils.readLines(PEOPLE_FILEPATH,
+			wantedTitles = MembershipFilter.open(new Path(context.getCacheFiles()[0]),
 					context.getConfiguration());
-			wantedTitles = new HashSet<>(lines);
 		}
 
+		private final Text noKey = new Text();
+		private final Text articleXML = new Text();
+
 		@Override
-		public void map(LongWritable offset, WikipediaPage inputPage, Context context)
+		public void map(LongWritable offset, WikipediaPageView inputPage, Context context)
 				throws IOException, InterruptedException {
 
-			// input page's title is in our set of wanted articles -> take it
-			if (wantedTitles.contains(inputPage.getTitle())) {
-				Text articleXML = new Text(inputPage.getRawXML());
-				context.write(new Text(), articleXML);
+			// input page's title is in our set of wanted articles -> take it;
+			// the title is looked up and the record written as bytes
+			if (inputPage.isTitleIn(wantedTitles)) {
+				articleXML.set(inputPage.getRawBytes(), inputPage.getRawOffset(),
+						inputPage.getRawLength());
+				context.write(noKey, articleXML);
 			}
 		}
 	}
 
+	/**
+	 * followed by the directory of a {@link PageIndex} of the dump, e.g.
+	 * -pageindex=index
+	 */
+	public static final String PAGE_INDEX_OPTION = "-pageindex=";
+
+	/**
+	 * followed by the path of the people list, default
+	 * {@link GetArticlesMapper#PEOPLE_FILEPATH}
+	 */
+	public static final String PEOPLE_OPTION = "-people=";
+
+	/**
+	 * Takes two or three parameters when called from commandline:
+	 * 
+	 * <pre>
+	 * inputPath	HDFS path to the dump
+	 * outputPath	HDFS path to a not existing directory for the output
+	 * indexPath	optional, HDFS path to the index of a multistream dump
+	 * </pre>
+	 * 
+	 * With the additional parameter <code>{@value #PAGE_INDEX_OPTION}dir</code>
+	 * only the pages of the people are read from an uncompressed dump, see
+	 * {@link PageIndexMapred}. <code>{@value #PEOPLE_OPTION}path</code> reads
+	 * another people list.
+	 */
 	public static void main(String[] args) throws IOException, URISyntaxException,
 			InterruptedException, ClassNotFoundException {
 
+		String pageIndex = null;
+		Path people = GetArticlesMapper.PEOPLE_FILEPATH;
+		List<String> params = new ArrayList<>(args.length);
+		for (String arg : args)
+			if (arg.startsWith(PAGE_INDEX_OPTION))
+				pageIndex = arg.substring(PAGE_INDEX_OPTION.length());
+			else if (arg.startsWith(PEOPLE_OPTION))
+				people = new Path(arg.substring(PEOPLE_OPTION.length()));
+			else
+				params.add(arg);
+		args = params.toArray(new String[params.size()]);
+
 		Job job = Job.getInstance(new Configuration());
 
 		job.setOutputKeyClass(Text.class);
@@ -71,18 +122,37 @@ public class GetArticlesMapred {
 
 		job.setMapperClass(GetArticlesMapper.class);
 
-		job.setInputFormatClass(WikipediaPageInputFormat.class);
+		if (pageIndex == null) {
+			job.setInputFormatClass(WikipediaPageViewInputFormat.class);
+		} else {
+			// reads just the byte ranges of the people's pages
+			job.setInputFormatClass(PageIndexInputFormat.class);
+			PageIndexInputFormat.setIndex(job, new Path(pageIndex));
+			PageIndexInputFormat.setTitles(job, people);
+		}
 		job.setOutputFormatClass(TextOutputFormat.class);
 
 		FileInputFormat.setInputPaths(job, new Path(args[0]));
 		FileOutputFormat.setOutputPath(job, new Path(args[1]));
 
+		// optional index of a multistream dump, to split it by its streams
+		if (args.length > 2)
+			WikipediaPageInputFormat.setMultistreamIndex(job, new Path(args[2]));
+
+		// built once for all tasks, which map it; the record reader skips the
+		// other pages from their titles, without handing them to the mapper
+		Path wantedTitles = MembershipFilter.buildSideFile(people, job.getConfiguration());
+		HDFSUtils.addCacheFile(job, wantedTitles.toString());
+		WikipediaPageFilter.setTitles(job, wantedTitles);
+
 		job.setJarByClass(GetArticlesMapred.class);
 
 		// so we don't have to specify the job name when starting job on cluster
 		job.getConfiguration().set("mapreduce.job.queuename", "hadoop08");
 
 		// execute the job with verbose prints
-		job.waitForCompletion(true);
+		long start = System.currentTimeMillis();
+		if (job.waitForCompletion(true))
+			HDFSUtils.logCost(job, start);
 	}
 }
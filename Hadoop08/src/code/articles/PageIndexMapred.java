@@ -0,0 +1,123 @@
+package code.articles;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MapFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+
+import util.PageIndex;
+import util.PageIndexInputFormat;
+import util.PageLocation;
+import util.WikipediaPageView;
+import util.WikipediaPageViewInputFormat;
+
+/**
+ * Scans uncompressed Wikipedia dumps once and writes their {@link PageIndex},
+ * so {@link PageIndexInputFormat} can read the pages of a title list without
+ * scanning the dumps again.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PageIndexMapred {
+
+	private static final String BOUNDARIES_OUTPUT = "boundaries";
+
+	/**
+	 * Emits the title and location of each page. The first page of the split
+	 * and the first one after each multiple of the boundary size are written
+	 * as page boundaries.
+	 */
+	public static class PageIndexMapper extends
+			Mapper<LongWritable, WikipediaPageView, Text, PageLocation> {
+
+		private final Text title = new Text();
+		private final PageLocation location = new PageLocation();
+
+		private MultipleOutputs<Text, PageLocation> outputs;
+		private String file;
+		private final Text fileText = new Text();
+		private long boundarySize;
+		private long previousOffset = -1;
+
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			Path path = ((FileSplit) context.getInputSplit()).getPath();
+			if (new CompressionCodecFactory(context.getConfiguration()).getCodec(path) != null)
+				throw new IllegalArgumentException(
+						"Error! Only uncompressed dumps can be indexed: " + path);
+
+			file = path.toString();
+			fileText.set(file);
+			boundarySize = context.getConfiguration().getLong(PageIndex.BOUNDARY_SIZE_KEY,
+					PageIndex.DEFAULT_BOUNDARY_SIZE);
+			outputs = new MultipleOutputs<>(context);
+		}
+
+		@Override
+		public void map(LongWritable offset, WikipediaPageView page, Context context)
+				throws IOException, InterruptedException {
+			if (page.getTitle() == null)
+				return;
+
+			title.set(page.getTitle());
+			location.set(file, offset.get(), page.getRawLength(), page.getNamespace());
+			context.write(title, location);
+
+			if (previousOffset < 0 || offset.get() / boundarySize > previousOffset / boundarySize)
+				outputs.write(BOUNDARIES_OUTPUT, fileText, offset, PageIndex.BOUNDARIES_DIR
+						+ "/part");
+			previousOffset = offset.get();
+		}
+
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			outputs.close();
+		}
+	}
+
+	/**
+	 * Takes two parameters when called from commandline:
+	 *
+	 * <pre>
+	 * inputPath	HDFS path to the uncompressed dump (directory or file)
+	 * outputPath	HDFS path to a not existing directory for the index
+	 * </pre>
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException,
+			ClassNotFoundException {
+		Job job = Job.getInstance(new Configuration());
+
+		job.setInputFormatClass(WikipediaPageViewInputFormat.class);
+		job.setMapperClass(PageIndexMapper.class);
+		// the identity reducer, the shuffle sorts the titles
+		job.setReducerClass(Reducer.class);
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(PageLocation.class);
+		job.setOutputFormatClass(MapFileOutputFormat.class);
+		MultipleOutputs.addNamedOutput(job, BOUNDARIES_OUTPUT, TextOutputFormat.class,
+				Text.class, LongWritable.class);
+
+		FileInputFormat.setInputPaths(job, new Path(args[0]));
+		FileOutputFormat.setOutputPath(job, new Path(args[1]));
+
+		job.setJarByClass(PageIndexMapred.class);
+
+		// so we don't have to specify the job name when starting job on cluster
+		job.getConfiguration().set("mapreduce.job.queuename", "hadoop08");
+
+		// execute the job with verbose prints
+		job.waitForCompletion(true);
+	}
+}
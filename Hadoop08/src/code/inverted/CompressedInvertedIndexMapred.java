@@ -0,0 +1,182 @@
+package code.inverted;
+
+import java.io.IOException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import util.DocumentTable;
+import util.HDFSUtils;
+import util.IdCountList;
+import util.StringIntegerCursor;
+import util.StringIntegerList;
+import code.inverted.InvertedIndexMapred.InvertedIndexMapper;
+import code.inverted.InvertedIndexMapred.PostingsCombiner;
+
+/**
+ * Same as {@link InvertedIndexMapred}, but writes a compact binary index (see
+ * {@link PostingsWriter}) instead of text: article titles are replaced by
+ * dense document ids from a {@link DocumentTable}, which is built by a first
+ * job.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class CompressedInvertedIndexMapred {
+
+	public static enum CompressedIndexCounter {
+		/** postings of articles missing in the document table, dropped */
+		UNKNOWN_DOCUMENTS
+	}
+
+	public static class TitleMapper extends Mapper<Text, Text, Text, NullWritable> {
+
+		private final Text title = new Text();
+
+		@Override
+		public void map(Text articleId, Text indices, Context context) throws IOException,
+				InterruptedException {
+			// blanks result from ":" instead of " : " as key-value separator
+			title.set(articleId.toString().trim());
+			context.write(title, NullWritable.get());
+		}
+	}
+
+	/**
+	 * Receives the titles in sorted order and numbers them. There must be
+	 * exactly one reducer so the ids are dense.
+	 */
+	public static class TitleNumberReducer extends
+			Reducer<Text, NullWritable, IntWritable, Text> {
+
+		private final IntWritable id = new IntWritable();
+
+		@Override
+		public void reduce(Text title, Iterable<NullWritable> values, Context context)
+				throws IOException, InterruptedException {
+			context.write(id, title);
+			id.set(id.get() + 1);
+		}
+	}
+
+	/**
+	 * Translates the titles of the posting blocks to document ids and emits
+	 * the postings of a lemma sorted by document id.
+	 */
+	public static class CompressedInvertedIndexReducer extends
+			Reducer<Text, StringIntegerList, Text, IdCountList> {
+
+		private DocumentTable documents;
+		private final IdCountList docCounts = new IdCountList();
+
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			Path documentsPath = new Path(context.getCacheFiles()[0]);
+			documents = DocumentTable.read(documentsPath, context.getConfiguration());
+		}
+
+		@Override
+		public void reduce(Text lemma, Iterable<StringIntegerList> blocks, Context context)
+				throws IOException, InterruptedException {
+			docCounts.clear();
+
+			for (StringIntegerList block : blocks) {
+				StringIntegerCursor postings = block.cursor();
+				while (postings.next()) {
+					int id = documents.getId(postings.getBytes(), postings.getLemmaStart(),
+							postings.getLemmaLength());
+					if (id < 0)
+						context.getCounter(CompressedIndexCounter.UNKNOWN_DOCUMENTS).increment(1);
+					else
+						docCounts.add(id, postings.getCount());
+				}
+			}
+
+			docCounts.sortById();
+			context.write(lemma, docCounts);
+		}
+	}
+
+	/**
+	 * Takes two parameters when called from commandline:
+	 *
+	 * <pre>
+	 * inputPath	HDFS path to the lemma index
+	 * outputPath	HDFS path to a not existing directory for the index
+	 * </pre>
+	 *
+	 * The document table ends up in <code>outputPath_documents</code>.
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length != 2)
+			throw new IllegalArgumentException("Two parameters required. "
+					+ "Representing the HDFS pathes: lemma_index, output");
+
+		Path documentsPath = new Path(args[1] + "_documents");
+
+		Job tableJob = Job.getInstance(new Configuration());
+		tableJob.setJobName("compressed inverted index - document table");
+
+		tableJob.setMapperClass(TitleMapper.class);
+		tableJob.setReducerClass(TitleNumberReducer.class);
+		tableJob.setNumReduceTasks(1);
+
+		tableJob.setMapOutputKeyClass(Text.class);
+		tableJob.setMapOutputValueClass(NullWritable.class);
+		tableJob.setOutputKeyClass(IntWritable.class);
+		tableJob.setOutputValueClass(Text.class);
+
+		FileInputFormat.setInputPaths(tableJob, new Path(args[0]));
+		FileOutputFormat.setOutputPath(tableJob, documentsPath);
+
+		configure(tableJob);
+
+		if (!tableJob.waitForCompletion(true))
+			return;
+
+		Job indexJob = Job.getInstance(new Configuration());
+		indexJob.setJobName("compressed inverted index");
+
+		indexJob.setOutputFormatClass(PostingsOutputFormat.class);
+
+		indexJob.setMapperClass(InvertedIndexMapper.class);
+		indexJob.setCombinerClass(PostingsCombiner.class);
+		indexJob.setReducerClass(CompressedInvertedIndexReducer.class);
+
+		indexJob.setMapOutputKeyClass(Text.class);
+		indexJob.setMapOutputValueClass(StringIntegerList.class);
+		indexJob.setOutputKeyClass(Text.class);
+		indexJob.setOutputValueClass(IdCountList.class);
+
+		HDFSUtils.addCacheFile(indexJob, documentsPath + "/part-r-00000");
+
+		FileInputFormat.setInputPaths(indexJob, new Path(args[0]));
+		FileOutputFormat.setOutputPath(indexJob, new Path(args[1]));
+
+		configure(indexJob);
+
+		indexJob.waitForCompletion(true);
+	}
+
+	private static void configure(Job job) {
+		job.setJarByClass(CompressedInvertedIndexMapred.class);
+		job.setInputFormatClass(KeyValueTextInputFormat.class);
+
+		final Configuration conf = job.getConfiguration();
+
+		// so we don't have to specify the job name when starting job on cluster
+		conf.set("mapreduce.job.queuename", "hadoop08");
+
+		// same separators as the lemma index and the document table format
+		conf.set("mapreduce.input.keyvaluelinerecordreader.key.value.separator", ":");
+		conf.set("mapred.textoutputformat.separator", DocumentTable.KEY_VALUE_SEPARATOR);
+	}
+}
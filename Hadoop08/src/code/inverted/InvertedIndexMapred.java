@@ -6,6 +6,7 @@ import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
@@ -14,7 +15,11 @@ import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
-import util.StringInteger;
+import util.BinaryHandoff;
+import util.HDFSUtils;
+import util.IdCountList;
+import util.LemmaDictionary;
+import util.StringIntegerCursor;
 import util.StringIntegerList;
 
 /**
@@ -28,23 +33,36 @@ public class InvertedIndexMapred {
 
 	public static final String KEY_VALUE_SEPARATOR = " : ";
 
-	public static class InvertedIndexMapper extends Mapper<Text, Text, Text, StringInteger> {
+	public static class InvertedIndexMapper extends Mapper<Text, Text, Text, StringIntegerList> {
+
+		// reused for every lemma, the buffer copies it if needed
+		private final Text lemma = new Text();
+
+		private final StringIntegerCursor lemmaFreqs = StringIntegerCursor.forText();
+		private PostingsBuffer<Text> postings;
+
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			postings = new PostingsBuffer<>(context.getConfiguration());
+		}
 
 		/**
 		 * transforms:
 		 * 
 		 * <pre>
 		 * {@code
-		 * (article_id1, <lemma1,freq1>,<lemma2,freq2>,<lemma3,freq3>)
+		 * (article_id1, <lemma1,freq1>,<lemma2,freq2>)
+		 * (article_id2, <lemma1,freq3>)
 		 * }
 		 * </pre>
 		 * <p>
-		 * into:
+		 * into one posting block per lemma and map task, emitted at the end of
+		 * the task (or earlier, see {@link PostingsBuffer}):
 		 * 
 		 * <pre>
-		 * {@code lemma1 <article_id1,freq1>
+		 * {@code
+		 * (lemma1, <article_id1,freq1>,<article_id2,freq3>)
 		 * (lemma2, <article_id1,freq2>)
-		 * (lemma3, <article_id1,freq3>)
 		 * }
 		 * </pre>
 		 */
@@ -52,33 +70,108 @@ public class InvertedIndexMapred {
 		public void map(Text articleId, Text indices, Context context) throws IOException,
 				InterruptedException {
 
-			// blanks result from ":" instead of " : " as key-value separator
-			articleId = new Text(articleId.toString().trim());
-			indices = new Text(indices.toString().trim());
+			// blanks result from ":" instead of " : " as key-value separator,
+			// the cursor skips them in the indices
+			byte[] id = articleId.getBytes();
+			int idStart = 0;
+			int idEnd = articleId.getLength();
+			while (idStart < idEnd && id[idStart] >= 0 && id[idStart] <= ' ')
+				idStart++;
+			while (idEnd > idStart && id[idEnd - 1] >= 0 && id[idEnd - 1] <= ' ')
+				idEnd--;
+
+			lemmaFreqs.reset(indices.getBytes(), 0, indices.getLength());
+			while (lemmaFreqs.next()) {
+				lemma.set(lemmaFreqs.getBytes(), lemmaFreqs.getLemmaStart(),
+						lemmaFreqs.getLemmaLength());
+				postings.add(lemma, id, idStart, idEnd - idStart, lemmaFreqs.getCount(), context);
+			}
+		}
+
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			postings.flush(context);
+		}
+	}
+
+	/**
+	 * Same as {@link InvertedIndexMapper}, but reads the binary lemma index
+	 * (see {@link BinaryHandoff}), so neither titles nor lemma counts have to
+	 * be parsed.
+	 */
+	public static class BinaryInvertedIndexMapper extends
+			Mapper<Text, StringIntegerList, Text, StringIntegerList> {
 
-			StringIntegerList siList = new StringIntegerList();
-			siList.readFromString(indices.toString());
+		// reused for every lemma, the buffer copies it if needed
+		private final Text lemma = new Text();
 
-			String articleIdString = articleId.toString();
-			for (StringInteger lemmaFreq : siList.getIndices()) {
-				Text lemma = new Text(lemmaFreq.getString());
-				StringInteger articleFreq = new StringInteger(articleIdString, lemmaFreq.getValue());
-				context.write(lemma, articleFreq);
+		private PostingsBuffer<Text> postings;
+
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			postings = new PostingsBuffer<>(context.getConfiguration());
+		}
+
+		@Override
+		public void map(Text articleId, StringIntegerList indices, Context context)
+				throws IOException, InterruptedException {
+			StringIntegerCursor lemmaFreqs = indices.cursor();
+			while (lemmaFreqs.next()) {
+				lemma.set(lemmaFreqs.getBytes(), lemmaFreqs.getLemmaStart(),
+						lemmaFreqs.getLemmaLength());
+				postings.add(lemma, articleId.getBytes(), 0, articleId.getLength(),
+						lemmaFreqs.getCount(), context);
 			}
 		}
+
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			postings.flush(context);
+		}
+	}
+
+	/**
+	 * Concatenates the posting blocks of a lemma. Used as combiner for both
+	 * the text and the dictionary encoded lemma keys.
+	 */
+	public static class PostingsCombiner<K> extends
+			Reducer<K, StringIntegerList, K, StringIntegerList> {
+
+		private final StringIntegerList postings = new StringIntegerList();
+
+		@Override
+		public void reduce(K lemma, Iterable<StringIntegerList> blocks, Context context)
+				throws IOException, InterruptedException {
+			context.write(lemma, concat(blocks, postings));
+		}
+	}
+
+	/**
+	 * Copies the serialized entries of all <code>blocks</code> into
+	 * <code>result</code>. This is safe although Hadoop hands out THE SAME
+	 * Writable object for every block, just replacing its contents.
+	 */
+	static StringIntegerList concat(Iterable<StringIntegerList> blocks, StringIntegerList result)
+			throws IOException {
+		result.clear();
+		for (StringIntegerList block : blocks)
+			result.addAll(block);
+		return result;
 	}
 
 	public static class InvertedIndexReducer extends
-			Reducer<Text, StringInteger, Text, StringIntegerList> {
+			Reducer<Text, StringIntegerList, Text, StringIntegerList> {
+
+		private final StringIntegerList postings = new StringIntegerList();
 
 		/**
 		 * transforms:
 		 * 
 		 * <pre>
 		 * {@code
-		 * (lemma1, <article_id1,freq1>)
-		 * (lemma1, <article_id2,freq2>)
-		 * (lemma2, <article_id1,freq3>)
+		 * (lemma1, <article_id1,freq1>,<article_id2,freq2>)
+		 * (lemma1, <article_id3,freq3>)
+		 * (lemma2, <article_id1,freq4>)
 		 * }
 		 * </pre>
 		 * <p>
@@ -86,41 +179,130 @@ public class InvertedIndexMapred {
 		 * 
 		 * <pre>
 		 * {@code
-		 * lemma1 : <article_id1,freq1>,<article_id2,freq2>
-		 * lemma2 : <article_id1,freq3>
+		 * lemma1 : <article_id1,freq1>,<article_id2,freq2>,<article_id3,freq3>
+		 * lemma2 : <article_id1,freq4>
 		 * }
 		 * </pre>
 		 */
 		@Override
-		public void reduce(Text lemma, Iterable<StringInteger> articlesAndFreqs, Context context)
+		public void reduce(Text lemma, Iterable<StringIntegerList> blocks, Context context)
 				throws IOException, InterruptedException {
+			context.write(lemma, concat(blocks, postings));
+		}
+	}
+
+	/**
+	 * Reads the dictionary encoded lemma index written by
+	 * {@link code.lemma.LemmaDictionaryMapred.EncodeMapper}. Same as
+	 * {@link InvertedIndexMapper}, but the lemmas are shuffled as int ids.
+	 */
+	public static class DictionaryInvertedIndexMapper extends
+			Mapper<Text, IdCountList, IntWritable, StringIntegerList> {
+
+		private final IntWritable lemmaId = new IntWritable();
+		private PostingsBuffer<IntWritable> postings;
+
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			postings = new PostingsBuffer<>(context.getConfiguration());
+		}
+
+		@Override
+		public void map(Text articleId, IdCountList lemmaCounts, Context context)
+				throws IOException, InterruptedException {
+			for (int i = 0; i < lemmaCounts.size(); i++) {
+				lemmaId.set(lemmaCounts.getId(i));
+				postings.add(lemmaId, articleId.getBytes(), 0, articleId.getLength(),
+						lemmaCounts.getCount(i), context);
+			}
+		}
+
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			postings.flush(context);
+		}
+	}
 
-			List<StringInteger> siList = new ArrayList<>();
+	/**
+	 * Same as {@link InvertedIndexReducer}, but translates the lemma ids back
+	 * to lemmas using the {@link LemmaDictionary} in the first cache file.
+	 */
+	public static class DictionaryInvertedIndexReducer extends
+			Reducer<IntWritable, StringIntegerList, Text, StringIntegerList> {
 
-			/*
-			 * here we need to create duplicate instances because the Hadoop
-			 * Iterable implementation keeps reference to THE SAME Writable
-			 * object between the Iterator next() calls. It just replaces the
-			 * object contents. Thus, without duplicating, we would add the same
-			 * object multiple times to the list, in the end containing the data
-			 * from the last iteration.
-			 */
-			for (StringInteger si : articlesAndFreqs)
-				siList.add(new StringInteger(si.getString(), si.getValue()));
+		private LemmaDictionary dictionary;
+		private final Text lemma = new Text();
+		private final StringIntegerList postings = new StringIntegerList();
 
-			context.write(lemma, new StringIntegerList(siList));
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			Path dictionaryPath = new Path(context.getCacheFiles()[0]);
+			dictionary = LemmaDictionary.read(dictionaryPath, context.getConfiguration());
+		}
+
+		@Override
+		public void reduce(IntWritable lemmaId, Iterable<StringIntegerList> blocks, Context context)
+				throws IOException, InterruptedException {
+			lemma.set(dictionary.getLemma(lemmaId.get()));
+			context.write(lemma, concat(blocks, postings));
 		}
 	}
 
+	/**
+	 * followed by the HDFS path of the {@link code.lemma.LemmaDictionaryMapred}
+	 * output file the lemma index was encoded with, e.g.
+	 * -dictionary=dictionary/part-r-00000
+	 */
+	public static final String DICTIONARY_OPTION = "-dictionary=";
+
+	/**
+	 * Takes two parameters when called from commandline:
+	 * 
+	 * <pre>
+	 * inputPath	HDFS path to the lemma index
+	 * outputPath	HDFS path to a not existing directory for the output
+	 * </pre>
+	 * 
+	 * With the additional {@value BinaryHandoff#FLAG} parameter the lemma
+	 * index is read as the SequenceFile written by LemmaIndexMapred with the
+	 * same flag. With <code>{@value #DICTIONARY_OPTION}path</code> it is read
+	 * as the SequenceFile encoded by LemmaDictionaryMapred with that
+	 * dictionary. The inverted index is always written as text.
+	 */
 	public static void main(String[] args) throws Exception {
+		boolean binary = BinaryHandoff.isRequested(args);
+		args = BinaryHandoff.removeFlag(args);
+
+		String dictionary = null;
+		List<String> params = new ArrayList<>(args.length);
+		for (String arg : args)
+			if (arg.startsWith(DICTIONARY_OPTION))
+				dictionary = arg.substring(DICTIONARY_OPTION.length());
+			else
+				params.add(arg);
+		args = params.toArray(new String[params.size()]);
+
 		Job job = Job.getInstance(new Configuration());
+		job.setMapOutputValueClass(StringIntegerList.class);
+		job.setCombinerClass(PostingsCombiner.class);
 		job.setOutputKeyClass(Text.class);
-		job.setOutputValueClass(StringInteger.class);
-
-		job.setMapperClass(InvertedIndexMapper.class);
-		job.setReducerClass(InvertedIndexReducer.class);
+		job.setOutputValueClass(StringIntegerList.class);
 
-		job.setInputFormatClass(KeyValueTextInputFormat.class);
+		if (dictionary != null) {
+			job.setMapOutputKeyClass(IntWritable.class);
+			job.setMapperClass(DictionaryInvertedIndexMapper.class);
+			job.setReducerClass(DictionaryInvertedIndexReducer.class);
+			BinaryHandoff.setInput(job);
+			HDFSUtils.addCacheFile(job, dictionary);
+		} else if (binary) {
+			job.setMapperClass(BinaryInvertedIndexMapper.class);
+			job.setReducerClass(InvertedIndexReducer.class);
+			BinaryHandoff.setInput(job);
+		} else {
+			job.setMapperClass(InvertedIndexMapper.class);
+			job.setReducerClass(InvertedIndexReducer.class);
+			job.setInputFormatClass(KeyValueTextInputFormat.class);
+		}
 
 		FileInputFormat.setInputPaths(job, new Path(args[0]));
 		FileOutputFormat.setOutputPath(job, new Path(args[1]));
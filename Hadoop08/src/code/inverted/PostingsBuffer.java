@@ -0,0 +1,82 @@
+package code.inverted;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+
+import util.StringIntegerList;
+
+/**
+ * In-mapper combining for the inverted index: collects the postings of all
+ * articles of a map task per lemma and emits one posting block per lemma
+ * instead of one record per posting. When the buffered blocks exceed
+ * {@value #MAX_BYTES_KEY} bytes they are emitted early.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PostingsBuffer<K extends Writable> {
+
+	public static final String MAX_BYTES_KEY = "inverted.index.buffer.bytes";
+	public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+
+	public static enum PostingsCounter {
+		/** number of times the buffer was emitted because it was full */
+		EARLY_FLUSHES
+	}
+
+	// rough memory overhead of a new map entry, its key and block
+	private static final int ENTRY_OVERHEAD_BYTES = 128;
+
+	private final Configuration config;
+	private final long maxBytes;
+	private final Map<K, StringIntegerList> blocks = new HashMap<>();
+	private long bytes;
+
+	public PostingsBuffer(Configuration config) {
+		this.config = config;
+		this.maxBytes = config.getLong(MAX_BYTES_KEY, DEFAULT_MAX_BYTES);
+	}
+
+	/**
+	 * Adds the posting (article, freq) to the block of <code>lemma</code>.
+	 *
+	 * @param lemma
+	 *            may be reused by the caller, it is copied if needed
+	 * @param article
+	 *            holds the article title's UTF-8 bytes
+	 */
+	public void add(K lemma, byte[] article, int start, int length, int freq,
+			TaskInputOutputContext<?, ?, K, StringIntegerList> context) throws IOException,
+			InterruptedException {
+		StringIntegerList block = blocks.get(lemma);
+		if (block == null) {
+			block = new StringIntegerList();
+			blocks.put(WritableUtils.clone(lemma, config), block);
+			bytes += ENTRY_OVERHEAD_BYTES;
+		}
+
+		bytes += block.add(article, start, length, freq);
+
+		if (bytes > maxBytes) {
+			context.getCounter(PostingsCounter.EARLY_FLUSHES).increment(1);
+			flush(context);
+		}
+	}
+
+	/**
+	 * Emits all buffered blocks. Has to be called at the end of the task.
+	 */
+	public void flush(TaskInputOutputContext<?, ?, K, StringIntegerList> context)
+			throws IOException, InterruptedException {
+		for (Map.Entry<K, StringIntegerList> block : blocks.entrySet())
+			context.write(block.getKey(), block.getValue());
+
+		blocks.clear();
+		bytes = 0;
+	}
+}
@@ -0,0 +1,46 @@
+package code.inverted;
+
+import java.io.IOException;
+
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+
+import util.IdCountList;
+
+/**
+ * Writes the reducer output with a {@link PostingsWriter}, i.e. a
+ * <code>part-r-*.postings</code> and a <code>part-r-*.header</code> file per
+ * reducer.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PostingsOutputFormat extends FileOutputFormat<Text, IdCountList> {
+
+	@Override
+	public RecordWriter<Text, IdCountList> getRecordWriter(TaskAttemptContext context)
+			throws IOException, InterruptedException {
+		Path postingsPath = getDefaultWorkFile(context, PostingsWriter.POSTINGS_EXTENSION);
+		Path headerPath = getDefaultWorkFile(context, PostingsWriter.HEADER_EXTENSION);
+		FileSystem fs = postingsPath.getFileSystem(context.getConfiguration());
+
+		final PostingsWriter writer = new PostingsWriter(fs.create(postingsPath, false),
+				fs.create(headerPath, false));
+
+		return new RecordWriter<Text, IdCountList>() {
+
+			@Override
+			public void write(Text lemma, IdCountList docCounts) throws IOException {
+				writer.write(lemma, docCounts);
+			}
+
+			@Override
+			public void close(TaskAttemptContext context) throws IOException {
+				writer.close();
+			}
+		};
+	}
+}
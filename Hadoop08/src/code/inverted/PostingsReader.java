@@ -0,0 +1,144 @@
+package code.inverted;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+import util.IdCountList;
+
+/**
+ * Reads the compressed inverted index written by {@link PostingsWriter}. The
+ * header is held in memory, the postings of a lemma are read on demand with a
+ * single positioned read.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PostingsReader implements Closeable {
+
+	private final PositionedReadable postings;
+
+	private final Map<String, Integer> entries = new HashMap<>();
+	private int[] docFrequencies = new int[1024];
+	private long[] offsets = new long[1024];
+	private int[] lengths = new int[1024];
+
+	private byte[] buffer = new byte[1024];
+
+	/**
+	 * @param header
+	 *            the whole content of the header file
+	 * @param postings
+	 *            the postings file
+	 */
+	public PostingsReader(byte[] header, int headerLength, PositionedReadable postings)
+			throws IOException {
+		this.postings = postings;
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(header, headerLength);
+		Text lemma = new Text();
+
+		while (in.getPosition() < headerLength) {
+			lemma.readFields(in);
+			int entry = entries.size();
+			if (entry == offsets.length) {
+				docFrequencies = Arrays.copyOf(docFrequencies, entry * 2);
+				offsets = Arrays.copyOf(offsets, entry * 2);
+				lengths = Arrays.copyOf(lengths, entry * 2);
+			}
+
+			docFrequencies[entry] = WritableUtils.readVInt(in);
+			offsets[entry] = WritableUtils.readVLong(in);
+			lengths[entry] = WritableUtils.readVInt(in);
+			entries.put(lemma.toString(), entry);
+		}
+	}
+
+	/**
+	 * Opens the index files written for one reducer.
+	 *
+	 * @param part
+	 *            path of the files without extension, e.g.
+	 *            <code>output/part-r-00000</code>
+	 */
+	public static PostingsReader open(Path part, Configuration config) throws IOException {
+		FileSystem fs = part.getFileSystem(config);
+
+		Path headerPath = part.suffix(PostingsWriter.HEADER_EXTENSION);
+		byte[] header = new byte[(int) fs.getFileStatus(headerPath).getLen()];
+		FSDataInputStream in = fs.open(headerPath);
+		try {
+			IOUtils.readFully(in, header, 0, header.length);
+		} finally {
+			in.close();
+		}
+
+		return new PostingsReader(header, header.length,
+				fs.open(part.suffix(PostingsWriter.POSTINGS_EXTENSION)));
+	}
+
+	public Set<String> getLemmas() {
+		return entries.keySet();
+	}
+
+	/**
+	 * @return the number of documents containing <code>lemma</code>, without
+	 *         reading its postings
+	 */
+	public int getDocumentFrequency(String lemma) {
+		Integer entry = entries.get(lemma);
+		return entry == null ? 0 : docFrequencies[entry];
+	}
+
+	/**
+	 * Decodes the postings of <code>lemma</code> into <code>result</code>.
+	 *
+	 * @return false if the lemma is not in the index, leaving
+	 *         <code>result</code> empty
+	 */
+	public boolean read(String lemma, IdCountList result) throws IOException {
+		result.clear();
+
+		Integer entry = entries.get(lemma);
+		if (entry == null)
+			return false;
+
+		int length = lengths[entry];
+		if (buffer.length < length)
+			buffer = new byte[Math.max(length, buffer.length * 2)];
+		postings.readFully(offsets[entry], buffer, 0, length);
+
+		int pos = 0;
+		int id = 0;
+		while (pos < length) {
+			id += WritableComparator.readVInt(buffer, pos);
+			pos += WritableUtils.decodeVIntSize(buffer[pos]);
+
+			int count = WritableComparator.readVInt(buffer, pos);
+			pos += WritableUtils.decodeVIntSize(buffer[pos]);
+
+			result.add(id, count);
+		}
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if (postings instanceof Closeable)
+			((Closeable) postings).close();
+	}
+}
@@ -0,0 +1,79 @@
+package code.inverted;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableUtils;
+
+import util.IdCountList;
+
+/**
+ * Writes the compressed inverted index, two files per reducer:
+ * <ul>
+ * <li>the postings file: for each lemma its postings sorted by document id,
+ * each as VInt id delta (to the previous posting's id) followed by VInt
+ * frequency</li>
+ * <li>the header file: for each lemma the lemma (as {@link Text}), the
+ * document frequency (VInt), the byte offset of its postings in the postings
+ * file (VLong) and their length in bytes (VInt)</li>
+ * </ul>
+ * Use {@link PostingsReader} to read them back.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PostingsWriter implements Closeable {
+
+	public static final String POSTINGS_EXTENSION = ".postings";
+	public static final String HEADER_EXTENSION = ".header";
+
+	private final DataOutputStream postings;
+	private final DataOutputStream header;
+	private final DataOutputBuffer buffer = new DataOutputBuffer();
+	private long offset;
+
+	public PostingsWriter(DataOutputStream postings, DataOutputStream header) {
+		this.postings = postings;
+		this.header = header;
+	}
+
+	/**
+	 * @param docCounts
+	 *            (document id, frequency) pairs sorted by ascending document id
+	 */
+	public void write(Text lemma, IdCountList docCounts) throws IOException {
+		buffer.reset();
+
+		int previousId = 0;
+		for (int i = 0; i < docCounts.size(); i++) {
+			int id = docCounts.getId(i);
+			if (id < previousId)
+				throw new IllegalArgumentException("Postings of " + lemma
+						+ " are not sorted by document id");
+
+			WritableUtils.writeVInt(buffer, id - previousId);
+			WritableUtils.writeVInt(buffer, docCounts.getCount(i));
+			previousId = id;
+		}
+
+		postings.write(buffer.getData(), 0, buffer.getLength());
+
+		lemma.write(header);
+		WritableUtils.writeVInt(header, docCounts.size());
+		WritableUtils.writeVLong(header, offset);
+		WritableUtils.writeVInt(header, buffer.getLength());
+
+		offset += buffer.getLength();
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			postings.close();
+		} finally {
+			header.close();
+		}
+	}
+}
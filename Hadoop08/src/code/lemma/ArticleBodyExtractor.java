@@ -0,0 +1,331 @@
+package code.lemma;
+
+import java.io.ByteArrayInputStream;
+import java.nio.CharBuffer;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import util.WikipediaPageView;
+
+/**
+ * Extracts the text of the <code>&lt;text&gt;</code> element from the UTF-8
+ * bytes of a page record. The bytes are decoded, entities resolved and line
+ * breaks normalized in one pass into a char buffer, which is reused for the
+ * next page. Only if the element contains markup the scanner does not expect
+ * (comments, CDATA sections, unknown entities) is the page parsed with StAX
+ * instead, so the result is the same as of
+ * {@link XMLStreamReader#getElementText()}.
+ * <p>
+ * Not thread-safe, each thread needs its own instance.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class ArticleBodyExtractor {
+
+	private static final byte[] START_TAG = { '<', 't', 'e', 'x', 't' };
+	private static final byte[] END_TAG = { '<', '/', 't', 'e', 'x', 't', '>' };
+
+	// looking up the implementation is expensive, the factory is not
+	// guaranteed to be thread-safe
+	private static final ThreadLocal<XMLInputFactory> FACTORY = new ThreadLocal<XMLInputFactory>() {
+		@Override
+		protected XMLInputFactory initialValue() {
+			return XMLInputFactory.newInstance();
+		}
+	};
+
+	private char[] chars = new char[4096];
+	private int length;
+
+	/**
+	 * Starts at the text the view found.
+	 * 
+	 * @return the article body, valid until the next call
+	 */
+	public CharSequence extract(WikipediaPageView page) throws XMLStreamException {
+		if (!page.hasText())
+			throw new IllegalStateException("no article found in XML");
+
+		int start = page.getRawOffset();
+		return extractBody(page.getRawBytes(), start, page.getTextStart(),
+				start + page.getRawLength());
+	}
+
+	/**
+	 * @param utf8
+	 *            holds the XML record from <code>start</code> to
+	 *            <code>end</code>
+	 * @return the article body, valid until the next call
+	 */
+	public CharSequence extract(byte[] utf8, int start, int end) throws XMLStreamException {
+		int bodyStart = findBodyStart(utf8, start, end);
+		if (bodyStart < 0)
+			throw new IllegalStateException("no article found in XML");
+		return extractBody(utf8, start, bodyStart, end);
+	}
+
+	private CharSequence extractBody(byte[] utf8, int start, int bodyStart, int end)
+			throws XMLStreamException {
+		length = 0;
+		if (utf8[bodyStart - 2] == '/')
+			// <text ... />
+			return CharBuffer.wrap(chars, 0, 0);
+
+		if (!decodeBody(utf8, bodyStart, end)) {
+			String body = getElementText(utf8, start, end - start);
+			return CharBuffer.wrap(body);
+		}
+		return CharBuffer.wrap(chars, 0, length);
+	}
+
+	/**
+	 * @return the position after the <code>&lt;text ...&gt;</code> start
+	 *         tag, -1 if there is none
+	 */
+	private static int findBodyStart(byte[] utf8, int start, int end) {
+		for (int i = start; i <= end - START_TAG.length - 1; i++) {
+			if (!startsWith(utf8, i, end, START_TAG))
+				continue;
+
+			byte next = utf8[i + START_TAG.length];
+			if (next != '>' && next != '/' && !isWhitespace(next))
+				continue;
+
+			// attribute values may contain '>'
+			byte quote = 0;
+			for (int j = i + START_TAG.length; j < end; j++) {
+				byte b = utf8[j];
+				if (quote != 0) {
+					if (b == quote)
+						quote = 0;
+				} else if (b == '"' || b == '\'') {
+					quote = b;
+				} else if (b == '>') {
+					return j + 1;
+				}
+			}
+			return -1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Copies the element text up to <code>&lt;/text&gt;</code> into
+	 * {@link #chars}.
+	 *
+	 * @return false if the text contains something only an XML parser can
+	 *         handle
+	 */
+	private boolean decodeBody(byte[] utf8, int i, int end) {
+		ensureCapacity(end - i);
+
+		while (i < end) {
+			int b = utf8[i] & 0xFF;
+
+			if (b < 0x80 && b != '<' && b != '&' && b != '\r') {
+				// copies the run of plain ASCII characters in a tight loop
+				char[] out = chars;
+				int n = length;
+				do {
+					out[n++] = (char) b;
+					if (++i == end)
+						break;
+					b = utf8[i];
+				} while (b >= 0 && b != '<' && b != '&' && b != '\r');
+				length = n;
+				continue;
+			}
+
+			if (b == '<')
+				return startsWith(utf8, i, end, END_TAG);
+
+			if (b == '&') {
+				int entityEnd = decodeEntity(utf8, i, end);
+				if (entityEnd < 0)
+					return false;
+				i = entityEnd;
+			} else if (b == '\r') {
+				// XML normalizes \r\n and single \r to \n
+				chars[length++] = '\n';
+				i++;
+				if (i < end && utf8[i] == '\n')
+					i++;
+			} else {
+				i = decodeMultiByte(utf8, i, end);
+			}
+		}
+
+		// no end tag
+		return false;
+	}
+
+	private int decodeMultiByte(byte[] utf8, int i, int end) {
+		int b = utf8[i] & 0xFF;
+
+		int extra;
+		int codePoint;
+		int min;
+		if (b >= 0xC2 && b < 0xE0) {
+			extra = 1;
+			codePoint = b & 0x1F;
+			min = 0x80;
+		} else if (b >= 0xE0 && b < 0xF0) {
+			extra = 2;
+			codePoint = b & 0x0F;
+			min = 0x800;
+		} else if (b >= 0xF0 && b < 0xF5) {
+			extra = 3;
+			codePoint = b & 0x07;
+			min = 0x10000;
+		} else {
+			chars[length++] = '\uFFFD';
+			return i + 1;
+		}
+
+		if (i + extra >= end) {
+			chars[length++] = '\uFFFD';
+			return i + 1;
+		}
+		for (int k = 1; k <= extra; k++) {
+			int next = utf8[i + k] & 0xFF;
+			if ((next & 0xC0) != 0x80) {
+				chars[length++] = '\uFFFD';
+				return i + k;
+			}
+			codePoint = (codePoint << 6) | (next & 0x3F);
+		}
+
+		if (codePoint < min || codePoint > Character.MAX_CODE_POINT
+				|| (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE))
+			chars[length++] = '\uFFFD';
+		else
+			length += Character.toChars(codePoint, chars, length);
+		return i + extra + 1;
+	}
+
+	/**
+	 * Appends the character of the predefined entity or character reference
+	 * at <code>i</code>.
+	 *
+	 * @return the position after the entity, -1 if it is none of them
+	 */
+	private int decodeEntity(byte[] utf8, int i, int end) {
+		int semicolon = -1;
+		// the longest is "&#x10FFFF;"
+		for (int j = i + 1; j < end && j < i + 10; j++)
+			if (utf8[j] == ';') {
+				semicolon = j;
+				break;
+			}
+		if (semicolon < 0)
+			return -1;
+
+		int nameStart = i + 1;
+		int nameLength = semicolon - nameStart;
+		if (utf8[nameStart] == '#')
+			return decodeCharacterReference(utf8, nameStart + 1, semicolon);
+
+		char c;
+		if (equals(utf8, nameStart, nameLength, "lt"))
+			c = '<';
+		else if (equals(utf8, nameStart, nameLength, "gt"))
+			c = '>';
+		else if (equals(utf8, nameStart, nameLength, "amp"))
+			c = '&';
+		else if (equals(utf8, nameStart, nameLength, "quot"))
+			c = '"';
+		else if (equals(utf8, nameStart, nameLength, "apos"))
+			c = '\'';
+		else
+			return -1;
+
+		chars[length++] = c;
+		return semicolon + 1;
+	}
+
+	private int decodeCharacterReference(byte[] utf8, int i, int semicolon) {
+		int radix = 10;
+		if (i < semicolon && utf8[i] == 'x') {
+			radix = 16;
+			i++;
+		}
+		if (i == semicolon)
+			return -1;
+
+		int codePoint = 0;
+		for (int j = i; j < semicolon; j++) {
+			int digit = Character.digit((char) utf8[j], radix);
+			if (digit < 0)
+				return -1;
+			codePoint = codePoint * radix + digit;
+		}
+
+		if (codePoint == 0 || codePoint > Character.MAX_CODE_POINT
+				|| (codePoint >= Character.MIN_SURROGATE && codePoint <= Character.MAX_SURROGATE))
+			return -1;
+
+		length += Character.toChars(codePoint, chars, length);
+		return semicolon + 1;
+	}
+
+	/**
+	 * Each byte yields at most one char, except 4 byte sequences which yield
+	 * two.
+	 */
+	private void ensureCapacity(int bytes) {
+		if (chars.length < bytes)
+			chars = new char[Math.max(bytes, chars.length * 2)];
+	}
+
+	/**
+	 * Parses the whole record with StAX, using the factory of this thread.
+	 */
+	static String getElementText(byte[] utf8, int start, int length) throws XMLStreamException {
+		XMLStreamReader xmlStreamReader = FACTORY.get().createXMLStreamReader(
+				new ByteArrayInputStream(utf8, start, length), "UTF-8");
+
+		try {
+			while (xmlStreamReader.hasNext()) {
+				// check if current event is an open tag
+				int event = xmlStreamReader.next();
+				if (event != XMLStreamConstants.START_ELEMENT)
+					continue;
+
+				// article's tag name must be text
+				if (xmlStreamReader.getLocalName().equals("text"))
+					return xmlStreamReader.getElementText();
+			}
+		} finally {
+			xmlStreamReader.close();
+		}
+
+		throw new IllegalStateException("no article found in XML");
+	}
+
+	private static boolean startsWith(byte[] utf8, int i, int end, byte[] prefix) {
+		if (i + prefix.length > end)
+			return false;
+
+		for (int j = 0; j < prefix.length; j++)
+			if (utf8[i + j] != prefix[j])
+				return false;
+		return true;
+	}
+
+	private static boolean equals(byte[] utf8, int start, int length, String ascii) {
+		if (length != ascii.length())
+			return false;
+
+		for (int j = 0; j < length; j++)
+			if (utf8[start + j] != ascii.charAt(j))
+				return false;
+		return true;
+	}
+
+	private static boolean isWhitespace(byte b) {
+		return b == ' ' || b == '\t' || b == '\n' || b == '\r';
+	}
+}
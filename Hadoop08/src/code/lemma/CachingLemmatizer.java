@@ -0,0 +1,61 @@
+package code.lemma;
+
+import edu.stanford.nlp.process.Morphology;
+
+/**
+ * Base for the lemmatizers using CoreNLP's {@link Morphology}, which look up
+ * each (word, POS tag) pair in a {@link LemmaCache} first.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public abstract class CachingLemmatizer implements Lemmatizer {
+
+	// lemmatization of cache misses, not thread-safe
+	protected final Morphology morphology = new Morphology();
+
+	private final LemmaCache cache;
+	private final LemmaCache.Key key = new LemmaCache.Key();
+	private long cacheHits;
+	private long cacheMisses;
+
+	/**
+	 * @param cache
+	 *            may be shared with the lemmatizers of other threads, as long
+	 *            as they compute the same lemmas
+	 */
+	protected CachingLemmatizer(LemmaCache cache) {
+		this.cache = cache;
+	}
+
+	/**
+	 * @return the lowercased lemma, from the cache if possible
+	 */
+	protected String lemma(String word, String tag) {
+		String lemma = cache.get(key.set(word, tag));
+		if (lemma == null) {
+			lemma = computeLemma(word, tag).toLowerCase();
+			cache.put(key, lemma);
+			cacheMisses++;
+		} else {
+			cacheHits++;
+		}
+		return lemma;
+	}
+
+	protected abstract String computeLemma(String word, String tag);
+
+	/**
+	 * @return how many tokens were lemmatized from the {@link LemmaCache}
+	 */
+	public long getCacheHits() {
+		return cacheHits;
+	}
+
+	/**
+	 * @return how many tokens were lemmatized and then added to the
+	 *         {@link LemmaCache}
+	 */
+	public long getCacheMisses() {
+		return cacheMisses;
+	}
+}
@@ -0,0 +1,71 @@
+package code.lemma;
+
+import java.util.Arrays;
+import java.util.List;
+
+import edu.stanford.nlp.ling.CoreAnnotations.PartOfSpeechAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.SentencesAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.TextAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+import edu.stanford.nlp.util.CoreMap;
+
+/**
+ * Tags each token with its part of speech and assigns the same lemma as
+ * CoreNLP's lemma annotator would. The POS tagger takes most of the time.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class FullLemmatizer extends CachingLemmatizer {
+
+	/** what the pipeline has to provide */
+	public static final String ANNOTATORS = SharedPipeline.DEFAULT_ANNOTATORS;
+
+	// particles of phrasal verbs like "give_up", as in CoreNLP's MorphaAnnotator
+	private static final List<String> PARTICLES = Arrays.asList("abroad", "across", "after",
+			"ahead", "along", "aside", "away", "around", "back", "down", "forward", "in", "off",
+			"on", "over", "out", "round", "together", "through", "up");
+
+	private final StanfordCoreNLP pipeLine; // tool used for POS tagging
+
+	/**
+	 * @param pipeLine
+	 *            has to provide at least the {@value #ANNOTATORS} annotators
+	 */
+	public FullLemmatizer(StanfordCoreNLP pipeLine, LemmaCache cache) {
+		super(cache);
+		this.pipeLine = pipeLine;
+	}
+
+	/**
+	 * Inspiration from:
+	 * http://stackoverflow.com/questions/1578062/lemmatization-java
+	 */
+	@Override
+	public void lemmatize(String text, Sink sink) {
+		Annotation document = new Annotation(text);
+		pipeLine.annotate(document);
+
+		List<CoreMap> sentences = document.get(SentencesAnnotation.class);
+		for (CoreMap sentence : sentences)
+			for (CoreLabel token : sentence.get(TokensAnnotation.class))
+				sink.accept(lemma(token.get(TextAnnotation.class),
+						token.get(PartOfSpeechAnnotation.class)));
+	}
+
+	@Override
+	protected String computeLemma(String word, String tag) {
+		if (tag.length() == 0)
+			return morphology.stem(word);
+
+		if (tag.startsWith("VB") && word.contains("_")) {
+			String[] verb = word.split("_");
+			if (verb.length == 2 && PARTICLES.contains(verb[1]))
+				return morphology.lemma(verb[0], tag) + '_' + verb[1];
+		}
+
+		return morphology.lemma(word, tag);
+	}
+}
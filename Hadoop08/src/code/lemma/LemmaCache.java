@@ -0,0 +1,105 @@
+package code.lemma;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A bounded cache from (word, POS tag) to the lowercased lemma, shared by
+ * several threads. It is split into segments, each evicting its least
+ * recently used entries and locked on its own.
+ * <p>
+ * Lookups go through a caller owned {@link Key}, so a cache hit does not
+ * allocate anything.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class LemmaCache {
+
+	public static final int DEFAULT_CAPACITY = 100_000;
+
+	private static final int SEGMENTS = 16;
+
+	private final Segment[] segments = new Segment[SEGMENTS];
+
+	public LemmaCache(int capacity) {
+		int segmentCapacity = Math.max(1, capacity / SEGMENTS);
+		for (int i = 0; i < SEGMENTS; i++)
+			segments[i] = new Segment(segmentCapacity);
+	}
+
+	/**
+	 * @return the cached lemma for the word and tag <code>key</code> was set
+	 *         to, null if there is none
+	 */
+	public String get(Key key) {
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
+			return segment.get(key);
+		}
+	}
+
+	/**
+	 * Caches the lemma for the word and tag <code>key</code> was set to.
+	 * <code>key</code> stays with the caller, the cache keeps a copy.
+	 */
+	public void put(Key key, String lemma) {
+		Key copy = new Key();
+		copy.set(key.word, key.tag);
+
+		Segment segment = segmentFor(key);
+		synchronized (segment) {
+			segment.put(copy, lemma);
+		}
+	}
+
+	private Segment segmentFor(Key key) {
+		// the lower bits are spread over the map's own buckets
+		return segments[(key.hash >>> 16) & (SEGMENTS - 1)];
+	}
+
+	/**
+	 * A (word, POS tag) pair, reusable for lookups.
+	 */
+	public static class Key {
+		private String word;
+		private String tag;
+		private int hash;
+
+		public Key set(String word, String tag) {
+			this.word = word;
+			this.tag = tag;
+			this.hash = word.hashCode() * 31 + tag.hashCode();
+			return this;
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key))
+				return false;
+
+			Key other = (Key) obj;
+			return hash == other.hash && word.equals(other.word) && tag.equals(other.tag);
+		}
+	}
+
+	private static class Segment extends LinkedHashMap<Key, String> {
+		private static final long serialVersionUID = 1L;
+
+		private final int capacity;
+
+		Segment(int capacity) {
+			super(16, 0.75f, true);
+			this.capacity = capacity;
+		}
+
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+			return size() > capacity;
+		}
+	}
+}
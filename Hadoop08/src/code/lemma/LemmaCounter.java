@@ -0,0 +1,155 @@
+package code.lemma;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import util.StringIntegerList;
+
+/**
+ * Counts the lemmas of one article in an open addressing hash table with
+ * primitive counts, reused for the next article. Lemmas are kept in the order
+ * of their first occurrence.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class LemmaCounter implements Lemmatizer.Sink {
+
+	private static final int INITIAL_CAPACITY = 256;
+
+	// distinct lemmas and their counts, in order of first occurrence
+	private String[] lemmas = new String[INITIAL_CAPACITY];
+	private int[] counts = new int[INITIAL_CAPACITY];
+	private int size;
+
+	// index into lemmas + 1 per slot, 0 for free slots; at most half full
+	private int[] slots = new int[INITIAL_CAPACITY * 2];
+
+	// UTF-8 encoding of one lemma
+	private byte[] utf8 = new byte[64];
+
+	/**
+	 * Counts one occurrence of <code>lemma</code>.
+	 */
+	@Override
+	public void accept(String lemma) {
+		int mask = slots.length - 1;
+		int slot = spread(lemma.hashCode()) & mask;
+
+		int index;
+		while ((index = slots[slot]) != 0) {
+			String existing = lemmas[index - 1];
+			// lemmas from the lemma cache are often the same instance
+			if (existing == lemma || existing.equals(lemma)) {
+				counts[index - 1]++;
+				return;
+			}
+			slot = (slot + 1) & mask;
+		}
+
+		if (size == lemmas.length) {
+			grow();
+			accept(lemma);
+			return;
+		}
+
+		lemmas[size] = lemma;
+		counts[size] = 1;
+		size++;
+		slots[slot] = size;
+	}
+
+	private static int spread(int hash) {
+		return hash ^ (hash >>> 16);
+	}
+
+	private void grow() {
+		lemmas = Arrays.copyOf(lemmas, lemmas.length * 2);
+		counts = Arrays.copyOf(counts, counts.length * 2);
+
+		slots = new int[slots.length * 2];
+		int mask = slots.length - 1;
+		for (int i = 0; i < size; i++) {
+			int slot = spread(lemmas[i].hashCode()) & mask;
+			while (slots[slot] != 0)
+				slot = (slot + 1) & mask;
+			slots[slot] = i + 1;
+		}
+	}
+
+	/**
+	 * Forgets all lemmas, keeping the allocated capacity.
+	 */
+	public void clear() {
+		Arrays.fill(lemmas, 0, size, null);
+		Arrays.fill(slots, 0);
+		size = 0;
+	}
+
+	/**
+	 * @return the number of distinct lemmas
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param i
+	 *            0 for the lemma that occurred first
+	 */
+	public String getLemma(int i) {
+		return lemmas[i];
+	}
+
+	public int getCount(int i) {
+		return counts[i];
+	}
+
+	/**
+	 * Appends each lemma and its count to <code>list</code>, encoding the
+	 * lemmas into a reused buffer instead of creating a
+	 * {@link util.StringInteger} per lemma.
+	 */
+	public void writeTo(StringIntegerList list) throws IOException {
+		for (int i = 0; i < size; i++)
+			list.add(utf8, 0, encode(lemmas[i]), counts[i]);
+	}
+
+	/**
+	 * Same bytes as {@link org.apache.hadoop.io.Text#encode(String)},
+	 * unpaired surrogates are replaced by '?'.
+	 *
+	 * @return the number of bytes in {@link #utf8}
+	 */
+	private int encode(String lemma) {
+		int length = lemma.length();
+		if (utf8.length < length * 3)
+			utf8 = new byte[length * 3];
+
+		int n = 0;
+		for (int i = 0; i < length; i++) {
+			char c = lemma.charAt(i);
+			if (c < 0x80) {
+				utf8[n++] = (byte) c;
+			} else if (c < 0x800) {
+				utf8[n++] = (byte) (0xC0 | (c >> 6));
+				utf8[n++] = (byte) (0x80 | (c & 0x3F));
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < length
+						&& Character.isLowSurrogate(lemma.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, lemma.charAt(++i));
+					utf8[n++] = (byte) (0xF0 | (codePoint >> 18));
+					utf8[n++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+					utf8[n++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+					utf8[n++] = (byte) (0x80 | (codePoint & 0x3F));
+				} else {
+					utf8[n++] = '?';
+				}
+			} else {
+				utf8[n++] = (byte) (0xE0 | (c >> 12));
+				utf8[n++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+				utf8[n++] = (byte) (0x80 | (c & 0x3F));
+			}
+		}
+		return n;
+	}
+}
@@ -0,0 +1,273 @@
+package code.lemma;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.map.InverseMapper;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.reduce.LongSumReducer;
+
+import util.BinaryHandoff;
+import util.HDFSUtils;
+import util.IdCountList;
+import util.LemmaDictionary;
+import util.StringInteger;
+import util.StringIntegerCursor;
+import util.StringIntegerList;
+
+/**
+ * Builds the {@link LemmaDictionary} from a lemma index: counts each lemma over
+ * the whole corpus and assigns dense ids, the most frequent lemma getting id
+ * 0.
+ * <p>
+ * The dictionary lets {@link code.inverted.InvertedIndexMapred} carry lemmas
+ * as ints instead of strings. Optionally the lemma index is encoded with it
+ * right away, see {@link EncodeMapper}.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class LemmaDictionaryMapred {
+
+	public static class LemmaCountMapper extends Mapper<Text, Text, Text, LongWritable> {
+
+		private final StringIntegerList lemmaCounts = new StringIntegerList();
+		private final Text lemma = new Text();
+		private final LongWritable count = new LongWritable();
+
+		/**
+		 * transforms:
+		 *
+		 * <pre>
+		 * {@code
+		 * (article_id1, <lemma1,freq1>,<lemma2,freq2>)
+		 * }
+		 * </pre>
+		 * <p>
+		 * into:
+		 *
+		 * <pre>
+		 * {@code
+		 * (lemma1, freq1)
+		 * (lemma2, freq2)
+		 * }
+		 * </pre>
+		 */
+		@Override
+		public void map(Text articleId, Text indices, Context context) throws IOException,
+				InterruptedException {
+			lemmaCounts.readFromString(indices.toString().trim());
+
+			for (StringInteger lemmaFreq : lemmaCounts.getIndices()) {
+				lemma.set(lemmaFreq.getText());
+				count.set(lemmaFreq.get());
+				context.write(lemma, count);
+			}
+		}
+	}
+
+	/**
+	 * Receives the lemmas ordered by descending corpus frequency (see
+	 * {@link LongWritable.DecreasingComparator}) and numbers them. There must
+	 * be exactly one reducer so the ids are dense.
+	 */
+	public static class RankReducer extends Reducer<LongWritable, Text, IntWritable, Text> {
+
+		private final IntWritable id = new IntWritable();
+		private final Text lemmaFreq = new Text();
+
+		@Override
+		public void reduce(LongWritable frequency, Iterable<Text> lemmas, Context context)
+				throws IOException, InterruptedException {
+			for (Text lemma : lemmas) {
+				lemmaFreq.set(lemma + "," + frequency.get());
+				context.write(id, lemmaFreq);
+				id.set(id.get() + 1);
+			}
+		}
+	}
+
+	public static enum LemmaDictionaryCounter {
+		/** lemmas dropped while encoding because they are missing from the dictionary */
+		UNKNOWN_LEMMAS
+	}
+
+	/**
+	 * Encodes a text lemma index with the {@link LemmaDictionary} in the first
+	 * cache file, so the articles are lemmatized only once for both the text
+	 * and the encoded index. Writes (title, {@link IdCountList}), lemmas the
+	 * dictionary does not know are skipped and counted in
+	 * {@link LemmaDictionaryCounter#UNKNOWN_LEMMAS}.
+	 */
+	public static class EncodeMapper extends Mapper<Text, Text, Text, IdCountList> {
+
+		private LemmaDictionary dictionary;
+
+		private final StringIntegerCursor lemmaFreqs = StringIntegerCursor.forText();
+		private final Text title = new Text();
+		private final IdCountList lemmaIds = new IdCountList();
+
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			dictionary = LemmaDictionary.read(new Path(context.getCacheFiles()[0]),
+					context.getConfiguration());
+		}
+
+		@Override
+		public void map(Text articleId, Text indices, Context context) throws IOException,
+				InterruptedException {
+			// blanks result from ":" instead of " : " as key-value separator
+			title.set(articleId.toString().trim());
+
+			lemmaIds.clear();
+			lemmaFreqs.reset(indices.getBytes(), 0, indices.getLength());
+			while (lemmaFreqs.next()) {
+				int id = dictionary.getId(lemmaFreqs.getBytes(), lemmaFreqs.getLemmaStart(),
+						lemmaFreqs.getLemmaLength());
+				if (id < 0)
+					context.getCounter(LemmaDictionaryCounter.UNKNOWN_LEMMAS).increment(1);
+				else
+					lemmaIds.add(id, lemmaFreqs.getCount());
+			}
+
+			context.write(title, lemmaIds);
+		}
+	}
+
+	/**
+	 * followed by the HDFS path of a not existing directory for the encoded
+	 * lemma index, e.g. -encode=lemma_index_ids
+	 */
+	public static final String ENCODE_OPTION = "-encode=";
+
+	/**
+	 * Takes two parameters when called from commandline:
+	 *
+	 * <pre>
+	 * lemmaIndexPath	HDFS path to the (text) lemma index
+	 * outputPath	HDFS path to a not existing directory for the dictionary
+	 * </pre>
+	 *
+	 * The dictionary ends up in <code>outputPath/part-r-00000</code>. With
+	 * <code>{@value #ENCODE_OPTION}path</code> the lemma index is encoded with
+	 * it into a SequenceFile of (title, {@link IdCountList}) for
+	 * {@link code.inverted.InvertedIndexMapred}.
+	 */
+	public static void main(String[] args) throws Exception {
+		String encoded = null;
+		List<String> params = new ArrayList<>(args.length);
+		for (String arg : args)
+			if (arg.startsWith(ENCODE_OPTION))
+				encoded = arg.substring(ENCODE_OPTION.length());
+			else
+				params.add(arg);
+		args = params.toArray(new String[params.size()]);
+
+		if (args.length != 2)
+			throw new IllegalArgumentException("Two parameters required. "
+					+ "Representing the HDFS pathes: lemma_index, output");
+
+		Path countsPath = new Path(args[1] + "_counts");
+
+		Job countJob = Job.getInstance(new Configuration());
+		countJob.setJobName("lemma dictionary - count");
+
+		countJob.setInputFormatClass(KeyValueTextInputFormat.class);
+		countJob.setOutputFormatClass(SequenceFileOutputFormat.class);
+
+		countJob.setMapperClass(LemmaCountMapper.class);
+		countJob.setCombinerClass(LongSumReducer.class);
+		countJob.setReducerClass(LongSumReducer.class);
+
+		countJob.setOutputKeyClass(Text.class);
+		countJob.setOutputValueClass(LongWritable.class);
+
+		FileInputFormat.setInputPaths(countJob, new Path(args[0]));
+		FileOutputFormat.setOutputPath(countJob, countsPath);
+
+		configure(countJob);
+
+		if (!countJob.waitForCompletion(true))
+			return;
+
+		Job rankJob = Job.getInstance(new Configuration());
+		rankJob.setJobName("lemma dictionary - rank");
+
+		rankJob.setInputFormatClass(SequenceFileInputFormat.class);
+
+		rankJob.setMapperClass(InverseMapper.class);
+		rankJob.setSortComparatorClass(LongWritable.DecreasingComparator.class);
+		rankJob.setReducerClass(RankReducer.class);
+		rankJob.setNumReduceTasks(1);
+
+		rankJob.setMapOutputKeyClass(LongWritable.class);
+		rankJob.setMapOutputValueClass(Text.class);
+		rankJob.setOutputKeyClass(IntWritable.class);
+		rankJob.setOutputValueClass(Text.class);
+
+		FileInputFormat.setInputPaths(rankJob, countsPath);
+		FileOutputFormat.setOutputPath(rankJob, new Path(args[1]));
+
+		configure(rankJob);
+
+		if (!rankJob.waitForCompletion(true))
+			return;
+		FileSystem.get(rankJob.getConfiguration()).delete(countsPath, true);
+
+		if (encoded != null)
+			encode(new Path(args[0]), new Path(args[1], "part-r-00000"), new Path(encoded));
+	}
+
+	/**
+	 * Runs the map-only job of {@link EncodeMapper}.
+	 *
+	 * @return whether the job succeeded
+	 */
+	static boolean encode(Path lemmaIndex, Path dictionary, Path output) throws Exception {
+		Job job = Job.getInstance(new Configuration());
+		job.setJobName("lemma dictionary - encode");
+
+		job.setInputFormatClass(KeyValueTextInputFormat.class);
+		BinaryHandoff.setOutput(job);
+
+		job.setMapperClass(EncodeMapper.class);
+		job.setNumReduceTasks(0);
+
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(IdCountList.class);
+
+		FileInputFormat.setInputPaths(job, lemmaIndex);
+		FileOutputFormat.setOutputPath(job, output);
+		HDFSUtils.addCacheFile(job, dictionary.toString());
+
+		configure(job);
+
+		return job.waitForCompletion(true);
+	}
+
+	private static void configure(Job job) {
+		job.setJarByClass(LemmaDictionaryMapred.class);
+
+		final Configuration conf = job.getConfiguration();
+
+		// so we don't have to specify the job name when starting job on cluster
+		conf.set("mapreduce.job.queuename", "hadoop08");
+
+		// same separators as the lemma index and the dictionary file format
+		conf.set("mapreduce.input.keyvaluelinerecordreader.key.value.separator", ":");
+		conf.set("mapred.textoutputformat.separator", LemmaDictionary.KEY_VALUE_SEPARATOR);
+	}
+}
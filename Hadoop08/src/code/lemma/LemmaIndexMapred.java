@@ -1,17 +1,17 @@
 package code.lemma;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.UnsupportedEncodingException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
 
-import javax.xml.stream.XMLInputFactory;
-import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.XMLStreamReader;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
@@ -21,14 +21,19 @@ import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.map.MultithreadedMapper;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
 
+import util.BinaryHandoff;
 import util.HDFSUtils;
 import util.StringIntegerList;
-import util.WikipediaPageInputFormat;
-import edu.umd.cloud9.collection.wikipedia.WikipediaPage;
+import util.WikipediaPageFilter;
+import util.WikipediaPageView;
+import util.WikipediaPageViewInputFormat;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
 
 /**
  * This class is used for Section C.1 of assignment 1. You are supposed to run
@@ -39,25 +44,44 @@ import edu.umd.cloud9.collection.wikipedia.WikipediaPage;
  */
 public class LemmaIndexMapred {
 	public static class LemmaIndexMapper extends
-			Mapper<LongWritable, WikipediaPage, Text, StringIntegerList> {
+			Mapper<LongWritable, WikipediaPageView, Text, StringIntegerList> {
 
 		private static final String DEFAULT_STOPWORDS_FILEPATH = "stopwords.csv";
 
+		/** whether to warm up the NLP pipeline on a sample article, default true */
+		public static final String PIPELINE_WARMUP_KEY = "lemma.pipeline.warmup";
+
+		/** a {@link Lemmatizer.Mode}, default FULL */
+		public static final String LEMMATIZER_KEY = "lemma.lemmatizer";
+
+		/** entries of the JVM-wide lemma cache, default {@value LemmaCache#DEFAULT_CAPACITY} */
+		public static final String CACHE_SIZE_KEY = "lemma.cache.size";
+
+		// shared by all tasks and threads of a JVM, created by the first one
+		private static LemmaCache lemmaCache;
+
 		private static final Log LOG = LogFactory.getLog(LemmaIndexMapper.class);
 
 		private Tokenizer tokenizer;
 
 		private HashSet<String> stopWords;
 
+		private final ArticleBodyExtractor bodyExtractor = new ArticleBodyExtractor();
+		private final LemmaCounter lemmaCounts = new LemmaCounter();
+		private final Text title = new Text();
+		private final StringIntegerList lemmaList = new StringIntegerList();
+
 		@Override
 		protected void setup(Context context) throws IOException, InterruptedException {
 			// allows to set custom stopWords in unit tests
-			if (stopWords == null) {
-				Path path = new Path(DEFAULT_STOPWORDS_FILEPATH);
-				List<String> lines = HDFSUtils.readLines(path, context.getConfiguration());
-				stopWords = new HashSet<>(lines);
-			}
-			tokenizer = new Tokenizer(stopWords);
+			if (stopWords == null)
+				stopWords = readStopWords(context.getConfiguration());
+			tokenizer = createTokenizer(stopWords, context);
+		}
+
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			countCacheUse(tokenizer, context);
 		}
 
 		/**
@@ -72,25 +96,89 @@ public class LemmaIndexMapred {
 		}
 
 		@Override
-		public void map(LongWritable offset, WikipediaPage page, Context context)
+		public void map(LongWritable offset, WikipediaPageView page, Context context)
 				throws IOException, InterruptedException {
-			String article = ""; // used to store Wikipedia article body
+			CharSequence article; // used to store Wikipedia article body
 
 			try {
 				// retrieve the body of the Wikipedia article
-				article = getArticleBody(page.getRawXML());
+				article = bodyExtractor.extract(page);
 			} catch (XMLStreamException e) {
 				LOG.error("Failed parsing XML for article: " + page.getTitle(), e);
 				return;
 			}
 
-			List<String> lemmas = tokenizer.getLemmas(article);
-			Map<String, Integer> lemmaCounts = countLemmas(lemmas);
-			StringIntegerList lemmaList = new StringIntegerList(lemmaCounts);
+			// streams the lemmas into the counter, no collections in between
+			lemmaCounts.clear();
+			tokenizer.countLemmas(article, lemmaCounts);
 
-			context.write(new Text(page.getTitle()), lemmaList);
+			lemmaList.clear();
+			lemmaCounts.writeTo(lemmaList);
+			title.set(page.getTitle());
+			context.write(title, lemmaList);
 		}
 
+		/**
+		 * Creates the configured {@link Lemmatizer}. Pipelines are JVM-wide,
+		 * so only the first task of a JVM loads the models. The time this task
+		 * had to wait for it is counted in
+		 * {@link LemmaIndexCounter#PIPELINE_STARTUP_MILLIS}.
+		 */
+		static Tokenizer createTokenizer(Set<String> stopWords, TaskAttemptContext context) {
+			Configuration config = context.getConfiguration();
+
+			Lemmatizer lemmatizer;
+			switch (config.getEnum(LEMMATIZER_KEY, Lemmatizer.Mode.FULL)) {
+			case MORPHOLOGY:
+				lemmatizer = new MorphologyLemmatizer(getPipeline(
+						MorphologyLemmatizer.ANNOTATORS, context), getLemmaCache(config));
+				break;
+			case SUFFIX:
+				lemmatizer = new SuffixLemmatizer();
+				break;
+			default:
+				lemmatizer = new FullLemmatizer(getPipeline(FullLemmatizer.ANNOTATORS, context),
+						getLemmaCache(config));
+			}
+
+			return new Tokenizer(stopWords, lemmatizer);
+		}
+
+		private static StanfordCoreNLP getPipeline(String annotators, TaskAttemptContext context) {
+			boolean warmUp = context.getConfiguration().getBoolean(PIPELINE_WARMUP_KEY, true);
+
+			long start = System.currentTimeMillis();
+			StanfordCoreNLP pipeline = SharedPipeline.get(annotators, warmUp);
+			context.getCounter(LemmaIndexCounter.PIPELINE_STARTUP_MILLIS).increment(
+					System.currentTimeMillis() - start);
+
+			return pipeline;
+		}
+
+		private static synchronized LemmaCache getLemmaCache(Configuration config) {
+			if (lemmaCache == null)
+				lemmaCache = new LemmaCache(config.getInt(CACHE_SIZE_KEY,
+						LemmaCache.DEFAULT_CAPACITY));
+			return lemmaCache;
+		}
+
+		static void countCacheUse(Tokenizer tokenizer, TaskAttemptContext context) {
+			context.getCounter(LemmaIndexCounter.LEMMA_CACHE_HITS).increment(
+					tokenizer.getCacheHits());
+			context.getCounter(LemmaIndexCounter.LEMMA_CACHE_MISSES).increment(
+					tokenizer.getCacheMisses());
+		}
+
+		static HashSet<String> readStopWords(Configuration config) throws IOException {
+			Path path = new Path(DEFAULT_STOPWORDS_FILEPATH);
+			List<String> lines = HDFSUtils.readLines(path, config);
+			return new HashSet<>(lines);
+		}
+
+		/**
+		 * Counts collected lemmas, see {@link LemmaCounter} for counting them
+		 * while they are created.
+		 */
 		public static Map<String, Integer> countLemmas(List<String> lemmas) {
 			Map<String, Integer> map = new HashMap<String, Integer>();
 
@@ -114,64 +202,178 @@ public class LemmaIndexMapred {
 		 * @return
 		 * @throws UnsupportedEncodingException
 		 * @throws XMLStreamException
+		 * @see ArticleBodyExtractor for the mappers' faster way on the record
+		 *      bytes
 		 */
 		public static String getArticleBody(String rawXML) throws UnsupportedEncodingException,
 				XMLStreamException {
-
-			XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-			XMLStreamReader xmlStreamReader = xmlInputFactory
-					.createXMLStreamReader(new ByteArrayInputStream(rawXML.getBytes("UTF-8")));
-
-			while (xmlStreamReader.hasNext()) {
-				// General STaX technique:
-
-				// check if current event is an open tag
-				int event = xmlStreamReader.next();
-				if (event != XMLStreamConstants.START_ELEMENT)
-					continue;
-
-				// article's tag name must be text
-				if (!xmlStreamReader.getLocalName().equals("text"))
-					continue;
-
-				if (!xmlStreamReader.isEndElement())
-					return xmlStreamReader.getElementText();
-			}
-
-			throw new IllegalStateException("no article found in XML");
+			byte[] utf8 = rawXML.getBytes("UTF-8");
+			return ArticleBodyExtractor.getElementText(utf8, 0, utf8.length);
 		}
 	}
 
+	public static enum LemmaIndexCounter {
+		/** time the tasks spent loading the NLP pipeline, 0 if it was shared */
+		PIPELINE_STARTUP_MILLIS,
+		/** tokens whose lemma was found in the lemma cache */
+		LEMMA_CACHE_HITS,
+		/** tokens which had to be lemmatized */
+		LEMMA_CACHE_MISSES
+	}
+
 	private static final String KEY_VALUE_SEPARATOR = " : ";
 
+	/** followed by the number of threads per map task, e.g. -threads=4 */
+	public static final String THREADS_OPTION = "-threads=";
+
+	/** followed by a {@link Lemmatizer.Mode}, e.g. -lemmatizer=suffix */
+	public static final String LEMMATIZER_OPTION = "-lemmatizer=";
+
+	/** skips redirects and pages outside the article namespace */
+	public static final String ARTICLES_ONLY_OPTION = "-articles-only";
+
+	/**
+	 * Takes two parameters when called from commandline:
+	 * 
+	 * <pre>
+	 * inputPath	HDFS path to the articles (GetArticlesMapred's output)
+	 * outputPath	HDFS path to a not existing directory for the output
+	 * </pre>
+	 * 
+	 * The lemma index is written as text, or with the additional
+	 * {@value BinaryHandoff#FLAG} parameter as a SequenceFile of (title,
+	 * {@link StringIntegerList}). {@link LemmaDictionaryMapred} encodes the
+	 * text index with lemma ids.
+	 * <p>
+	 * With the additional parameter <code>{@value #THREADS_OPTION}n</code>
+	 * each map task lemmatizes n articles in parallel, see
+	 * {@link #setMapper(Job, Class, int)}. With
+	 * <code>{@value #LEMMATIZER_OPTION}mode</code> a faster
+	 * {@link Lemmatizer.Mode} than the default full one can be chosen. With
+	 * {@value #ARTICLES_ONLY_OPTION} the record reader skips the pages which
+	 * are no articles, see {@link WikipediaPageFilter}.
+	 */
 	public static void main(String[] args) throws IOException, InterruptedException,
-			ClassNotFoundException {
+			ClassNotFoundException, URISyntaxException {
+		boolean binary = BinaryHandoff.isRequested(args);
+		args = BinaryHandoff.removeFlag(args);
+
+		int threads = 1;
+		Lemmatizer.Mode lemmatizer = Lemmatizer.Mode.FULL;
+		boolean articlesOnly = false;
+		List<String> params = new ArrayList<>(args.length);
+		for (String arg : args)
+			if (arg.startsWith(THREADS_OPTION))
+				threads = parseThreads(arg);
+			else if (arg.startsWith(LEMMATIZER_OPTION))
+				lemmatizer = parseLemmatizer(arg);
+			else if (arg.equals(ARTICLES_ONLY_OPTION))
+				articlesOnly = true;
+			else
+				params.add(arg);
+		args = params.toArray(new String[params.size()]);
 
 		// Job configs
 		Job job = Job.getInstance(new Configuration());
 
 		job.setOutputKeyClass(Text.class);
-		job.setOutputValueClass(StringIntegerList.class);
-
-		job.setMapperClass(LemmaIndexMapper.class);
+		job.setInputFormatClass(WikipediaPageViewInputFormat.class);
+		if (articlesOnly) {
+			WikipediaPageFilter.setNamespaces(job, 0);
+			WikipediaPageFilter.setSkipRedirects(job, true);
+		}
 
-		job.setInputFormatClass(WikipediaPageInputFormat.class);
-		job.setOutputFormatClass(TextOutputFormat.class);
+		job.setOutputValueClass(StringIntegerList.class);
+		setMapper(job, LemmaIndexMapper.class, threads);
+		if (binary)
+			BinaryHandoff.setOutput(job);
+		else
+			job.setOutputFormatClass(TextOutputFormat.class);
 
 		FileInputFormat.setInputPaths(job, new Path(args[0]));
 		FileOutputFormat.setOutputPath(job, new Path(args[1]));
 
 		job.setJarByClass(LemmaIndexMapred.class);
 
+		configure(job, lemmatizer);
+
+		// execute the job with verbose prints
+		long start = System.currentTimeMillis();
+		if (!job.waitForCompletion(true))
+			return;
+		HDFSUtils.logCost(job, start);
+	}
+
+	/**
+	 * @param arg
+	 *            <code>{@value #THREADS_OPTION}n</code>
+	 * @return n
+	 * @throws IllegalArgumentException
+	 *             if n is no number of at least 1
+	 */
+	static int parseThreads(String arg) {
+		String value = arg.substring(THREADS_OPTION.length());
+		try {
+			int threads = Integer.parseInt(value);
+			if (threads >= 1)
+				return threads;
+		} catch (NumberFormatException e) {
+			// reported below like a non positive number
+		}
+		throw new IllegalArgumentException("Error! " + THREADS_OPTION
+				+ " needs a number of threads of at least 1, got: " + value);
+	}
+
+	/**
+	 * @param arg
+	 *            <code>{@value #LEMMATIZER_OPTION}mode</code>, any case
+	 * @return the mode
+	 * @throws IllegalArgumentException
+	 *             listing the valid modes if there is no such mode
+	 */
+	static Lemmatizer.Mode parseLemmatizer(String arg) {
+		String value = arg.substring(LEMMATIZER_OPTION.length());
+		try {
+			return Lemmatizer.Mode.valueOf(value.toUpperCase());
+		} catch (IllegalArgumentException e) {
+			throw new IllegalArgumentException("Error! " + LEMMATIZER_OPTION + " needs one of "
+					+ Arrays.toString(Lemmatizer.Mode.values()).toLowerCase() + ", got: " + value);
+		}
+	}
+
+	/**
+	 * The settings shared with {@link PeopleLemmaIndexMapred}.
+	 */
+	static void configure(Job job, Lemmatizer.Mode lemmatizer) {
 		final Configuration conf = job.getConfiguration();
 
+		conf.setEnum(LemmaIndexMapper.LEMMATIZER_KEY, lemmatizer);
+
 		// so we don't have to specify the job name when starting job on cluster
 		conf.set("mapreduce.job.queuename", "hadoop08");
 
 		// assignment requires " : " instead of the default "\t" as separator
 		conf.set("mapred.textoutputformat.separator", KEY_VALUE_SEPARATOR);
+	}
 
-		// execute the job with verbose prints
-		job.waitForCompletion(true);
+	/**
+	 * With more than one thread the mapper runs inside a
+	 * {@link MultithreadedMapper}: each thread has its own mapper instance and
+	 * pulls the next article from the record reader when it is done with the
+	 * previous one, so at most one article per thread is in flight. The
+	 * threads share the pipeline of {@link SharedPipeline}. The order of the
+	 * output records is not preserved, which does not matter for the lemma
+	 * index.
+	 */
+	static <V> void setMapper(Job job,
+			Class<? extends Mapper<LongWritable, WikipediaPageView, Text, V>> mapperClass,
+			int threads) {
+		if (threads > 1) {
+			job.setMapperClass(MultithreadedMapper.class);
+			MultithreadedMapper.setMapperClass(job, mapperClass);
+			MultithreadedMapper.setNumberOfThreads(job, threads);
+		} else {
+			job.setMapperClass(mapperClass);
+		}
 	}
 }
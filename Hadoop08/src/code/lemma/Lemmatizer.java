@@ -0,0 +1,37 @@
+package code.lemma;
+
+/**
+ * Splits a text without noise (see {@link NoiseStripper}) into tokens and
+ * passes on the lowercased lemma of each. Implementations are not
+ * thread-safe, each thread needs its own instance.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public interface Lemmatizer {
+
+	/**
+	 * The available lemmatizers, from the best lemmas to the highest
+	 * throughput.
+	 */
+	public static enum Mode {
+		/** {@link FullLemmatizer}, tokenizer, POS tagger and morphology */
+		FULL,
+		/** {@link MorphologyLemmatizer}, tokenizer and morphology without tags */
+		MORPHOLOGY,
+		/** {@link SuffixLemmatizer}, blanks and suffix stripping rules */
+		SUFFIX
+	}
+
+	/**
+	 * Receives the lemmas one by one, so they need not be collected first.
+	 */
+	public static interface Sink {
+		void accept(String lemma);
+	}
+
+	/**
+	 * Passes the lowercased lemma of each token to <code>sink</code>, in
+	 * order.
+	 */
+	void lemmatize(String text, Sink sink);
+}
@@ -0,0 +1,50 @@
+package code.lemma;
+
+import edu.stanford.nlp.ling.CoreAnnotations.TextAnnotation;
+import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
+import edu.stanford.nlp.ling.CoreLabel;
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+
+/**
+ * Stems each token with CoreNLP's morphology but without POS tags, which
+ * skips the expensive tagger. Regular inflections and the irregular forms
+ * the morphology knows without a tag are handled as in {@link FullLemmatizer},
+ * but words whose lemma depends on their part of speech (e.g. "saw") may get
+ * a different one.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class MorphologyLemmatizer extends CachingLemmatizer {
+
+	/** what the pipeline has to provide */
+	public static final String ANNOTATORS = "tokenize";
+
+	// no tag, the same word always has the same lemma
+	private static final String NO_TAG = "";
+
+	private final StanfordCoreNLP pipeLine;
+
+	/**
+	 * @param pipeLine
+	 *            has to provide at least the {@value #ANNOTATORS} annotator
+	 */
+	public MorphologyLemmatizer(StanfordCoreNLP pipeLine, LemmaCache cache) {
+		super(cache);
+		this.pipeLine = pipeLine;
+	}
+
+	@Override
+	public void lemmatize(String text, Sink sink) {
+		Annotation document = new Annotation(text);
+		pipeLine.annotate(document);
+
+		for (CoreLabel token : document.get(TokensAnnotation.class))
+			sink.accept(lemma(token.get(TextAnnotation.class), NO_TAG));
+	}
+
+	@Override
+	protected String computeLemma(String word, String tag) {
+		return morphology.stem(word);
+	}
+}
@@ -0,0 +1,419 @@
+package code.lemma;
+
+import java.nio.CharBuffer;
+
+/**
+ * Removes wiki markup and unwanted characters from an article text in a
+ * single pass. Every run of noise is replaced by a single blank, the result is
+ * trimmed.
+ * <p>
+ * Removes the same noise as the regular expression of
+ * {@link Tokenizer#buildNoisePattern()}, but each construct only reaches as
+ * far as it belongs, instead of greedily to the last possible end in the
+ * article:
+ * <ul>
+ * <li>infoboxes up to their matching <code>}}</code>, nested templates
+ * included</li>
+ * <li>URLs starting with http://, https:// or www.</li>
+ * <li>the file name and options of a <code>[[File:...|thumb</code> picture,
+ * keeping the description</li>
+ * <li>references, from <code>&lt;ref&gt;</code> (or
+ * <code>&lt;ref name=...&gt;</code>) to the next <code>&lt;/ref&gt;</code>,
+ * and self-closing <code>&lt;ref .../&gt;</code></li>
+ * <li>date and accessdate values up to the next <code>|</code> or
+ * <code>}</code></li>
+ * <li>attribute names like <code>|title=</code> on the same line</li>
+ * <li>HTML entities, bold and italic quotes, digits, white space and
+ * punctuation</li>
+ * </ul>
+ * The result is written into a buffer that is reused for the next article.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class NoiseStripper {
+
+	private static final String INFOBOX = "{{Infobox";
+	private static final String CITE_WEB = "{{cite web|url=";
+	private static final String FILE = "[[File:";
+	private static final String THUMB = "|thumb";
+	private static final String REF = "<ref";
+	private static final String REF_END = "</ref>";
+	private static final String[] DATES = { "|date=", "|accessdate=" };
+	private static final String[] URL_PREFIXES = { "http://", "https://", "www." };
+	private static final String[] ALIGNMENTS = { "|left", "|center", "|right" };
+	private static final String[] ENTITIES = { "&lt", "&gt", "&amp", "&quot" };
+
+	private static final String UNWANTED_CHARS = "\"`´.,:;!?()[]{}<>=/|\\%&#§$_-~*°^+";
+
+	// all unwanted characters are Latin-1
+	private static final boolean[] UNWANTED = new boolean[256];
+	static {
+		for (char c : UNWANTED_CHARS.toCharArray())
+			UNWANTED[c] = true;
+		for (char c : " \t\n\u000B\f\r0123456789".toCharArray())
+			UNWANTED[c] = true;
+	}
+
+	// the first characters of all noise, to skip the rest quickly
+	private static final boolean[] MAY_START_NOISE = UNWANTED.clone();
+	static {
+		for (char c : "{hw[<|&'".toCharArray())
+			MAY_START_NOISE[c] = true;
+	}
+
+	private final StringBuilder out = new StringBuilder();
+
+	// the article, copied for fast access
+	private char[] chars = new char[1024];
+	private int end;
+
+	// no "}}", "]]" or "|thumb", '>' and "</ref>" at or after these
+	// positions, so unclosed constructs do not rescan to the end of the text
+	private int noInfoboxEndFrom;
+	private int noFileEndFrom;
+	private int noTagEndFrom;
+	private int noRefEndFrom;
+
+	/**
+	 * @return the text without noise, valid until the next call
+	 */
+	public CharSequence strip(CharSequence text) {
+		end = text.length();
+		if (chars.length < end)
+			chars = new char[Math.max(end, chars.length * 2)];
+		if (text instanceof String) {
+			((String) text).getChars(0, end, chars, 0);
+		} else if (text instanceof CharBuffer && ((CharBuffer) text).hasArray()) {
+			CharBuffer buffer = (CharBuffer) text;
+			System.arraycopy(buffer.array(), buffer.arrayOffset() + buffer.position(), chars, 0,
+					end);
+		} else {
+			for (int i = 0; i < end; i++)
+				chars[i] = text.charAt(i);
+		}
+
+		this.noInfoboxEndFrom = end;
+		this.noFileEndFrom = end;
+		this.noTagEndFrom = end;
+		this.noRefEndFrom = end;
+		out.setLength(0);
+
+		// start of the current run of kept characters
+		int keptStart = 0;
+		int i = 0;
+		while (i < end) {
+			char c = chars[i];
+			if (c >= MAY_START_NOISE.length || !MAY_START_NOISE[c]) {
+				i++;
+				continue;
+			}
+
+			int noiseEnd = matchNoise(i);
+			if (noiseEnd == i) {
+				i++;
+				continue;
+			}
+
+			appendKept(keptStart, i);
+			i = noiseEnd;
+			keptStart = i;
+		}
+		appendKept(keptStart, end);
+
+		// kept control characters at the borders, like String.trim()
+		int trailing = out.length();
+		while (trailing > 0 && out.charAt(trailing - 1) <= ' ')
+			trailing--;
+		out.setLength(trailing);
+
+		int leading = 0;
+		while (leading < out.length() && out.charAt(leading) <= ' ')
+			leading++;
+		out.delete(0, leading);
+
+		return out;
+	}
+
+	/**
+	 * Appends the kept characters, separated by a blank from the previous
+	 * ones.
+	 */
+	private void appendKept(int start, int keptEnd) {
+		if (start == keptEnd)
+			return;
+
+		if (out.length() > 0)
+			out.append(' ');
+		out.append(chars, start, keptEnd - start);
+	}
+
+	/**
+	 * @return the end of the noise starting at <code>i</code>, or
+	 *         <code>i</code> if there is none. Tries the constructs in the
+	 *         order of the regular expression's alternatives.
+	 */
+	private int matchNoise(int i) {
+		char c = chars[i];
+		int noiseEnd;
+
+		switch (c) {
+		case '{':
+			if ((noiseEnd = matchInfobox(i)) > i)
+				return noiseEnd;
+			if (startsWith(i, CITE_WEB))
+				return i + CITE_WEB.length();
+			break;
+		case 'h':
+		case 'w':
+			if ((noiseEnd = matchURL(i)) > i)
+				return noiseEnd;
+			break;
+		case '[':
+			if ((noiseEnd = matchFile(i)) > i)
+				return noiseEnd;
+			break;
+		case '<':
+			if ((noiseEnd = matchRef(i)) > i)
+				return noiseEnd;
+			break;
+		case '|':
+			if ((noiseEnd = matchDate(i)) > i)
+				return noiseEnd;
+			if ((noiseEnd = matchAttributeName(i)) > i)
+				return noiseEnd;
+			break;
+		case '&':
+			for (String entity : ENTITIES)
+				if (startsWith(i, entity))
+					return i + entity.length();
+			break;
+		case '\'':
+			noiseEnd = i;
+			while (noiseEnd < end && chars[noiseEnd] == '\'')
+				noiseEnd++;
+			// preserve the single '
+			if (noiseEnd - i > 1)
+				return noiseEnd;
+			break;
+		}
+
+		if (isUnwanted(c))
+			return i + 1;
+
+		return i;
+	}
+
+	private int matchInfobox(int i) {
+		if (!startsWith(i, INFOBOX))
+			return i;
+
+		int closing = findClosing(i);
+		return closing < 0 ? i : closing;
+	}
+
+	/**
+	 * @return the position after the <code>}}</code> ending the
+	 *         <code>{{</code> at <code>i</code>, -1 if there is none
+	 */
+	private int findClosing(int i) {
+		// a "}}" can only start before the end of the last one seen
+		int lastCloseEnd = i;
+		int depth = 0;
+		int j = i;
+		while (j < noInfoboxEndFrom && j < end - 1) {
+			char c = chars[j];
+			if (c == '{' && chars[j + 1] == '{') {
+				depth++;
+				j += 2;
+			} else if (c == '}' && chars[j + 1] == '}') {
+				depth--;
+				j += 2;
+				if (depth == 0)
+					return j;
+				lastCloseEnd = j;
+			} else {
+				j++;
+			}
+		}
+
+		noInfoboxEndFrom = lastCloseEnd;
+		return -1;
+	}
+
+	/**
+	 * Same as <code>((http(s)?:\/\/)|(www\.))\S+\.\S+</code>: the prefix and
+	 * the following non white space, if it contains an inner dot.
+	 */
+	private int matchURL(int i) {
+		for (String prefix : URL_PREFIXES) {
+			if (!startsWith(i, prefix))
+				continue;
+
+			int start = i + prefix.length();
+			int runEnd = start;
+			while (runEnd < end && !isWhitespace(chars[runEnd]))
+				runEnd++;
+
+			// neither the first nor the last character may be the dot
+			for (int j = start + 1; j < runEnd - 1; j++)
+				if (chars[j] == '.')
+					return runEnd;
+			return i;
+		}
+		return i;
+	}
+
+	/**
+	 * The file link up to its <code>|thumb</code> option and the optional size
+	 * and alignment, so only the picture's description remains.
+	 */
+	private int matchFile(int i) {
+		if (!startsWith(i, FILE))
+			return i;
+
+		// a "]]" or "|thumb" can only start before the end of the last one seen
+		int lastEventEnd = i;
+		int depth = 0;
+		int j = i;
+		while (j < noFileEndFrom && j < end - 1) {
+			char c = chars[j];
+			if (c == '[' && chars[j + 1] == '[') {
+				depth++;
+				j += 2;
+			} else if (c == ']' && chars[j + 1] == ']') {
+				if (--depth == 0)
+					return i;
+				j += 2;
+				lastEventEnd = j;
+			} else if (c == '|' && startsWith(j, THUMB)) {
+				if (depth == 1 && j > i + FILE.length())
+					return matchThumbOptions(j + THUMB.length());
+				j++;
+				lastEventEnd = j;
+			} else {
+				j++;
+			}
+		}
+
+		noFileEndFrom = lastEventEnd;
+		return i;
+	}
+
+	private int matchThumbOptions(int j) {
+		if (j < end - 1 && chars[j] == '|' && isDigit(chars[j + 1])) {
+			int k = j + 1;
+			while (k < end && isDigit(chars[k]))
+				k++;
+			if (startsWith(k, "px"))
+				j = k + 2;
+		}
+
+		for (String alignment : ALIGNMENTS)
+			if (startsWith(j, alignment))
+				return j + alignment.length();
+
+		return j;
+	}
+
+	private int matchRef(int i) {
+		if (!startsWith(i, REF) || i + REF.length() >= end)
+			return i;
+
+		char next = chars[i + REF.length()];
+		if (next != '>' && !isWhitespace(next))
+			return i;
+
+		int tagEnd = indexOfTagEnd(i + REF.length());
+		if (tagEnd < 0)
+			return i;
+		if (chars[tagEnd - 1] == '/')
+			return tagEnd + 1;
+
+		// the reference has to contain at least one character
+		int refEnd = indexOfRefEnd(tagEnd + 2);
+		return refEnd < 0 ? i : refEnd + REF_END.length();
+	}
+
+	private int indexOfTagEnd(int from) {
+		for (int j = from; j < noTagEndFrom; j++)
+			if (chars[j] == '>')
+				return j;
+
+		noTagEndFrom = Math.min(from, noTagEndFrom);
+		return -1;
+	}
+
+	private int indexOfRefEnd(int from) {
+		for (int j = from; j < noRefEndFrom && j <= end - REF_END.length(); j++)
+			if (startsWith(j, REF_END))
+				return j;
+
+		noRefEndFrom = Math.min(from, noRefEndFrom);
+		return -1;
+	}
+
+	/**
+	 * The date up to and including the next <code>|</code> or <code>}</code>.
+	 */
+	private int matchDate(int i) {
+		for (String date : DATES) {
+			if (!startsWith(i, date))
+				continue;
+
+			// leaves the '|' to the next attribute name
+			for (int j = i + date.length(); j < end; j++) {
+				char c = chars[j];
+				if (c == '|' || c == '}')
+					return j;
+			}
+			return i;
+		}
+		return i;
+	}
+
+	/**
+	 * <code>|name=</code>, the name not spanning lines, links or templates
+	 */
+	private int matchAttributeName(int i) {
+		for (int j = i + 1; j < end; j++) {
+			char c = chars[j];
+			if (c == '=')
+				return j + 1;
+			if (c == '|' || c == '\n' || c == '[' || c == ']' || c == '{' || c == '}')
+				return i;
+		}
+		return i;
+	}
+
+	private boolean startsWith(int i, String prefix) {
+		if (i + prefix.length() > end)
+			return false;
+
+		for (int j = 0; j < prefix.length(); j++)
+			if (chars[i + j] != prefix.charAt(j))
+				return false;
+		return true;
+	}
+
+	/**
+	 * Same as the regular expression's single character alternatives,
+	 * including <code>\s</code> and <code>\d</code>
+	 */
+	private static boolean isUnwanted(char c) {
+		return c < UNWANTED.length && UNWANTED[c];
+	}
+
+	/**
+	 * Same as the regular expression <code>\s</code>
+	 */
+	private static boolean isWhitespace(char c) {
+		return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+	}
+
+	/**
+	 * Same as the regular expression <code>\d</code>
+	 */
+	private static boolean isDigit(char c) {
+		return c >= '0' && c <= '9';
+	}
+}
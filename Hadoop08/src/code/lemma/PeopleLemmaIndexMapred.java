@@ -0,0 +1,186 @@
+package code.lemma;
+
+import java.io.IOException;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.NullWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.MultipleOutputs;
+import org.apache.hadoop.mapreduce.lib.output.TextOutputFormat;
+
+import util.BinaryHandoff;
+import util.HDFSUtils;
+import util.MembershipFilter;
+import util.PageIndexInputFormat;
+import util.StringIntegerList;
+import util.WikipediaPageFilter;
+import util.WikipediaPageInputFormat;
+import util.WikipediaPageView;
+import util.WikipediaPageViewInputFormat;
+import code.articles.GetArticlesMapred;
+import code.articles.GetArticlesMapred.GetArticlesMapper;
+import code.lemma.LemmaIndexMapred.LemmaIndexMapper;
+
+/**
+ * Runs {@link GetArticlesMapred} and {@link LemmaIndexMapred} as a single job:
+ * the pages of the people are lemmatized in the task which reads them from
+ * the dump, instead of being written to HDFS as raw XML and parsed again by a
+ * second job. The output is the one of {@link LemmaIndexMapred} without a
+ * dictionary.
+ * 
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PeopleLemmaIndexMapred {
+
+	/** whether to write the raw XML of the pages as well, default false */
+	public static final String KEEP_ARTICLES_KEY = "lemma.people.articles.keep";
+
+	private static final String ARTICLES_OUTPUT = "articles";
+
+	/**
+	 * A {@link LemmaIndexMapper} for the pages of the people only, the first
+	 * cache file is their {@link MembershipFilter}. Optionally writes the raw
+	 * XML of the pages to the named output {@value #ARTICLES_OUTPUT}, like
+	 * {@link GetArticlesMapper} does.
+	 */
+	public static class PeopleLemmaIndexMapper extends LemmaIndexMapper {
+
+		private MembershipFilter wantedTitles;
+		private MultipleOutputs<Text, StringIntegerList> articles;
+		private final Text articleXML = new Text();
+
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			super.setup(context);
+			Configuration config = context.getConfiguration();
+			wantedTitles = MembershipFilter.open(new Path(context.getCacheFiles()[0]), config);
+			if (config.getBoolean(KEEP_ARTICLES_KEY, false))
+				articles = new MultipleOutputs<>(context);
+		}
+
+		@Override
+		public void map(LongWritable offset, WikipediaPageView page, Context context)
+				throws IOException, InterruptedException {
+			// the record reader skips most other pages already
+			if (!page.isTitleIn(wantedTitles))
+				return;
+
+			if (articles != null) {
+				articleXML.set(page.getRawBytes(), page.getRawOffset(), page.getRawLength());
+				articles.write(ARTICLES_OUTPUT, NullWritable.get(), articleXML, ARTICLES_OUTPUT
+						+ "/part");
+			}
+
+			super.map(offset, page, context);
+		}
+
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			super.cleanup(context);
+			if (articles != null)
+				articles.close();
+		}
+	}
+
+	/** also writes the raw XML of the pages to outputPath/articles */
+	public static final String KEEP_ARTICLES_OPTION = "-keep-articles";
+
+	/**
+	 * Takes two or three parameters when called from commandline:
+	 * 
+	 * <pre>
+	 * inputPath	HDFS path to the dump
+	 * outputPath	HDFS path to a not existing directory for the lemma index
+	 * indexPath	optional, HDFS path to the index of a multistream dump
+	 * </pre>
+	 * 
+	 * Understands {@value BinaryHandoff#FLAG} and the lemmatizer and threads
+	 * options of {@link LemmaIndexMapred}, and the page index and people
+	 * options of {@link GetArticlesMapred}. With
+	 * {@value #KEEP_ARTICLES_OPTION} the raw XML is written as well, which
+	 * needs a single thread per task. Logs the wall-clock time and the bytes
+	 * written to HDFS, as the two jobs do, to compare with their sums.
+	 */
+	public static void main(String[] args) throws IOException, InterruptedException,
+			ClassNotFoundException, URISyntaxException {
+		boolean binary = BinaryHandoff.isRequested(args);
+		args = BinaryHandoff.removeFlag(args);
+
+		int threads = 1;
+		Lemmatizer.Mode lemmatizer = Lemmatizer.Mode.FULL;
+		String pageIndex = null;
+		Path people = GetArticlesMapper.PEOPLE_FILEPATH;
+		boolean keepArticles = false;
+		List<String> params = new ArrayList<>(args.length);
+		for (String arg : args)
+			if (arg.startsWith(LemmaIndexMapred.THREADS_OPTION))
+				threads = LemmaIndexMapred.parseThreads(arg);
+			else if (arg.startsWith(LemmaIndexMapred.LEMMATIZER_OPTION))
+				lemmatizer = LemmaIndexMapred.parseLemmatizer(arg);
+			else if (arg.startsWith(GetArticlesMapred.PAGE_INDEX_OPTION))
+				pageIndex = arg.substring(GetArticlesMapred.PAGE_INDEX_OPTION.length());
+			else if (arg.startsWith(GetArticlesMapred.PEOPLE_OPTION))
+				people = new Path(arg.substring(GetArticlesMapred.PEOPLE_OPTION.length()));
+			else if (arg.equals(KEEP_ARTICLES_OPTION))
+				keepArticles = true;
+			else
+				params.add(arg);
+		args = params.toArray(new String[params.size()]);
+
+		// the threads' mappers would each open the same article files
+		if (keepArticles && threads > 1)
+			throw new IllegalArgumentException("Error! " + KEEP_ARTICLES_OPTION
+					+ " needs a single thread per task");
+
+		Job job = Job.getInstance(new Configuration());
+
+		job.setOutputKeyClass(Text.class);
+		job.setOutputValueClass(StringIntegerList.class);
+		LemmaIndexMapred.setMapper(job, PeopleLemmaIndexMapper.class, threads);
+		if (binary)
+			BinaryHandoff.setOutput(job);
+		else
+			job.setOutputFormatClass(TextOutputFormat.class);
+
+		if (keepArticles) {
+			job.getConfiguration().setBoolean(KEEP_ARTICLES_KEY, true);
+			MultipleOutputs.addNamedOutput(job, ARTICLES_OUTPUT, TextOutputFormat.class,
+					NullWritable.class, Text.class);
+		}
+
+		if (pageIndex == null) {
+			job.setInputFormatClass(WikipediaPageViewInputFormat.class);
+		} else {
+			job.setInputFormatClass(PageIndexInputFormat.class);
+			PageIndexInputFormat.setIndex(job, new Path(pageIndex));
+			PageIndexInputFormat.setTitles(job, people);
+		}
+
+		FileInputFormat.setInputPaths(job, new Path(args[0]));
+		FileOutputFormat.setOutputPath(job, new Path(args[1]));
+
+		if (args.length > 2)
+			WikipediaPageInputFormat.setMultistreamIndex(job, new Path(args[2]));
+
+		Path wantedTitles = MembershipFilter.buildSideFile(people, job.getConfiguration());
+		HDFSUtils.addCacheFile(job, wantedTitles.toString());
+		WikipediaPageFilter.setTitles(job, wantedTitles);
+
+		job.setJarByClass(PeopleLemmaIndexMapred.class);
+
+		LemmaIndexMapred.configure(job, lemmatizer);
+
+		// execute the job with verbose prints
+		long start = System.currentTimeMillis();
+		if (job.waitForCompletion(true))
+			HDFSUtils.logCost(job, start);
+	}
+}
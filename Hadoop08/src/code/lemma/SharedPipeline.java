@@ -0,0 +1,135 @@
+package code.lemma;
+
+import java.io.InputStream;
+import java.util.Properties;
+import java.util.Scanner;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import edu.stanford.nlp.pipeline.Annotation;
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+
+/**
+ * Holds one {@link StanfordCoreNLP} pipeline per annotator configuration for
+ * the whole JVM. Loading the POS tagger model takes seconds,
+ * so tasks running in the same JVM (uber mode, several
+ * {@link LemmaIndexMapred} tasks in one test, multithreaded mappers) should
+ * load them only once.
+ * <p>
+ * Pipelines are created lazily on first request. Optionally they are warmed
+ * up by annotating the bundled <code>warmup.txt</code> sample article once,
+ * so the first real article does not pay for lazy initializations inside
+ * CoreNLP.
+ * <p>
+ * A pipeline may be used by several threads at once: the tokenizer and
+ * sentence splitter annotators keep their state per call, and the POS tagger
+ * is thread-safe (CoreNLP itself shares it among threads when
+ * <code>pos.nthreads</code> is set).
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class SharedPipeline {
+
+	/** what {@link FullLemmatizer} needs, it lemmatizes the tokens itself */
+	public static final String DEFAULT_ANNOTATORS = "tokenize, ssplit, pos";
+
+	private static final String WARMUP_DOCUMENT = "warmup.txt";
+
+	private static final Log LOG = LogFactory.getLog(SharedPipeline.class);
+
+	private static final ConcurrentMap<String, SharedPipeline> PIPELINES = new ConcurrentHashMap<>();
+
+	private final String annotators;
+	private StanfordCoreNLP pipeline;
+	private boolean warmedUp;
+	private long startupMillis;
+
+	private SharedPipeline(String annotators) {
+		this.annotators = annotators;
+	}
+
+	/**
+	 * @param annotators
+	 *            e.g. {@value #DEFAULT_ANNOTATORS}
+	 * @param warmUp
+	 *            if true, the pipeline has annotated the sample article before
+	 *            it is returned
+	 * @return the pipeline shared by all callers with the same annotators
+	 */
+	public static StanfordCoreNLP get(String annotators, boolean warmUp) {
+		return getHolder(annotators).acquire(warmUp);
+	}
+
+	/**
+	 * @return how long loading (and warming up) the pipeline for
+	 *         <code>annotators</code> took in this JVM, 0 if it was not
+	 *         requested yet
+	 */
+	public static long getStartupMillis(String annotators) {
+		SharedPipeline holder = PIPELINES.get(normalize(annotators));
+		if (holder == null)
+			return 0;
+
+		synchronized (holder) {
+			return holder.startupMillis;
+		}
+	}
+
+	private static SharedPipeline getHolder(String annotators) {
+		String key = normalize(annotators);
+
+		SharedPipeline holder = PIPELINES.get(key);
+		if (holder == null) {
+			PIPELINES.putIfAbsent(key, new SharedPipeline(key));
+			holder = PIPELINES.get(key);
+		}
+		return holder;
+	}
+
+	/**
+	 * "tokenize,ssplit" and "tokenize, ssplit" are the same configuration
+	 */
+	private static String normalize(String annotators) {
+		return annotators.replaceAll("\\s+", "");
+	}
+
+	private synchronized StanfordCoreNLP acquire(boolean warmUp) {
+		if (pipeline == null) {
+			long start = System.currentTimeMillis();
+
+			Properties props = new Properties();
+			props.put("annotators", annotators);
+			pipeline = new StanfordCoreNLP(props);
+
+			startupMillis += System.currentTimeMillis() - start;
+			LOG.info("Loaded pipeline " + annotators + " in " + startupMillis + " millis");
+		}
+
+		if (warmUp && !warmedUp) {
+			long start = System.currentTimeMillis();
+
+			pipeline.annotate(new Annotation(readWarmupDocument()));
+			warmedUp = true;
+
+			long millis = System.currentTimeMillis() - start;
+			startupMillis += millis;
+			LOG.info("Warmed up pipeline " + annotators + " in " + millis + " millis");
+		}
+
+		return pipeline;
+	}
+
+	static String readWarmupDocument() {
+		InputStream in = SharedPipeline.class.getResourceAsStream(WARMUP_DOCUMENT);
+		if (in == null)
+			throw new IllegalStateException("Missing resource " + WARMUP_DOCUMENT);
+
+		// closes the stream as well
+		try (Scanner scanner = new Scanner(in, "UTF-8")) {
+			return scanner.useDelimiter("\\A").next();
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package code.lemma;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Splits at blanks and strips the common English inflection suffixes by
+ * rules, similar to the first step of the Porter stemmer. Needs no models and
+ * no dictionary, so it is by far the fastest, but apart from the forms of the
+ * auxiliaries be, have and do it does not know irregular forms ("came" stays
+ * "came"), and it keeps contractions like "we're" as one token.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class SuffixLemmatizer implements Lemmatizer {
+
+	private static final Map<String, String> AUXILIARIES = new HashMap<>();
+	static {
+		for (String be : new String[] { "am", "are", "is", "was", "were", "been", "being" })
+			AUXILIARIES.put(be, "be");
+		for (String have : new String[] { "has", "had", "having" })
+			AUXILIARIES.put(have, "have");
+		for (String doForm : new String[] { "does", "did", "done", "doing" })
+			AUXILIARIES.put(doForm, "do");
+	}
+
+	@Override
+	public void lemmatize(String text, Sink sink) {
+		int start = 0;
+		for (int i = 0; i <= text.length(); i++) {
+			// the noise stripper leaves single blanks between words
+			if (i < text.length() && text.charAt(i) != ' ')
+				continue;
+
+			if (i > start)
+				sink.accept(lemma(text.substring(start, i).toLowerCase()));
+			start = i + 1;
+		}
+	}
+
+	/**
+	 * @param word
+	 *            lowercase
+	 */
+	static String lemma(String word) {
+		String auxiliary = AUXILIARIES.get(word);
+		if (auxiliary != null)
+			return auxiliary;
+
+		if (word.endsWith("'s"))
+			return word.substring(0, word.length() - 2);
+
+		if (word.length() <= 3)
+			return word;
+
+		if (word.endsWith("sses"))
+			return word.substring(0, word.length() - 2);
+		if (word.endsWith("ies") && word.length() > 4)
+			return word.substring(0, word.length() - 3) + 'y';
+		if (word.endsWith("ss") || word.endsWith("us") || word.endsWith("is"))
+			return word;
+		if (word.endsWith("s"))
+			return word.substring(0, word.length() - 1);
+
+		if (word.endsWith("ied") && word.length() > 4)
+			return word.substring(0, word.length() - 3) + 'y';
+		if (word.endsWith("eed"))
+			return word;
+		if (word.endsWith("ed"))
+			return restoreStem(word, word.length() - 2);
+		if (word.endsWith("ing"))
+			return restoreStem(word, word.length() - 3);
+
+		return word;
+	}
+
+	/**
+	 * The word without the "ed" or "ing" suffix starting at
+	 * <code>stemEnd</code>: "stopped" to "stop", "making" to "make". The word
+	 * stays as it is if the remaining stem has no vowel ("sing", "red").
+	 */
+	private static String restoreStem(String word, int stemEnd) {
+		String stem = word.substring(0, stemEnd);
+		if (measure(stem) == 0)
+			return word;
+
+		char last = stem.charAt(stem.length() - 1);
+		if (stem.length() > 2 && last == stem.charAt(stem.length() - 2)
+				&& isConsonant(stem, stem.length() - 1) && last != 'l' && last != 's'
+				&& last != 'z')
+			return stem.substring(0, stem.length() - 1);
+
+		if (measure(stem) == 1 && endsWithShortSyllable(stem))
+			return stem + 'e';
+
+		return stem;
+	}
+
+	/**
+	 * @return the number of vowel-consonant sequences, e.g. 0 for "tr", 1 for
+	 *         "mak", 2 for "open"
+	 */
+	private static int measure(String stem) {
+		int m = 0;
+		boolean vowelSeen = false;
+		for (int i = 0; i < stem.length(); i++) {
+			if (!isConsonant(stem, i)) {
+				vowelSeen = true;
+			} else if (vowelSeen) {
+				m++;
+				vowelSeen = false;
+			}
+		}
+		return m;
+	}
+
+	/**
+	 * consonant, vowel, consonant other than w, x or y, as in "mak" or "liv"
+	 */
+	private static boolean endsWithShortSyllable(String stem) {
+		int n = stem.length();
+		if (n < 3)
+			return false;
+
+		char last = stem.charAt(n - 1);
+		return isConsonant(stem, n - 3) && !isConsonant(stem, n - 2) && isConsonant(stem, n - 1)
+				&& last != 'w' && last != 'x' && last != 'y';
+	}
+
+	/**
+	 * Letters other than a, e, i, o, u and y after a consonant. Characters
+	 * other than letters count as consonants.
+	 */
+	private static boolean isConsonant(String word, int i) {
+		switch (word.charAt(i)) {
+		case 'a':
+		case 'e':
+		case 'i':
+		case 'o':
+		case 'u':
+			return false;
+		case 'y':
+			return i == 0 || !isConsonant(word, i - 1);
+		default:
+			return true;
+		}
+	}
+}
@@ -3,36 +3,35 @@ package code.lemma;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
-import java.util.Properties;
 import java.util.Set;
-import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import edu.stanford.nlp.ling.CoreAnnotations.LemmaAnnotation;
-import edu.stanford.nlp.ling.CoreAnnotations.SentencesAnnotation;
-import edu.stanford.nlp.ling.CoreAnnotations.TokensAnnotation;
-import edu.stanford.nlp.ling.CoreLabel;
-import edu.stanford.nlp.pipeline.Annotation;
-import edu.stanford.nlp.pipeline.StanfordCoreNLP;
-import edu.stanford.nlp.util.CoreMap;
-
 /**
+ * Not thread-safe, each thread needs its own instance with its own
+ * {@link Lemmatizer}. The pipeline and the {@link LemmaCache} may be shared
+ * though.
+ * 
  * @author Steven Hu, stevenhh@brandeis.edu
  * @author Georg Konwisser, gekonwi@brandeis.edu
  */
 public class Tokenizer {
 
-	private final StanfordCoreNLP pipeLine; // tool used for lemmatization
+	private final Lemmatizer lemmatizer;
 	private final Set<String> stopWords;
 
-	private static final Pattern NOISE_PATTERN = buildNoisePattern();
+	private final NoiseStripper noiseStripper = new NoiseStripper();
 
+	/**
+	 * Uses a {@link FullLemmatizer} on the JVM-wide {@link SharedPipeline}
+	 * with an own {@link LemmaCache}.
+	 */
 	public Tokenizer(HashSet<String> stopWords) {
-		// set up the Stanford Core NLP Tool
-		Properties props = new Properties();
-		props.put("annotators", "tokenize, ssplit, pos, lemma");
-		pipeLine = new StanfordCoreNLP(props);
+		this(stopWords, new FullLemmatizer(SharedPipeline.get(FullLemmatizer.ANNOTATORS, false),
+				new LemmaCache(LemmaCache.DEFAULT_CAPACITY)));
+	}
 
+	public Tokenizer(Set<String> stopWords, Lemmatizer lemmatizer) {
+		this.lemmatizer = lemmatizer;
 		this.stopWords = stopWords;
 	}
 
@@ -40,34 +39,52 @@ public class Tokenizer {
 	 * Cleans noise, splits into tokens, lemmatizes each token.
 	 * 
 	 * @param documentText
-	 * @return how often each lemma appeared in the sentence
+	 * @return the lemmas which are no stop words, in order
 	 */
-	public List<String> getLemmas(String documentText) {
-		documentText = removeNoise(documentText);
+	public List<String> getLemmas(CharSequence documentText) {
+		final List<String> lemmas = new ArrayList<>();
 
-		List<String> lemmas = lemmatize(documentText);
+		lemmatizeWithoutStopWords(documentText, new Lemmatizer.Sink() {
+			@Override
+			public void accept(String lemma) {
+				lemmas.add(lemma);
+			}
+		});
 
-		return filterStopWords(lemmas);
+		return lemmas;
 	}
 
-	static String removeNoise(String documentText) {
-		Matcher matcher = NOISE_PATTERN.matcher(documentText);
-		documentText = matcher.replaceAll(" ").trim();
-
-		// replace all multiple blanks by a single blank
-		return documentText.replaceAll("\\s+", " ");
+	/**
+	 * Same as {@link #getLemmas(CharSequence)}, but counts each lemma right away
+	 * instead of collecting them.
+	 * 
+	 * @param counter
+	 *            the lemmas are added to its counts
+	 */
+	public void countLemmas(CharSequence documentText, LemmaCounter counter) {
+		lemmatizeWithoutStopWords(documentText, counter);
 	}
 
-	private List<String> filterStopWords(List<String> lemmas) {
-		List<String> filtered = new ArrayList<>(lemmas.size());
+	private void lemmatizeWithoutStopWords(CharSequence documentText, final Lemmatizer.Sink sink) {
+		String text = noiseStripper.strip(documentText).toString();
 
-		for (String lemma : lemmas)
-			if (!stopWords.contains(lemma))
-				filtered.add(lemma);
+		lemmatizer.lemmatize(text, new Lemmatizer.Sink() {
+			@Override
+			public void accept(String lemma) {
+				if (!stopWords.contains(lemma))
+					sink.accept(lemma);
+			}
+		});
+	}
 
-		return filtered;
+	static String removeNoise(String documentText) {
+		return new NoiseStripper().strip(documentText).toString();
 	}
 
+	/**
+	 * The noise removal used before {@link NoiseStripper}, kept as reference.
+	 * Its greedy alternatives make it backtrack heavily on long articles.
+	 */
 	static Pattern buildNoisePattern() {
 		List<String> patterns = buildNoisePatternParts();
 
@@ -141,26 +158,40 @@ public class Tokenizer {
 	}
 
 	/**
-	 * Lemmatizes each element. Inspiration from:
-	 * http://stackoverflow.com/questions/1578062/lemmatization-java
+	 * Lemmatizes each element with the {@link Lemmatizer} of this tokenizer.
 	 * 
 	 * @param documentText
-	 * @return
+	 *            without noise
+	 * @return the lowercased lemmas, in order
 	 */
 	public List<String> lemmatize(String documentText) {
-		List<String> lemmas = new ArrayList<>();
+		final List<String> lemmas = new ArrayList<>();
 
-		Annotation document = new Annotation(documentText);
-		this.pipeLine.annotate(document);
-
-		List<CoreMap> sentences = document.get(SentencesAnnotation.class);
-		for (CoreMap sentence : sentences) {
-			for (CoreLabel token : sentence.get(TokensAnnotation.class)) {
-				String lemma = token.get(LemmaAnnotation.class).toLowerCase();
+		lemmatizer.lemmatize(documentText, new Lemmatizer.Sink() {
+			@Override
+			public void accept(String lemma) {
 				lemmas.add(lemma);
 			}
-		}
+		});
 
 		return lemmas;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * @return how many tokens were lemmatized from the {@link LemmaCache}, 0
+	 *         if the lemmatizer uses none
+	 */
+	public long getCacheHits() {
+		return lemmatizer instanceof CachingLemmatizer ? ((CachingLemmatizer) lemmatizer)
+				.getCacheHits() : 0;
+	}
+
+	/**
+	 * @return how many tokens were lemmatized and then added to the
+	 *         {@link LemmaCache}, 0 if the lemmatizer uses none
+	 */
+	public long getCacheMisses() {
+		return lemmatizer instanceof CachingLemmatizer ? ((CachingLemmatizer) lemmatizer)
+				.getCacheMisses() : 0;
+	}
+}
@@ -1,25 +1,24 @@
 package code.profession;
 
-import java.io.BufferedReader;
-import java.io.FileNotFoundException;
 import java.io.IOException;
-import java.util.HashSet;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
-import java.util.Set;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.Mapper;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 import org.apache.hadoop.mapreduce.lib.input.KeyValueTextInputFormat;
 import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
 
+import util.BinaryHandoff;
 import util.HDFSUtils;
-import util.StringDoubleList;
-import util.StringInteger;
+import util.MembershipFilter;
+import util.StringIntegerCursor;
 import util.StringIntegerList;
 
 /**
@@ -29,20 +28,32 @@ import util.StringIntegerList;
  */
 public class ProfessionClassifierMapred {
 
+	/**
+	 * people scored at once by a {@link ProfessionModel.Batch}, default 1,
+	 * i.e. person by person
+	 */
+	public static final String BATCH_SIZE_KEY = "profession.batch.size";
+
 	public static class ProfessionClassifierMapper extends Mapper<Text, Text, Text, Text> {
 
-		private Set<String> wantedPeople;
+		private MembershipFilter wantedPeople;
+		private ProfessionModel model;
+		private ProfessionModel.Batch batch;
+		private final StringIntegerCursor lemmaCounts = StringIntegerCursor.forText();
+		private final Text professions = new Text();
 
 		@Override
 		protected void setup(Mapper<Text, Text, Text, Text>.Context context) throws IOException,
 				InterruptedException {
 
 			/*
-			 * read people to be classified from local cache
+			 * map people to be classified from local cache
 			 */
 			Path peoplePath = new Path(context.getCacheFiles()[0]);
-			List<String> lines = HDFSUtils.readLines(peoplePath, context.getConfiguration());
-			wantedPeople = new HashSet<>(lines);
+			wantedPeople = MembershipFilter.open(peoplePath, context.getConfiguration());
+			model = ProfessionModel.read(new Path(context.getCacheFiles()[1]),
+					context.getConfiguration());
+			batch = newBatch(model, context);
 		}
 
 		/**
@@ -70,7 +81,7 @@ public class ProfessionClassifierMapred {
 		 * @throws InterruptedException
 		 */
 		@Override
-		public void map(Text person, Text lemmaCounts, Context context) throws IOException,
+		public void map(Text person, Text lemmaCountsText, Context context) throws IOException,
 				InterruptedException {
 
 			/*
@@ -79,83 +90,128 @@ public class ProfessionClassifierMapred {
 			 * values by ":" instead of " : "
 			 */
 			person = new Text(person.toString().trim());
-			lemmaCounts = new Text(lemmaCounts.toString().trim());
 
-			if (!wantedPeople.contains(person.toString()))
+			if (!wantedPeople.contains(person))
 				return;
 
-			TopProfessions topProf = getTopProfessions(lemmaCounts.toString(), context);
-
-			StringBuilder sb = new StringBuilder();
-			for (String prof : topProf.getProfessions())
-				sb.append(prof + ", ");
-
-			// remove the last ", "
-			sb.delete(sb.length() - 2, sb.length());
+			// the cursor skips the leading blank
+			lemmaCounts.reset(lemmaCountsText.getBytes(), 0, lemmaCountsText.getLength());
+			if (batch != null) {
+				if (batch.add(person, lemmaCounts))
+					writeBatch(batch, context);
+				return;
+			}
 
-			context.write(person, new Text(sb.toString()));
+			professions.set(classify(lemmaCounts, model));
+			context.write(person, professions);
 		}
 
-		private TopProfessions getTopProfessions(String lemmaCounts, Context context)
-				throws FileNotFoundException, IOException {
-			TopProfessions topProf = new TopProfessions();
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			if (batch != null)
+				writeBatch(batch, context);
+		}
+	}
 
-			/*
-			 * read and process the BIG PROFESSION_INDEX_PATH file line by line
-			 * 
-			 * Hadoop puts all cached files in the working directory of the
-			 * slave node, regardless of the original path of the cached file.
-			 * Therefore we just need the file's name.
-			 */
+	/**
+	 * Same as {@link ProfessionClassifierMapper}, but reads the binary lemma
+	 * index (see {@link BinaryHandoff}), so neither people nor lemma counts
+	 * have to be trimmed and parsed.
+	 */
+	public static class BinaryProfessionClassifierMapper extends
+			Mapper<Text, StringIntegerList, Text, Text> {
 
-			Path profPath = new Path(context.getCacheFiles()[1]);
-			BufferedReader br = HDFSUtils.getFileReader(profPath, context.getConfiguration());
+		private MembershipFilter wantedPeople;
+		private ProfessionModel model;
+		private ProfessionModel.Batch batch;
+		private final Text professions = new Text();
 
-			String profIndexLine;
-			while ((profIndexLine = br.readLine()) != null) {
+		@Override
+		protected void setup(Context context) throws IOException, InterruptedException {
+			Path peoplePath = new Path(context.getCacheFiles()[0]);
+			wantedPeople = MembershipFilter.open(peoplePath, context.getConfiguration());
+			model = ProfessionModel.read(new Path(context.getCacheFiles()[1]),
+					context.getConfiguration());
+			batch = newBatch(model, context);
+		}
 
-				String[] parts = profIndexLine.split(" : ");
-				String profession = parts[0];
-				String lemmaProbs = parts[1];
+		@Override
+		public void map(Text person, StringIntegerList lemmaCounts, Context context)
+				throws IOException, InterruptedException {
+			if (!wantedPeople.contains(person))
+				return;
 
-				double probability = getProfessionProbability(lemmaProbs, lemmaCounts);
-				topProf.check(profession, probability);
+			if (batch != null) {
+				if (batch.add(person, lemmaCounts.cursor()))
+					writeBatch(batch, context);
+				return;
 			}
 
-			br.close();
+			professions.set(classify(lemmaCounts.cursor(), model));
+			context.write(person, professions);
+		}
 
-			return topProf;
+		@Override
+		protected void cleanup(Context context) throws IOException, InterruptedException {
+			if (batch != null)
+				writeBatch(batch, context);
 		}
+	}
 
-		private double getProfessionProbability(String lemmaProbs, String lemmaCounts)
-				throws IOException {
-			StringDoubleList lemmaProbsList = new StringDoubleList();
-			lemmaProbsList.readFromString(lemmaProbs);
-			Map<String, Double> lemmaProbsMap = lemmaProbsList.getMap();
-
-			StringIntegerList lemmaCountsList = new StringIntegerList();
-			lemmaCountsList.readFromString(lemmaCounts.toString());
-
-			double profProb = 0;
-
-			for (StringInteger lemmaFreq : lemmaCountsList.getIndices()) {
-				if (!lemmaProbsMap.containsKey(lemmaFreq.getString()))
-					continue;
-				/*
-				 * we add 1 to each probability because log(x) is negative for x
-				 * < 1 and log(1.0) = 0. If a lemma x appears in all articles of
-				 * people with profession p, meaning P(lemma = x | profession =
-				 * p) == 1.0, we don't want to ignore this important lemma in
-				 * our sum by having log(P(lemma = x | profession = p)) == 0.
-				 */
-				double lemmaProb = lemmaProbsMap.get(lemmaFreq.getString()) + 1;
-				profProb += lemmaFreq.getValue() * Math.log(lemmaProb);
-			}
+	/**
+	 * @return a batch of the configured size, null to classify person by
+	 *         person
+	 */
+	private static ProfessionModel.Batch newBatch(ProfessionModel model, JobContext context) {
+		int size = context.getConfiguration().getInt(BATCH_SIZE_KEY, 1);
+		return size > 1 ? model.newBatch(size) : null;
+	}
 
-			return profProb;
+	/**
+	 * Scores the people of the batch, writes their professions and empties
+	 * it.
+	 */
+	private static void writeBatch(ProfessionModel.Batch batch,
+			TaskInputOutputContext<?, ?, Text, Text> context) throws IOException,
+			InterruptedException {
+		if (batch.size() == 0)
+			return;
+
+		batch.score();
+		Text professions = new Text();
+		for (int i = 0; i < batch.size(); i++) {
+			professions.set(join(batch.getTopProfessions(i)));
+			context.write(batch.getPerson(i), professions);
 		}
+		batch.clear();
+	}
+
+	/**
+	 * @return the (up to three) most likely professions for a person with the
+	 *         given lemma counts, separated by ", "
+	 */
+	static String classify(StringIntegerCursor lemmaCounts, ProfessionModel model)
+			throws IOException {
+		return join(model.classify(lemmaCounts));
 	}
 
+	/**
+	 * @return the professions separated by ", "
+	 */
+	static String join(TopProfessions topProf) {
+		StringBuilder sb = new StringBuilder();
+		for (String prof : topProf.getProfessions())
+			sb.append(prof + ", ");
+
+		// remove the last ", "
+		sb.delete(sb.length() - 2, sb.length());
+
+		return sb.toString();
+	}
+
+	/** followed by the number of people to score at once, e.g. -batch=64 */
+	public static final String BATCH_OPTION = "-batch=";
+
 	/**
 	 * Takes in four parameters when called from commandline:
 	 * 
@@ -166,12 +222,29 @@ public class ProfessionClassifierMapred {
 	 * professionIndexPath	HDFS path to the LEMMA_PROFESSION_INDEX file
 	 * 
 	 * <pre>
+	 * With the additional {@value BinaryHandoff#FLAG} parameter the input is
+	 * read as the SequenceFile written by LemmaIndexMapred with the same flag.
+	 * With <code>{@value #BATCH_OPTION}n</code> the people are scored n at a
+	 * time, see {@link ProfessionModel.Batch}.
+	 * 
 	 * @param args
 	 *            inputPath outputPath peoplePath professionIndexPath
 	 * @throws IllegalArgumentException if <code>args</code> does not contain the four HDFS paths
 	 * described above
 	 */
 	public static void main(String[] args) throws Exception {
+		boolean binary = BinaryHandoff.isRequested(args);
+		args = BinaryHandoff.removeFlag(args);
+
+		int batchSize = 1;
+		List<String> params = new ArrayList<>(args.length);
+		for (String arg : args)
+			if (arg.startsWith(BATCH_OPTION))
+				batchSize = Integer.parseInt(arg.substring(BATCH_OPTION.length()));
+			else
+				params.add(arg);
+		args = params.toArray(new String[params.size()]);
+
 		if (args.length != 4)
 			throw new IllegalArgumentException("Four parameters required. "
 					+ "Representing the four HDFS pathes: "
@@ -179,9 +252,13 @@ public class ProfessionClassifierMapred {
 
 		Job job = Job.getInstance(new Configuration());
 
-		job.setInputFormatClass(KeyValueTextInputFormat.class);
-
-		job.setMapperClass(ProfessionClassifierMapper.class);
+		if (binary) {
+			BinaryHandoff.setInput(job);
+			job.setMapperClass(BinaryProfessionClassifierMapper.class);
+		} else {
+			job.setInputFormatClass(KeyValueTextInputFormat.class);
+			job.setMapperClass(ProfessionClassifierMapper.class);
+		}
 
 		job.setOutputKeyClass(Text.class);
 		job.setOutputValueClass(Text.class);
@@ -189,12 +266,16 @@ public class ProfessionClassifierMapred {
 		FileInputFormat.setInputPaths(job, new Path(args[0]));
 		FileOutputFormat.setOutputPath(job, new Path(args[1]));
 
-		HDFSUtils.addCacheFile(job, args[2]);
+		final Configuration conf = job.getConfiguration();
+		conf.setInt(BATCH_SIZE_KEY, batchSize);
+
+		// the people list is built once into a side file the tasks map
+		Path people = MembershipFilter.buildSideFile(new Path(args[2]), conf);
+		HDFSUtils.addCacheFile(job, people.toString());
 		HDFSUtils.addCacheFile(job, args[3]);
 
 		job.setJarByClass(ProfessionClassifierMapred.class);
 
-		final Configuration conf = job.getConfiguration();
 		// so we don't have to specify the job name when starting job on cluster
 		conf.set("mapreduce.job.queuename", "hadoop08");
 
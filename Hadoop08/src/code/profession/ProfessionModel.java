@@ -0,0 +1,409 @@
+package code.profession;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+
+import util.HDFSUtils;
+import util.StringDouble;
+import util.StringDoubleList;
+import util.StringIntegerCursor;
+
+/**
+ * The lemma profession index in memory, loaded once per task. Each lemma of
+ * the index gets an int id and is transposed into a posting list of the
+ * professions it occurs for, with the weights
+ * <code>log(P(lemma | profession) + 1)</code> computed at loading time. The
+ * posting lists are stored one after another in primitive arrays.
+ * <p>
+ * Each line of an index file has the format:
+ *
+ * <pre>
+ * {@code profession : <lemma1,probability1>,<lemma2,probability2>,...}
+ * </pre>
+ *
+ * Not thread-safe, the scoring reuses its buffers. A {@link Batch} scores
+ * several people at once.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class ProfessionModel {
+
+	public static final String KEY_VALUE_SEPARATOR = " : ";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final String[] professions;
+
+	// postings of lemma id i from postingStarts[i] to postingStarts[i + 1]
+	private final int[] postingStarts;
+	private final int[] postingProfessions;
+	private final double[] postingWeights;
+
+	// UTF-8 bytes of the lemmas to their ids
+	private final Map<Text, Integer> ids = new HashMap<>();
+	private final Text lookup = new Text();
+
+	private final double[] scores;
+
+	public ProfessionModel(List<String> lines) throws IOException {
+		professions = new String[lines.size()];
+		scores = new double[lines.size()];
+
+		List<Map<Integer, Double>> professionWeights = new ArrayList<>(lines.size());
+		StringDoubleList lemmaProbs = new StringDoubleList();
+		int postings = 0;
+		for (int p = 0; p < lines.size(); p++) {
+			String line = lines.get(p);
+			int separator = line.indexOf(KEY_VALUE_SEPARATOR);
+			if (separator < 0)
+				throw new IllegalArgumentException("Not a profession index line: " + line);
+
+			professions[p] = line.substring(0, separator);
+			lemmaProbs.readFromString(line.substring(separator + KEY_VALUE_SEPARATOR.length()));
+
+			// the last probability of a lemma counts, as with getMap()
+			Map<Integer, Double> weights = new HashMap<>();
+			for (StringDouble lemmaProb : lemmaProbs.getIndices())
+				/*
+				 * we add 1 to each probability because log(x) is negative for x
+				 * < 1 and log(1.0) = 0. If a lemma x appears in all articles of
+				 * people with profession p, meaning P(lemma = x | profession =
+				 * p) == 1.0, we don't want to ignore this important lemma in
+				 * our sum by having log(P(lemma = x | profession = p)) == 0.
+				 */
+				weights.put(getOrAddId(lemmaProb.getString()),
+						Math.log(lemmaProb.getValue() + 1));
+			professionWeights.add(weights);
+			postings += weights.size();
+		}
+
+		// counting sort of the postings by lemma id, professions ascending
+		postingStarts = new int[ids.size() + 1];
+		for (Map<Integer, Double> weights : professionWeights)
+			for (int id : weights.keySet())
+				postingStarts[id + 1]++;
+		for (int id = 0; id < ids.size(); id++)
+			postingStarts[id + 1] += postingStarts[id];
+
+		postingProfessions = new int[postings];
+		postingWeights = new double[postings];
+		int[] next = Arrays.copyOf(postingStarts, ids.size());
+		for (int p = 0; p < professions.length; p++)
+			for (Map.Entry<Integer, Double> weight : professionWeights.get(p).entrySet()) {
+				int i = next[weight.getKey()]++;
+				postingProfessions[i] = p;
+				postingWeights[i] = weight.getValue();
+			}
+	}
+
+	private int getOrAddId(String lemma) {
+		Text key = new Text(lemma);
+		Integer id = ids.get(key);
+		if (id == null) {
+			id = ids.size();
+			ids.put(key, id);
+		}
+		return id;
+	}
+
+	/**
+	 * Reads the index from the task's working directory, where Hadoop puts
+	 * the cache files, or from <code>path</code> if there is no such copy.
+	 */
+	public static ProfessionModel read(Path path, Configuration config) throws IOException {
+		java.nio.file.Path local = Paths.get(path.getName());
+		if (Files.isRegularFile(local))
+			return new ProfessionModel(Files.readAllLines(local, UTF8));
+		return new ProfessionModel(HDFSUtils.readLines(path, config));
+	}
+
+	public int size() {
+		return professions.length;
+	}
+
+	/**
+	 * @return the id of the lemma with the given UTF-8 bytes, -1 if it is not
+	 *         in the model
+	 */
+	private int getId(byte[] utf8, int start, int length) {
+		lookup.set(utf8, start, length);
+		Integer id = ids.get(lookup);
+		return id == null ? -1 : id;
+	}
+
+	/**
+	 * Scores each profession with the sum of
+	 * <code>count * log(P(lemma | profession) + 1)</code> over the person's
+	 * lemmas. The lemma counts are read exactly once, the work is
+	 * proportional to the postings of the person's lemmas, not to the size
+	 * of the model.
+	 *
+	 * @return the scores by profession id, reused by the next call
+	 */
+	public double[] score(StringIntegerCursor lemmaCounts) throws IOException {
+		Arrays.fill(scores, 0);
+		while (lemmaCounts.next()) {
+			int id = getId(lemmaCounts.getBytes(), lemmaCounts.getLemmaStart(),
+					lemmaCounts.getLemmaLength());
+			if (id < 0)
+				continue;
+
+			int count = lemmaCounts.getCount();
+			for (int i = postingStarts[id]; i < postingStarts[id + 1]; i++)
+				scores[postingProfessions[i]] += count * postingWeights[i];
+		}
+		return scores;
+	}
+
+	/**
+	 * @return the (up to three) most likely professions
+	 */
+	public TopProfessions classify(StringIntegerCursor lemmaCounts) throws IOException {
+		TopProfessions topProf = new TopProfessions();
+		topProf.checkAll(professions, score(lemmaCounts));
+		return topProf;
+	}
+
+	/**
+	 * @return a batch scoring up to <code>capacity</code> people at once
+	 */
+	public Batch newBatch(int capacity) {
+		return new Batch(capacity);
+	}
+
+	/**
+	 * Scores a mini-batch of people against the model, i.e. multiplies their
+	 * sparse lemma count vectors with the sparse profession weight matrix.
+	 * The people's counts are collected as rows of lemma ids (CSR) and
+	 * transposed, so the posting list of a lemma is read once per batch for
+	 * all people having it. The scores are kept profession-major and filled
+	 * in blocks of professions whose scores for the whole batch fit in the
+	 * cache.
+	 * <p>
+	 * Pays off for models dense enough that the people of a batch share many
+	 * postings. For sparse models, where the scores of a single person fit in
+	 * the L1 cache, {@link ProfessionModel#score(StringIntegerCursor)} is
+	 * faster, see <code>ProfessionModelTest</code>.
+	 * <p>
+	 * Usage:
+	 *
+	 * <pre>
+	 * {@code
+	 * if (batch.add(person, lemmaCounts)) {
+	 *     batch.score();
+	 *     for (int i = 0; i < batch.size(); i++)
+	 *         write(batch.getPerson(i), batch.getTopProfessions(i));
+	 *     batch.clear();
+	 * }
+	 * }
+	 * </pre>
+	 */
+	public class Batch {
+
+		/** bytes of the scores block, about the size of an L2 cache */
+		private static final int BLOCK_BYTES = 256 << 10;
+
+		private static final int TOP = 3;
+
+		private final Text[] people;
+		private int size;
+
+		// CSR rows: the lemmas of person i from rowStarts[i] to rowStarts[i + 1]
+		private final int[] rowStarts;
+		private int[] lemmaIds = new int[1024];
+		private int[] counts = new int[1024];
+		private int[] owners = new int[1024];
+
+		// the entries grouped by lemma, see transpose()
+		private long[] sortKeys = new long[1024];
+		private int[] groupStarts = new int[1024];
+		private int[] groupPostings = new int[1024];
+		private int[] entryPeople = new int[1024];
+		private int[] entryCounts = new int[1024];
+		private int groups;
+
+		private final double[] batchScores;
+
+		// the up to three best professions of each person, best first
+		private final int[] topProfessions;
+		private final double[] topScores;
+		private final int[] topCounts;
+
+		private Batch(int capacity) {
+			people = new Text[capacity];
+			for (int i = 0; i < capacity; i++)
+				people[i] = new Text();
+			rowStarts = new int[capacity + 1];
+			batchScores = new double[capacity * professions.length];
+			topProfessions = new int[capacity * TOP];
+			topScores = new double[capacity * TOP];
+			topCounts = new int[capacity];
+		}
+
+		/**
+		 * Copies the person and reads the lemma counts exactly once.
+		 *
+		 * @return true if the batch is full now
+		 */
+		public boolean add(Text person, StringIntegerCursor lemmaCounts) throws IOException {
+			people[size].set(person);
+			int entries = rowStarts[size];
+			while (lemmaCounts.next()) {
+				int id = getId(lemmaCounts.getBytes(), lemmaCounts.getLemmaStart(),
+						lemmaCounts.getLemmaLength());
+				if (id < 0)
+					continue;
+
+				if (entries == lemmaIds.length) {
+					lemmaIds = Arrays.copyOf(lemmaIds, entries * 2);
+					counts = Arrays.copyOf(counts, entries * 2);
+					owners = Arrays.copyOf(owners, entries * 2);
+				}
+				lemmaIds[entries] = id;
+				counts[entries] = lemmaCounts.getCount();
+				owners[entries] = size;
+				entries++;
+			}
+			rowStarts[++size] = entries;
+			return size == people.length;
+		}
+
+		public int size() {
+			return size;
+		}
+
+		public Text getPerson(int i) {
+			return people[i];
+		}
+
+		/**
+		 * Scores all people of the batch and selects their top professions.
+		 */
+		public void score() {
+			transpose();
+
+			int n = size;
+			Arrays.fill(batchScores, 0, professions.length * n, 0);
+			Arrays.fill(topCounts, 0, n, 0);
+			int blockProfessions = Math.max(1, BLOCK_BYTES / 8 / Math.max(1, n));
+
+			for (int blockStart = 0; blockStart < professions.length; blockStart += blockProfessions) {
+				int blockEnd = blockStart + blockProfessions;
+				for (int g = 0; g < groups; g++) {
+					int i = groupPostings[g];
+					int end = postingStarts[groupLemma(g) + 1];
+					int from = groupStarts[g];
+					int to = groupStarts[g + 1];
+					for (; i < end && postingProfessions[i] < blockEnd; i++) {
+						int row = postingProfessions[i] * n;
+						double weight = postingWeights[i];
+						for (int e = from; e < to; e++)
+							batchScores[row + entryPeople[e]] += entryCounts[e] * weight;
+					}
+					groupPostings[g] = i;
+				}
+				select(blockStart, Math.min(blockEnd, professions.length));
+			}
+		}
+
+		/**
+		 * Merges the scores of a block of professions, which are still in
+		 * the cache, into the people's top professions. Same order as
+		 * {@link TopProfessions#check(String, double)}: a profession only
+		 * goes before the ones it scores strictly higher than.
+		 */
+		private void select(int from, int to) {
+			for (int p = from; p < to; p++) {
+				int row = p * size;
+				for (int i = 0; i < size; i++) {
+					double score = batchScores[row + i];
+					int top = i * TOP;
+					int count = topCounts[i];
+					if (count == TOP && score <= topScores[top + TOP - 1])
+						continue;
+
+					int at = 0;
+					while (at < count && score <= topScores[top + at])
+						at++;
+					if (count < TOP)
+						topCounts[i] = ++count;
+					for (int j = count - 1; j > at; j--) {
+						topScores[top + j] = topScores[top + j - 1];
+						topProfessions[top + j] = topProfessions[top + j - 1];
+					}
+					topScores[top + at] = score;
+					topProfessions[top + at] = p;
+				}
+			}
+		}
+
+		/**
+		 * Groups the entries of all rows by lemma id, keeping the order of
+		 * the people within a group. Sets the start of each group's postings.
+		 */
+		private void transpose() {
+			int entries = rowStarts[size];
+			if (sortKeys.length < entries) {
+				sortKeys = new long[entries];
+				entryPeople = new int[entries];
+				entryCounts = new int[entries];
+			}
+			for (int i = 0; i < entries; i++)
+				sortKeys[i] = (long) lemmaIds[i] << 32 | i;
+			Arrays.sort(sortKeys, 0, entries);
+
+			groups = 0;
+			int previousLemma = -1;
+			for (int e = 0; e < entries; e++) {
+				int lemma = (int) (sortKeys[e] >>> 32);
+				int entry = (int) sortKeys[e];
+				if (lemma != previousLemma) {
+					if (groups + 1 == groupStarts.length) {
+						groupStarts = Arrays.copyOf(groupStarts, groups * 2);
+						groupPostings = Arrays.copyOf(groupPostings, groups * 2);
+					}
+					groupStarts[groups] = e;
+					groupPostings[groups] = postingStarts[lemma];
+					groups++;
+					previousLemma = lemma;
+				}
+				entryPeople[e] = owners[entry];
+				entryCounts[e] = counts[entry];
+			}
+			groupStarts[groups] = entries;
+		}
+
+		private int groupLemma(int g) {
+			return (int) (sortKeys[groupStarts[g]] >>> 32);
+		}
+
+		/**
+		 * @return the (up to three) most likely professions of the i-th
+		 *         person, after {@link #score()}
+		 */
+		public TopProfessions getTopProfessions(int i) {
+			TopProfessions topProf = new TopProfessions();
+			for (int j = i * TOP; j < i * TOP + topCounts[i]; j++)
+				topProf.check(professions[topProfessions[j]], topScores[j]);
+			return topProf;
+		}
+
+		/**
+		 * Empties the batch for the next people.
+		 */
+		public void clear() {
+			size = 0;
+		}
+	}
+}
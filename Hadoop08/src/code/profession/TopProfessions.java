@@ -53,6 +53,20 @@ public class TopProfessions {
 			professions.removeLast();
 	}
 
+	/**
+	 * Same as calling {@link #check(String, double)} for each profession in
+	 * order, but only creates entries for the ones that are added.
+	 * 
+	 * @param scores
+	 *            the probabilities of the <code>professions</code> by index
+	 */
+	public void checkAll(String[] professions, double[] scores) {
+		for (int i = 0; i < professions.length; i++)
+			if (this.professions.size() < MAX_PROFESSIONS_COUNT
+					|| scores[i] > this.professions.getLast().getValue())
+				check(professions[i], scores[i]);
+	}
+
 	/**
 	 * Get up to three most likely professions. If {@link #check(StringDouble)}
 	 * was called at least three times this guaranteed returns three
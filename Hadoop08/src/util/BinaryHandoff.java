@@ -0,0 +1,67 @@
+package util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.io.SequenceFile.CompressionType;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.lib.input.SequenceFileInputFormat;
+import org.apache.hadoop.mapreduce.lib.output.FileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.output.SequenceFileOutputFormat;
+
+/**
+ * The binary intermediate mode between the jobs: instead of " : " separated
+ * text, one job writes block-compressed SequenceFiles of its typed Writables
+ * (e.g. title and {@link StringIntegerList}) and the next job reads them back
+ * without any text parsing. Requested by an additional {@value #FLAG}
+ * parameter on the commandline.
+ * <p>
+ * The codec is Hadoop's default unless
+ * <code>mapreduce.output.fileoutputformat.compress.codec</code> is set.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class BinaryHandoff {
+
+	public static final String FLAG = "-binary";
+
+	/**
+	 * @return true if <code>args</code> contain {@value #FLAG}
+	 */
+	public static boolean isRequested(String[] args) {
+		for (String arg : args)
+			if (arg.equals(FLAG))
+				return true;
+		return false;
+	}
+
+	/**
+	 * @return <code>args</code> without {@value #FLAG}, i.e. the positional
+	 *         parameters
+	 */
+	public static String[] removeFlag(String[] args) {
+		List<String> params = new ArrayList<>(args.length);
+		for (String arg : args)
+			if (!arg.equals(FLAG))
+				params.add(arg);
+		return params.toArray(new String[params.size()]);
+	}
+
+	/**
+	 * Lets the job write a block-compressed SequenceFile of its output key
+	 * and value classes.
+	 */
+	public static void setOutput(Job job) {
+		job.setOutputFormatClass(SequenceFileOutputFormat.class);
+		FileOutputFormat.setCompressOutput(job, true);
+		SequenceFileOutputFormat.setOutputCompressionType(job, CompressionType.BLOCK);
+	}
+
+	/**
+	 * Lets the job read the output of a job configured by
+	 * {@link #setOutput(Job)}.
+	 */
+	public static void setInput(Job job) {
+		job.setInputFormatClass(SequenceFileInputFormat.class);
+	}
+}
@@ -0,0 +1,89 @@
+package util;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Maps article titles to dense int document ids and back. The ids are assigned
+ * by <code>code.inverted.CompressedInvertedIndexMapred</code> in order of the
+ * titles, so sorting postings by document id sorts them by title as well.
+ * <p>
+ * Each line of a document table file has the format:
+ *
+ * <pre>
+ * {@code id : title}
+ * </pre>
+ *
+ * Not thread-safe, the lookups reuse a buffer.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class DocumentTable {
+
+	public static final String KEY_VALUE_SEPARATOR = " : ";
+
+	private final String[] titles;
+	// UTF-8 bytes of the titles to their ids
+	private final Map<Text, Integer> ids;
+	private final Text lookup = new Text();
+
+	public DocumentTable(List<String> lines) {
+		titles = new String[lines.size()];
+		ids = new HashMap<>(lines.size() * 2);
+
+		for (String line : lines) {
+			int separator = line.indexOf(KEY_VALUE_SEPARATOR);
+			if (separator < 0)
+				throw new IllegalArgumentException("Not a document table line: " + line);
+
+			int id = Integer.parseInt(line.substring(0, separator));
+			String title = line.substring(separator + KEY_VALUE_SEPARATOR.length());
+
+			titles[id] = title;
+			ids.put(new Text(title), id);
+		}
+	}
+
+	/**
+	 * Reads the document table, e.g. from the local cache copy.
+	 */
+	public static DocumentTable read(Path path, Configuration config) throws IOException {
+		return new DocumentTable(HDFSUtils.readLines(path, config));
+	}
+
+	/**
+	 * @return the id of the article or -1 if it is not in the table
+	 */
+	public int getId(String title) {
+		lookup.set(title);
+		return getId(lookup);
+	}
+
+	/**
+	 * Same as {@link #getId(String)} for the UTF-8 bytes of the title, e.g.
+	 * from a {@link StringIntegerCursor}, without decoding them.
+	 */
+	public int getId(byte[] utf8, int start, int length) {
+		lookup.set(utf8, start, length);
+		return getId(lookup);
+	}
+
+	private int getId(Text title) {
+		Integer id = ids.get(title);
+		return id == null ? -1 : id;
+	}
+
+	public String getTitle(int id) {
+		return titles[id];
+	}
+
+	public int size() {
+		return titles.length;
+	}
+}
@@ -0,0 +1,139 @@
+package util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * The dictionary encoded counterpart of {@link StringIntegerList}: a list of
+ * (lemma id, count) pairs held in two primitive arrays. Ids and counts are
+ * written as VInts, so the ids of the most frequent lemmas (see
+ * {@link LemmaDictionary}) take up a single byte.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class IdCountList implements Writable {
+
+	private int[] ids;
+	private int[] counts;
+	private int size;
+
+	public IdCountList() {
+		this(16);
+	}
+
+	public IdCountList(int capacity) {
+		ids = new int[capacity];
+		counts = new int[capacity];
+	}
+
+	public void add(int id, int count) {
+		if (size == ids.length) {
+			ids = Arrays.copyOf(ids, size * 2 + 1);
+			counts = Arrays.copyOf(counts, size * 2 + 1);
+		}
+		ids[size] = id;
+		counts[size] = count;
+		size++;
+	}
+
+	public void clear() {
+		size = 0;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getId(int i) {
+		return ids[i];
+	}
+
+	public int getCount(int i) {
+		return counts[i];
+	}
+
+	/**
+	 * Sorts the pairs by ascending id, e.g. to delta encode the ids.
+	 */
+	public void sortById() {
+		long[] pairs = new long[size];
+		for (int i = 0; i < size; i++)
+			pairs[i] = ((long) ids[i] << 32) | (counts[i] & 0xFFFFFFFFL);
+
+		Arrays.sort(pairs);
+
+		for (int i = 0; i < size; i++) {
+			ids[i] = (int) (pairs[i] >>> 32);
+			counts[i] = (int) pairs[i];
+		}
+	}
+
+	/**
+	 * Translates the document ids back to article titles, for the human
+	 * readable output.
+	 *
+	 * @param documents
+	 *            the table the ids were assigned by
+	 */
+	public StringIntegerList toStringIntegerList(DocumentTable documents) {
+		List<StringInteger> indices = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			indices.add(new StringInteger(documents.getTitle(ids[i]), counts[i]));
+		return new StringIntegerList(indices);
+	}
+
+	/**
+	 * Translates the ids back to lemmas, for the human readable output.
+	 *
+	 * @param dictionary
+	 *            the dictionary the ids were assigned by
+	 */
+	public StringIntegerList toStringIntegerList(LemmaDictionary dictionary) {
+		List<StringInteger> indices = new ArrayList<>(size);
+		for (int i = 0; i < size; i++)
+			indices.add(new StringInteger(dictionary.getLemma(ids[i]), counts[i]));
+		return new StringIntegerList(indices);
+	}
+
+	@Override
+	public void readFields(DataInput arg0) throws IOException {
+		int newSize = WritableUtils.readVInt(arg0);
+		if (newSize > ids.length) {
+			ids = new int[newSize];
+			counts = new int[newSize];
+		}
+
+		for (int i = 0; i < newSize; i++) {
+			ids[i] = WritableUtils.readVInt(arg0);
+			counts[i] = WritableUtils.readVInt(arg0);
+		}
+		size = newSize;
+	}
+
+	@Override
+	public void write(DataOutput arg0) throws IOException {
+		WritableUtils.writeVInt(arg0, size);
+		for (int i = 0; i < size; i++) {
+			WritableUtils.writeVInt(arg0, ids[i]);
+			WritableUtils.writeVInt(arg0, counts[i]);
+		}
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < size; i++) {
+			if (i > 0)
+				sb.append(",");
+			sb.append("<").append(ids[i]).append(",").append(counts[i]).append(">");
+		}
+		return sb.toString();
+	}
+}
@@ -16,6 +16,11 @@
 
 package util;
 
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.lib.input.FileInputFormat;
 
 import edu.umd.cloud9.collection.Indexable;
@@ -27,4 +32,15 @@ import edu.umd.cloud9.collection.Indexable;
 public abstract class IndexableFileInputFormat<K, V extends Indexable> extends
 		FileInputFormat<K, V> {
 
+	/**
+	 * Compressed files can only be split by a
+	 * {@link SplittableCompressionCodec}, otherwise each split would have to
+	 * decompress the whole file.
+	 */
+	@Override
+	protected boolean isSplitable(JobContext context, Path file) {
+		CompressionCodec codec = new CompressionCodecFactory(context.getConfiguration())
+				.getCodec(file);
+		return codec == null || codec instanceof SplittableCompressionCodec;
+	}
 }
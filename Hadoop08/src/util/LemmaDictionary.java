@@ -0,0 +1,91 @@
+package util;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+
+/**
+ * Maps lemmas to dense int ids and back. The ids are assigned by
+ * <code>code.lemma.LemmaDictionaryMapred</code> in order of descending corpus
+ * frequency, i.e. id 0 is the most frequent lemma.
+ * <p>
+ * Each line of a dictionary file has the format:
+ *
+ * <pre>
+ * {@code id : lemma,frequency}
+ * </pre>
+ *
+ * Not thread-safe, the lookups reuse a buffer.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class LemmaDictionary {
+
+	public static final String KEY_VALUE_SEPARATOR = " : ";
+
+	private final String[] lemmas;
+	// UTF-8 bytes of the lemmas to their ids
+	private final Map<Text, Integer> ids;
+	private final Text lookup = new Text();
+
+	public LemmaDictionary(List<String> lines) {
+		lemmas = new String[lines.size()];
+		ids = new HashMap<>(lines.size() * 2);
+
+		for (String line : lines) {
+			int separator = line.indexOf(KEY_VALUE_SEPARATOR);
+			int comma = line.lastIndexOf(',');
+			if (separator < 0 || comma < separator)
+				throw new IllegalArgumentException("Not a dictionary line: " + line);
+
+			int id = Integer.parseInt(line.substring(0, separator));
+			String lemma = line.substring(separator + KEY_VALUE_SEPARATOR.length(), comma);
+
+			lemmas[id] = lemma;
+			ids.put(new Text(lemma), id);
+		}
+	}
+
+	/**
+	 * Reads the dictionary, e.g. from the local cache copy.
+	 */
+	public static LemmaDictionary read(Path path, Configuration config) throws IOException {
+		return new LemmaDictionary(HDFSUtils.readLines(path, config));
+	}
+
+	/**
+	 * @return the id of <code>lemma</code> or -1 if it is not in the
+	 *         dictionary
+	 */
+	public int getId(String lemma) {
+		lookup.set(lemma);
+		return getId(lookup);
+	}
+
+	/**
+	 * Same as {@link #getId(String)} for the UTF-8 bytes of the lemma, e.g.
+	 * from a {@link StringIntegerCursor}, without decoding them.
+	 */
+	public int getId(byte[] utf8, int start, int length) {
+		lookup.set(utf8, start, length);
+		return getId(lookup);
+	}
+
+	private int getId(Text lemma) {
+		Integer id = ids.get(lemma);
+		return id == null ? -1 : id;
+	}
+
+	public String getLemma(int id) {
+		return lemmas[id];
+	}
+
+	public int size() {
+		return lemmas.length;
+	}
+}
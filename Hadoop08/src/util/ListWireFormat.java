@@ -0,0 +1,64 @@
+package util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.IOException;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Helpers shared by the binary encodings of {@link StringIntegerList} and
+ * {@link StringDoubleList}.
+ * <p>
+ * A binary record starts with {@link #BINARY_MARKER}, followed by the number
+ * of entries as a VInt and the entries themselves. Records written by earlier
+ * versions of these classes are a GZIP'ed <code>&lt;string,number&gt;,...</code>
+ * string prefixed by its (non-negative) length as a four byte int. Their first
+ * byte therefore never has its highest bit set, which is how
+ * {@link #readLegacyString(DataInput, byte)} can take over old data.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public final class ListWireFormat {
+
+	/**
+	 * First byte of every binary encoded list.
+	 */
+	public static final byte BINARY_MARKER = (byte) 0x80;
+
+	private ListWireFormat() {
+	}
+
+	/**
+	 * Reads the rest of a record in the old, GZIP'ed string format.
+	 *
+	 * @param in
+	 *            positioned right after <code>firstByte</code>
+	 * @param firstByte
+	 *            the already consumed first byte of the record
+	 * @return the uncompressed <code>&lt;string,number&gt;,...</code> string
+	 * @throws IOException
+	 */
+	public static String readLegacyString(DataInput in, byte firstByte) throws IOException {
+		int length = (firstByte & 0xFF) << 24;
+		length |= in.readUnsignedByte() << 16;
+		length |= in.readUnsignedByte() << 8;
+		length |= in.readUnsignedByte();
+
+		if (length < 0)
+			throw new IOException("Corrupt list record, length: " + length);
+
+		byte[] compressed = new byte[length];
+		in.readFully(compressed);
+
+		GZIPInputStream gzi = new GZIPInputStream(new ByteArrayInputStream(compressed));
+		ByteArrayOutputStream uncompressed = new ByteArrayOutputStream(length * 4);
+		byte[] chunk = new byte[4096];
+		int read;
+		while ((read = gzi.read(chunk)) != -1)
+			uncompressed.write(chunk, 0, read);
+		gzi.close();
+
+		return uncompressed.toString("UTF-8");
+	}
+}
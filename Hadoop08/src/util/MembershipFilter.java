@@ -0,0 +1,412 @@
+package util;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.Text;
+
+/**
+ * A set of strings, e.g. the people list, in a binary side file which the
+ * tasks memory-map instead of each loading the list into a HashSet. A Bloom
+ * filter rejects most strings which are not in the set, the others are
+ * looked up in the sorted, front-coded UTF-8 bytes of the strings. Lookups
+ * work on UTF-8 bytes and allocate nothing.
+ * <p>
+ * The side file is built once from a text file with one string per line by
+ * {@link #buildSideFile(Path, Configuration)}. Instances are immutable and
+ * thread-safe.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class MembershipFilter {
+
+	/** appended to the name of the text file for the side file's name */
+	public static final String SUFFIX = ".members";
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// "MEM1"
+	private static final int MAGIC = 0x4D454D31;
+	// magic, size, Bloom filter words, hashes, blocks, padded to a cache
+	// line
+	private static final int HEADER_BYTES = 64;
+
+	// about 1% false positives; all bits of a string are in one block of 512
+	// bits, a cache line, so rejecting it costs one cache miss
+	private static final int BITS_PER_STRING = 10;
+	private static final int HASHES = 7;
+	private static final int WORDS_PER_BLOCK = 8;
+
+	// strings per block of the front coding, each block starts with a whole
+	// string to search for
+	private static final int BLOCK_SIZE = 16;
+
+	private static final Comparator<byte[]> UNSIGNED = new Comparator<byte[]>() {
+		@Override
+		public int compare(byte[] a, byte[] b) {
+			return MembershipFilter.compare(a, 0, a.length, b, 0, b.length);
+		}
+	};
+
+	private final ByteBuffer data;
+	private final int size;
+	private final int bloomBlocks;
+	private final int hashes;
+	private final int blocks;
+	private final int blockOffsetsStart;
+	private final int stringsStart;
+
+	/**
+	 * @param data
+	 *            the side file from position 0
+	 */
+	private MembershipFilter(ByteBuffer data) throws IOException {
+		this.data = data;
+		if (data.limit() < HEADER_BYTES || data.getInt(0) != MAGIC)
+			throw new IOException("not a membership filter file");
+
+		size = data.getInt(4);
+		int bloomWords = data.getInt(8);
+		hashes = data.getInt(12);
+		blocks = data.getInt(16);
+
+		bloomBlocks = bloomWords / WORDS_PER_BLOCK;
+		blockOffsetsStart = HEADER_BYTES + 8 * bloomWords;
+		stringsStart = blockOffsetsStart + 4 * blocks;
+	}
+
+	/**
+	 * Builds the filter in memory.
+	 */
+	public static MembershipFilter build(Collection<String> strings) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		write(strings, out);
+		return new MembershipFilter(ByteBuffer.wrap(out.toByteArray()));
+	}
+
+	/**
+	 * Writes the side file <code>strings</code> + {@value #SUFFIX} next to
+	 * the text file with one string per line, unless it is newer than that.
+	 *
+	 * @return the side file
+	 */
+	public static Path buildSideFile(Path strings, Configuration conf) throws IOException {
+		Path sideFile = strings.suffix(SUFFIX);
+		FileSystem fs = strings.getFileSystem(conf);
+
+		if (fs.exists(sideFile)
+				&& fs.getFileStatus(sideFile).getModificationTime() >= fs.getFileStatus(strings)
+						.getModificationTime())
+			return sideFile;
+
+		OutputStream out = fs.create(sideFile, true);
+		try {
+			write(HDFSUtils.readLines(strings, conf), out);
+		} finally {
+			out.close();
+		}
+		return sideFile;
+	}
+
+	/**
+	 * Maps the side file if it is local, otherwise reads it into memory.
+	 * Tasks find the local copy of a cache file by its name in their working
+	 * directory, so the path may be the one of the cache file.
+	 */
+	public static MembershipFilter open(Path path, Configuration conf) throws IOException {
+		java.nio.file.Path local = Paths.get(path.getName());
+		if (!Files.isRegularFile(local)) {
+			FileSystem fs = path.getFileSystem(conf);
+			if (!"file".equals(fs.getUri().getScheme()))
+				return read(fs, path);
+			local = Paths.get(fs.makeQualified(path).toUri());
+		}
+		return map(local);
+	}
+
+	public static MembershipFilter map(java.nio.file.Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return new MembershipFilter(channel.map(FileChannel.MapMode.READ_ONLY, 0,
+					channel.size()));
+		}
+	}
+
+	private static MembershipFilter read(FileSystem fs, Path path) throws IOException {
+		FileStatus status = fs.getFileStatus(path);
+		byte[] bytes = new byte[(int) status.getLen()];
+		FSDataInputStream in = fs.open(path);
+		try {
+			in.readFully(0, bytes);
+		} finally {
+			in.close();
+		}
+		return new MembershipFilter(ByteBuffer.wrap(bytes));
+	}
+
+	/**
+	 * Writes the side file: the header, the Bloom filter, the offsets of the
+	 * blocks and the strings sorted by their UTF-8 bytes. The first string of
+	 * a block is written whole, the others as the length of the prefix they
+	 * share with the previous one followed by the rest.
+	 */
+	public static void write(Collection<String> strings, OutputStream out) throws IOException {
+		byte[][] sorted = new byte[strings.size()][];
+		int n = 0;
+		for (String string : strings)
+			sorted[n++] = string.getBytes(UTF8);
+		Arrays.sort(sorted, UNSIGNED);
+
+		// without duplicates
+		int size = 0;
+		for (int i = 0; i < n; i++)
+			if (size == 0 || UNSIGNED.compare(sorted[size - 1], sorted[i]) != 0)
+				sorted[size++] = sorted[i];
+
+		int bloomBlocks = (int) Math.max(1, ((long) size * BITS_PER_STRING + 511) / 512);
+		int bloomWords = bloomBlocks * WORDS_PER_BLOCK;
+		long[] bloom = new long[bloomWords];
+		for (int i = 0; i < size; i++) {
+			long hash = hash(sorted[i], 0, sorted[i].length);
+			int first = block(hash, bloomBlocks) * WORDS_PER_BLOCK;
+			long bits = mix(hash);
+			for (int k = 0; k < HASHES; k++) {
+				int bit = bit(bits, k);
+				bloom[first + (bit >>> 6)] |= 1L << bit;
+			}
+		}
+
+		int blocks = (size + BLOCK_SIZE - 1) / BLOCK_SIZE;
+		int[] blockOffsets = new int[blocks];
+		ByteArrayOutputStream coded = new ByteArrayOutputStream();
+		for (int i = 0; i < size; i++) {
+			byte[] string = sorted[i];
+			int shared = 0;
+			if (i % BLOCK_SIZE == 0) {
+				blockOffsets[i / BLOCK_SIZE] = coded.size();
+			} else {
+				byte[] previous = sorted[i - 1];
+				while (shared < previous.length && shared < string.length
+						&& previous[shared] == string[shared])
+					shared++;
+				writeVInt(coded, shared);
+			}
+			writeVInt(coded, string.length - shared);
+			coded.write(string, shared, string.length - shared);
+		}
+
+		DataOutputStream dataOut = new DataOutputStream(out);
+		dataOut.writeInt(MAGIC);
+		dataOut.writeInt(size);
+		dataOut.writeInt(bloomWords);
+		dataOut.writeInt(HASHES);
+		dataOut.writeInt(blocks);
+		dataOut.write(new byte[HEADER_BYTES - 5 * 4]);
+		for (long word : bloom)
+			dataOut.writeLong(word);
+		for (int offset : blockOffsets)
+			dataOut.writeInt(offset);
+		coded.writeTo(dataOut);
+		dataOut.flush();
+	}
+
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return the bytes of the side file
+	 */
+	public int getBytes() {
+		return data.limit();
+	}
+
+	public boolean contains(String string) {
+		byte[] utf8 = string.getBytes(UTF8);
+		return contains(utf8, 0, utf8.length);
+	}
+
+	public boolean contains(Text text) {
+		return contains(text.getBytes(), 0, text.getLength());
+	}
+
+	public boolean contains(byte[] utf8, int offset, int length) {
+		if (size == 0 || !mightContain(utf8, offset, length))
+			return false;
+
+		// the last block whose first string is not greater
+		int low = 0;
+		int high = blocks - 1;
+		while (low < high) {
+			int mid = (low + high + 1) >>> 1;
+			int pos = stringsStart + data.getInt(blockOffsetsStart + 4 * mid);
+			long lengthAndPos = readVInt(pos);
+			int firstLength = (int) (lengthAndPos >>> 32);
+			int firstStart = (int) lengthAndPos;
+			if (compare(firstStart, firstLength, utf8, offset, length) <= 0)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return containsInBlock(low, utf8, offset, length);
+	}
+
+	/**
+	 * @return false if the string is not in the set, true if it probably is
+	 */
+	boolean mightContain(byte[] utf8, int offset, int length) {
+		long hash = hash(utf8, offset, length);
+		int first = HEADER_BYTES + 8 * WORDS_PER_BLOCK * block(hash, bloomBlocks);
+		long bits = mix(hash);
+		for (int k = 0; k < hashes; k++) {
+			int bit = bit(bits, k);
+			long word = data.getLong(first + 8 * (bit >>> 6));
+			if ((word & (1L << bit)) == 0)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Walks through the block's strings in order while they are smaller than
+	 * the one looked for, keeping the length of the prefix the current one
+	 * shares with it. A string sharing a longer prefix with the previous one
+	 * is smaller as well, one sharing a shorter prefix is greater, so only
+	 * the rest of strings sharing exactly that prefix is compared.
+	 */
+	private boolean containsInBlock(int block, byte[] utf8, int offset, int length) {
+		int pos = stringsStart + data.getInt(blockOffsetsStart + 4 * block);
+		int count = Math.min(BLOCK_SIZE, size - block * BLOCK_SIZE);
+
+		// the empty string before the first one is smaller and shares nothing
+		int matched = 0;
+		for (int i = 0; i < count; i++) {
+			int shared = 0;
+			if (i > 0) {
+				long sharedAndPos = readVInt(pos);
+				shared = (int) (sharedAndPos >>> 32);
+				pos = (int) sharedAndPos;
+			}
+			long restAndPos = readVInt(pos);
+			int rest = (int) (restAndPos >>> 32);
+			pos = (int) restAndPos;
+
+			if (shared < matched)
+				return false;
+			if (shared == matched) {
+				int k = 0;
+				while (k < rest && matched < length
+						&& data.get(pos + k) == utf8[offset + matched]) {
+					k++;
+					matched++;
+				}
+				if (k == rest) {
+					if (matched == length)
+						return true;
+					// a prefix of the one looked for
+				} else if (matched == length
+						|| (data.get(pos + k) & 0xFF) > (utf8[offset + matched] & 0xFF)) {
+					return false;
+				}
+			}
+			pos += rest;
+		}
+		return false;
+	}
+
+	private int compare(int start, int length, byte[] utf8, int offset, int otherLength) {
+		int common = Math.min(length, otherLength);
+		for (int i = 0; i < common; i++) {
+			int diff = (data.get(start + i) & 0xFF) - (utf8[offset + i] & 0xFF);
+			if (diff != 0)
+				return diff;
+		}
+		return length - otherLength;
+	}
+
+	private static int compare(byte[] a, int aOffset, int aLength, byte[] b, int bOffset,
+			int bLength) {
+		int common = Math.min(aLength, bLength);
+		for (int i = 0; i < common; i++) {
+			int diff = (a[aOffset + i] & 0xFF) - (b[bOffset + i] & 0xFF);
+			if (diff != 0)
+				return diff;
+		}
+		return aLength - bLength;
+	}
+
+	/**
+	 * 64-bit FNV-1a, mixed by the finalizer of MurmurHash3 so short strings
+	 * spread over all bits.
+	 */
+	static long hash(byte[] utf8, int offset, int length) {
+		long h = 0xcbf29ce484222325L;
+		for (int i = offset; i < offset + length; i++) {
+			h ^= utf8[i] & 0xFF;
+			h *= 0x100000001b3L;
+		}
+		return mix(h);
+	}
+
+	/**
+	 * The finalizer of MurmurHash3.
+	 */
+	private static long mix(long h) {
+		h ^= h >>> 33;
+		h *= 0xff51afd7ed558ccdL;
+		h ^= h >>> 33;
+		h *= 0xc4ceb9fe1a85ec53L;
+		h ^= h >>> 33;
+		return h;
+	}
+
+	private static int block(long hash, int blocks) {
+		return (int) ((hash & Long.MAX_VALUE) % blocks);
+	}
+
+	/**
+	 * @return the k-th of the 9 bit positions in a block of 512 bits
+	 */
+	private static int bit(long bits, int k) {
+		return (int) (bits >>> (9 * k)) & 511;
+	}
+
+	/**
+	 * @return the value in the upper and the position after it in the lower
+	 *         32 bits
+	 */
+	private long readVInt(int pos) {
+		int value = 0;
+		int shift = 0;
+		byte b;
+		do {
+			b = data.get(pos++);
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return ((long) value << 32) | pos;
+	}
+
+	private static void writeVInt(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7F) != 0) {
+			out.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+}
@@ -0,0 +1,291 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+/**
+ * A split of a multistream Wikipedia dump (
+ * <code>*-pages-articles-multistream.xml.bz2</code>) which consists of whole
+ * bzip2 streams. Each stream holds complete pages, so all pages in the split
+ * belong to it and it can be decompressed on its own.
+ * <p>
+ * The stream offsets are the first field of the lines of the companion index
+ * (<code>*-multistream-index.txt.bz2</code>), e.g.
+ * <code>597:10:AccessibleComputing</code>. The first stream, starting at 0,
+ * only holds the site info and is not listed, neither is the last one with
+ * the closing <code>&lt;/mediawiki&gt;</code> tag.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class MultistreamSplit extends FileSplit {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// "BZh" and the block size, followed by the magic of the first block or,
+	// if the stream is empty, of the stream end
+	private static final int STREAM_HEADER_LENGTH = 4;
+	private static final byte[] BLOCK_MAGIC = { 0x31, 0x41, 0x59, 0x26, 0x53, 0x59 };
+	private static final byte[] END_MAGIC = { 0x17, 0x72, 0x45, 0x38, 0x50, (byte) 0x90 };
+
+	// the offsets of the streams in the split, the first one is its start
+	private long[] streamStarts;
+
+	public MultistreamSplit() {
+	}
+
+	public MultistreamSplit(Path file, long[] streamStarts, long end, String[] hosts) {
+		super(file, streamStarts[0], end - streamStarts[0], hosts);
+		this.streamStarts = streamStarts;
+	}
+
+	public long[] getStreamStarts() {
+		return streamStarts;
+	}
+
+	/**
+	 * Opens the streams of this split for decompression, one after the
+	 * other. The codec has to be created for each stream, Hadoop's bzip2
+	 * codec does not read concatenated streams.
+	 * 
+	 * @param fileIn
+	 *            the dump
+	 */
+	public InputStream open(FSDataInputStream fileIn, CompressionCodec codec,
+			Decompressor decompressor) {
+		return new StreamsInputStream(fileIn, codec, decompressor);
+	}
+
+	/**
+	 * @return the distinct stream offsets listed in the index, ascending
+	 */
+	public static long[] readStreamOffsets(Path index, Configuration conf) throws IOException {
+		FileSystem fs = index.getFileSystem(conf);
+		InputStream in = fs.open(index);
+		CompressionCodec codec = new CompressionCodecFactory(conf).getCodec(index);
+		if (codec != null)
+			in = codec.createInputStream(in);
+		return readStreamOffsets(in);
+	}
+
+	/**
+	 * @param index
+	 *            the decompressed index, closed when done
+	 */
+	public static long[] readStreamOffsets(InputStream index) throws IOException {
+		long[] offsets = new long[1024];
+		int count = 0;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(index, UTF8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				int colon = line.indexOf(':');
+				if (colon < 0)
+					continue;
+
+				long offset = Long.parseLong(line.substring(0, colon));
+				// the pages of a stream are listed one after the other
+				if (count > 0 && offsets[count - 1] == offset)
+					continue;
+
+				if (count == offsets.length)
+					offsets = Arrays.copyOf(offsets, count * 2);
+				offsets[count++] = offset;
+			}
+		}
+
+		offsets = Arrays.copyOf(offsets, count);
+		Arrays.sort(offsets);
+		return offsets;
+	}
+
+	/**
+	 * Moves the boundaries of the given splits of the dump to the next stream
+	 * offset, dropping splits in which no stream starts.
+	 * 
+	 * @param splits
+	 *            the {@link FileSplit}s covering the dump
+	 */
+	public static List<InputSplit> align(List<InputSplit> splits, long[] streamOffsets)
+			throws IOException {
+		Map<Path, Long> fileEnds = new HashMap<>();
+		for (InputSplit split : splits) {
+			FileSplit fileSplit = (FileSplit) split;
+			long splitEnd = fileSplit.getStart() + fileSplit.getLength();
+			Long fileEnd = fileEnds.get(fileSplit.getPath());
+			if (fileEnd == null || fileEnd < splitEnd)
+				fileEnds.put(fileSplit.getPath(), splitEnd);
+		}
+
+		// the first stream is not in the index
+		long[] offsets = new long[streamOffsets.length + 1];
+		System.arraycopy(streamOffsets, 0, offsets, 1, streamOffsets.length);
+
+		List<InputSplit> aligned = new ArrayList<>();
+		for (InputSplit split : splits) {
+			FileSplit fileSplit = (FileSplit) split;
+			long fileEnd = fileEnds.get(fileSplit.getPath());
+			if (offsets[offsets.length - 1] >= fileEnd)
+				throw new IOException("the multistream index does not belong to "
+						+ fileSplit.getPath());
+
+			int first = nextStream(offsets, fileSplit.getStart());
+			int last = nextStream(offsets, fileSplit.getStart() + fileSplit.getLength());
+			if (last > first) {
+				long end = last < offsets.length ? offsets[last] : fileEnd;
+				aligned.add(new MultistreamSplit(fileSplit.getPath(), Arrays.copyOfRange(
+						offsets, first, last), end, fileSplit.getLocations()));
+			}
+		}
+		return aligned;
+	}
+
+	/**
+	 * @return the index of the first stream offset at or after
+	 *         <code>pos</code>, <code>offsets.length</code> if there is none
+	 */
+	private static int nextStream(long[] offsets, long pos) {
+		int i = Arrays.binarySearch(offsets, pos);
+		return i < 0 ? -i - 1 : i;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		super.write(out);
+		WritableUtils.writeVInt(out, streamStarts.length);
+		long previous = 0;
+		for (long streamStart : streamStarts) {
+			WritableUtils.writeVLong(out, streamStart - previous);
+			previous = streamStart;
+		}
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		super.readFields(in);
+		streamStarts = new long[WritableUtils.readVInt(in)];
+		long previous = 0;
+		for (int i = 0; i < streamStarts.length; i++) {
+			previous += WritableUtils.readVLong(in);
+			streamStarts[i] = previous;
+		}
+	}
+
+	/**
+	 * Decompresses the streams of the split one after the other. The bytes
+	 * from one stream offset to the next are read at once, since they may
+	 * hold further streams which are not in the index. The codec has to know
+	 * where each of them ends, it fails on the data following a stream.
+	 */
+	private class StreamsInputStream extends InputStream {
+
+		private final FSDataInputStream fileIn;
+		private final CompressionCodec codec;
+		private final Decompressor decompressor;
+
+		private int range = -1;
+		private byte[] compressed;
+		private int streamEnd;
+		private InputStream in;
+
+		StreamsInputStream(FSDataInputStream fileIn, CompressionCodec codec,
+				Decompressor decompressor) {
+			this.fileIn = fileIn;
+			this.codec = codec;
+			this.decompressor = decompressor;
+		}
+
+		@Override
+		public int read() throws IOException {
+			byte[] b = new byte[1];
+			return read(b, 0, 1) < 0 ? -1 : b[0] & 0xFF;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) throws IOException {
+			while (true) {
+				if (in == null && !nextStream())
+					return -1;
+
+				int read = in.read(b, off, len);
+				if (read >= 0)
+					return read;
+				in = null;
+			}
+		}
+
+		private boolean nextStream() throws IOException {
+			if (compressed == null || streamEnd == compressed.length) {
+				if (++range == streamStarts.length)
+					return false;
+
+				long start = streamStarts[range];
+				long end = range + 1 < streamStarts.length ? streamStarts[range + 1] : getStart()
+						+ getLength();
+				compressed = new byte[(int) (end - start)];
+				fileIn.seek(start);
+				fileIn.readFully(compressed);
+				streamEnd = 0;
+			}
+
+			int streamStart = streamEnd;
+			streamEnd = findStreamStart(compressed, streamStart + STREAM_HEADER_LENGTH);
+
+			if (decompressor != null)
+				decompressor.reset();
+			in = codec.createInputStream(new ByteArrayInputStream(compressed, streamStart,
+					streamEnd - streamStart), decompressor);
+			return true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			fileIn.close();
+		}
+	}
+
+	/**
+	 * @return the position of the first stream header from <code>from</code>
+	 *         on, the length of the bytes if there is none
+	 */
+	private static int findStreamStart(byte[] bytes, int from) {
+		int last = bytes.length - STREAM_HEADER_LENGTH - BLOCK_MAGIC.length;
+		for (int i = from; i <= last; i++) {
+			if (bytes[i] != 'B' || bytes[i + 1] != 'Z' || bytes[i + 2] != 'h' || bytes[i + 3] < '1'
+					|| bytes[i + 3] > '9')
+				continue;
+
+			int magic = i + STREAM_HEADER_LENGTH;
+			if (startsWith(bytes, magic, BLOCK_MAGIC) || startsWith(bytes, magic, END_MAGIC))
+				return i;
+		}
+		return bytes.length;
+	}
+
+	private static boolean startsWith(byte[] bytes, int start, byte[] prefix) {
+		for (int i = 0; i < prefix.length; i++)
+			if (bytes[start + i] != prefix[i])
+				return false;
+		return true;
+	}
+}
@@ -0,0 +1,154 @@
+package util;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.FileUtil;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PathFilter;
+import org.apache.hadoop.io.MapFile;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.lib.output.MapFileOutputFormat;
+import org.apache.hadoop.mapreduce.lib.partition.HashPartitioner;
+
+/**
+ * The page-offset index of uncompressed Wikipedia dumps, written once by
+ * <code>code.articles.PageIndexMapred</code>. It holds MapFiles of title to
+ * {@link PageLocation}, sorted by title, and in {@value #BOUNDARIES_DIR} text
+ * files with the lines
+ *
+ * <pre>
+ * {@code file	offset}
+ * </pre>
+ *
+ * of page starts about every {@value #BOUNDARY_SIZE_KEY} bytes of a dump, to
+ * split scans of the whole dump at.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PageIndex implements Closeable {
+
+	public static final String BOUNDARIES_DIR = "_boundaries";
+
+	/** bytes between the page boundaries, default 128 MB */
+	public static final String BOUNDARY_SIZE_KEY = "wikipedia.page.index.boundary";
+	public static final long DEFAULT_BOUNDARY_SIZE = 128L << 20;
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final Comparator<PageLocation> IN_FILE_ORDER = new Comparator<PageLocation>() {
+		@Override
+		public int compare(PageLocation a, PageLocation b) {
+			int cmp = a.getFile().compareTo(b.getFile());
+			return cmp != 0 ? cmp : Long.compare(a.getOffset(), b.getOffset());
+		}
+	};
+
+	private final MapFile.Reader[] readers;
+	private final HashPartitioner<Text, PageLocation> partitioner = new HashPartitioner<>();
+
+	public PageIndex(Path dir, Configuration conf) throws IOException {
+		// MapFileOutputFormat.getReaders would open _SUCCESS and the
+		// boundaries as well
+		FileSystem fs = dir.getFileSystem(conf);
+		Path[] parts = FileUtil.stat2Paths(fs.listStatus(dir, new PathFilter() {
+			@Override
+			public boolean accept(Path path) {
+				String name = path.getName();
+				return !name.startsWith("_") && !name.startsWith(".");
+			}
+		}));
+		// in partition order, as the partitioner picks them
+		Arrays.sort(parts);
+
+		readers = new MapFile.Reader[parts.length];
+		for (int i = 0; i < parts.length; i++)
+			readers[i] = new MapFile.Reader(parts[i], conf);
+	}
+
+	/**
+	 * Looks the titles up in sorted order, so each reader moves forward.
+	 *
+	 * @return the locations of the titles in the index, ordered by file and
+	 *         offset
+	 */
+	public List<PageLocation> lookup(Collection<String> titles) throws IOException {
+		List<String> sorted = new ArrayList<>(titles);
+		Collections.sort(sorted);
+
+		List<PageLocation> locations = new ArrayList<>();
+		Text title = new Text();
+		PageLocation location = new PageLocation();
+		for (String t : sorted) {
+			title.set(t);
+			if (MapFileOutputFormat.getEntry(readers, partitioner, title, location) != null)
+				locations.add(new PageLocation(location.getFile(), location.getOffset(),
+						location.getLength(), location.getNamespace()));
+		}
+
+		Collections.sort(locations, IN_FILE_ORDER);
+		return locations;
+	}
+
+	@Override
+	public void close() throws IOException {
+		for (MapFile.Reader reader : readers)
+			reader.close();
+	}
+
+	/**
+	 * @return the ascending page boundaries of each dump in the index
+	 */
+	public static Map<Path, long[]> readBoundaries(Path dir, Configuration conf)
+			throws IOException {
+		Path boundariesDir = new Path(dir, BOUNDARIES_DIR);
+		FileSystem fs = boundariesDir.getFileSystem(conf);
+
+		Map<Path, List<Long>> lists = new HashMap<>();
+		if (fs.exists(boundariesDir)) {
+			for (FileStatus status : fs.listStatus(boundariesDir)) {
+				if (status.isDirectory() || status.getPath().getName().startsWith("_"))
+					continue;
+
+				try (BufferedReader reader = new BufferedReader(new InputStreamReader(
+						fs.open(status.getPath()), UTF8))) {
+					String line;
+					while ((line = reader.readLine()) != null) {
+						int tab = line.lastIndexOf('\t');
+						Path file = new Path(line.substring(0, tab));
+						List<Long> offsets = lists.get(file);
+						if (offsets == null) {
+							offsets = new ArrayList<>();
+							lists.put(file, offsets);
+						}
+						offsets.add(Long.parseLong(line.substring(tab + 1)));
+					}
+				}
+			}
+		}
+
+		Map<Path, long[]> boundaries = new HashMap<>();
+		for (Map.Entry<Path, List<Long>> entry : lists.entrySet()) {
+			long[] offsets = new long[entry.getValue().size()];
+			for (int i = 0; i < offsets.length; i++)
+				offsets[i] = entry.getValue().get(i);
+			Arrays.sort(offsets);
+			boundaries.put(entry.getKey(), offsets);
+		}
+		return boundaries;
+	}
+}
@@ -0,0 +1,290 @@
+package util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.FileStatus;
+import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.WritableUtils;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+
+/**
+ * Reads uncompressed Wikipedia dumps with the help of their {@link PageIndex}.
+ * Given a title list, only the byte ranges of those pages are read, without
+ * scanning for tags. Otherwise the whole dumps are read in splits which start
+ * exactly at the page boundaries of the index. Dumps missing in the index
+ * are split as by {@link WikipediaPageViewInputFormat}.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PageIndexInputFormat extends WikipediaPageViewInputFormat {
+
+	/** directory of the {@link PageIndex} */
+	public static final String INDEX_KEY = "wikipedia.page.index";
+	/** file with the titles of the pages to read, one per line */
+	public static final String TITLES_KEY = "wikipedia.page.index.titles";
+	/** pages per split when reading the titles, default 10000 */
+	public static final String PAGES_PER_SPLIT_KEY = "wikipedia.page.index.pages.per.split";
+	public static final int DEFAULT_PAGES_PER_SPLIT = 10_000;
+
+	public static void setIndex(Job job, Path index) {
+		job.getConfiguration().set(INDEX_KEY, index.toString());
+	}
+
+	public static void setTitles(Job job, Path titles) {
+		job.getConfiguration().set(TITLES_KEY, titles.toString());
+	}
+
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		Configuration conf = job.getConfiguration();
+		String index = conf.get(INDEX_KEY);
+		if (index == null)
+			return super.getSplits(job);
+
+		String titles = conf.get(TITLES_KEY);
+		if (titles != null) {
+			List<PageLocation> locations;
+			try (PageIndex pageIndex = new PageIndex(new Path(index), conf)) {
+				locations = pageIndex.lookup(new HashSet<>(HDFSUtils.readLines(new Path(titles),
+						conf)));
+			}
+			return group(locations, conf.getInt(PAGES_PER_SPLIT_KEY, DEFAULT_PAGES_PER_SPLIT));
+		}
+
+		Map<Path, long[]> boundaries = PageIndex.readBoundaries(new Path(index), conf);
+		List<InputSplit> splits = new ArrayList<>();
+		for (InputSplit split : super.getSplits(job))
+			if (!boundaries.containsKey(((FileSplit) split).getPath()))
+				splits.add(split);
+
+		for (FileStatus status : listStatus(job)) {
+			long[] fileBoundaries = boundaries.get(status.getPath());
+			if (fileBoundaries == null)
+				continue;
+
+			FileSystem fs = status.getPath().getFileSystem(conf);
+			splits.addAll(alignToPages(status.getPath(), status.getLen(), fileBoundaries,
+					fs.getFileBlockLocations(status, 0, status.getLen())));
+		}
+		return splits;
+	}
+
+	/**
+	 * Groups the page ranges into splits of up to <code>pagesPerSplit</code>
+	 * pages of the same file. The ranges are scattered over the file, so the
+	 * splits have no hosts.
+	 *
+	 * @param locations
+	 *            ordered by file and offset
+	 */
+	public static List<InputSplit> group(List<PageLocation> locations, int pagesPerSplit) {
+		List<InputSplit> splits = new ArrayList<>();
+		int from = 0;
+		while (from < locations.size()) {
+			String file = locations.get(from).getFile();
+			int to = from + 1;
+			while (to < locations.size() && to - from < pagesPerSplit
+					&& locations.get(to).getFile().equals(file))
+				to++;
+
+			long[] offsets = new long[to - from];
+			int[] lengths = new int[to - from];
+			for (int i = from; i < to; i++) {
+				offsets[i - from] = locations.get(i).getOffset();
+				lengths[i - from] = locations.get(i).getLength();
+			}
+			splits.add(new PageRangesSplit(new Path(file), offsets, lengths));
+			from = to;
+		}
+		return splits;
+	}
+
+	/**
+	 * Splits the file from each page boundary to the next one, the last
+	 * split ends at the end of the file.
+	 *
+	 * @param blocks
+	 *            of the file, for the hosts of the splits
+	 */
+	public static List<InputSplit> alignToPages(Path file, long length, long[] boundaries,
+			BlockLocation[] blocks) throws IOException {
+		List<InputSplit> splits = new ArrayList<>();
+		for (int i = 0; i < boundaries.length; i++) {
+			long start = boundaries[i];
+			long end = i + 1 < boundaries.length ? boundaries[i + 1] : length;
+			if (end > start)
+				splits.add(new FileSplit(file, start, end - start, hosts(blocks, start)));
+		}
+		return splits;
+	}
+
+	private static String[] hosts(BlockLocation[] blocks, long offset) throws IOException {
+		for (BlockLocation block : blocks)
+			if (offset >= block.getOffset() && offset < block.getOffset() + block.getLength())
+				return block.getHosts();
+		return new String[0];
+	}
+
+	@Override
+	public RecordReader<LongWritable, WikipediaPageView> createRecordReader(InputSplit split,
+			TaskAttemptContext context) throws IOException, InterruptedException {
+		if (!(split instanceof PageRangesSplit))
+			return super.createRecordReader(split, context);
+
+		context.setStatus(split.toString());
+		return new PageRangesRecordReader();
+	}
+
+	/**
+	 * The byte ranges of pages of one file, ascending. Spans the file from
+	 * the first to the end of the last range.
+	 */
+	public static class PageRangesSplit extends FileSplit {
+
+		private long[] offsets;
+		private int[] lengths;
+
+		public PageRangesSplit() {
+		}
+
+		public PageRangesSplit(Path file, long[] offsets, int[] lengths) {
+			super(file, offsets[0], offsets[offsets.length - 1] + lengths[lengths.length - 1]
+					- offsets[0], new String[0]);
+			this.offsets = offsets;
+			this.lengths = lengths;
+		}
+
+		public long[] getOffsets() {
+			return offsets;
+		}
+
+		public int[] getLengths() {
+			return lengths;
+		}
+
+		@Override
+		public void write(DataOutput out) throws IOException {
+			super.write(out);
+			// ascending, so the gaps are written
+			WritableUtils.writeVInt(out, offsets.length);
+			long previous = 0;
+			for (int i = 0; i < offsets.length; i++) {
+				WritableUtils.writeVLong(out, offsets[i] - previous);
+				WritableUtils.writeVInt(out, lengths[i]);
+				previous = offsets[i];
+			}
+		}
+
+		@Override
+		public void readFields(DataInput in) throws IOException {
+			super.readFields(in);
+			int count = WritableUtils.readVInt(in);
+			offsets = new long[count];
+			lengths = new int[count];
+			long previous = 0;
+			for (int i = 0; i < count; i++) {
+				offsets[i] = previous + WritableUtils.readVLong(in);
+				lengths[i] = WritableUtils.readVInt(in);
+				previous = offsets[i];
+			}
+		}
+
+		@Override
+		public String toString() {
+			return super.toString() + " (" + offsets.length + " pages)";
+		}
+	}
+
+	/**
+	 * Reads the pages of a {@link PageRangesSplit} by their offsets into a
+	 * reused buffer.
+	 */
+	public static class PageRangesRecordReader extends
+			RecordReader<LongWritable, WikipediaPageView> {
+
+		private FSDataInputStream in;
+		private long[] offsets;
+		private int[] lengths;
+		private int next;
+
+		private byte[] buffer = new byte[0];
+		private final LongWritable key = new LongWritable();
+		private final WikipediaPageView value = new WikipediaPageView();
+
+		public PageRangesRecordReader() {
+		}
+
+		/**
+		 * Reads the split from the given file.
+		 */
+		public PageRangesRecordReader(FSDataInputStream in, PageRangesSplit split) {
+			open(in, split);
+		}
+
+		@Override
+		public void initialize(InputSplit genericSplit, TaskAttemptContext context)
+				throws IOException, InterruptedException {
+			PageRangesSplit split = (PageRangesSplit) genericSplit;
+			Path file = split.getPath();
+			open(file.getFileSystem(context.getConfiguration()).open(file), split);
+		}
+
+		private void open(FSDataInputStream in, PageRangesSplit split) {
+			this.in = in;
+			offsets = split.getOffsets();
+			lengths = split.getLengths();
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException, InterruptedException {
+			if (next == offsets.length)
+				return false;
+
+			int length = lengths[next];
+			if (buffer.length < length)
+				buffer = new byte[Math.max(length, buffer.length * 2)];
+			in.readFully(offsets[next], buffer, 0, length);
+
+			key.set(offsets[next]);
+			value.set(buffer, 0, length);
+			next++;
+			return true;
+		}
+
+		@Override
+		public LongWritable getCurrentKey() throws IOException, InterruptedException {
+			return key;
+		}
+
+		@Override
+		public WikipediaPageView getCurrentValue() throws IOException, InterruptedException {
+			return value;
+		}
+
+		@Override
+		public float getProgress() throws IOException {
+			return offsets.length == 0 ? 1 : (float) next / offsets.length;
+		}
+
+		@Override
+		public void close() throws IOException {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Where a page's XML record is in an uncompressed dump, the value of the
+ * {@link PageIndex}. The offset is the one of <code>&lt;page&gt;</code>, the
+ * length includes <code>&lt;/page&gt;</code>.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PageLocation implements Writable {
+
+	private final Text file = new Text();
+	private long offset;
+	private int length;
+	private int namespace;
+
+	public PageLocation() {
+	}
+
+	public PageLocation(String file, long offset, int length, int namespace) {
+		set(file, offset, length, namespace);
+	}
+
+	public void set(String file, long offset, int length, int namespace) {
+		this.file.set(file);
+		this.offset = offset;
+		this.length = length;
+		this.namespace = namespace;
+	}
+
+	/**
+	 * @return the qualified path of the dump
+	 */
+	public String getFile() {
+		return file.toString();
+	}
+
+	public long getOffset() {
+		return offset;
+	}
+
+	public int getLength() {
+		return length;
+	}
+
+	public int getNamespace() {
+		return namespace;
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		file.write(out);
+		WritableUtils.writeVLong(out, offset);
+		WritableUtils.writeVInt(out, length);
+		WritableUtils.writeVInt(out, namespace);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		file.readFields(in);
+		offset = WritableUtils.readVLong(in);
+		length = WritableUtils.readVInt(in);
+		namespace = WritableUtils.readVInt(in);
+	}
+
+	@Override
+	public String toString() {
+		return file + ":" + offset + "+" + length + " (namespace " + namespace + ")";
+	}
+}
@@ -1,28 +1,154 @@
 package util;
 
 import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.util.regex.Matcher;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 /**
- * 
+ * The double is written as its eight IEEE 754 bytes right after the string.
+ *
  * @author Steven Hu, stevenhh@brandeis.edu
  */
-public class StringDouble extends StringNumber<Double> {
+public class StringDouble extends StringNumber<Double> implements
+		WritableComparable<StringDouble> {
+
+	private double value;
+
+	public StringDouble() {
+	}
 
 	public StringDouble(String string, double value) {
-		super(string, value);
+		super(string);
+		this.value = value;
+	}
+
+	@Override
+	public Double getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the value without boxing it
+	 */
+	public double get() {
+		return value;
+	}
+
+	public void set(String string, double value) {
+		setString(string);
+		this.value = value;
+	}
+
+	public void set(byte[] utf8, int start, int length, double value) {
+		setString(utf8, start, length);
+		this.value = value;
+	}
+
+	@Override
+	protected void readValue(DataInput in) throws IOException {
+		value = in.readDouble();
+	}
+
+	@Override
+	protected void writeValue(DataOutput out) throws IOException {
+		out.writeDouble(value);
+	}
+
+	/**
+	 * Orders by string (byte-wise, like {@link org.apache.hadoop.io.Text}),
+	 * then by value.
+	 */
+	@Override
+	public int compareTo(StringDouble o) {
+		int cmp = text.compareTo(o.text);
+		if (cmp != 0)
+			return cmp;
+		return Double.compare(value, o.value);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof StringDouble))
+			return false;
+		StringDouble other = (StringDouble) o;
+		return Double.compare(value, other.value) == 0 && text.equals(other.text);
 	}
 
 	@Override
-	public void readFields(DataInput arg0) throws IOException {
-		String indexStr = arg0.readUTF();
+	public int hashCode() {
+		long bits = Double.doubleToLongBits(value);
+		return text.hashCode() * 31 + (int) (bits ^ (bits >>> 32));
+	}
+
+	/**
+	 * Raw comparator with the same order as {@link #compareTo(StringDouble)}.
+	 */
+	public static class Comparator extends WritableComparator {
+
+		public Comparator() {
+			super(StringDouble.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			try {
+				int n1 = stringBytes(b1, s1);
+				int n2 = stringBytes(b2, s2);
+				int vIntSize1 = WritableUtils.decodeVIntSize(b1[s1]);
+				int vIntSize2 = WritableUtils.decodeVIntSize(b2[s2]);
 
-		Matcher m = p.matcher(indexStr);
-		if (m.matches()) {
-			super.string = m.group(1);
-			super.value = Double.parseDouble(m.group(2));
+				int cmp = compareBytes(b1, s1 + vIntSize1, n1 - vIntSize1, b2, s2 + vIntSize2, n2
+						- vIntSize2);
+				if (cmp != 0)
+					return cmp;
+
+				return Double.compare(readDouble(b1, s1 + n1), readDouble(b2, s2 + n2));
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+	}
+
+	/**
+	 * Raw comparator ordering by descending value, then by string, e.g. to
+	 * sort professions by probability. Set it with
+	 * <code>Job.setSortComparatorClass</code> where needed.
+	 */
+	public static class ValueComparator extends Comparator {
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			try {
+				int n1 = stringBytes(b1, s1);
+				int n2 = stringBytes(b2, s2);
+
+				int cmp = Double.compare(readDouble(b2, s2 + n2), readDouble(b1, s1 + n1));
+				if (cmp != 0)
+					return cmp;
+
+				return super.compare(b1, s1, l1, b2, s2, l2);
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public int compare(WritableComparable a, WritableComparable b) {
+			StringDouble sd1 = (StringDouble) a;
+			StringDouble sd2 = (StringDouble) b;
+			int cmp = Double.compare(sd2.value, sd1.value);
+			if (cmp != 0)
+				return cmp;
+			return sd1.compareTo(sd2);
 		}
 	}
 
+	static {
+		WritableComparator.define(StringDouble.class, new Comparator());
+	}
 }
@@ -3,6 +3,7 @@ package util;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -44,16 +45,34 @@ public class StringDoubleList implements Writable {
 		if (this.indiceMap == null) {
 			indiceMap = new HashMap<String, Double>();
 			for (StringDouble index : this.indices) {
-				indiceMap.put(index.string, (Double) index.value);
+				indiceMap.put(index.getString(), index.getValue());
 			}
 		}
 		return indiceMap;
 	}
 
+	/**
+	 * Reads the binary format written by {@link #write(DataOutput)}. Records
+	 * in the old GZIP'ed string format are still understood.
+	 */
 	@Override
 	public void readFields(DataInput arg0) throws IOException {
-		String indicesStr = WritableUtils.readCompressedString(arg0);
-		readFromString(indicesStr);
+		byte firstByte = arg0.readByte();
+		if (firstByte != ListWireFormat.BINARY_MARKER) {
+			readFromString(ListWireFormat.readLegacyString(arg0, firstByte));
+			return;
+		}
+
+		int size = WritableUtils.readVInt(arg0);
+		List<StringDouble> tempoIndices = new ArrayList<StringDouble>(size);
+		for (int i = 0; i < size; i++) {
+			StringDouble index = new StringDouble();
+			index.readFields(arg0);
+			tempoIndices.add(index);
+		}
+
+		this.indices = tempoIndices;
+		this.indiceMap = null;
 	}
 
 	public void readFromString(String indicesStr) throws IOException {
@@ -64,15 +83,25 @@ public class StringDoubleList implements Writable {
 			tempoIndices.add(index);
 		}
 		this.indices = tempoIndices;
+		this.indiceMap = null;
 	}
 
 	public List<StringDouble> getIndices() {
 		return Collections.unmodifiableList(this.indices);
 	}
 
+	/**
+	 * Writes {@link ListWireFormat#BINARY_MARKER}, the number of entries and
+	 * each entry as serialized by {@link StringDouble#write(DataOutput)}.
+	 * Unlike {@link #toString()}, which is meant for the final text output,
+	 * this keeps entries containing <code>'&lt;'</code> or <code>'&gt;'</code>.
+	 */
 	@Override
 	public void write(DataOutput arg0) throws IOException {
-		WritableUtils.writeCompressedString(arg0, this.toString());
+		arg0.writeByte(ListWireFormat.BINARY_MARKER);
+		WritableUtils.writeVInt(arg0, indices.size());
+		for (StringDouble index : indices)
+			index.write(arg0);
 	}
 
 	@Override
@@ -1,28 +1,154 @@
 package util;
 
 import java.io.DataInput;
+import java.io.DataOutput;
 import java.io.IOException;
-import java.util.regex.Matcher;
+
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 /**
- * 
+ * The integer is written as a VInt right after the string.
+ *
  * @author Steven Hu, stevenhh@brandeis.edu
  */
-public class StringInteger extends StringNumber<Integer> {
+public class StringInteger extends StringNumber<Integer> implements
+		WritableComparable<StringInteger> {
+
+	private int value;
+
+	public StringInteger() {
+	}
 
 	public StringInteger(String string, int value) {
-		super(string, value);
+		super(string);
+		this.value = value;
+	}
+
+	@Override
+	public Integer getValue() {
+		return value;
+	}
+
+	/**
+	 * @return the value without boxing it
+	 */
+	public int get() {
+		return value;
+	}
+
+	public void set(String string, int value) {
+		setString(string);
+		this.value = value;
+	}
+
+	public void set(byte[] utf8, int start, int length, int value) {
+		setString(utf8, start, length);
+		this.value = value;
+	}
+
+	@Override
+	protected void readValue(DataInput in) throws IOException {
+		value = WritableUtils.readVInt(in);
+	}
+
+	@Override
+	protected void writeValue(DataOutput out) throws IOException {
+		WritableUtils.writeVInt(out, value);
+	}
+
+	/**
+	 * Orders by string (byte-wise, like {@link org.apache.hadoop.io.Text}),
+	 * then by value.
+	 */
+	@Override
+	public int compareTo(StringInteger o) {
+		int cmp = text.compareTo(o.text);
+		if (cmp != 0)
+			return cmp;
+		return Integer.compare(value, o.value);
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (!(o instanceof StringInteger))
+			return false;
+		StringInteger other = (StringInteger) o;
+		return value == other.value && text.equals(other.text);
 	}
 
 	@Override
-	public void readFields(DataInput arg0) throws IOException {
-		String indexStr = arg0.readUTF();
+	public int hashCode() {
+		return text.hashCode() * 31 + value;
+	}
+
+	/**
+	 * Raw comparator with the same order as {@link #compareTo(StringInteger)}
+	 * , e.g. to sort postings by article.
+	 */
+	public static class Comparator extends WritableComparator {
+
+		public Comparator() {
+			super(StringInteger.class);
+		}
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			try {
+				int n1 = stringBytes(b1, s1);
+				int n2 = stringBytes(b2, s2);
+				int vIntSize1 = WritableUtils.decodeVIntSize(b1[s1]);
+				int vIntSize2 = WritableUtils.decodeVIntSize(b2[s2]);
 
-		Matcher m = p.matcher(indexStr);
-		if (m.matches()) {
-			super.string = m.group(1);
-			super.value = Integer.parseInt(m.group(2));
+				int cmp = compareBytes(b1, s1 + vIntSize1, n1 - vIntSize1, b2, s2 + vIntSize2, n2
+						- vIntSize2);
+				if (cmp != 0)
+					return cmp;
+
+				return Integer.compare(readVInt(b1, s1 + n1), readVInt(b2, s2 + n2));
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+	}
+
+	/**
+	 * Raw comparator ordering by descending value, then by string, e.g. to
+	 * sort postings by frequency. Set it with
+	 * <code>Job.setSortComparatorClass</code> where needed.
+	 */
+	public static class ValueComparator extends Comparator {
+
+		@Override
+		public int compare(byte[] b1, int s1, int l1, byte[] b2, int s2, int l2) {
+			try {
+				int n1 = stringBytes(b1, s1);
+				int n2 = stringBytes(b2, s2);
+
+				int cmp = Integer.compare(readVInt(b2, s2 + n2), readVInt(b1, s1 + n1));
+				if (cmp != 0)
+					return cmp;
+
+				return super.compare(b1, s1, l1, b2, s2, l2);
+			} catch (IOException e) {
+				throw new IllegalArgumentException(e);
+			}
+		}
+
+		@SuppressWarnings("rawtypes")
+		@Override
+		public int compare(WritableComparable a, WritableComparable b) {
+			StringInteger si1 = (StringInteger) a;
+			StringInteger si2 = (StringInteger) b;
+			int cmp = Integer.compare(si2.value, si1.value);
+			if (cmp != 0)
+				return cmp;
+			return si1.compareTo(si2);
 		}
 	}
 
+	static {
+		WritableComparator.define(StringInteger.class, new Comparator());
+	}
 }
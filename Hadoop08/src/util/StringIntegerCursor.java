@@ -0,0 +1,234 @@
+package util;
+
+import java.io.IOException;
+
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
+
+/**
+ * Iterates over serialized (string, integer) entries without creating any
+ * objects per entry. The string of the current entry is exposed as a slice of
+ * the underlying UTF-8 bytes or, decoded into a reused buffer, as a
+ * {@link CharSequence}. Both are only valid until the next call to
+ * {@link #next()}.
+ * <p>
+ * Usage:
+ *
+ * <pre>
+ * {@code
+ * StringIntegerCursor cursor = StringIntegerCursor.forText();
+ * cursor.reset(text.getBytes(), 0, text.getLength());
+ * while (cursor.next())
+ *     process(cursor.getLemma(), cursor.getCount());
+ * }
+ * </pre>
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public abstract class StringIntegerCursor {
+
+	protected byte[] data;
+	protected int pos;
+	protected int end;
+
+	protected int lemmaStart;
+	protected int lemmaLength;
+	protected int count;
+
+	private final Utf8Chars lemma = new Utf8Chars();
+
+	/**
+	 * @return a cursor over the <code>&lt;lemma,count&gt;,...</code> text
+	 *         format, accepting the same input as
+	 *         {@link StringIntegerList#readFromString(String)}
+	 */
+	public static StringIntegerCursor forText() {
+		return new TextCursor();
+	}
+
+	/**
+	 * @return a cursor over entries serialized one after another by
+	 *         {@link StringInteger#write(java.io.DataOutput)}
+	 */
+	public static StringIntegerCursor forBinary() {
+		return new BinaryCursor();
+	}
+
+	public void reset(byte[] data, int start, int length) {
+		this.data = data;
+		this.pos = start;
+		this.end = start + length;
+		this.lemmaLength = 0;
+		this.count = 0;
+	}
+
+	/**
+	 * Moves to the next entry.
+	 *
+	 * @return false if there are no more entries
+	 */
+	public abstract boolean next() throws IOException;
+
+	/**
+	 * @return the array holding the current lemma's UTF-8 bytes
+	 */
+	public byte[] getBytes() {
+		return data;
+	}
+
+	public int getLemmaStart() {
+		return lemmaStart;
+	}
+
+	public int getLemmaLength() {
+		return lemmaLength;
+	}
+
+	/**
+	 * @return the current lemma, decoded into a buffer that is reused for the
+	 *         next entry. Use <code>toString()</code> to keep it.
+	 */
+	public CharSequence getLemma() {
+		lemma.decode(data, lemmaStart, lemmaLength);
+		return lemma;
+	}
+
+	public int getCount() {
+		return count;
+	}
+
+	private static class BinaryCursor extends StringIntegerCursor {
+
+		@Override
+		public boolean next() throws IOException {
+			if (pos >= end)
+				return false;
+
+			int vIntSize = WritableUtils.decodeVIntSize(data[pos]);
+			lemmaLength = WritableComparator.readVInt(data, pos);
+			lemmaStart = pos + vIntSize;
+
+			pos = lemmaStart + lemmaLength;
+			count = WritableComparator.readVInt(data, pos);
+			pos += WritableUtils.decodeVIntSize(data[pos]);
+
+			return true;
+		}
+	}
+
+	/**
+	 * Same matching as the regular expression <code>&lt;([^&gt;]+),(\d+)&gt;</code>
+	 * applied with <code>Matcher.find()</code>: the lemma reaches from a
+	 * <code>'&lt;'</code> to the last comma before the next
+	 * <code>'&gt;'</code>, everything in between has to be digits. Anything
+	 * not matching is skipped.
+	 */
+	private static class TextCursor extends StringIntegerCursor {
+
+		@Override
+		public boolean next() {
+			while (true) {
+				int open = indexOf('<', pos);
+				if (open < 0)
+					return false;
+
+				int close = indexOf('>', open + 1);
+				if (close < 0) {
+					pos = end;
+					return false;
+				}
+				pos = close + 1;
+
+				int comma = close - 1;
+				while (comma > open && isDigit(data[comma]))
+					comma--;
+
+				// no digits, no comma or an empty lemma: no entry here, and
+				// no other '<' before close can start one either
+				if (comma == close - 1 || data[comma] != ',' || comma == open + 1)
+					continue;
+
+				lemmaStart = open + 1;
+				lemmaLength = comma - lemmaStart;
+				count = parseCount(comma + 1, close);
+				return true;
+			}
+		}
+
+		private int indexOf(char c, int from) {
+			for (int i = from; i < end; i++)
+				if (data[i] == c)
+					return i;
+			return -1;
+		}
+
+		private static boolean isDigit(byte b) {
+			return b >= '0' && b <= '9';
+		}
+
+		private int parseCount(int from, int to) {
+			long value = 0;
+			for (int i = from; i < to; i++) {
+				value = value * 10 + (data[i] - '0');
+				if (value > Integer.MAX_VALUE)
+					throw new NumberFormatException("Count too large at byte " + from);
+			}
+			return (int) value;
+		}
+	}
+
+	/**
+	 * A reusable UTF-8 decoding buffer.
+	 */
+	private static class Utf8Chars implements CharSequence {
+		private char[] chars = new char[32];
+		private int length;
+
+		void decode(byte[] utf8, int start, int byteLength) {
+			if (chars.length < byteLength)
+				chars = new char[Math.max(byteLength, chars.length * 2)];
+
+			int n = 0;
+			int i = start;
+			int end = start + byteLength;
+			while (i < end) {
+				int b = utf8[i++] & 0xFF;
+				if (b < 0x80) {
+					chars[n++] = (char) b;
+				} else if (b < 0xE0) {
+					chars[n++] = (char) (((b & 0x1F) << 6) | (utf8[i++] & 0x3F));
+				} else if (b < 0xF0) {
+					chars[n++] = (char) (((b & 0x0F) << 12) | ((utf8[i++] & 0x3F) << 6) | (utf8[i++] & 0x3F));
+				} else {
+					int codePoint = ((b & 0x07) << 18) | ((utf8[i++] & 0x3F) << 12)
+							| ((utf8[i++] & 0x3F) << 6) | (utf8[i++] & 0x3F);
+					chars[n++] = Character.highSurrogate(codePoint);
+					chars[n++] = Character.lowSurrogate(codePoint);
+				}
+			}
+			length = n;
+		}
+
+		@Override
+		public int length() {
+			return length;
+		}
+
+		@Override
+		public char charAt(int index) {
+			if (index >= length)
+				throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+			return chars[index];
+		}
+
+		@Override
+		public CharSequence subSequence(int start, int end) {
+			return toString().substring(start, end);
+		}
+
+		@Override
+		public String toString() {
+			return new String(chars, 0, length);
+		}
+	}
+}
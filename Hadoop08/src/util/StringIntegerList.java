@@ -3,18 +3,21 @@ package util;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Vector;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.Writable;
 import org.apache.hadoop.io.WritableUtils;
 
 /**
+ * Read in lists are kept in their serialized form and only turned into
+ * {@link StringInteger} objects when {@link #getIndices()} or
+ * {@link #getMap()} ask for them. Use {@link #cursor()} to stream over the
+ * entries without creating any objects.
  * 
  * @author Steven Hu, stevenhh@brandeis.edu
  */
@@ -22,10 +25,19 @@ public class StringIntegerList implements Writable {
 	
 	private List<StringInteger> indices;
 	private Map<String, Integer> indiceMap;
-	private Pattern p = Pattern.compile("<([^>]+),(\\d+)>");
+
+	// entries serialized one after another by StringInteger.write()
+	private final DataOutputBuffer entries = new DataOutputBuffer();
+	private int entryCount;
+	// false while indices is a list handed in by the caller
+	private boolean entriesValid;
+
+	private StringIntegerCursor binaryCursor;
+	private StringIntegerCursor textCursor;
 
 	public StringIntegerList() {
-		indices = new Vector<StringInteger>();
+		indices = new ArrayList<StringInteger>();
+		entriesValid = true;
 	}
 
 	public StringIntegerList(List<StringInteger> indices) {
@@ -34,7 +46,7 @@ public class StringIntegerList implements Writable {
 
 	public StringIntegerList(Map<String, Integer> indiceMap) {
 		this.indiceMap = indiceMap;
-		this.indices = new Vector<StringInteger>();
+		this.indices = new ArrayList<StringInteger>(indiceMap.size());
 		for (String index : indiceMap.keySet()) {
 			this.indices.add(new StringInteger(index, indiceMap.get(index)));
 		}
@@ -43,54 +55,223 @@ public class StringIntegerList implements Writable {
 	public Map<String, Integer> getMap() {
 		if (this.indiceMap == null) {
 			indiceMap = new HashMap<String, Integer>();
-			for (StringInteger index : this.indices) {
-				indiceMap.put(index.string, (Integer) index.value);
+			for (StringInteger index : getIndices()) {
+				indiceMap.put(index.getString(), index.getValue());
 			}
 		}
 		return indiceMap;
 	}
 
+	/**
+	 * Reads the binary format written by {@link #write(DataOutput)}. Records
+	 * in the old GZIP'ed string format are still understood.
+	 */
 	@Override
 	public void readFields(DataInput arg0) throws IOException {
-		String indicesStr = WritableUtils.readCompressedString(arg0);
-		readFromString(indicesStr);
+		byte firstByte = arg0.readByte();
+		if (firstByte != ListWireFormat.BINARY_MARKER) {
+			readFromString(ListWireFormat.readLegacyString(arg0, firstByte));
+			return;
+		}
+
+		int count = WritableUtils.readVInt(arg0);
+		int length = WritableUtils.readVInt(arg0);
+
+		clear();
+		entries.write(arg0, length);
+		entryCount = count;
 	}
 
 	public void readFromString(String indicesStr) throws IOException {
-		List<StringInteger> tempoIndices = new Vector<StringInteger>();
-		Matcher m = p.matcher(indicesStr);
-		while (m.find()) {
-			StringInteger index = new StringInteger(m.group(1), Integer.parseInt(m.group(2)));
-			tempoIndices.add(index);
+		byte[] utf8 = indicesStr.getBytes("UTF-8");
+		readFromText(utf8, 0, utf8.length);
+	}
+
+	/**
+	 * Same as {@link #readFromString(String)} but reads the UTF-8 bytes
+	 * directly, e.g. from a {@link org.apache.hadoop.io.Text}.
+	 */
+	public void readFromText(byte[] utf8, int start, int length) throws IOException {
+		if (textCursor == null)
+			textCursor = StringIntegerCursor.forText();
+		textCursor.reset(utf8, start, length);
+
+		clear();
+		while (textCursor.next()) {
+			WritableUtils.writeVInt(entries, textCursor.getLemmaLength());
+			entries.write(utf8, textCursor.getLemmaStart(), textCursor.getLemmaLength());
+			WritableUtils.writeVInt(entries, textCursor.getCount());
+			entryCount++;
+		}
+	}
+
+	/**
+	 * Removes all entries.
+	 */
+	public void clear() {
+		entries.reset();
+		entryCount = 0;
+		entriesValid = true;
+		indices = null;
+		indiceMap = null;
+	}
+
+	/**
+	 * Appends an entry without creating a {@link StringInteger} for it.
+	 * 
+	 * @param utf8
+	 *            holds the string's UTF-8 bytes
+	 * @return the number of bytes the serialized entry takes up
+	 */
+	public int add(byte[] utf8, int start, int length, int value) throws IOException {
+		prepareAppend();
+		int before = entries.getLength();
+		WritableUtils.writeVInt(entries, length);
+		entries.write(utf8, start, length);
+		WritableUtils.writeVInt(entries, value);
+		entryCount++;
+		return entries.getLength() - before;
+	}
+
+	/**
+	 * Appends all entries of <code>other</code> by copying its serialized
+	 * bytes.
+	 */
+	public void addAll(StringIntegerList other) throws IOException {
+		if (!other.entriesValid)
+			other.encodeEntries();
+		prepareAppend();
+		entries.write(other.entries.getData(), 0, other.entries.getLength());
+		entryCount += other.entryCount;
+	}
+
+	/**
+	 * From now on the serialized entries are the only content.
+	 */
+	private void prepareAppend() {
+		if (!entriesValid) {
+			encodeEntries();
+			entriesValid = true;
 		}
-		this.indices = tempoIndices;
+		indices = null;
+		indiceMap = null;
+	}
+
+	/**
+	 * @return the number of bytes the serialized entries take up
+	 */
+	public int getByteLength() {
+		if (!entriesValid)
+			encodeEntries();
+		return entries.getLength();
 	}
 
 	public List<StringInteger> getIndices() {
+		if (indices == null) {
+			List<StringInteger> tempoIndices = new ArrayList<StringInteger>(entryCount);
+			try {
+				StringIntegerCursor cursor = cursor();
+				while (cursor.next()) {
+					StringInteger index = new StringInteger();
+					index.set(cursor.getBytes(), cursor.getLemmaStart(), cursor.getLemmaLength(),
+							cursor.getCount());
+					tempoIndices.add(index);
+				}
+			} catch (IOException e) {
+				throw new IllegalStateException("Corrupt list entries", e);
+			}
+			indices = tempoIndices;
+		}
 		return Collections.unmodifiableList(this.indices);
 	}
 
+	/**
+	 * @return the number of entries, without creating them
+	 */
+	public int size() {
+		return entriesValid ? entryCount : indices.size();
+	}
+
+	/**
+	 * Streams over the entries without creating objects for them. The
+	 * returned cursor is reused by the next call.
+	 */
+	public StringIntegerCursor cursor() {
+		if (!entriesValid)
+			encodeEntries();
+
+		if (binaryCursor == null)
+			binaryCursor = StringIntegerCursor.forBinary();
+		binaryCursor.reset(entries.getData(), 0, entries.getLength());
+		return binaryCursor;
+	}
+
+	/**
+	 * Serializes a list handed in by the caller. Done on every call, since
+	 * the caller might have changed the list in between.
+	 */
+	private void encodeEntries() {
+		entries.reset();
+		try {
+			for (StringInteger index : indices)
+				index.write(entries);
+		} catch (IOException e) {
+			throw new IllegalStateException("Cannot happen for an in-memory buffer", e);
+		}
+		entryCount = indices.size();
+	}
+
+	/**
+	 * Writes {@link ListWireFormat#BINARY_MARKER}, the number of entries, the
+	 * number of bytes they take up and each entry as serialized by
+	 * {@link StringInteger#write(DataOutput)}. Unlike {@link #toString()},
+	 * which is meant for the final text output, this keeps entries containing
+	 * <code>'&lt;'</code> or <code>'&gt;'</code>.
+	 */
 	@Override
 	public void write(DataOutput arg0) throws IOException {
-		WritableUtils.writeCompressedString(arg0, this.toString());
+		if (!entriesValid)
+			encodeEntries();
+
+		arg0.writeByte(ListWireFormat.BINARY_MARKER);
+		WritableUtils.writeVInt(arg0, entryCount);
+		WritableUtils.writeVInt(arg0, entries.getLength());
+		arg0.write(entries.getData(), 0, entries.getLength());
 	}
 
+	/**
+	 * Streams the entries through {@link #cursor()}, so even long posting
+	 * lists are written without creating an object per entry.
+	 */
 	@Override
 	public String toString() {
-		StringBuffer sb = new StringBuffer();
-		for (int i = 0; i < indices.size(); i++) {
-			StringInteger index = indices.get(i);
-			if (index.getString().contains("<") || index.getString().contains(">"))
-				continue;
-			sb.append("<");
-			sb.append(index.getString());
-			sb.append(",");
-			sb.append(index.getValue());
-			sb.append(">");
-			if (i != indices.size() - 1) {
+		StringIntegerCursor cursor = cursor();
+		StringBuilder sb = new StringBuilder(entries.getLength() + entryCount * 4);
+		try {
+			for (int i = 0; cursor.next(); i++) {
+				if (contains(cursor, '<') || contains(cursor, '>'))
+					continue;
+				sb.append("<");
+				sb.append(cursor.getLemma());
 				sb.append(",");
+				sb.append(cursor.getCount());
+				sb.append(">");
+				if (i != entryCount - 1) {
+					sb.append(",");
+				}
 			}
+		} catch (IOException e) {
+			throw new IllegalStateException("Corrupt list entries", e);
 		}
 		return sb.toString();
 	}
+
+	private static boolean contains(StringIntegerCursor cursor, char c) {
+		byte[] bytes = cursor.getBytes();
+		int end = cursor.getLemmaStart() + cursor.getLemmaLength();
+		for (int i = cursor.getLemmaStart(); i < end; i++)
+			if (bytes[i] == c)
+				return true;
+		return false;
+	}
 }
@@ -3,51 +3,89 @@ package util;
 import java.io.DataInput;
 import java.io.DataOutput;
 import java.io.IOException;
-import java.util.regex.Pattern;
 
+import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.io.WritableUtils;
 
 /**
- * 
+ * A string paired with a number. The string is serialized like a
+ * {@link Text} (VInt length followed by the UTF-8 bytes) and the number by the
+ * subclass right after it, so both can be read back without any parsing.
+ * <p>
+ * Instances are mutable and can be reused: {@link #readFields(DataInput)} only
+ * refills the internal byte buffer, the <code>String</code> is decoded lazily
+ * on the first {@link #getString()} call.
+ *
  * @author Steven Hu, stevenhh@brandeis.edu
  */
 public abstract class StringNumber<V extends Number> implements Writable {
 
+	protected final Text text = new Text();
 	protected String string;
-	protected V value;
-	public static Pattern p = Pattern.compile("(.+),([0-9]{1,13}(\\.[0-9]*)?)");
 
 	public StringNumber() {
 	}
 
-	public StringNumber(String string, V value) {
-		this.string = string;
-		this.value = value;
+	public StringNumber(String string) {
+		setString(string);
 	}
 
 	public String getString() {
+		if (string == null)
+			string = text.toString();
 		return string;
 	}
 
-	public V getValue() {
-		return value;
+	/**
+	 * @return the UTF-8 bytes of the string, without decoding them. The
+	 *         returned object is reused by the next <code>set</code> or
+	 *         {@link #readFields(DataInput)} call.
+	 */
+	public Text getText() {
+		return text;
+	}
+
+	abstract public V getValue();
+
+	protected void setString(String string) {
+		this.text.set(string);
+		this.string = string;
 	}
 
+	protected void setString(byte[] utf8, int start, int length) {
+		this.text.set(utf8, start, length);
+		this.string = null;
+	}
+
+	abstract protected void readValue(DataInput in) throws IOException;
+
+	abstract protected void writeValue(DataOutput out) throws IOException;
+
 	@Override
-	abstract public void readFields(DataInput arg0) throws IOException;
+	public void readFields(DataInput arg0) throws IOException {
+		text.readFields(arg0);
+		string = null;
+		readValue(arg0);
+	}
 
 	@Override
 	public void write(DataOutput arg0) throws IOException {
-		StringBuffer sb = new StringBuffer();
-		sb.append(string);
-		sb.append(",");
-		sb.append(value);
-		arg0.writeUTF(sb.toString());
+		text.write(arg0);
+		writeValue(arg0);
 	}
 
 	@Override
 	public String toString() {
-		return string + "," + value;
+		return getString() + "," + getValue();
 	}
 
+	/**
+	 * @return the number of bytes the serialized string starting at
+	 *         <code>b[s]</code> takes up, including its length prefix
+	 */
+	protected static int stringBytes(byte[] b, int s) throws IOException {
+		return WritableUtils.decodeVIntSize(b[s]) + WritableComparator.readVInt(b, s);
+	}
 }
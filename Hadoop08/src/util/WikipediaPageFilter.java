@@ -0,0 +1,139 @@
+package util;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.apache.hadoop.conf.Configurable;
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.mapreduce.Job;
+
+import util.XMLInputFormat.RecordFilter;
+
+/**
+ * Skips the pages of a dump a job does not want while reading them, from the
+ * elements before <code>&lt;revision&gt;</code>: the title, the namespace and
+ * the <code>&lt;redirect&gt;</code> element. Rejected pages are neither
+ * buffered nor parsed, accepted ones are read as usual. Set up with the
+ * static methods, which configure it for the record readers of
+ * {@link WikipediaPageInputFormat} and {@link WikipediaPageViewInputFormat}.
+ * <p>
+ * Redirects are only recognized by the element, which dumps have since
+ * 2008. Older ones only mark them in the text.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class WikipediaPageFilter implements RecordFilter, Configurable {
+
+	/** path of a {@link MembershipFilter} side file with the titles to keep */
+	public static final String TITLES_KEY = "wikipedia.filter.titles";
+	/** namespaces to keep, e.g. 0 for articles */
+	public static final String NAMESPACES_KEY = "wikipedia.filter.namespaces";
+	/** whether to skip redirects, default false */
+	public static final String SKIP_REDIRECTS_KEY = "wikipedia.filter.redirects.skip";
+
+	private static final byte[] HEADER_END = "<revision>".getBytes(Charset.forName("UTF-8"));
+
+	private Configuration conf;
+
+	private MembershipFilter titles;
+	private int[] namespaces;
+	private boolean skipRedirects;
+
+	private final WikipediaPageView page = new WikipediaPageView();
+
+	/**
+	 * Keeps all pages until configured.
+	 */
+	public WikipediaPageFilter() {
+	}
+
+	/**
+	 * @param titles
+	 *            null for any title
+	 * @param namespaces
+	 *            null for any namespace
+	 */
+	public WikipediaPageFilter(MembershipFilter titles, int[] namespaces,
+			boolean skipRedirects) {
+		this.titles = titles;
+		this.namespaces = namespaces;
+		this.skipRedirects = skipRedirects;
+	}
+
+	public static void setTitles(Job job, Path titles) {
+		job.getConfiguration().set(TITLES_KEY, titles.toString());
+		setFilter(job);
+	}
+
+	public static void setNamespaces(Job job, int... namespaces) {
+		StringBuilder sb = new StringBuilder();
+		for (int namespace : namespaces)
+			sb.append(sb.length() == 0 ? "" : ",").append(namespace);
+		job.getConfiguration().set(NAMESPACES_KEY, sb.toString());
+		setFilter(job);
+	}
+
+	public static void setSkipRedirects(Job job, boolean skipRedirects) {
+		job.getConfiguration().setBoolean(SKIP_REDIRECTS_KEY, skipRedirects);
+		setFilter(job);
+	}
+
+	private static void setFilter(Job job) {
+		job.getConfiguration().setClass(XMLInputFormat.FILTER_CLASS_KEY,
+				WikipediaPageFilter.class, RecordFilter.class);
+	}
+
+	/**
+	 * Maps the title side file, if there is one.
+	 */
+	@Override
+	public void setConf(Configuration conf) {
+		this.conf = conf;
+
+		String titlesPath = conf.get(TITLES_KEY);
+		if (titlesPath != null) {
+			try {
+				titles = MembershipFilter.open(new Path(titlesPath), conf);
+			} catch (IOException e) {
+				throw new RuntimeException("Error! Could not read titles from " + titlesPath, e);
+			}
+		}
+
+		if (conf.get(NAMESPACES_KEY) != null)
+			namespaces = conf.getInts(NAMESPACES_KEY);
+		skipRedirects = conf.getBoolean(SKIP_REDIRECTS_KEY, false);
+	}
+
+	@Override
+	public Configuration getConf() {
+		return conf;
+	}
+
+	@Override
+	public byte[] getHeaderEnd() {
+		return HEADER_END;
+	}
+
+	/**
+	 * Looks the title up only if the page passed the other checks.
+	 */
+	@Override
+	public boolean accept(ByteBuffer header) {
+		page.set(header);
+
+		if (skipRedirects && page.isRedirect())
+			return false;
+		if (namespaces != null && !contains(namespaces, page.getNamespace()))
+			return false;
+		return titles == null || page.isTitleIn(titles);
+	}
+
+	private static boolean contains(int[] values, int value) {
+		for (int v : values)
+			if (v == value)
+				return true;
+		return false;
+	}
+}
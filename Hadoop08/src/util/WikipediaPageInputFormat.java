@@ -17,11 +17,15 @@
 package util;
 
 import java.io.IOException;
+import java.util.List;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.Job;
+import org.apache.hadoop.mapreduce.JobContext;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 
@@ -35,6 +39,35 @@ import edu.umd.cloud9.collection.wikipedia.WikipediaPage;
  */
 public class WikipediaPageInputFormat extends IndexableFileInputFormat<LongWritable, WikipediaPage> {
 
+	/**
+	 * The index of a multistream dump, which must then be the only input.
+	 * Without it a bzip2 compressed dump is split by its blocks.
+	 */
+	public static final String MULTISTREAM_INDEX_KEY = "wikipedia.multistream.index";
+
+	public static void setMultistreamIndex(Job job, Path index) {
+		job.getConfiguration().set(MULTISTREAM_INDEX_KEY, index.toString());
+	}
+
+	/**
+	 * Aligns the splits to the bzip2 streams if there is a multistream index.
+	 */
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		return alignToStreams(job, super.getSplits(job));
+	}
+
+	static List<InputSplit> alignToStreams(JobContext job, List<InputSplit> splits)
+			throws IOException {
+		String index = job.getConfiguration().get(MULTISTREAM_INDEX_KEY);
+		if (index == null)
+			return splits;
+
+		long[] streamOffsets = MultistreamSplit.readStreamOffsets(new Path(index),
+				job.getConfiguration());
+		return MultistreamSplit.align(splits, streamOffsets);
+	}
+
 	@Override
 	public RecordReader<LongWritable, WikipediaPage> createRecordReader(InputSplit split,
 			TaskAttemptContext context) throws IOException, InterruptedException {
@@ -96,8 +129,7 @@ public class WikipediaPageInputFormat extends IndexableFileInputFormat<LongWrita
 		 * Returns progress on how much input has been consumed.
 		 */
 		public float getProgress() throws IOException {
-			return ((float) (reader.getPos() - reader.getStart()))
-					/ ((float) (reader.getEnd() - reader.getStart()));
+			return reader.getProgress();
 		}
 
 		@Override
@@ -0,0 +1,372 @@
+package util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.apache.hadoop.io.WritableUtils;
+
+import edu.umd.cloud9.collection.Indexable;
+import edu.umd.cloud9.collection.wikipedia.WikipediaPage;
+
+/**
+ * A Wikipedia page on the UTF-8 bytes of its XML record. Setting a record
+ * only finds the positions of the title, namespace, id, redirect and text
+ * elements, the fields are decoded when asked for. Unlike
+ * {@link WikipediaPage} it neither converts the record to a String nor parses
+ * the wiki markup.
+ * <p>
+ * Set from a record reader, the view refers to the reader's buffer and is
+ * valid until the next record. Serialized the same way as a
+ * {@link WikipediaPage}.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class WikipediaPageView extends Indexable {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final byte[] TITLE = bytes("<title>");
+	private static final byte[] TITLE_END = bytes("</title>");
+	private static final byte[] NS = bytes("<ns>");
+	private static final byte[] NS_END = bytes("</ns>");
+	private static final byte[] ID = bytes("<id>");
+	private static final byte[] ID_END = bytes("</id>");
+	private static final byte[] REDIRECT = bytes("<redirect");
+	private static final byte[] REVISION = bytes("<revision>");
+	private static final byte[] TEXT = bytes("<text");
+	private static final byte[] TEXT_END = bytes("</text>");
+	private static final byte[] REDIRECT_MARKUP = bytes("#redirect");
+
+	private byte[] bytes;
+	private int offset;
+	private int length;
+	// the view's own copy, for records which are not on the heap
+	private byte[] copy = new byte[0];
+
+	// absolute positions in bytes of the element contents, -1 if missing
+	private int titleStart;
+	private int titleEnd;
+	private int nsStart;
+	private int nsEnd;
+	private int idStart;
+	private int idEnd;
+	private int textStart;
+	private int textEnd;
+	private boolean redirectElement;
+
+	// decoded on demand
+	private String title;
+	private String id;
+
+	/**
+	 * Refers to the remaining bytes of the record if they are in an array,
+	 * otherwise copies them, e.g. from a direct buffer.
+	 */
+	public void set(ByteBuffer record) {
+		if (record.hasArray()) {
+			set(record.array(), record.arrayOffset() + record.position(), record.remaining());
+		} else {
+			int length = record.remaining();
+			ensureCopyCapacity(length);
+			record.duplicate().get(copy, 0, length);
+			set(copy, 0, length);
+		}
+	}
+
+	/**
+	 * Refers to the record without copying it.
+	 */
+	public void set(byte[] bytes, int offset, int length) {
+		this.bytes = bytes;
+		this.offset = offset;
+		this.length = length;
+		title = null;
+		id = null;
+		parse();
+	}
+
+	private void parse() {
+		int end = offset + length;
+
+		// the page's own elements come before its revision, which has an id
+		// as well
+		int headerEnd = indexOf(REVISION, offset, end);
+		if (headerEnd < 0)
+			headerEnd = end;
+
+		titleStart = contentStart(TITLE, offset, headerEnd);
+		titleEnd = titleStart < 0 ? -1 : indexOf(TITLE_END, titleStart, headerEnd);
+		nsStart = contentStart(NS, offset, headerEnd);
+		nsEnd = nsStart < 0 ? -1 : indexOf(NS_END, nsStart, headerEnd);
+		idStart = contentStart(ID, offset, headerEnd);
+		idEnd = idStart < 0 ? -1 : indexOf(ID_END, idStart, headerEnd);
+		redirectElement = indexOf(REDIRECT, offset, headerEnd) >= 0;
+
+		textStart = -1;
+		textEnd = -1;
+		int text = indexOf(TEXT, headerEnd, end);
+		while (text >= 0) {
+			int next = text + TEXT.length;
+			if (next < end && (bytes[next] == '>' || bytes[next] == ' ' || bytes[next] == '/')) {
+				parseText(text, end);
+				break;
+			}
+			text = indexOf(TEXT, next, end);
+		}
+	}
+
+	private void parseText(int text, int end) {
+		// attribute values may contain '>'
+		byte quote = 0;
+		for (int i = text + TEXT.length; i < end; i++) {
+			byte b = bytes[i];
+			if (quote != 0) {
+				if (b == quote)
+					quote = 0;
+			} else if (b == '"' || b == '\'') {
+				quote = b;
+			} else if (b == '>') {
+				textStart = i + 1;
+				if (bytes[i - 1] == '/')
+					// <text ... />
+					textEnd = textStart;
+				else
+					textEnd = indexOf(TEXT_END, textStart, end);
+				if (textEnd < 0)
+					textStart = -1;
+				return;
+			}
+		}
+	}
+
+	public String getTitle() {
+		if (title == null && titleEnd >= 0)
+			title = decode(bytes, titleStart, titleEnd);
+		return title;
+	}
+
+	/**
+	 * Looks the title up by its UTF-8 bytes, decoding it only if it contains
+	 * entities.
+	 */
+	public boolean isTitleIn(MembershipFilter titles) {
+		if (titleEnd < 0)
+			return false;
+
+		for (int i = titleStart; i < titleEnd; i++)
+			if (bytes[i] == '&')
+				return titles.contains(getTitle());
+		return titles.contains(bytes, titleStart, titleEnd - titleStart);
+	}
+
+	/**
+	 * @return the id of the page, not of its revision
+	 */
+	@Override
+	public String getDocid() {
+		if (id == null && idEnd >= 0)
+			id = decode(bytes, idStart, idEnd);
+		return id;
+	}
+
+	/**
+	 * @return the namespace, 0 for articles and -1 if it is missing
+	 */
+	public int getNamespace() {
+		if (nsEnd < 0)
+			return -1;
+
+		int namespace = 0;
+		boolean negative = false;
+		for (int i = nsStart; i < nsEnd; i++) {
+			byte b = bytes[i];
+			if (b == '-')
+				negative = true;
+			else if (b >= '0' && b <= '9')
+				namespace = namespace * 10 + b - '0';
+		}
+		return negative ? -namespace : namespace;
+	}
+
+	/**
+	 * @return whether the page has a <code>&lt;redirect&gt;</code> element or
+	 *         its text starts with <code>#REDIRECT</code>
+	 */
+	public boolean isRedirect() {
+		if (redirectElement)
+			return true;
+		if (textStart < 0 || textEnd - textStart < REDIRECT_MARKUP.length)
+			return false;
+
+		for (int i = 0; i < REDIRECT_MARKUP.length; i++) {
+			byte b = bytes[textStart + i];
+			if (b >= 'A' && b <= 'Z')
+				b += 'a' - 'A';
+			if (b != REDIRECT_MARKUP[i])
+				return false;
+		}
+		return true;
+	}
+
+	public boolean hasText() {
+		return textStart >= 0;
+	}
+
+	/**
+	 * @return the position of the article's wiki markup in
+	 *         {@link #getRawBytes()}, still XML-escaped, -1 if there is none
+	 */
+	public int getTextStart() {
+		return textStart;
+	}
+
+	/**
+	 * @return the position of <code>&lt;/text&gt;</code>, -1 if there is none
+	 */
+	public int getTextEnd() {
+		return textEnd;
+	}
+
+	/**
+	 * @return the article's wiki markup, null if there is none
+	 */
+	public String getText() {
+		return textStart < 0 ? null : decode(bytes, textStart, textEnd);
+	}
+
+	/**
+	 * @return the wiki markup, not plain text like
+	 *         {@link WikipediaPage#getContent()}
+	 */
+	@Override
+	public String getContent() {
+		return getText();
+	}
+
+	/**
+	 * @return the record's UTF-8 bytes from {@link #getRawOffset()} on
+	 */
+	public byte[] getRawBytes() {
+		return bytes;
+	}
+
+	public int getRawOffset() {
+		return offset;
+	}
+
+	public int getRawLength() {
+		return length;
+	}
+
+	public String getRawXML() {
+		return new String(bytes, offset, length, UTF8);
+	}
+
+	@Override
+	public void write(DataOutput out) throws IOException {
+		// the length as VInt followed by the bytes, like WikipediaPage
+		WritableUtils.writeVInt(out, length);
+		out.write(bytes, offset, length);
+	}
+
+	@Override
+	public void readFields(DataInput in) throws IOException {
+		int length = WritableUtils.readVInt(in);
+		ensureCopyCapacity(length);
+		in.readFully(copy, 0, length);
+		set(copy, 0, length);
+	}
+
+	private void ensureCopyCapacity(int length) {
+		if (copy.length < length)
+			copy = new byte[Math.max(length, copy.length * 2)];
+	}
+
+	/**
+	 * @return the position after the start tag, -1 if there is none
+	 */
+	private int contentStart(byte[] tag, int from, int to) {
+		int i = indexOf(tag, from, to);
+		return i < 0 ? -1 : i + tag.length;
+	}
+
+	private int indexOf(byte[] pattern, int from, int to) {
+		byte first = pattern[0];
+		int last = to - pattern.length;
+
+		search: for (int i = from; i <= last; i++) {
+			if (bytes[i] != first)
+				continue;
+
+			for (int k = 1; k < pattern.length; k++)
+				if (bytes[i + k] != pattern[k])
+					continue search;
+			return i;
+		}
+		return -1;
+	}
+
+	/**
+	 * Decodes UTF-8 and resolves the predefined entities and character
+	 * references.
+	 */
+	static String decode(byte[] bytes, int start, int end) {
+		String s = new String(bytes, start, end - start, UTF8);
+		int amp = s.indexOf('&');
+		if (amp < 0)
+			return s;
+
+		StringBuilder sb = new StringBuilder(s.length());
+		int copied = 0;
+		while (amp >= 0) {
+			int semicolon = s.indexOf(';', amp);
+			if (semicolon < 0)
+				break;
+
+			String entity = s.substring(amp + 1, semicolon);
+			int codePoint = resolve(entity);
+			if (codePoint >= 0) {
+				sb.append(s, copied, amp).appendCodePoint(codePoint);
+				copied = semicolon + 1;
+			}
+			amp = s.indexOf('&', amp + 1);
+		}
+		return sb.append(s, copied, s.length()).toString();
+	}
+
+	/**
+	 * @return the character of the entity without '&amp;' and ';', -1 if it
+	 *         is unknown
+	 */
+	private static int resolve(String entity) {
+		switch (entity) {
+		case "lt":
+			return '<';
+		case "gt":
+			return '>';
+		case "amp":
+			return '&';
+		case "quot":
+			return '"';
+		case "apos":
+			return '\'';
+		}
+
+		if (entity.length() < 2 || entity.charAt(0) != '#')
+			return -1;
+		try {
+			int codePoint = entity.charAt(1) == 'x' ? Integer.parseInt(entity.substring(2), 16)
+					: Integer.parseInt(entity.substring(1));
+			return Character.isValidCodePoint(codePoint) ? codePoint : -1;
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static byte[] bytes(String ascii) {
+		return ascii.getBytes(UTF8);
+	}
+}
@@ -0,0 +1,83 @@
+package util;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.JobContext;
+import org.apache.hadoop.mapreduce.RecordReader;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+
+import util.XMLInputFormat.XMLRecordReader;
+import edu.umd.cloud9.collection.wikipedia.WikipediaPage;
+
+/**
+ * Reads the pages of Wikipedia XML dumps as {@link WikipediaPageView}s, which
+ * refer to the record bytes instead of parsing them into a
+ * {@link WikipediaPage}. Splits compressed and multistream dumps like
+ * {@link WikipediaPageInputFormat}.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class WikipediaPageViewInputFormat extends
+		IndexableFileInputFormat<LongWritable, WikipediaPageView> {
+
+	@Override
+	public List<InputSplit> getSplits(JobContext job) throws IOException {
+		return WikipediaPageInputFormat.alignToStreams(job, super.getSplits(job));
+	}
+
+	@Override
+	public RecordReader<LongWritable, WikipediaPageView> createRecordReader(InputSplit split,
+			TaskAttemptContext context) throws IOException, InterruptedException {
+		context.setStatus(split.toString());
+		return new WikipediaPageViewRecordReader();
+	}
+
+	public static class WikipediaPageViewRecordReader extends
+			RecordReader<LongWritable, WikipediaPageView> {
+
+		private XMLRecordReader reader;
+		private final WikipediaPageView value = new WikipediaPageView();
+
+		@Override
+		public void initialize(InputSplit split, TaskAttemptContext context) throws IOException,
+				InterruptedException {
+			context.getConfiguration().set(XMLInputFormat.START_TAG_KEY,
+					WikipediaPage.XML_START_TAG);
+			context.getConfiguration().set(XMLInputFormat.END_TAG_KEY, WikipediaPage.XML_END_TAG);
+			reader = new XMLRecordReader(split, context);
+		}
+
+		@Override
+		public boolean nextKeyValue() throws IOException, InterruptedException {
+			if (!reader.nextKeyValue())
+				return false;
+
+			// refers to the reader's buffer
+			value.set(reader.getCurrentRecord());
+			return true;
+		}
+
+		@Override
+		public LongWritable getCurrentKey() throws IOException, InterruptedException {
+			return reader.getCurrentKey();
+		}
+
+		@Override
+		public WikipediaPageView getCurrentValue() throws IOException, InterruptedException {
+			return value;
+		}
+
+		@Override
+		public float getProgress() throws IOException {
+			return reader.getProgress();
+		}
+
+		@Override
+		public void close() throws IOException {
+			reader.close();
+		}
+	}
+}
@@ -1,23 +1,33 @@
 package util;
 
-import java.io.DataInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FSDataInputStream;
 import org.apache.hadoop.fs.FileSystem;
 import org.apache.hadoop.fs.Path;
 import org.apache.hadoop.fs.Seekable;
-import org.apache.hadoop.io.DataOutputBuffer;
 import org.apache.hadoop.io.LongWritable;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CodecPool;
 import org.apache.hadoop.io.compress.CompressionCodecFactory;
+import org.apache.hadoop.io.compress.Decompressor;
+import org.apache.hadoop.io.compress.SplitCompressionInputStream;
+import org.apache.hadoop.io.compress.SplittableCompressionCodec;
 import org.apache.hadoop.mapreduce.InputSplit;
 import org.apache.hadoop.mapreduce.RecordReader;
 import org.apache.hadoop.mapreduce.TaskAttemptContext;
 import org.apache.hadoop.mapreduce.lib.input.FileSplit;
 import org.apache.hadoop.mapreduce.lib.input.TextInputFormat;
+import org.apache.hadoop.util.ReflectionUtils;
 
 // solution for reading XML files, posted to the Hadoop users mailing list
 // Re: map/reduce function on xml string - Colin Evans-2 Mar 04, 2008; 02:27pm
@@ -25,30 +35,166 @@ public class XMLInputFormat extends TextInputFormat {
 	public static final String START_TAG_KEY = "xmlinput.start";
 	public static final String END_TAG_KEY = "xmlinput.end";
 
+	/** class of a {@link RecordFilter} for the records, none by default */
+	public static final String FILTER_CLASS_KEY = "xmlinput.filter.class";
+
+	public static enum XMLInputCounter {
+		/** records the {@link RecordFilter} rejected */
+		SKIPPED_RECORDS,
+		/** bytes of the rejected records, uncompressed */
+		SKIPPED_BYTES
+	}
+
+	/**
+	 * Decides from the first bytes of a record whether to read it, e.g. a
+	 * Wikipedia page from its title, so the rest of a rejected record is
+	 * skipped without keeping it in the buffer.
+	 */
+	public static interface RecordFilter {
+
+		/**
+		 * @return the bytes the part of a record the filter needs ends with,
+		 *         they are not part of it
+		 */
+		byte[] getHeaderEnd();
+
+		/**
+		 * @param header
+		 *            the record from its start tag up to the header end
+		 *            between position and limit, the whole record if there
+		 *            is no header end in it; valid until the call returns
+		 */
+		boolean accept(ByteBuffer header);
+	}
+
 	public RecordReader<LongWritable, Text> getRecordReader(InputSplit inputSplit,
 			TaskAttemptContext context) throws IOException, InterruptedException {
 		return new XMLRecordReader((FileSplit) inputSplit, context);
 	}
 
+	/**
+	 * Reads the records between the start and end tags, e.g. all
+	 * <code>&lt;page&gt;...&lt;/page&gt;</code> elements. A record belongs to
+	 * the split its start tag begins in and may end in the next one.
+	 * <p>
+	 * The file is read in large blocks into a reused buffer and the tags are
+	 * searched in there. A record is kept in the buffer until its end tag is
+	 * found, moving it to the front or growing the buffer when a block ends
+	 * inside it.
+	 * <p>
+	 * Files compressed with a {@link SplittableCompressionCodec} (bzip2) are
+	 * decompressed from the first block starting in the split on. A record
+	 * belongs to the split if the block its start tag begins in does, and the
+	 * keys count uncompressed bytes from there. A {@link MultistreamSplit}
+	 * consists of whole bzip2 streams, so all records in it belong to it.
+	 * <p>
+	 * With {@value #MMAP_KEY}=true, uncompressed files on the local file
+	 * system are memory-mapped in windows instead, by default of 256 MB, and
+	 * the tags are searched in the mapping. Whether that is faster than the
+	 * buffer depends on the machine, so it is off by default.
+	 * <p>
+	 * A record is handed out as a slice of the buffer or mapping by
+	 * {@link #getCurrentRecord()} and only copied into the value when it is
+	 * asked for.
+	 * <p>
+	 * With a {@link RecordFilter} each record is only read up to its header
+	 * end at first. The rest of a rejected one is searched for the end tag
+	 * like a region before a start tag, so only the last bytes of a block
+	 * are kept.
+	 */
 	public static class XMLRecordReader extends RecordReader<LongWritable, Text> {
 
+		/** bytes to read from the file at once, default 1 MB */
+		public static final String BUFFER_SIZE_KEY = "xmlinput.buffer.size";
+		public static final int DEFAULT_BUFFER_SIZE = 1 << 20;
+
+		/** whether to map local files, default false */
+		public static final String MMAP_KEY = "xmlinput.mmap";
+		/** bytes of a local file to map at once, default 256 MB */
+		public static final String MAP_SIZE_KEY = "xmlinput.mmap.size";
+		public static final int DEFAULT_MAP_SIZE = 1 << 28;
+
 		private byte[] startTag;
 		private byte[] endTag;
 		private long start;
 		private long end;
-		private long pos;
-		private DataInputStream fsin = null;
-		private DataOutputBuffer buffer = new DataOutputBuffer();
+		private InputStream fsin = null;
+
+		// the compressed position for progress, null if not compressed
+		private Seekable filePosition;
+		private long fileStart;
+		private long fileEnd;
+		private Decompressor decompressor;
+
+		// set if reading a bzip2 split block by block, each read returns
+		// bytes of one block; its position belongs to the bytes from
+		// chunkStart on, the previous one to those before
+		private SplitCompressionInputStream blockIn;
+		private byte[] blockBuffer;
+		private int chunkStart;
+		private long chunkPos;
+		private long previousChunkPos;
+
+		// the file's bytes from bufferOffset on, valid up to bufferEnd
+		private byte[] buffer;
+		private long bufferOffset;
+		private int bufferEnd;
+		// the first byte not consumed yet
+		private int bufferPos;
+
+		// set if the file is mapped, the window then replaces the buffer
+		private FileChannel channel;
+		private MappedByteBuffer window;
+		private int mapSize;
+
+		// the current record in the buffer or window
+		private int recordStart;
+		private int recordLength;
+		private boolean valueSet;
+		private byte[] valueBytes;
+
+		private RecordFilter filter;
+		private long skippedRecords;
+		private long skippedBytes;
+		// null if not run in a task; the name Counter is taken by the enum
+		// inherited from FileInputFormat
+		private org.apache.hadoop.mapreduce.Counter skippedRecordsCounter;
+		private org.apache.hadoop.mapreduce.Counter skippedBytesCounter;
+
 		LongWritable key;
 		Text value;
 
-		private long recordStartPos;
-
 		public XMLRecordReader(InputSplit split, TaskAttemptContext context) throws IOException,
 				InterruptedException {
 			initialize(split, context);
 		}
 
+		/**
+		 * Reads the split from <code>start</code> to <code>end</code> of a
+		 * stream which is already positioned at <code>start</code>.
+		 */
+		public XMLRecordReader(InputStream in, long start, long end, byte[] startTag,
+				byte[] endTag, int bufferSize) {
+			init(in, start, end, startTag, endTag, bufferSize);
+		}
+
+		/**
+		 * Reads the split of the given file, which may be compressed.
+		 */
+		public XMLRecordReader(FSDataInputStream fileIn, CompressionCodec codec, FileSplit split,
+				byte[] startTag, byte[] endTag, int bufferSize) throws IOException {
+			open(fileIn, codec, split, startTag, endTag, bufferSize);
+		}
+
+		/**
+		 * Reads the split from <code>start</code> to <code>end</code> of a
+		 * mapped file.
+		 */
+		public XMLRecordReader(FileChannel channel, long start, long end, byte[] startTag,
+				byte[] endTag, int mapSize) {
+			map(channel, start, end, startTag, endTag, mapSize);
+		}
+
 		public LongWritable createKey() {
 			return new LongWritable();
 		}
@@ -65,45 +211,57 @@ public class XMLInputFormat extends TextInputFormat {
 			return end;
 		}
 
-		public long getPos() throws IOException {
-			return pos;
+		/**
+		 * @param filter
+		 *            decides which records to read, null for all
+		 */
+		public void setFilter(RecordFilter filter) {
+			this.filter = filter;
 		}
 
-		public void close() throws IOException {
-			fsin.close();
+		public long getSkippedRecords() {
+			return skippedRecords;
 		}
 
-		public float getProgress() throws IOException {
-			return ((float) (pos - start)) / ((float) (end - start));
+		/**
+		 * @return the bytes of the skipped records, counted uncompressed
+		 */
+		public long getSkippedBytes() {
+			return skippedBytes;
 		}
 
-		private boolean readUntilMatch(byte[] match, boolean withinBlock) throws IOException {
-			int i = 0;
-			while (true) {
-				int b = fsin.read();
-				// increment position (bytes consumed)
-				pos++;
+		/**
+		 * @return the position after the last record, counted in
+		 *         uncompressed bytes for compressed files
+		 */
+		public long getPos() throws IOException {
+			return bufferOffset + bufferPos;
+		}
 
-				// end of file:
-				if (b == -1)
-					return false;
-				// save to buffer:
-				if (withinBlock)
-					buffer.write(b);
-
-				// check if we're matching:
-				if (b == match[i]) {
-					i++;
-					if (i >= match.length)
-						return true;
-				} else
-					i = 0;
-				// see if we've passed the stop point:
-				if (!withinBlock && i == 0 && pos >= end)
-					return false;
+		public void close() throws IOException {
+			try {
+				if (channel != null)
+					channel.close();
+				else
+					fsin.close();
+			} finally {
+				if (decompressor != null) {
+					CodecPool.returnDecompressor(decompressor);
+					decompressor = null;
+				}
 			}
 		}
 
+		public float getProgress() throws IOException {
+			if (filePosition == null)
+				return ((float) (getPos() - start)) / ((float) (end - start));
+
+			if (fileEnd == fileStart)
+				return 0;
+			return Math.min(1, (filePosition.getPos() - fileStart)
+					/ (float) (fileEnd - fileStart));
+		}
+
 		@Override
 		public LongWritable getCurrentKey() throws IOException, InterruptedException {
 			return key;
@@ -111,9 +269,35 @@ public class XMLInputFormat extends TextInputFormat {
 
 		@Override
 		public Text getCurrentValue() throws IOException, InterruptedException {
+			if (!valueSet && value != null) {
+				if (window == null) {
+					value.set(buffer, recordStart, recordLength);
+				} else {
+					if (valueBytes == null || valueBytes.length < recordLength)
+						valueBytes = new byte[Math.max(recordLength, DEFAULT_BUFFER_SIZE)];
+					getCurrentRecord().get(valueBytes, 0, recordLength);
+					value.set(valueBytes, 0, recordLength);
+				}
+				valueSet = true;
+			}
 			return value;
 		}
 
+		/**
+		 * @return the bytes of the current record between position and limit,
+		 *         without copying them; valid until the next record
+		 */
+		public ByteBuffer getCurrentRecord() {
+			return slice(recordStart, recordStart + recordLength);
+		}
+
+		private ByteBuffer slice(int from, int to) {
+			ByteBuffer bytes = window == null ? ByteBuffer.wrap(buffer) : window.duplicate();
+			bytes.limit(to);
+			bytes.position(from);
+			return bytes;
+		}
+
 		@Override
 		public void initialize(InputSplit genericSplit, TaskAttemptContext context)
 				throws IOException, InterruptedException {
@@ -123,84 +307,381 @@ public class XMLInputFormat extends TextInputFormat {
 			if (jobConf.get(START_TAG_KEY) == null || jobConf.get(END_TAG_KEY) == null)
 				throw new RuntimeException("Error! XML start and end tags unspecified!");
 
-			startTag = jobConf.get(START_TAG_KEY).getBytes("utf-8");
-			endTag = jobConf.get(END_TAG_KEY).getBytes("utf-8");
+			byte[] startTag = jobConf.get(START_TAG_KEY).getBytes("utf-8");
+			byte[] endTag = jobConf.get(END_TAG_KEY).getBytes("utf-8");
+			int bufferSize = jobConf.getInt(BUFFER_SIZE_KEY, DEFAULT_BUFFER_SIZE);
+
+			Class<? extends RecordFilter> filterClass = jobConf.getClass(FILTER_CLASS_KEY, null,
+					RecordFilter.class);
+			if (filterClass != null) {
+				filter = ReflectionUtils.newInstance(filterClass, jobConf);
+				skippedRecordsCounter = context.getCounter(XMLInputCounter.SKIPPED_RECORDS);
+				skippedBytesCounter = context.getCounter(XMLInputCounter.SKIPPED_BYTES);
+			}
 
-			start = split.getStart();
 			Path file = split.getPath();
+			CompressionCodec codec = new CompressionCodecFactory(jobConf).getCodec(file);
+			FileSystem fs = file.getFileSystem(jobConf);
 
-			CompressionCodecFactory compressionCodecs = new CompressionCodecFactory(jobConf);
-			CompressionCodec codec = compressionCodecs.getCodec(file);
+			if (codec == null && jobConf.getBoolean(MMAP_KEY, false)
+					&& "file".equals(fs.getUri().getScheme())) {
+				FileChannel channel = FileChannel.open(
+						Paths.get(fs.makeQualified(file).toUri()), StandardOpenOption.READ);
+				map(channel, split.getStart(), split.getStart() + split.getLength(), startTag,
+						endTag, jobConf.getInt(MAP_SIZE_KEY, DEFAULT_MAP_SIZE));
+				return;
+			}
 
-			FileSystem fs = file.getFileSystem(jobConf);
+			open(fs.open(file), codec, split, startTag, endTag, bufferSize);
+		}
 
-			if (codec != null) {
+		private void map(FileChannel channel, long start, long end, byte[] startTag,
+				byte[] endTag, int mapSize) {
+			this.channel = channel;
+			this.start = start;
+			this.end = end;
+			this.startTag = startTag;
+			this.endTag = endTag;
+			this.mapSize = Math.max(mapSize, Math.max(startTag.length, endTag.length));
+
+			bufferOffset = start;
+			bufferPos = 0;
+			bufferEnd = 0;
+		}
 
-				// InputStream tempStream = codec.createInputStream(fileIn);
-				// fsin = new DataInputStream(tempStream);
+		private void open(FSDataInputStream fileIn, CompressionCodec codec, FileSplit split,
+				byte[] startTag, byte[] endTag, int bufferSize) throws IOException {
+			long start = split.getStart();
+			long end = start + split.getLength();
 
-				fsin = new DataInputStream(codec.createInputStream(fs.open(file)));
+			if (codec == null) {
+				fileIn.seek(start);
+				init(fileIn, start, end, startTag, endTag, bufferSize);
+				return;
+			}
 
-				end = Long.MAX_VALUE;
+			filePosition = fileIn;
+			fileStart = start;
+			fileEnd = end;
+			decompressor = CodecPool.getDecompressor(codec);
+
+			if (split instanceof MultistreamSplit) {
+				init(((MultistreamSplit) split).open(fileIn, codec, decompressor), start,
+						Long.MAX_VALUE, startTag, endTag, bufferSize);
+			} else if (codec instanceof SplittableCompressionCodec) {
+				blockIn = ((SplittableCompressionCodec) codec).createInputStream(fileIn,
+						decompressor, start, end, SplittableCompressionCodec.READ_MODE.BYBLOCK);
+				filePosition = blockIn;
+				fileStart = blockIn.getAdjustedStart();
+				fileEnd = blockIn.getAdjustedEnd();
+				init(blockIn, fileStart, fileEnd, startTag, endTag, bufferSize);
+				blockBuffer = new byte[buffer.length];
+				chunkPos = blockIn.getPos();
+				previousChunkPos = chunkPos;
 			} else {
+				// not splittable, the whole file is one split
+				init(codec.createInputStream(fileIn, decompressor), start, Long.MAX_VALUE,
+						startTag, endTag, bufferSize);
+			}
+		}
 
-				FSDataInputStream fileIn = fs.open(file);
+		private void init(InputStream in, long start, long end, byte[] startTag, byte[] endTag,
+				int bufferSize) {
+			this.fsin = in;
+			this.start = start;
+			this.end = end;
+			this.startTag = startTag;
+			this.endTag = endTag;
+
+			buffer = new byte[Math.max(bufferSize, Math.max(startTag.length, endTag.length))];
+			bufferOffset = start;
+			bufferPos = 0;
+			bufferEnd = 0;
+		}
 
-				fileIn.seek(start);
-				fsin = fileIn;
+		@Override
+		public boolean nextKeyValue() throws IOException, InterruptedException {
+			int recordStart;
+			int searchFrom;
+			while (true) {
+				recordStart = findRecordStart();
+				if (recordStart < 0)
+					return false;
+				searchFrom = recordStart + startTag.length;
+				if (filter == null)
+					break;
 
-				end = start + split.getLength();
+				int headerEnd = findHeaderEnd();
+				if (headerEnd < 0)
+					return false;
+				// the header may end with the end tag
+				searchFrom = Math.max(bufferPos + startTag.length, headerEnd - endTag.length);
+				if (filter.accept(slice(bufferPos, headerEnd))) {
+					recordStart = bufferPos;
+					break;
+				}
+				if (!skipRecord(searchFrom))
+					return false;
 			}
 
-			recordStartPos = start;
+			while (true) {
+				int tagStart = indexOf(endTag, searchFrom, bufferEnd);
+				if (tagStart >= 0) {
+					int recordEnd = tagStart + endTag.length;
+
+					if (key == null) {
+						key = new LongWritable();
+					}
+					if (value == null) {
+						value = new Text();
+					}
+					key.set(bufferOffset + recordStart);
+					// copied when asked for
+					this.recordStart = recordStart;
+					recordLength = recordEnd - recordStart;
+					valueSet = false;
+
+					bufferPos = recordEnd;
+					return true;
+				}
+
+				// the end tag may begin in the last bytes
+				searchFrom = Math.max(searchFrom, bufferEnd - endTag.length + 1);
 
-			// Because input streams of gzipped files are not seekable
-			// (specifically, do not support getPos), we need to keep
-			// track of bytes consumed ourselves.
-			pos = start;
+				long offset = bufferOffset;
+				if (!fill(recordStart))
+					return false;
+				int shift = (int) (bufferOffset - offset);
+				recordStart -= shift;
+				searchFrom -= shift;
+			}
+		}
+
+		/**
+		 * Consumes the input up to the next start tag which begins in this
+		 * split.
+		 * 
+		 * @return the start tag's position in the buffer, -1 if there is none
+		 */
+		private int findRecordStart() throws IOException {
+			while (true) {
+				int tagStart = indexOf(startTag, bufferPos, bufferEnd);
+				if (tagStart >= 0) {
+					bufferPos = tagStart;
+					return beforeEnd(tagStart) ? tagStart : -1;
+				}
 
+				// the start tag may begin in the last bytes
+				bufferPos = Math.max(bufferPos, bufferEnd - startTag.length + 1);
+				if (!beforeEnd(bufferPos) || !fill(bufferPos))
+					return -1;
+			}
 		}
 
-		@Override
-		public boolean nextKeyValue() throws IOException, InterruptedException {
-			if (pos < end) {
-				if (readUntilMatch(startTag, false)) {
-					recordStartPos = pos - startTag.length;
-
-					try {
-						buffer.write(startTag);
-						if (readUntilMatch(endTag, true)) {
-							if (key == null) {
-								key = new LongWritable();
-							}
-							if (value == null) {
-								value = new Text();
-							}
-							key.set(recordStartPos);
-							value.set(buffer.getData(), 0, buffer.getLength());
-							return true;
-						}
-					} finally {
-						// Because input streams of gzipped files are not
-						// seekable (specifically, do not support getPos), we
-						// need to keep track of bytes consumed ourselves.
-
-						// This is a sanity check to make sure our internal
-						// computation of bytes consumed is accurate. This
-						// should be removed later for efficiency once we
-						// confirm that this code works correctly.
-
-						if (fsin instanceof Seekable) {
-							if (pos != ((Seekable) fsin).getPos()) {
-								throw new RuntimeException("bytes consumed error!");
-							}
-						}
-
-						buffer.reset();
+		/**
+		 * Reads on until the filter's header end or the end tag of the record
+		 * at {@link #bufferPos} is in the buffer.
+		 * 
+		 * @return the position of the header end, the one after the end tag
+		 *         if it comes first, -1 at the end of the input
+		 */
+		private int findHeaderEnd() throws IOException {
+			byte[] headerEnd = filter.getHeaderEnd();
+			int searchFrom = bufferPos + startTag.length;
+			while (true) {
+				int headerEndStart = indexOf(headerEnd, searchFrom, bufferEnd);
+				int tagStart = indexOf(endTag, searchFrom, headerEndStart < 0 ? bufferEnd
+						: headerEndStart);
+				if (tagStart >= 0)
+					return tagStart + endTag.length;
+				if (headerEndStart >= 0)
+					return headerEndStart;
+
+				// either may begin in the last bytes
+				searchFrom = Math.max(searchFrom,
+						bufferEnd - Math.max(headerEnd.length, endTag.length) + 1);
+
+				long offset = bufferOffset;
+				if (!fill(bufferPos))
+					return -1;
+				searchFrom -= (int) (bufferOffset - offset);
+			}
+		}
+
+		/**
+		 * Consumes the record at {@link #bufferPos} up to its end tag, keeping
+		 * only the bytes the end tag may begin in when reading on.
+		 * 
+		 * @return false at the end of the input
+		 */
+		private boolean skipRecord(int searchFrom) throws IOException {
+			long recordOffset = bufferOffset + bufferPos;
+			while (true) {
+				int tagStart = indexOf(endTag, searchFrom, bufferEnd);
+				if (tagStart >= 0) {
+					bufferPos = tagStart + endTag.length;
+					long bytes = bufferOffset + bufferPos - recordOffset;
+					skippedRecords++;
+					skippedBytes += bytes;
+					if (skippedRecordsCounter != null) {
+						skippedRecordsCounter.increment(1);
+						skippedBytesCounter.increment(bytes);
+					}
+					return true;
+				}
+
+				bufferPos = Math.max(searchFrom, bufferEnd - endTag.length + 1);
+				if (!fill(bufferPos))
+					return false;
+				searchFrom = bufferPos;
+			}
+		}
+
+		/**
+		 * @return whether a record starting at this position of the buffer
+		 *         belongs to the split
+		 */
+		private boolean beforeEnd(int i) {
+			if (blockIn == null)
+				return bufferOffset + i < end;
+
+			// like Hadoop's LineRecordReader, the blocks up to the one at the
+			// split end belong to it
+			return (i >= chunkStart ? chunkPos : previousChunkPos) <= end;
+		}
+
+		/**
+		 * Drops the bytes before <code>keepFrom</code> and reads the next
+		 * block behind the kept ones. Grows the buffer if they fill it.
+		 * 
+		 * @return false at the end of the input
+		 */
+		private boolean fill(int keepFrom) throws IOException {
+			if (channel != null)
+				return remap(keepFrom);
+
+			int kept = bufferEnd - keepFrom;
+			if (kept == buffer.length)
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);
+			else
+				System.arraycopy(buffer, keepFrom, buffer, 0, kept);
+
+			bufferOffset += keepFrom;
+			bufferPos = Math.max(0, bufferPos - keepFrom);
+			bufferEnd = kept;
+			chunkStart -= keepFrom;
+
+			int read = blockIn == null ? fsin.read(buffer, bufferEnd, buffer.length - bufferEnd)
+					: readBlock();
+			if (read < 0)
+				return false;
+			bufferEnd += read;
+			return true;
+		}
+
+		/**
+		 * Maps the next window of the file from <code>keepFrom</code> on,
+		 * larger than the current one if the kept bytes fill it.
+		 */
+		private boolean remap(int keepFrom) throws IOException {
+			long offset = bufferOffset + keepFrom;
+			int kept = bufferEnd - keepFrom;
+			long remaining = channel.size() - offset;
+			if (remaining <= kept)
+				return false;
+			if (kept == Integer.MAX_VALUE)
+				throw new IOException("record at " + offset + " larger than 2 GB");
+
+			long size = Math.min(remaining, Math.max(mapSize, 2L * kept));
+			window = channel.map(FileChannel.MapMode.READ_ONLY, offset,
+					Math.min(size, Integer.MAX_VALUE));
+
+			bufferOffset = offset;
+			bufferPos = Math.max(0, bufferPos - keepFrom);
+			bufferEnd = window.limit();
+			return true;
+		}
+
+		/**
+		 * Reads the next bytes of the current bzip2 block, the first byte of
+		 * the next one after its end, behind the kept bytes.
+		 */
+		private int readBlock() throws IOException {
+			// after a block end Hadoop's stream reads off + 1 bytes instead
+			// of one, so it always gets a buffer starting at 0
+			int length = Math.min(blockBuffer.length, buffer.length - bufferEnd);
+			int read = blockIn.read(blockBuffer, 0, length);
+			if (read <= 0)
+				return read;
+
+			System.arraycopy(blockBuffer, 0, buffer, bufferEnd, read);
+			previousChunkPos = chunkPos;
+			chunkPos = blockIn.getPos();
+			chunkStart = bufferEnd;
+			return read;
+		}
+
+		/**
+		 * Looks for the first byte of the pattern in a tight loop and only
+		 * compares the rest where it occurs.
+		 * 
+		 * @return the position of the first occurrence of the whole pattern
+		 *         between <code>from</code> and <code>to</code>, -1 if there
+		 *         is none
+		 */
+		private int indexOf(byte[] pattern, int from, int to) {
+			if (window != null)
+				return indexOfMapped(pattern, from, to);
+
+			byte first = pattern[0];
+			int last = to - pattern.length;
+
+			search: for (int i = from; i <= last; i++) {
+				if (buffer[i] != first)
+					continue;
+
+				for (int k = 1; k < pattern.length; k++)
+					if (buffer[i + k] != pattern[k])
+						continue search;
+				return i;
+			}
+			return -1;
+		}
+
+		/**
+		 * Looks for the first byte of the pattern in eight bytes at a time,
+		 * which reads from the mapping faster than single bytes.
+		 */
+		private int indexOfMapped(byte[] pattern, int from, int to) {
+			MappedByteBuffer window = this.window;
+			byte first = pattern[0];
+			long firstBytes = (first & 0xFFL) * 0x0101010101010101L;
+			int last = to - pattern.length;
+
+			int i = from;
+			while (i <= last) {
+				if (i + 8 <= to) {
+					// x has a zero byte where the first byte is, the test for
+					// one is from "Bit Twiddling Hacks"
+					long x = window.getLong(i) ^ firstBytes;
+					if (((x - 0x0101010101010101L) & ~x & 0x8080808080808080L) == 0) {
+						i += 8;
+						continue;
 					}
 				}
+
+				if (window.get(i) == first && matches(window, i, pattern))
+					return i;
+				i++;
 			}
-			return false;
+			return -1;
+		}
+
+		private static boolean matches(ByteBuffer window, int i, byte[] pattern) {
+			for (int k = 1; k < pattern.length; k++)
+				if (window.get(i + k) != pattern[k])
+					return false;
+			return true;
 		}
 	}
 }
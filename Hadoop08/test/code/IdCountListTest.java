@@ -0,0 +1,77 @@
+package code;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import util.IdCountList;
+import util.LemmaDictionary;
+
+/**
+ * 
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class IdCountListTest {
+
+	private final LemmaDictionary dictionary = new LemmaDictionary(Arrays.asList(
+			"0 : house,188", "2 : monica,10", "1 : white,179"));
+
+	@Test
+	public void testDictionary() {
+		assertEquals(3, dictionary.size());
+		assertEquals(0, dictionary.getId("house"));
+		assertEquals(1, dictionary.getId("white"));
+		assertEquals(-1, dictionary.getId("lewinsky"));
+		assertEquals("monica", dictionary.getLemma(2));
+	}
+
+	@Test
+	public void testReadFields() throws IOException {
+		IdCountList list = new IdCountList(1);
+		list.add(0, 99);
+		list.add(2, 10);
+		list.add(100_000, 1);
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		list.write(out);
+
+		// reused instance with more entries than the new record
+		IdCountList read = new IdCountList();
+		for (int i = 0; i < 5; i++)
+			read.add(i, i);
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		read.readFields(in);
+
+		assertEquals(3, read.size());
+		assertEquals("<0,99>,<2,10>,<100000,1>", read.toString());
+	}
+
+	@Test
+	public void testToStringIntegerList() {
+		IdCountList list = new IdCountList();
+		list.add(1, 99);
+		list.add(0, 98);
+		list.add(2, 10);
+
+		assertEquals("<white,99>,<house,98>,<monica,10>", list.toStringIntegerList(dictionary)
+				.toString());
+	}
+
+	@Test
+	public void testSortById() {
+		IdCountList list = new IdCountList();
+		list.add(7, 1);
+		list.add(0, Integer.MAX_VALUE);
+		list.add(3, 5);
+
+		list.sortById();
+		assertEquals("<0,2147483647>,<3,5>,<7,1>", list.toString());
+	}
+}
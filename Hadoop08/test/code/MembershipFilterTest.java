@@ -0,0 +1,116 @@
+package code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import util.MembershipFilter;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class MembershipFilterTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Test
+	public void testContainsExactlyTheStrings() throws IOException {
+		// prefixes of each other, shared prefixes across blocks, non-ASCII
+		// bytes which sort after ASCII ones, the empty string, duplicates
+		List<String> strings = new ArrayList<>(Arrays.asList("", "A", "AB", "ABC", "ABD",
+				"Albert Einstein", "Albert Einstein (disambiguation)", "Mario Gómez",
+				"Mario Gomez", "Tōgō Heihachirō", "日本", "Z", "Albert Einstein"));
+		for (int i = 0; i < 100; i++)
+			strings.add("Person " + i);
+
+		MembershipFilter filter = MembershipFilter.build(strings);
+		assertEquals(strings.size() - 1, filter.size());
+
+		for (String string : strings) {
+			assertTrue(string, filter.contains(string));
+			assertTrue(string, filter.contains(new Text(string)));
+		}
+
+		String[] missing = { "Albert", "AA", "ABCD", "AC", "Mario G", "Person 100", "Person",
+				"Person 5 ", "日", "日本人", "ZZ", "ÿ", " " };
+		for (String string : missing)
+			assertFalse(string, filter.contains(string));
+
+		byte[] buffer = "xxPerson 42yy".getBytes(UTF8);
+		assertTrue(filter.contains(buffer, 2, 9));
+		assertFalse(filter.contains(buffer, 2, 10));
+
+		MembershipFilter empty = MembershipFilter.build(Collections.<String> emptyList());
+		assertFalse(empty.contains(""));
+	}
+
+	/**
+	 * Random strings have to be found exactly when they were added, also
+	 * read back from a mapped side file, which has to be less than a quarter
+	 * of an estimate of the HashSet the mappers used before.
+	 */
+	@Test
+	public void testRandomStringsFromMappedFile() throws IOException {
+		final int STRINGS = 200_000;
+		Random random = new Random(3);
+		Set<String> strings = new HashSet<>();
+		while (strings.size() < STRINGS)
+			strings.add(randomTitle(random));
+
+		java.nio.file.Path path = Files.createTempFile("people", MembershipFilter.SUFFIX);
+		try {
+			try (OutputStream out = Files.newOutputStream(path)) {
+				MembershipFilter.write(strings, out);
+			}
+			MembershipFilter filter = MembershipFilter.map(path);
+			assertEquals(STRINGS, filter.size());
+
+			List<byte[]> present = new ArrayList<>();
+			for (String string : strings)
+				present.add(string.getBytes(UTF8));
+			List<byte[]> absent = new ArrayList<>();
+			while (absent.size() < STRINGS) {
+				String string = randomTitle(random);
+				if (!strings.contains(string))
+					absent.add(string.getBytes(UTF8));
+			}
+
+			for (byte[] utf8 : present)
+				assertTrue(filter.contains(utf8, 0, utf8.length));
+			for (byte[] utf8 : absent)
+				assertFalse(filter.contains(utf8, 0, utf8.length));
+
+			// per entry about 32 bytes for the node, 24 + 2 per char for the
+			// String and its chars, and the table slot
+			long hashSetBytes = 0;
+			for (String string : strings)
+				hashSetBytes += 32 + 24 + 16 + 2 * string.length() + 8;
+			assertTrue(filter.getBytes() < hashSetBytes / 4);
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	private static String randomTitle(Random random) {
+		String[] first = { "Albert", "Bill", "Mario", "Will", "Anna", "Maria", "Jean", "Tōgō" };
+		String[] last = { "Einstein", "Clinton", "Gómez", "Smith", "Müller", "Heihachirō" };
+		return first[random.nextInt(first.length)] + " " + last[random.nextInt(last.length)]
+				+ " " + random.nextInt(1_000_000);
+	}
+}
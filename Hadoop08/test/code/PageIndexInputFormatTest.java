@@ -0,0 +1,153 @@
+package code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.fs.BlockLocation;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.junit.Test;
+
+import util.PageIndexInputFormat;
+import util.PageIndexInputFormat.PageRangesRecordReader;
+import util.PageIndexInputFormat.PageRangesSplit;
+import util.PageLocation;
+import util.WikipediaPageView;
+import util.XMLInputFormat.XMLRecordReader;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PageIndexInputFormatTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final byte[] START_TAG = "<page>".getBytes(UTF8);
+	private static final byte[] END_TAG = "</page>".getBytes(UTF8);
+	private static final Path FILE = new Path("file:/dump.xml");
+
+	/**
+	 * The pages read by their locations, after the splits went through
+	 * serialization, have to be the ones a scan finds.
+	 */
+	@Test
+	public void testReadsPagesByLocation() throws IOException, InterruptedException {
+		byte[] file = XMLInputFormatTest.syntheticDump(2000, new Random(5));
+
+		// what the indexer writes
+		List<PageLocation> all = scan(file);
+		assertEquals(2000, all.size());
+		List<PageLocation> wanted = new ArrayList<>();
+		List<String> expected = new ArrayList<>();
+		for (int i = 0; i < all.size(); i += 50) {
+			PageLocation location = roundTrip(all.get(i));
+			wanted.add(location);
+			expected.add("Page " + i);
+		}
+
+		List<InputSplit> splits = PageIndexInputFormat.group(wanted, 16);
+		assertEquals(3, splits.size());
+		List<String> titles = new ArrayList<>();
+		for (InputSplit split : splits)
+			titles.addAll(read(file, roundTrip((PageRangesSplit) split)));
+		assertEquals(expected, titles);
+	}
+
+	/**
+	 * Splits starting at the page boundaries read each page exactly once.
+	 */
+	@Test
+	public void testSplitsAtPageBoundaries() throws IOException, InterruptedException {
+		byte[] file = XMLInputFormatTest.syntheticDump(300, new Random(9));
+		List<PageLocation> all = scan(file);
+
+		long[] boundaries = { all.get(0).getOffset(), all.get(17).getOffset(),
+				all.get(18).getOffset(), all.get(250).getOffset() };
+		BlockLocation[] blocks = { new BlockLocation(null, new String[] { "a" }, 0, 1 << 20),
+				new BlockLocation(null, new String[] { "b" }, 1 << 20, file.length) };
+		List<InputSplit> splits = PageIndexInputFormat.alignToPages(FILE, file.length,
+				boundaries, blocks);
+		assertEquals(4, splits.size());
+
+		int pages = 0;
+		for (int i = 0; i < splits.size(); i++) {
+			FileSplit split = (FileSplit) splits.get(i);
+			assertEquals(boundaries[i], split.getStart());
+			assertEquals(boundaries[i] < 1 << 20 ? "a" : "b", split.getLocations()[0]);
+
+			ByteArrayInputStream in = new ByteArrayInputStream(file);
+			in.skip(split.getStart());
+			XMLRecordReader reader = new XMLRecordReader(in, split.getStart(), split.getStart()
+					+ split.getLength(), START_TAG, END_TAG, 4096);
+			while (reader.nextKeyValue()) {
+				assertEquals(all.get(pages).getOffset(), reader.getCurrentKey().get());
+				pages++;
+			}
+			reader.close();
+		}
+		assertEquals(300, pages);
+	}
+
+	private static List<PageLocation> scan(byte[] file) throws IOException,
+			InterruptedException {
+		XMLRecordReader reader = new XMLRecordReader(new ByteArrayInputStream(file), 0,
+				file.length, START_TAG, END_TAG, XMLRecordReader.DEFAULT_BUFFER_SIZE);
+		WikipediaPageView page = new WikipediaPageView();
+		List<PageLocation> locations = new ArrayList<>();
+		while (reader.nextKeyValue()) {
+			page.set(reader.getCurrentRecord());
+			locations.add(new PageLocation(FILE.toString(), reader.getCurrentKey().get(), page
+					.getRawLength(), page.getNamespace()));
+		}
+		reader.close();
+		return locations;
+	}
+
+	private static List<String> read(byte[] file, PageRangesSplit split) throws IOException,
+			InterruptedException {
+		PageRangesRecordReader reader = new PageRangesRecordReader(new FSDataInputStream(
+				new XMLInputFormatTest.SeekableBytes(file)), split);
+		List<String> titles = new ArrayList<>();
+		while (reader.nextKeyValue()) {
+			WikipediaPageView page = reader.getCurrentValue();
+			titles.add(page.getTitle());
+			assertEquals('<', file[(int) reader.getCurrentKey().get()]);
+		}
+		assertFalse(reader.nextKeyValue());
+		reader.close();
+		return titles;
+	}
+
+	private static PageLocation roundTrip(PageLocation location) throws IOException {
+		DataOutputBuffer out = new DataOutputBuffer();
+		location.write(out);
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		PageLocation read = new PageLocation();
+		read.readFields(in);
+		assertEquals(location.toString(), read.toString());
+		return read;
+	}
+
+	private static PageRangesSplit roundTrip(PageRangesSplit split) throws IOException {
+		DataOutputBuffer out = new DataOutputBuffer();
+		split.write(out);
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		PageRangesSplit read = new PageRangesSplit();
+		read.readFields(in);
+		assertEquals(split.toString(), read.toString());
+		return read;
+	}
+}
@@ -0,0 +1,103 @@
+package code;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import util.PageIndex;
+import util.PageLocation;
+import util.WikipediaPageView;
+import util.XMLInputFormat.XMLRecordReader;
+import code.articles.PageIndexMapred;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PageIndexTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final byte[] START_TAG = "<page>".getBytes(UTF8);
+	private static final byte[] END_TAG = "</page>".getBytes(UTF8);
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	/**
+	 * Runs {@link PageIndexMapred} in local mode on a synthetic dump and looks
+	 * titles up in the index it wrote. Titles missing from the dump are not
+	 * found.
+	 */
+	@Test
+	public void testLookupInIndexedDump() throws Exception {
+		byte[] file = XMLInputFormatTest.syntheticDump(300, new Random(13));
+		File dump = temp.newFile("dump.xml");
+		Files.write(dump.toPath(), file);
+		File indexDir = new File(temp.getRoot(), "index");
+
+		PageIndexMapred.main(new String[] { dump.toString(), indexDir.toString() });
+
+		List<PageLocation> all = scan(file);
+		List<String> titles = new ArrayList<>();
+		List<PageLocation> expected = new ArrayList<>();
+		for (int i = 0; i < all.size(); i += 7) {
+			titles.add("Page " + i);
+			expected.add(all.get(i));
+		}
+		// shuffled and with a title that is not in the dump
+		titles.add(0, "Page 300");
+		titles.add(titles.remove(1));
+
+		Configuration conf = new Configuration();
+		try (PageIndex index = new PageIndex(new Path(indexDir.toString()), conf)) {
+			List<PageLocation> locations = index.lookup(titles);
+			assertEquals(expected.size(), locations.size());
+			for (int i = 0; i < expected.size(); i++) {
+				PageLocation location = locations.get(i);
+				assertEquals(expected.get(i).getOffset(), location.getOffset());
+				assertEquals(expected.get(i).getLength(), location.getLength());
+				assertEquals(expected.get(i).getNamespace(), location.getNamespace());
+				assertEquals(dump.getName(), new Path(location.getFile()).getName());
+			}
+		}
+
+		// the whole dump is below the default boundary size
+		Map<Path, long[]> boundaries = PageIndex.readBoundaries(new Path(indexDir.toString()),
+				conf);
+		assertEquals(1, boundaries.size());
+		Map.Entry<Path, long[]> entry = boundaries.entrySet().iterator().next();
+		assertEquals(dump.getName(), entry.getKey().getName());
+		assertArrayEquals(new long[] { all.get(0).getOffset() }, entry.getValue());
+	}
+
+	private static List<PageLocation> scan(byte[] file) throws IOException,
+			InterruptedException {
+		XMLRecordReader reader = new XMLRecordReader(new ByteArrayInputStream(file), 0,
+				file.length, START_TAG, END_TAG, XMLRecordReader.DEFAULT_BUFFER_SIZE);
+		WikipediaPageView page = new WikipediaPageView();
+		List<PageLocation> locations = new ArrayList<>();
+		while (reader.nextKeyValue()) {
+			page.set(reader.getCurrentRecord());
+			assertEquals("Page " + locations.size(), page.getTitle());
+			locations.add(new PageLocation("dump.xml", reader.getCurrentKey().get(), page
+					.getRawLength(), page.getNamespace()));
+		}
+		reader.close();
+		return locations;
+	}
+}
@@ -10,6 +10,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
 import org.junit.Test;
 
 import util.StringDouble;
@@ -116,9 +119,44 @@ public class StringDoubleListTest {
 	}
 
 	@Test
-	// will need implementation after figuring out how to pass in readFields
-	// parameters correctly
-	public void testReadFields() {
+	public void testReadFields() throws IOException {
+		List<StringDouble> arrayList = new ArrayList<>();
+		arrayList.add(new StringDouble("SD1", 100.001));
+		arrayList.add(new StringDouble("SD<2>", 200.002));
+		arrayList.add(new StringDouble("Tōgō", 300.003));
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		new StringDoubleList(arrayList).write(out);
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		StringDoubleList sdList = new StringDoubleList();
+		sdList.readFields(in);
+
+		// unlike the text output, the binary format keeps '<' and '>'
+		final List<StringDouble> indices = sdList.getIndices();
+		assertEquals(3, indices.size());
+		assertEqualsSI(new StringDouble("SD1", 100.001), indices.get(0));
+		assertEqualsSI(new StringDouble("SD<2>", 200.002), indices.get(1));
+		assertEqualsSI(new StringDouble("Tōgō", 300.003), indices.get(2));
+		assertEquals(out.getLength(), in.getPosition());
+	}
+
+	@Test
+	public void testReadFieldsOfLegacyFormat() throws IOException {
+		DataOutputBuffer out = new DataOutputBuffer();
+		WritableUtils.writeCompressedString(out, "<SD1,100.001>,<SD2,200.002>,<SD3,300.003>");
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		StringDoubleList sdList = new StringDoubleList();
+		sdList.readFields(in);
+
+		final List<StringDouble> indices = sdList.getIndices();
+		assertEquals(3, indices.size());
+		assertEqualsSI(new StringDouble("SD1", 100.001), indices.get(0));
+		assertEqualsSI(new StringDouble("SD2", 200.002), indices.get(1));
+		assertEqualsSI(new StringDouble("SD3", 300.003), indices.get(2));
 	}
 
 	private void assertEqualsSI(StringDouble expected, StringDouble actual) {
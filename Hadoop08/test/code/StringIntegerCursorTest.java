@@ -0,0 +1,151 @@
+package code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import util.StringInteger;
+import util.StringIntegerCursor;
+import util.StringIntegerList;
+import code.inverted.InvertedIndexMapredTest;
+import code.profession.ProfessionClassifierMapredTest;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class StringIntegerCursorTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	@Test
+	public void testTextCursorMatchesRegex() throws IOException {
+		String[] inputs = { "<SI1,100>qweqwe>><SI2,200>   <>#123das <SI3,300>",
+				"<a,1,2>,<<b,3>,<c,>,<,4>,<d,x5>,<e,6", "<Tōgō,7>,<𝄞 clef,8>", "no entries", "",
+				"<x,1><y,2>" };
+
+		Pattern p = Pattern.compile("<([^>]+),(\\d+)>");
+		StringIntegerCursor cursor = StringIntegerCursor.forText();
+
+		for (String input : inputs) {
+			byte[] utf8 = input.getBytes(UTF8);
+			cursor.reset(utf8, 0, utf8.length);
+
+			Matcher m = p.matcher(input);
+			while (m.find()) {
+				assertTrue(input, cursor.next());
+				assertEquals(input, m.group(1), cursor.getLemma().toString());
+				assertEquals(input, m.group(1), new String(cursor.getBytes(),
+						cursor.getLemmaStart(), cursor.getLemmaLength(), UTF8));
+				assertEquals(input, Integer.parseInt(m.group(2)), cursor.getCount());
+			}
+			assertFalse(input, cursor.next());
+		}
+	}
+
+	@Test
+	public void testBinaryCursor() throws IOException {
+		DataOutputBuffer out = new DataOutputBuffer();
+		new StringInteger("house", 99).write(out);
+		new StringInteger("Tōgō", 1_000_000).write(out);
+
+		StringIntegerCursor cursor = StringIntegerCursor.forBinary();
+		cursor.reset(out.getData(), 0, out.getLength());
+
+		assertTrue(cursor.next());
+		assertEquals("house", cursor.getLemma().toString());
+		assertEquals(99, cursor.getCount());
+
+		assertTrue(cursor.next());
+		assertEquals(4, cursor.getLemma().length());
+		assertEquals('ō', cursor.getLemma().charAt(1));
+		assertEquals(1_000_000, cursor.getCount());
+
+		assertFalse(cursor.next());
+	}
+
+	@Test
+	public void testListCursor() throws IOException {
+		StringIntegerList siList = new StringIntegerList();
+		siList.readFromString("<SI1,100>,<SI2,200>");
+
+		StringIntegerCursor cursor = siList.cursor();
+		assertTrue(cursor.next());
+		assertEquals("SI1", cursor.getLemma().toString());
+		assertTrue(cursor.next());
+		assertEquals(200, cursor.getCount());
+		assertFalse(cursor.next());
+
+		// not materialized by the cursor, but still available on demand
+		assertEquals(2, siList.size());
+		assertEquals("SI2", siList.getIndices().get(1).getString());
+	}
+
+	/**
+	 * Streaming over the lemma indexes in test_data with the cursor must not
+	 * allocate per entry, unlike {@link StringIntegerList}'s object API.
+	 */
+	@Test
+	public void testCursorDoesNotAllocatePerEntry() throws IOException {
+		final int ROUNDS = 20_000;
+
+		List<byte[]> values = readLemmaIndexValues();
+		StringIntegerCursor cursor = StringIntegerCursor.forText();
+
+		// warm up, so class loading does not count
+		streamWithCursor(values, cursor, 1_000);
+
+		long bytesAtStart = allocatedBytes();
+		long entries = streamWithCursor(values, cursor, ROUNDS);
+		long cursorBytes = allocatedBytes() - bytesAtStart;
+
+		assertTrue("cursor should not allocate per entry, but allocated " + cursorBytes
+				+ " bytes for " + entries + " entries", cursorBytes < entries);
+	}
+
+	private long streamWithCursor(List<byte[]> values, StringIntegerCursor cursor, int rounds)
+			throws IOException {
+		long entries = 0;
+		for (int i = 0; i < rounds; i++)
+			for (byte[] value : values) {
+				cursor.reset(value, 0, value.length);
+				while (cursor.next())
+					if (cursor.getLemma().length() > 0 && cursor.getCount() > 0)
+						entries++;
+			}
+		return entries;
+	}
+
+	private List<byte[]> readLemmaIndexValues() throws IOException {
+		List<Path> paths = new ArrayList<>();
+		paths.add(new TestUtils(ProfessionClassifierMapredTest.class)
+				.getInputFilePath("article_index.txt"));
+		paths.add(new TestUtils(InvertedIndexMapredTest.class)
+				.getInputFilePath("inverted_index_test_input"));
+
+		List<byte[]> values = new ArrayList<>();
+		for (Path path : paths)
+			for (String line : Files.readAllLines(path, UTF8))
+				values.add(line.substring(line.indexOf('<')).getBytes(UTF8));
+		return values;
+	}
+
+	private static long allocatedBytes() {
+		com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory
+				.getThreadMXBean();
+		return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+	}
+}
@@ -10,6 +10,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.WritableUtils;
 import org.junit.Test;
 
 import util.StringInteger;
@@ -116,9 +119,124 @@ public class StringIntegerListTest {
 	}
 
 	@Test
-	// will need implementation after figuring out how to pass in readFields
-	// parameters correctly
-	public void testReadFields() {
+	public void testReadFields() throws IOException {
+		List<StringInteger> arrayList = new ArrayList<>();
+		arrayList.add(new StringInteger("SI1", 100));
+		arrayList.add(new StringInteger("SI<2>", 200));
+		arrayList.add(new StringInteger("Tōgō", 300));
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		new StringIntegerList(arrayList).write(out);
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		StringIntegerList siList = new StringIntegerList();
+		siList.readFields(in);
+
+		// unlike the text output, the binary format keeps '<' and '>'
+		final List<StringInteger> indices = siList.getIndices();
+		assertEquals(3, indices.size());
+		assertEqualsSI(new StringInteger("SI1", 100), indices.get(0));
+		assertEqualsSI(new StringInteger("SI<2>", 200), indices.get(1));
+		assertEqualsSI(new StringInteger("Tōgō", 300), indices.get(2));
+		assertEquals(out.getLength(), in.getPosition());
+	}
+
+	@Test
+	public void testReadFieldsOfLegacyFormat() throws IOException {
+		DataOutputBuffer out = new DataOutputBuffer();
+		WritableUtils.writeCompressedString(out, "<SI1,100>,<SI2,200>,<SI3,300>");
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		StringIntegerList siList = new StringIntegerList();
+		siList.readFields(in);
+
+		final List<StringInteger> indices = siList.getIndices();
+		assertEquals(3, indices.size());
+		assertEqualsSI(new StringInteger("SI1", 100), indices.get(0));
+		assertEqualsSI(new StringInteger("SI2", 200), indices.get(1));
+		assertEqualsSI(new StringInteger("SI3", 300), indices.get(2));
+	}
+
+	@Test
+	public void testReadFieldsResetsMap() throws IOException {
+		Map<String, Integer> map = new HashMap<>();
+		map.put("SI1", 100);
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		new StringIntegerList(map).write(out);
+
+		StringIntegerList siList = new StringIntegerList();
+		siList.readFromString("<SI2,200>");
+		assertEquals(1, siList.getMap().size());
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		siList.readFields(in);
+
+		// Hadoop reuses Writables, the old map must not survive
+		assertEquals(map, siList.getMap());
+	}
+
+	@Test
+	public void testAddAndAddAll() throws IOException {
+		StringIntegerList block1 = new StringIntegerList();
+		byte[] utf8 = "xTōgōx".getBytes("UTF-8");
+		block1.add(utf8, 1, utf8.length - 2, 100);
+		block1.add("SI2".getBytes("UTF-8"), 0, 3, 200);
+
+		StringIntegerList block2 = new StringIntegerList();
+		block2.readFromString("<SI3,300>");
+
+		StringIntegerList siList = new StringIntegerList();
+		siList.readFromString("<old,1>");
+		siList.clear();
+		siList.addAll(block1);
+		siList.addAll(block2);
+
+		assertEquals("<Tōgō,100>,<SI2,200>,<SI3,300>", siList.toString());
+		assertEquals(3, siList.size());
+
+		// survives serialization, e.g. from the combiner to the reducer
+		DataOutputBuffer out = new DataOutputBuffer();
+		siList.write(out);
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		StringIntegerList read = new StringIntegerList();
+		read.readFields(in);
+		assertEqualsSI(new StringInteger("SI3", 300), read.getIndices().get(2));
+	}
+
+	/**
+	 * One list object reads records of both formats in turn, as a reducer
+	 * reading old and new files does, and keeps all entries of a large list.
+	 */
+	@Test
+	public void testRoundTripOfBothFormats() throws IOException {
+		final int LEMMAS = 2_000;
+
+		Map<String, Integer> map = new HashMap<>();
+		for (int i = 0; i < LEMMAS; i++)
+			map.put("lemma" + i, i % 97 + 1);
+		StringIntegerList siList = new StringIntegerList(map);
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		WritableUtils.writeCompressedString(out, siList.toString());
+		int legacyEnd = out.getLength();
+		siList.write(out);
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		StringIntegerList read = new StringIntegerList();
+		for (int record = 0; record < 2; record++) {
+			read.readFields(in);
+			assertEquals(LEMMAS, read.size());
+			assertEquals(map, read.getMap());
+			if (record == 0)
+				assertEquals(legacyEnd, in.getPosition());
+		}
+		assertEquals(out.getLength(), in.getPosition());
 	}
 
 	private void assertEqualsSI(StringInteger expected, StringInteger actual) {
@@ -1,9 +1,17 @@
 package code;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.io.IOException;
-
+import java.util.Arrays;
+import java.util.Comparator;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.WritableComparable;
+import org.apache.hadoop.io.WritableComparator;
 import org.junit.Test;
 
 import util.StringDouble;
@@ -52,16 +60,97 @@ public class StringNumberTest {
 	}
 
 	@Test
-	// will need implementation after figuring out how to pass in readFields
-	// parameters correctly
-	public void testStringIntegerReadFields() {
+	public void testStringIntegerReadFields() throws IOException {
+		StringInteger si = new StringInteger("Tōgō,Heihachirō", 42);
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		si.write(out);
+
+		// the same instance is reused for several records
+		StringInteger read = new StringInteger("previous", 1);
+		read.getString();
+		readFrom(out, read);
 
+		assertEquals("Tōgō,Heihachirō", read.getString());
+		assertEquals(42, read.get());
+		assertEquals(si, read);
 	}
 
 	@Test
-	// will need implementation after figuring out how to pass in readFields
-	// parameters correctly
-	public void testStringDoubleReadFields() {
+	public void testStringDoubleReadFields() throws IOException {
+		StringDouble sd = new StringDouble("StringDoubleTest", .1111);
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		sd.write(out);
+
+		StringDouble read = new StringDouble();
+		readFrom(out, read);
+
+		assertEquals("StringDoubleTest", read.getString());
+		assertEquals(.1111, read.get(), DOUBLE_COURTESY);
+		assertEquals(sd, read);
+	}
+
+	@Test
+	public void testStringIntegerRawComparators() throws IOException {
+		StringInteger[] sis = { new StringInteger("b", 1), new StringInteger("a", 2),
+				new StringInteger("a", 10), new StringInteger("ab", 3) };
+
+		// by string, then value
+		assertRawOrder(new StringInteger.Comparator(), sis, 1, 2, 3, 0);
+		assertEquals(StringInteger.Comparator.class, WritableComparator.get(StringInteger.class)
+				.getClass());
+
+		// by descending value, then string
+		assertRawOrder(new StringInteger.ValueComparator(), sis, 2, 3, 1, 0);
+	}
+
+	@Test
+	public void testStringDoubleRawComparators() throws IOException {
+		StringDouble[] sds = { new StringDouble("b", .5), new StringDouble("a", .7),
+				new StringDouble("a", .25) };
+
+		assertRawOrder(new StringDouble.Comparator(), sds, 2, 1, 0);
+		assertRawOrder(new StringDouble.ValueComparator(), sds, 1, 0, 2);
+	}
+
+	/**
+	 * Checks that sorting <code>writables</code> by their serialized bytes
+	 * using <code>comparator</code> gives the expected order, and that the
+	 * object comparison agrees.
+	 */
+	private <T extends WritableComparable<T>> void assertRawOrder(
+			final WritableComparator comparator, T[] writables, int... expectedOrder)
+			throws IOException {
+		final byte[][] serialized = new byte[writables.length][];
+		Integer[] order = new Integer[writables.length];
+		for (int i = 0; i < writables.length; i++) {
+			DataOutputBuffer out = new DataOutputBuffer();
+			writables[i].write(out);
+			serialized[i] = Arrays.copyOf(out.getData(), out.getLength());
+			order[i] = i;
+		}
+
+		Arrays.sort(order, new Comparator<Integer>() {
+			@Override
+			public int compare(Integer i, Integer j) {
+				return comparator.compare(serialized[i], 0, serialized[i].length, serialized[j], 0,
+						serialized[j].length);
+			}
+		});
+
+		for (int i = 0; i < expectedOrder.length; i++) {
+			assertEquals(expectedOrder[i], (int) order[i]);
+			if (i > 0)
+				assertTrue(comparator.compare(writables[order[i - 1]], writables[order[i]]) < 0);
+		}
+	}
+
+	private void readFrom(DataOutputBuffer out, Writable writable) throws IOException {
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		writable.readFields(in);
+		assertEquals(out.getLength(), in.getPosition());
 	}
 
 }
@@ -0,0 +1,153 @@
+package code;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.Test;
+
+import util.MembershipFilter;
+import util.WikipediaPageFilter;
+import util.WikipediaPageView;
+import util.XMLInputFormat.XMLRecordReader;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class WikipediaPageFilterTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final byte[] START_TAG = "<page>".getBytes(UTF8);
+	private static final byte[] END_TAG = "</page>".getBytes(UTF8);
+
+	private final TestUtils utils = new TestUtils(code.lemma.LemmaIndexMapredTest.class);
+
+	/**
+	 * Of the test pages and a talk page only the one article which is no
+	 * redirect is read, however the reader's buffer or window cuts the
+	 * skipped pages.
+	 */
+	@Test
+	public void testSkipsRedirectsAndOtherNamespaces() throws IOException, InterruptedException {
+		String[] titles = { "Ablative Heat Shield", "Battle of Tsushima", "Bishounen",
+				"Solar Power Satellite" };
+		String talk = "<page>\n  <title>Talk:Battle of Tsushima</title>\n  <ns>1</ns>\n"
+				+ "  <id>1</id>\n  <revision>\n    <text>talk</text>\n  </revision>\n</page>";
+
+		StringBuilder dump = new StringBuilder("<mediawiki>\n");
+		long skippedBytes = talk.getBytes(UTF8).length;
+		for (String title : titles) {
+			String page = utils.fileToString(title);
+			dump.append("  ").append(page).append('\n');
+			if (!title.equals("Battle of Tsushima"))
+				skippedBytes += page.getBytes(UTF8).length;
+		}
+		dump.append("  ").append(talk).append("\n</mediawiki>\n");
+		byte[] file = dump.toString().getBytes(UTF8);
+
+		List<String> expected = Arrays.asList(utils.fileToString("Battle of Tsushima"));
+
+		for (int bufferSize : new int[] { 7, 64, 1 << 20 }) {
+			XMLRecordReader reader = new XMLRecordReader(new ByteArrayInputStream(file), 0,
+					file.length, START_TAG, END_TAG, bufferSize);
+			reader.setFilter(new WikipediaPageFilter(null, new int[] { 0 }, true));
+			assertEquals(expected, read(reader));
+			assertEquals(4, reader.getSkippedRecords());
+			assertEquals(skippedBytes, reader.getSkippedBytes());
+		}
+
+		java.nio.file.Path path = Files.createTempFile("dump", ".xml");
+		try {
+			Files.write(path, file);
+			for (int mapSize : new int[] { 1, 4096 }) {
+				XMLRecordReader reader = new XMLRecordReader(FileChannel.open(path,
+						StandardOpenOption.READ), 0, file.length, START_TAG, END_TAG, mapSize);
+				reader.setFilter(new WikipediaPageFilter(null, new int[] { 0 }, true));
+				assertEquals(expected, read(reader));
+				assertEquals(skippedBytes, reader.getSkippedBytes());
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	/**
+	 * Filtering by title in the reader has to keep the pages the mapper
+	 * would keep, for any split.
+	 */
+	@Test
+	public void testTitlesSameAsInMapper() throws IOException, InterruptedException {
+		byte[] file = XMLInputFormatTest.syntheticDump(2000, new Random(7));
+
+		Set<String> titles = new HashSet<>();
+		for (int page = 0; page < 2000; page += 50)
+			titles.add("Page " + page);
+
+		MembershipFilter members = MembershipFilter.build(titles);
+
+		List<String> expected = readAllAndCheckTitles(file, titles);
+		assertEquals(titles.size(), expected.size());
+
+		for (int splitSize : new int[] { file.length, 100_000, 33_333 }) {
+			List<String> records = new ArrayList<>();
+			for (int start = 0; start < file.length; start += splitSize) {
+				ByteArrayInputStream in = new ByteArrayInputStream(file);
+				in.skip(start);
+				XMLRecordReader reader = new XMLRecordReader(in, start, Math.min(file.length,
+						start + splitSize), START_TAG, END_TAG, 4096);
+				reader.setFilter(new WikipediaPageFilter(members, null, false));
+				records.addAll(read(reader));
+			}
+			assertEquals(expected, records);
+		}
+
+		// the rejected pages are counted, not read to the end
+		XMLRecordReader reader = new XMLRecordReader(new ByteArrayInputStream(file), 0,
+				file.length, START_TAG, END_TAG, XMLRecordReader.DEFAULT_BUFFER_SIZE);
+		reader.setFilter(new WikipediaPageFilter(members, null, false));
+		assertEquals(expected, read(reader));
+		assertEquals(2000 - titles.size(), reader.getSkippedRecords());
+	}
+
+	/**
+	 * What the mapper does without a filter: every page is read and checked.
+	 */
+	private static List<String> readAllAndCheckTitles(byte[] file, Set<String> titles)
+			throws IOException, InterruptedException {
+		XMLRecordReader reader = new XMLRecordReader(new ByteArrayInputStream(file), 0,
+				file.length, START_TAG, END_TAG, XMLRecordReader.DEFAULT_BUFFER_SIZE);
+		WikipediaPageView page = new WikipediaPageView();
+		List<String> records = new ArrayList<>();
+		while (reader.nextKeyValue()) {
+			page.set(reader.getCurrentRecord());
+			if (titles.contains(page.getTitle()))
+				records.add(page.getRawXML());
+		}
+		reader.close();
+		return records;
+	}
+
+	private static List<String> read(XMLRecordReader reader) throws IOException,
+			InterruptedException {
+		List<String> records = new ArrayList<>();
+		try {
+			while (reader.nextKeyValue())
+				records.add(reader.getCurrentValue().toString());
+		} finally {
+			reader.close();
+		}
+		return records;
+	}
+}
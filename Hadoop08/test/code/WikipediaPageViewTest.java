@@ -0,0 +1,104 @@
+package code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import util.WikipediaPageView;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class WikipediaPageViewTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final TestUtils utils = new TestUtils(code.lemma.LemmaIndexMapredTest.class);
+
+	@Test
+	public void testTestPages() throws IOException {
+		String[] titles = { "Battle of Tsushima", "Ablative Heat Shield", "Bishounen",
+				"Solar Power Satellite" };
+		String[] ids = { "55004", "55010", "55007", "55008" };
+
+		WikipediaPageView page = new WikipediaPageView();
+		for (int i = 0; i < titles.length; i++) {
+			byte[] record = utils.fileToString(titles[i]).getBytes(UTF8);
+			page.set(record, 0, record.length);
+
+			assertEquals(titles[i], page.getTitle());
+			assertEquals(0, page.getNamespace());
+			assertEquals(titles[i], ids[i], page.getDocid());
+			// all but the first are redirects
+			assertEquals(titles[i], i > 0, page.isRedirect());
+			assertEquals(utils.fileToString(titles[i] + " - text"), page.getText());
+		}
+	}
+
+	@Test
+	public void testDecodesFieldsInRecordBuffer() throws IOException {
+		String xml = "<page>\n  <title>AT&amp;T &#233;t&#xE9; &lt;x&gt; &bogus;</title>\n"
+				+ "  <ns>-1</ns>\n  <id>42</id>\n  <revision>\n    <id>7</id>\n"
+				+ "    <text xml:space=\"preserve\" bytes=\">\">#Redirect [[B]]</text>\n"
+				+ "  </revision>\n</page>";
+		byte[] buffer = ("garbage" + xml + "garbage").getBytes(UTF8);
+		int offset = "garbage".length();
+		int length = xml.getBytes(UTF8).length;
+
+		WikipediaPageView page = new WikipediaPageView();
+		page.set(ByteBuffer.wrap(buffer, offset, length));
+
+		assertEquals("AT&T été <x> &bogus;", page.getTitle());
+		assertEquals(-1, page.getNamespace());
+		assertEquals("42", page.getDocid());
+		assertTrue(page.isRedirect());
+		assertEquals("#Redirect [[B]]", page.getText());
+		assertEquals(xml, page.getRawXML());
+		// refers to the buffer
+		assertTrue(buffer == page.getRawBytes());
+
+		byte[] empty = "<page><title>A</title><revision><text xml:space=\"preserve\" /></revision></page>"
+				.getBytes(UTF8);
+		ByteBuffer direct = ByteBuffer.allocateDirect(empty.length);
+		direct.put(empty).flip();
+		page.set(direct);
+		assertEquals("A", page.getTitle());
+		assertEquals(-1, page.getNamespace());
+		assertTrue(page.hasText());
+		assertEquals("", page.getText());
+		assertFalse(page.isRedirect());
+	}
+
+	@Test
+	public void testSerializedLikeWikipediaPage() throws IOException {
+		byte[] record = utils.fileToString("Battle of Tsushima").getBytes(UTF8);
+		WikipediaPageView page = new WikipediaPageView();
+		page.set(record, 0, record.length);
+
+		DataOutputBuffer out = new DataOutputBuffer();
+		page.write(out);
+
+		// the VInt length followed by the bytes, as WikipediaPage and Text
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		Text text = new Text();
+		text.readFields(in);
+		assertEquals(page.getRawXML(), text.toString());
+
+		in.reset(out.getData(), out.getLength());
+		WikipediaPageView read = new WikipediaPageView();
+		read.readFields(in);
+		assertEquals("Battle of Tsushima", read.getTitle());
+		assertEquals(page.getText(), read.getText());
+	}
+}
@@ -0,0 +1,425 @@
+package code;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.FSDataInputStream;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.fs.Seekable;
+import org.apache.hadoop.io.compress.BZip2Codec;
+import org.apache.hadoop.io.compress.bzip2.CBZip2OutputStream;
+import org.apache.hadoop.mapreduce.InputSplit;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.lib.input.FileSplit;
+import org.apache.hadoop.mapreduce.task.TaskAttemptContextImpl;
+import org.junit.Test;
+
+import util.MultistreamSplit;
+import util.XMLInputFormat;
+import util.XMLInputFormat.XMLRecordReader;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class XMLInputFormatTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+	private static final byte[] START_TAG = "<page>".getBytes(UTF8);
+	private static final byte[] END_TAG = "</page>".getBytes(UTF8);
+
+	@Test
+	public void testReadsAllRecords() throws IOException, InterruptedException {
+		String xml = "<mediawiki>\n  <page>a</page>\n  <page><title>b</title></page>"
+				+ "<page>c <pag </page </page>\n</mediawiki>";
+		byte[] file = xml.getBytes(UTF8);
+
+		List<String> records = new ArrayList<>();
+		List<Long> keys = new ArrayList<>();
+		// small buffers have to be refilled and grown within records and tags
+		for (int bufferSize : new int[] { 1, 3, 7, 16, 1 << 20 }) {
+			records.clear();
+			keys.clear();
+			read(file, 0, file.length, bufferSize, records, keys);
+
+			assertEquals(3, records.size());
+			assertEquals("<page>a</page>", records.get(0));
+			assertEquals("<page><title>b</title></page>", records.get(1));
+			assertEquals("<page>c <pag </page </page>", records.get(2));
+			for (int i = 0; i < records.size(); i++)
+				assertEquals(xml.indexOf(records.get(i)), (long) keys.get(i));
+		}
+	}
+
+	/**
+	 * Wherever the file is split, each record has to be read exactly once,
+	 * by the split its start tag begins in.
+	 */
+	@Test
+	public void testEachRecordInExactlyOneSplit() throws IOException, InterruptedException {
+		byte[] file = syntheticDump(200, new Random(42));
+
+		List<String> expected = new ArrayList<>();
+		List<Long> expectedKeys = new ArrayList<>();
+		read(file, 0, file.length, 1 << 20, expected, expectedKeys);
+		assertEquals(200, expected.size());
+
+		Random random = new Random(7);
+		for (int round = 0; round < 50; round++) {
+			int splitSize = 1 + random.nextInt(file.length / 4);
+			int bufferSize = 1 + random.nextInt(64);
+
+			List<String> records = new ArrayList<>();
+			List<Long> keys = new ArrayList<>();
+			for (int start = 0; start < file.length; start += splitSize)
+				read(file, start, Math.min(file.length, start + splitSize), bufferSize, records,
+						keys);
+
+			assertEquals(expected, records);
+			assertEquals(expectedKeys, keys);
+		}
+	}
+
+	@Test
+	public void testStartTagAtSplitEnd() throws IOException, InterruptedException {
+		byte[] file = "xx<page>a</page><page>b</page>".getBytes(UTF8);
+
+		// the second start tag begins at 16, the last byte of the first split
+		List<String> first = new ArrayList<>();
+		read(file, 0, 17, 4, first, new ArrayList<Long>());
+		assertEquals(2, first.size());
+		assertEquals("<page>b</page>", first.get(1));
+
+		List<String> second = new ArrayList<>();
+		read(file, 17, file.length, 4, second, new ArrayList<Long>());
+		assertTrue(second.isEmpty());
+
+		// beginning at the split end, it belongs to the next split
+		first.clear();
+		read(file, 0, 16, 4, first, new ArrayList<Long>());
+		assertEquals(1, first.size());
+
+		second.clear();
+		read(file, 16, file.length, 4, second, new ArrayList<Long>());
+		assertEquals(1, second.size());
+		assertEquals("<page>b</page>", second.get(0));
+	}
+
+	@Test
+	public void testIncompleteRecordIsDropped() throws IOException, InterruptedException {
+		byte[] file = "<page>a</page><page>b</pa".getBytes(UTF8);
+
+		List<String> records = new ArrayList<>();
+		read(file, 0, file.length, 4, records, new ArrayList<Long>());
+		assertEquals(1, records.size());
+	}
+
+	/**
+	 * Splits of a bzip2 file with 100 KB blocks, each decompressed from its
+	 * first block on, have to read each record exactly once.
+	 */
+	@Test
+	public void testBZip2Splits() throws IOException, InterruptedException {
+		byte[] xml = syntheticDump(300, new Random(3));
+		byte[] file = bzip2(xml, 1);
+
+		List<String> expected = new ArrayList<>();
+		read(xml, 0, xml.length, 1 << 20, expected, new ArrayList<Long>());
+
+		BZip2Codec codec = new BZip2Codec();
+		codec.setConf(new Configuration());
+		for (int splitSize : new int[] { file.length, file.length / 2 + 1, 70_000, 12_345, 4096 }) {
+			List<String> records = new ArrayList<>();
+			for (int start = 0; start < file.length; start += splitSize) {
+				FileSplit split = new FileSplit(new Path("dump.xml.bz2"), start, Math.min(
+						splitSize, file.length - start), null);
+				read(new XMLRecordReader(new FSDataInputStream(new SeekableBytes(file)), codec,
+						split, START_TAG, END_TAG, 4096), records);
+			}
+			assertEquals("split size " + splitSize, expected, records);
+		}
+	}
+
+	/**
+	 * A multistream dump split along the streams of its index: each split
+	 * has to read the pages of its streams only.
+	 */
+	@Test
+	public void testMultistreamSplits() throws IOException, InterruptedException {
+		final int STREAMS = 30;
+		final int PAGES_PER_STREAM = 10;
+
+		Random random = new Random(5);
+		ByteArrayOutputStream dump = new ByteArrayOutputStream();
+		StringBuilder index = new StringBuilder();
+		List<String> expected = new ArrayList<>();
+
+		dump.write(bzip2("<mediawiki>\n  <siteinfo></siteinfo>\n".getBytes(UTF8), 9));
+		for (int stream = 0; stream < STREAMS; stream++) {
+			long offset = dump.size();
+			byte[] xml = syntheticDump(PAGES_PER_STREAM, random);
+			// without the surrounding mediawiki element
+			xml = new String(xml, UTF8).replaceAll("</?mediawiki[^>]*>\n", "").getBytes(UTF8);
+			read(xml, 0, xml.length, 1 << 20, expected, new ArrayList<Long>());
+
+			for (int page = 0; page < PAGES_PER_STREAM; page++)
+				index.append(offset).append(':').append(stream * 100 + page).append(":Page ")
+						.append(page).append('\n');
+			dump.write(bzip2(xml, 9));
+		}
+		dump.write(bzip2("</mediawiki>\n".getBytes(UTF8), 9));
+		byte[] file = dump.toByteArray();
+
+		long[] streamOffsets = MultistreamSplit.readStreamOffsets(new ByteArrayInputStream(index
+				.toString().getBytes(UTF8)));
+		assertEquals(STREAMS, streamOffsets.length);
+
+		BZip2Codec codec = new BZip2Codec();
+		codec.setConf(new Configuration());
+		for (int splitSize : new int[] { file.length, 50_000, 7_000, 100 }) {
+			List<InputSplit> splits = new ArrayList<>();
+			for (int start = 0; start < file.length; start += splitSize)
+				splits.add(new FileSplit(new Path("dump-multistream.xml.bz2"), start, Math.min(
+						splitSize, file.length - start), null));
+
+			List<String> records = new ArrayList<>();
+			for (InputSplit split : MultistreamSplit.align(splits, streamOffsets)) {
+				FileSplit fileSplit = (FileSplit) split;
+				List<String> splitRecords = new ArrayList<>();
+				read(new XMLRecordReader(new FSDataInputStream(new SeekableBytes(file)), codec,
+						fileSplit, START_TAG, END_TAG, 4096), splitRecords);
+
+				int streams = 0;
+				for (long offset : streamOffsets)
+					if (offset >= fileSplit.getStart()
+							&& offset < fileSplit.getStart() + fileSplit.getLength())
+						streams++;
+				assertEquals(streams * PAGES_PER_STREAM, splitRecords.size());
+				records.addAll(splitRecords);
+			}
+			assertEquals("split size " + splitSize, expected, records);
+		}
+	}
+
+	/**
+	 * Mapping the file in windows smaller than the records has to find the
+	 * same records as reading it, for any split.
+	 */
+	@Test
+	public void testMappedSplits() throws IOException, InterruptedException {
+		byte[] file = syntheticDump(100, new Random(11));
+		java.nio.file.Path path = Files.createTempFile("dump", ".xml");
+		try {
+			Files.write(path, file);
+
+			List<String> expected = new ArrayList<>();
+			List<Long> expectedKeys = new ArrayList<>();
+			read(file, 0, file.length, 1 << 20, expected, expectedKeys);
+
+			for (int splitSize : new int[] { file.length, 100_000, 33_333 }) {
+				for (int mapSize : new int[] { 1, 4096, XMLRecordReader.DEFAULT_MAP_SIZE }) {
+					List<String> records = new ArrayList<>();
+					List<Long> keys = new ArrayList<>();
+					for (int start = 0; start < file.length; start += splitSize) {
+						XMLRecordReader reader = new XMLRecordReader(FileChannel.open(path,
+								StandardOpenOption.READ), start, Math.min(file.length, start
+								+ splitSize), START_TAG, END_TAG, mapSize);
+						while (reader.nextKeyValue()) {
+							// the slice without copying and the copied value
+							ByteBuffer record = reader.getCurrentRecord();
+							byte[] bytes = new byte[record.remaining()];
+							record.get(bytes);
+							assertEquals(reader.getCurrentValue().toString(), new String(bytes,
+									UTF8));
+
+							records.add(reader.getCurrentValue().toString());
+							keys.add(reader.getCurrentKey().get());
+						}
+						reader.close();
+					}
+					assertEquals(expected, records);
+					assertEquals(expectedKeys, keys);
+				}
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	/**
+	 * Reading a local file through the input format with
+	 * {@value XMLRecordReader#MMAP_KEY} has to find the same records as
+	 * without, for any split.
+	 */
+	@Test
+	public void testMmapOption() throws IOException, InterruptedException {
+		byte[] file = syntheticDump(100, new Random(13));
+		java.nio.file.Path path = Files.createTempFile("dump", ".xml");
+		try {
+			Files.write(path, file);
+
+			for (int splitSize : new int[] { file.length, 33_333 }) {
+				List<String> streamed = readLocal(path, file.length, splitSize, false);
+				assertEquals(100, streamed.size());
+				assertEquals(streamed, readLocal(path, file.length, splitSize, true));
+			}
+		} finally {
+			Files.delete(path);
+		}
+	}
+
+	private static List<String> readLocal(java.nio.file.Path path, int length, int splitSize,
+			boolean mmap) throws IOException, InterruptedException {
+		Configuration conf = new Configuration();
+		conf.set(XMLInputFormat.START_TAG_KEY, "<page>");
+		conf.set(XMLInputFormat.END_TAG_KEY, "</page>");
+		conf.setBoolean(XMLRecordReader.MMAP_KEY, mmap);
+		// smaller than the records, so they cross windows
+		conf.setInt(XMLRecordReader.MAP_SIZE_KEY, 4096);
+		TaskAttemptContext context = new TaskAttemptContextImpl(conf, new TaskAttemptID());
+
+		List<String> records = new ArrayList<>();
+		for (int start = 0; start < length; start += splitSize) {
+			FileSplit split = new FileSplit(new Path(path.toUri()), start, Math.min(splitSize,
+					length - start), null);
+			XMLRecordReader reader = new XMLRecordReader(split, context);
+			while (reader.nextKeyValue()) {
+				// a slice of the mapping is direct, one of the buffer is not
+				assertEquals(mmap, reader.getCurrentRecord().isDirect());
+				records.add(reader.getCurrentValue().toString());
+			}
+			reader.close();
+		}
+		return records;
+	}
+
+	private static void read(byte[] file, int start, int end, int bufferSize,
+			List<String> records, List<Long> keys) throws IOException, InterruptedException {
+		InputStream in = new ByteArrayInputStream(file);
+		in.skip(start);
+
+		XMLRecordReader reader = new XMLRecordReader(in, start, end, START_TAG, END_TAG,
+				bufferSize);
+		try {
+			while (reader.nextKeyValue()) {
+				records.add(reader.getCurrentValue().toString());
+				keys.add(reader.getCurrentKey().get());
+			}
+			assertFalse(reader.nextKeyValue());
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void read(XMLRecordReader reader, List<String> records) throws IOException,
+			InterruptedException {
+		try {
+			while (reader.nextKeyValue())
+				records.add(reader.getCurrentValue().toString());
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * @param blockSize
+	 *            in 100 KB
+	 */
+	private static byte[] bzip2(byte[] data, int blockSize) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		// the magic is written by the codec, not the stream
+		out.write('B');
+		out.write('Z');
+		CBZip2OutputStream bzip2 = new CBZip2OutputStream(out, blockSize);
+		bzip2.write(data);
+		bzip2.close();
+		return out.toByteArray();
+	}
+
+	/**
+	 * @return a dump of pages with titles and wiki markup of random length,
+	 *         about 8 KB per page
+	 */
+	static byte[] syntheticDump(int pages, Random random) throws IOException {
+		String[] words = { "the", "battle", "of", "[[Tsushima]]", "{{cite", "web}}",
+				"&lt;ref&gt;", "fleet", "Tōgō", "'''admiral'''", "<", "page", "/page", "\n" };
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		out.write("<mediawiki xml:lang=\"en\">\n".getBytes(UTF8));
+		for (int page = 0; page < pages; page++) {
+			StringBuilder sb = new StringBuilder("  <page>\n    <title>Page ").append(page)
+					.append("</title>\n    <revision>\n      <text xml:space=\"preserve\">");
+			int length = random.nextInt(16_000);
+			while (sb.length() < length)
+				sb.append(words[random.nextInt(words.length)]).append(' ');
+			sb.append("</text>\n    </revision>\n  </page>\n");
+			out.write(sb.toString().getBytes(UTF8));
+		}
+		out.write("</mediawiki>\n".getBytes(UTF8));
+		return out.toByteArray();
+	}
+
+	/**
+	 * The file in memory, as {@link FSDataInputStream} needs it.
+	 */
+	static class SeekableBytes extends ByteArrayInputStream implements Seekable,
+			PositionedReadable {
+
+		SeekableBytes(byte[] bytes) {
+			super(bytes);
+		}
+
+		@Override
+		public void seek(long pos) {
+			this.pos = (int) pos;
+		}
+
+		@Override
+		public long getPos() {
+			return pos;
+		}
+
+		@Override
+		public boolean seekToNewSource(long targetPos) {
+			return false;
+		}
+
+		@Override
+		public int read(long position, byte[] buffer, int offset, int length) {
+			int read = (int) Math.min(length, count - position);
+			if (read <= 0)
+				return -1;
+			System.arraycopy(buf, (int) position, buffer, offset, read);
+			return read;
+		}
+
+		@Override
+		public void readFully(long position, byte[] buffer, int offset, int length)
+				throws IOException {
+			if (read(position, buffer, offset, length) < length)
+				throw new IOException("end of file");
+		}
+
+		@Override
+		public void readFully(long position, byte[] buffer) throws IOException {
+			readFully(position, buffer, 0, buffer.length);
+		}
+	}
+}
@@ -1,8 +1,20 @@
 package code.inverted;
 
+import static org.junit.Assert.assertEquals;
+
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.Text;
 import org.junit.Test;
 
+import util.StringIntegerList;
 import code.inverted.InvertedIndexMapred.InvertedIndexMapper;
+import code.inverted.InvertedIndexMapred.PostingsCombiner;
 
 public class InvertedIndexMapredTest {
 
@@ -13,4 +25,80 @@ public class InvertedIndexMapredTest {
 		// using mocito framework?
 	}
 
+	/**
+	 * The postings of a lemma split over several blocks, e.g. by early flushes
+	 * of the {@link PostingsBuffer}, are merged into one block.
+	 */
+	@Test
+	public void testCombinerMergesSplitPostings() throws Exception {
+		List<Map.Entry<Text, StringIntegerList>> input = new ArrayList<>();
+		input.add(block("house", "<Bill Clinton,99>"));
+		input.add(block("house", "<Barack Obama,82>,<Will Smith,7>"));
+		input.add(block("white", "<Bill Clinton,99>,<Barack Obama,80>"));
+
+		List<String> output = new ArrayList<>();
+		TaskContexts.runReducer(new PostingsCombiner<Text>(), input, output);
+
+		assertEquals(Arrays.asList("house : <Bill Clinton,99>,<Barack Obama,82>,<Will Smith,7>",
+				"white : <Bill Clinton,99>,<Barack Obama,80>"), output);
+	}
+
+	/**
+	 * Hadoop hands out the same object for every block, and the result is
+	 * reused for every lemma.
+	 */
+	@Test
+	public void testConcatOfReusedBlocks() throws Exception {
+		StringIntegerList result = new StringIntegerList();
+		result.readFromString("<stale,1>");
+
+		StringIntegerList reused = new StringIntegerList();
+		Iterable<StringIntegerList> blocks = reusing(reused, "<Bill Clinton,10>",
+				"<Barack Obama,20>,<Will Smith,5>", "");
+
+		assertEquals("<Bill Clinton,10>,<Barack Obama,20>,<Will Smith,5>",
+				InvertedIndexMapred.concat(blocks, result).toString());
+		assertEquals(3, result.size());
+	}
+
+	private static Map.Entry<Text, StringIntegerList> block(String lemma, String postings)
+			throws Exception {
+		StringIntegerList block = new StringIntegerList();
+		block.readFromString(postings);
+		return new SimpleEntry<>(new Text(lemma), block);
+	}
+
+	/**
+	 * @return the <code>blocks</code>, all read into <code>reused</code>
+	 */
+	private static Iterable<StringIntegerList> reusing(final StringIntegerList reused,
+			final String... blocks) {
+		return new Iterable<StringIntegerList>() {
+			@Override
+			public Iterator<StringIntegerList> iterator() {
+				final Iterator<String> texts = Arrays.asList(blocks).iterator();
+				return new Iterator<StringIntegerList>() {
+					@Override
+					public boolean hasNext() {
+						return texts.hasNext();
+					}
+
+					@Override
+					public StringIntegerList next() {
+						try {
+							reused.readFromString(texts.next());
+						} catch (Exception e) {
+							throw new IllegalStateException(e);
+						}
+						return reused;
+					}
+
+					@Override
+					public void remove() {
+						throw new UnsupportedOperationException();
+					}
+				};
+			}
+		};
+	}
 }
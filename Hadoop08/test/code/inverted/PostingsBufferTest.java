@@ -0,0 +1,92 @@
+package code.inverted;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.junit.Test;
+
+import util.StringIntegerList;
+import code.inverted.PostingsBuffer.PostingsCounter;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PostingsBufferTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final int ARTICLES = 50;
+	private static final int LEMMAS = 20;
+
+	/**
+	 * A limit below the size of the postings flushes the buffer several times
+	 * during the task. The blocks of a lemma then have to add up to the block
+	 * an unbounded buffer emits once at the end.
+	 */
+	@Test
+	public void testEarlyFlushKeepsPostings() throws Exception {
+		Counters unboundedCounters = new Counters();
+		List<String> unbounded = bufferPostings(PostingsBuffer.DEFAULT_MAX_BYTES,
+				unboundedCounters);
+		assertEquals(LEMMAS, unbounded.size());
+		assertEquals(0, unboundedCounters.findCounter(PostingsCounter.EARLY_FLUSHES).getValue());
+
+		Counters tinyCounters = new Counters();
+		List<String> tiny = bufferPostings(4096, tinyCounters);
+		assertTrue(tiny.size() > LEMMAS);
+		assertTrue(tinyCounters.findCounter(PostingsCounter.EARLY_FLUSHES).getValue() > 1);
+
+		Map<String, String> expected = mergeByLemma(unbounded);
+		assertTrue(expected.get("lemma 3").startsWith("<article 0,4>,<article 1,5>,"));
+		assertEquals(expected, mergeByLemma(tiny));
+	}
+
+	private static List<String> bufferPostings(long maxBytes, Counters counters)
+			throws Exception {
+		Configuration conf = new Configuration();
+		conf.setLong(PostingsBuffer.MAX_BYTES_KEY, maxBytes);
+		List<String> output = new ArrayList<>();
+		TaskInputOutputContext<Text, Text, Text, StringIntegerList> context = TaskContexts
+				.mapContext(conf, output, counters);
+		PostingsBuffer<Text> postings = new PostingsBuffer<>(conf);
+
+		// the buffer has to copy the reused key
+		Text lemma = new Text();
+		for (int article = 0; article < ARTICLES; article++) {
+			byte[] title = ("article " + article).getBytes(UTF8);
+			for (int i = 0; i < LEMMAS; i++) {
+				lemma.set("lemma " + i);
+				postings.add(lemma, title, 0, title.length, article + i + 1, context);
+			}
+		}
+		postings.flush(context);
+		return output;
+	}
+
+	/**
+	 * Concatenates the postings of all blocks of a lemma in the order they
+	 * were emitted.
+	 */
+	private static Map<String, String> mergeByLemma(List<String> blocks) {
+		Map<String, String> merged = new TreeMap<>();
+		for (String block : blocks) {
+			int separator = block.indexOf(" : ");
+			String lemma = block.substring(0, separator);
+			String postings = block.substring(separator + 3);
+			String before = merged.get(lemma);
+			merged.put(lemma, before == null ? postings : before + "," + postings);
+		}
+		return merged;
+	}
+}
@@ -0,0 +1,218 @@
+package code.inverted;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.hadoop.fs.PositionedReadable;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import util.DocumentTable;
+import util.IdCountList;
+import util.StringInteger;
+import util.StringIntegerCursor;
+import util.StringIntegerList;
+import code.TestUtils;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PostingsReaderTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final DataOutputBuffer postingsOut = new DataOutputBuffer();
+	private final DataOutputBuffer headerOut = new DataOutputBuffer();
+
+	@Test
+	public void testRoundTripOfTextIndex() throws IOException {
+		List<String> lemmaIndex = Files.readAllLines(new TestUtils(InvertedIndexMapredTest.class)
+				.getInputFilePath("inverted_index_test_input"), UTF8);
+
+		// the text output of InvertedIndexMapred, and the document table
+		// CompressedInvertedIndexMapred would build for it
+		Map<String, List<StringInteger>> textIndex = new TreeMap<>();
+		TreeSet<String> titles = new TreeSet<>();
+		for (String line : lemmaIndex) {
+			String title = line.substring(0, line.indexOf('<')).trim();
+			titles.add(title);
+
+			StringIntegerList lemmaCounts = new StringIntegerList();
+			lemmaCounts.readFromString(line.substring(line.indexOf('<')));
+			for (StringInteger lemmaCount : lemmaCounts.getIndices()) {
+				if (!textIndex.containsKey(lemmaCount.getString()))
+					textIndex.put(lemmaCount.getString(), new ArrayList<StringInteger>());
+				textIndex.get(lemmaCount.getString()).add(
+						new StringInteger(title, lemmaCount.get()));
+			}
+		}
+		List<String> textLines = new ArrayList<>();
+		for (Map.Entry<String, List<StringInteger>> entry : textIndex.entrySet())
+			textLines.add(entry.getKey() + InvertedIndexMapred.KEY_VALUE_SEPARATOR
+					+ new StringIntegerList(entry.getValue()));
+
+		List<String> tableLines = new ArrayList<>();
+		for (String title : titles)
+			tableLines.add(tableLines.size() + DocumentTable.KEY_VALUE_SEPARATOR + title);
+		DocumentTable documents = new DocumentTable(tableLines);
+
+		// encode the text output like CompressedInvertedIndexReducer does
+		PostingsWriter writer = newWriter();
+		IdCountList docCounts = new IdCountList();
+		for (String line : textLines) {
+			int separator = line.indexOf(InvertedIndexMapred.KEY_VALUE_SEPARATOR);
+			StringIntegerList postings = new StringIntegerList();
+			postings.readFromString(line.substring(separator));
+
+			docCounts.clear();
+			StringIntegerCursor posting = postings.cursor();
+			while (posting.next())
+				docCounts.add(documents.getId(posting.getBytes(), posting.getLemmaStart(),
+						posting.getLemmaLength()), posting.getCount());
+			docCounts.sortById();
+			writer.write(new Text(line.substring(0, separator)), docCounts);
+		}
+		writer.close();
+
+		// decode and compare
+		PostingsReader reader = newReader();
+		assertEquals(textIndex.keySet(), reader.getLemmas());
+		for (String line : textLines) {
+			int separator = line.indexOf(InvertedIndexMapred.KEY_VALUE_SEPARATOR);
+			String lemma = line.substring(0, separator);
+			List<StringInteger> expected = textIndex.get(lemma);
+			Collections.sort(expected);
+
+			assertTrue(reader.read(lemma, docCounts));
+			assertEquals(expected.size(), reader.getDocumentFrequency(lemma));
+			assertEquals(lemma, new StringIntegerList(expected).toString(), docCounts
+					.toStringIntegerList(documents).toString());
+		}
+
+		assertFalse(reader.read("unknown", docCounts));
+		assertEquals(0, docCounts.size());
+		assertEquals(0, reader.getDocumentFrequency("unknown"));
+	}
+
+	@Test
+	public void testUnsortedPostingsAreRejected() throws IOException {
+		IdCountList docCounts = new IdCountList();
+		docCounts.add(5, 1);
+		docCounts.add(3, 1);
+
+		try {
+			newWriter().write(new Text("house"), docCounts);
+			throw new AssertionError("unsorted postings accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	/**
+	 * The compressed index has to read back the postings of the text index in
+	 * less than a quarter of its size, on a synthetic index with Zipf-like
+	 * document frequencies.
+	 */
+	@Test
+	public void testSizeOfCompressedIndex() throws IOException {
+		final int DOCUMENTS = 100_000;
+		final int LEMMAS = 2_000;
+
+		Random random = new Random(42);
+		List<String> tableLines = new ArrayList<>();
+		for (int id = 0; id < DOCUMENTS; id++)
+			tableLines.add(id + DocumentTable.KEY_VALUE_SEPARATOR + "Article Title Number " + id);
+		DocumentTable documents = new DocumentTable(tableLines);
+
+		List<String> textLines = new ArrayList<>();
+		PostingsWriter writer = newWriter();
+		IdCountList docCounts = new IdCountList();
+		for (int lemma = 0; lemma < LEMMAS; lemma++) {
+			docCounts.clear();
+			int docFrequency = DOCUMENTS / (lemma + 1);
+			int id = 0;
+			for (int i = 0; i < docFrequency; i++) {
+				id += 1 + random.nextInt(DOCUMENTS / docFrequency);
+				if (id >= DOCUMENTS)
+					break;
+				docCounts.add(id, 1 + random.nextInt(20));
+			}
+			writer.write(new Text("lemma" + lemma), docCounts);
+			textLines.add("lemma" + lemma + InvertedIndexMapred.KEY_VALUE_SEPARATOR
+					+ docCounts.toStringIntegerList(documents));
+		}
+		writer.close();
+
+		long textBytes = 0;
+		for (String line : textLines)
+			textBytes += line.getBytes(UTF8).length + 1;
+		long compressedBytes = postingsOut.getLength() + headerOut.getLength();
+
+		long textPostings = 0;
+		StringIntegerList siList = new StringIntegerList();
+		for (String line : textLines) {
+			siList.readFromString(line.substring(line.indexOf('<')));
+			textPostings += siList.size();
+		}
+
+		PostingsReader reader = newReader();
+		long compressedPostings = 0;
+		for (int lemma = 0; lemma < LEMMAS; lemma++) {
+			reader.read("lemma" + lemma, docCounts);
+			compressedPostings += docCounts.size();
+		}
+
+		assertEquals(textPostings, compressedPostings);
+		assertTrue(compressedBytes * 4 < textBytes);
+	}
+
+	private PostingsWriter newWriter() {
+		postingsOut.reset();
+		headerOut.reset();
+		return new PostingsWriter(new DataOutputStream(postingsOut), new DataOutputStream(
+				headerOut));
+	}
+
+	private PostingsReader newReader() throws IOException {
+		final byte[] postings = postingsOut.getData();
+		final int postingsLength = postingsOut.getLength();
+
+		return new PostingsReader(headerOut.getData(), headerOut.getLength(),
+				new PositionedReadable() {
+
+					@Override
+					public int read(long position, byte[] buffer, int offset, int length) {
+						int n = (int) Math.min(length, postingsLength - position);
+						System.arraycopy(postings, (int) position, buffer, offset, n);
+						return n;
+					}
+
+					@Override
+					public void readFully(long position, byte[] buffer, int offset, int length)
+							throws IOException {
+						if (read(position, buffer, offset, length) < length)
+							throw new IOException("Read past the end");
+					}
+
+					@Override
+					public void readFully(long position, byte[] buffer) throws IOException {
+						readFully(position, buffer, 0, buffer.length);
+					}
+				});
+	}
+}
@@ -0,0 +1,163 @@
+package code.inverted;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.WritableComparator;
+import org.apache.hadoop.mapred.RawKeyValueIterator;
+import org.apache.hadoop.mapreduce.Counter;
+import org.apache.hadoop.mapreduce.Counters;
+import org.apache.hadoop.mapreduce.RecordWriter;
+import org.apache.hadoop.mapreduce.Reducer;
+import org.apache.hadoop.mapreduce.StatusReporter;
+import org.apache.hadoop.mapreduce.TaskAttemptContext;
+import org.apache.hadoop.mapreduce.TaskAttemptID;
+import org.apache.hadoop.mapreduce.TaskInputOutputContext;
+import org.apache.hadoop.mapreduce.lib.reduce.WrappedReducer;
+import org.apache.hadoop.mapreduce.task.MapContextImpl;
+import org.apache.hadoop.mapreduce.task.ReduceContextImpl;
+import org.apache.hadoop.util.Progress;
+
+import util.StringIntegerList;
+
+/**
+ * Task contexts which run outside of a job and collect their output as
+ * <code>"lemma : postings"</code> lines, so mappers, combiners and
+ * {@link PostingsBuffer} can be tested without a mocking framework.
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+class TaskContexts {
+
+	/**
+	 * @return a map context writing to <code>output</code>
+	 */
+	static TaskInputOutputContext<Text, Text, Text, StringIntegerList> mapContext(
+			Configuration conf, List<String> output, Counters counters) {
+		return new MapContextImpl<>(conf, new TaskAttemptID(), null, new LineWriter(output),
+				null, new CountersReporter(counters), null);
+	}
+
+	/**
+	 * Serializes the (sorted) <code>input</code> like the shuffle does and
+	 * runs <code>reducer</code> on it, so it gets THE SAME value object for
+	 * every value of a key, just like in a real job.
+	 */
+	static void runReducer(Reducer<Text, StringIntegerList, Text, StringIntegerList> reducer,
+			List<Map.Entry<Text, StringIntegerList>> input, List<String> output)
+			throws IOException, InterruptedException {
+		Counters counters = new Counters();
+		ReduceContextImpl<Text, StringIntegerList, Text, StringIntegerList> context = new ReduceContextImpl<>(
+				new Configuration(), new TaskAttemptID(), new SerializedIterator(input),
+				counters.findCounter("test", "keys"), counters.findCounter("test", "values"),
+				new LineWriter(output), null, new CountersReporter(counters),
+				WritableComparator.get(Text.class), Text.class, StringIntegerList.class);
+		reducer.run(new WrappedReducer<Text, StringIntegerList, Text, StringIntegerList>()
+				.getReducerContext(context));
+	}
+
+	private static class LineWriter extends RecordWriter<Text, StringIntegerList> {
+
+		private final List<String> lines;
+
+		LineWriter(List<String> lines) {
+			this.lines = lines;
+		}
+
+		@Override
+		public void write(Text key, StringIntegerList value) {
+			lines.add(key + " : " + value);
+		}
+
+		@Override
+		public void close(TaskAttemptContext context) {
+		}
+	}
+
+	private static class CountersReporter extends StatusReporter {
+
+		private final Counters counters;
+
+		CountersReporter(Counters counters) {
+			this.counters = counters;
+		}
+
+		@Override
+		public Counter getCounter(Enum<?> name) {
+			return counters.findCounter(name);
+		}
+
+		@Override
+		public Counter getCounter(String group, String name) {
+			return counters.findCounter(group, name);
+		}
+
+		@Override
+		public void progress() {
+		}
+
+		@Override
+		public float getProgress() {
+			return 0;
+		}
+
+		@Override
+		public void setStatus(String status) {
+		}
+	}
+
+	private static class SerializedIterator implements RawKeyValueIterator {
+
+		private final Iterator<DataOutputBuffer[]> records;
+		private final DataInputBuffer key = new DataInputBuffer();
+		private final DataInputBuffer value = new DataInputBuffer();
+
+		SerializedIterator(List<Map.Entry<Text, StringIntegerList>> input) throws IOException {
+			List<DataOutputBuffer[]> serialized = new ArrayList<>();
+			for (Map.Entry<Text, StringIntegerList> record : input) {
+				DataOutputBuffer keyBytes = new DataOutputBuffer();
+				record.getKey().write(keyBytes);
+				DataOutputBuffer valueBytes = new DataOutputBuffer();
+				record.getValue().write(valueBytes);
+				serialized.add(new DataOutputBuffer[] { keyBytes, valueBytes });
+			}
+			records = serialized.iterator();
+		}
+
+		@Override
+		public boolean next() {
+			if (!records.hasNext())
+				return false;
+			DataOutputBuffer[] record = records.next();
+			key.reset(record[0].getData(), record[0].getLength());
+			value.reset(record[1].getData(), record[1].getLength());
+			return true;
+		}
+
+		@Override
+		public DataInputBuffer getKey() {
+			return key;
+		}
+
+		@Override
+		public DataInputBuffer getValue() {
+			return value;
+		}
+
+		@Override
+		public void close() {
+		}
+
+		@Override
+		public Progress getProgress() {
+			return new Progress();
+		}
+	}
+}
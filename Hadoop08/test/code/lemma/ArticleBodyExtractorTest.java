@@ -0,0 +1,69 @@
+package code.lemma;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.junit.Test;
+
+import util.WikipediaPageView;
+import code.TestUtils;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class ArticleBodyExtractorTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private final TestUtils utils = new TestUtils(LemmaIndexMapredTest.class);
+	private final ArticleBodyExtractor extractor = new ArticleBodyExtractor();
+
+	@Test
+	public void testExtractsTestArticles() throws IOException, XMLStreamException {
+		for (String fileName : pageFileNames()) {
+			String expected = utils.fileToString(fileName + " - text");
+
+			byte[] xml = utils.fileToString(fileName).getBytes(UTF8);
+			assertEquals(fileName, expected, extractor.extract(xml, 0, xml.length).toString());
+
+			WikipediaPageView page = new WikipediaPageView();
+			page.set(xml, 0, xml.length);
+			assertEquals(fileName, expected, extractor.extract(page).toString());
+		}
+	}
+
+	@Test
+	public void testSameAsStax() throws XMLStreamException {
+		String[] bodies = { "", "plain", "&lt;ref&gt;a &amp; b&lt;/ref&gt; &quot;q&quot; &apos;",
+				"&#65;&#x42;&#x1F600; tōgō 日本 😀", "line\r\nbreaks\rhere\n",
+				"comment <!-- hidden --> kept", "<![CDATA[<b>]]> cdata", "&#13;kept" };
+
+		for (String body : bodies) {
+			byte[] xml = ("<page><title>&lt;text&gt;</title><text xml:space=\"preserve\">" + body
+					+ "</text><sha1>x</sha1></page>").getBytes(UTF8);
+
+			assertEquals(body, ArticleBodyExtractor.getElementText(xml, 0, xml.length), extractor
+					.extract(xml, 0, xml.length).toString());
+		}
+
+		byte[] empty = "<page><text xml:space=\"preserve\" /></page>".getBytes(UTF8);
+		assertEquals("", extractor.extract(empty, 0, empty.length).toString());
+	}
+
+	private List<String> pageFileNames() {
+		Path testDir = utils.getInputDir();
+		List<String> fileNames = new ArrayList<>();
+		for (String fileName : testDir.toFile().list())
+			if (!fileName.endsWith(" - text"))
+				fileNames.add(fileName);
+		return fileNames;
+	}
+}
@@ -0,0 +1,104 @@
+package code.lemma;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import code.TestUtils;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class LemmaCacheTest {
+
+	private final LemmaCache.Key key = new LemmaCache.Key();
+
+	@Test
+	public void testGetAfterPut() {
+		LemmaCache cache = new LemmaCache(100);
+		assertNull(cache.get(key.set("cats", "NNS")));
+
+		cache.put(key.set("cats", "NNS"), "cat");
+		// the cache keeps its own copy of the key
+		key.set("gives", "VBZ");
+
+		assertEquals("cat", cache.get(new LemmaCache.Key().set("cats", "NNS")));
+		assertNull(cache.get(key.set("cats", "VBZ")));
+	}
+
+	@Test
+	public void testEvictsLeastRecentlyUsed() {
+		// one entry per segment
+		LemmaCache cache = new LemmaCache(1);
+
+		int evicted = 0;
+		for (int i = 0; i < 1_000; i++)
+			cache.put(key.set("word" + i, "NN"), "lemma" + i);
+		for (int i = 0; i < 1_000; i++)
+			if (cache.get(key.set("word" + i, "NN")) == null)
+				evicted++;
+
+		assertTrue(evicted >= 1_000 - 16);
+	}
+
+	@Test
+	public void testConcurrentUse() throws Exception {
+		final LemmaCache cache = new LemmaCache(1_000);
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Integer>> wrongLemmas = new ArrayList<>();
+			for (int t = 0; t < 8; t++)
+				wrongLemmas.add(executor.submit(new Callable<Integer>() {
+					@Override
+					public Integer call() {
+						LemmaCache.Key key = new LemmaCache.Key();
+						int wrong = 0;
+						for (int i = 0; i < 100_000; i++) {
+							String word = "word" + (i % 2_000);
+							String lemma = cache.get(key.set(word, "NN"));
+							if (lemma == null)
+								cache.put(key, word.toUpperCase());
+							else if (!lemma.equals(word.toUpperCase()))
+								wrong++;
+						}
+						return wrong;
+					}
+				}));
+
+			for (Future<Integer> wrong : wrongLemmas)
+				assertEquals(0, (int) wrong.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	/**
+	 * The second pass over the same article is lemmatized from the cache
+	 * alone and yields the same lemmas.
+	 */
+	@Test
+	public void testTokenizerHitRate() throws Exception {
+		String article = new TestUtils(LemmaIndexMapredTest.class)
+				.fileToString("Battle of Tsushima - text");
+		Tokenizer tokenizer = new Tokenizer(new HashSet<String>());
+
+		List<String> lemmas = tokenizer.getLemmas(article);
+		long misses = tokenizer.getCacheMisses();
+
+		assertEquals(lemmas, tokenizer.getLemmas(article));
+		assertEquals(misses, tokenizer.getCacheMisses());
+		assertEquals(2 * lemmas.size() - misses, tokenizer.getCacheHits());
+	}
+}
@@ -0,0 +1,118 @@
+package code.lemma;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.junit.Test;
+
+import util.StringIntegerList;
+import code.TestUtils;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class LemmaCounterTest {
+
+	@Test
+	public void testCountsInOrderOfFirstOccurrence() {
+		LemmaCounter counter = new LemmaCounter();
+		for (String lemma : "cat dog cat bird cat dog".split(" "))
+			counter.accept(lemma);
+
+		assertEquals(3, counter.size());
+		assertEquals("cat", counter.getLemma(0));
+		assertEquals(3, counter.getCount(0));
+		assertEquals("dog", counter.getLemma(1));
+		assertEquals(2, counter.getCount(1));
+		assertEquals("bird", counter.getLemma(2));
+		assertEquals(1, counter.getCount(2));
+
+		counter.clear();
+		counter.accept("dog");
+		assertEquals(1, counter.size());
+		assertEquals(1, counter.getCount(0));
+	}
+
+	@Test
+	public void testGrowsBeyondInitialCapacity() {
+		LemmaCounter counter = new LemmaCounter();
+		for (int round = 0; round < 3; round++)
+			for (int i = 0; i < 10_000; i++)
+				counter.accept(new String("lemma" + i));
+
+		assertEquals(10_000, counter.size());
+		for (int i = 0; i < 10_000; i++) {
+			assertEquals("lemma" + i, counter.getLemma(i));
+			assertEquals(3, counter.getCount(i));
+		}
+	}
+
+	/**
+	 * The encoding has to be the same as the one of the
+	 * {@link StringIntegerList} created from a map.
+	 */
+	@Test
+	public void testWritesSameBytesAsMap() throws IOException {
+		String[] lemmas = { "tōgō", "cat", "日本", "😀", "bad\uD800", "cat" };
+
+		LemmaCounter counter = new LemmaCounter();
+		for (String lemma : lemmas)
+			counter.accept(lemma);
+		StringIntegerList streamed = new StringIntegerList();
+		counter.writeTo(streamed);
+
+		List<String> collected = new ArrayList<>();
+		for (String lemma : lemmas)
+			collected.add(lemma);
+		Map<String, Integer> counts = LemmaIndexMapred.LemmaIndexMapper.countLemmas(collected);
+
+		// the unpaired surrogate only matches after encoding
+		assertEquals(roundTrip(new StringIntegerList(counts)).getMap(), roundTrip(streamed)
+				.getMap());
+	}
+
+	private static StringIntegerList roundTrip(StringIntegerList list) throws IOException {
+		DataOutputBuffer out = new DataOutputBuffer();
+		list.write(out);
+
+		DataInputBuffer in = new DataInputBuffer();
+		in.reset(out.getData(), out.getLength());
+		StringIntegerList read = new StringIntegerList();
+		read.readFields(in);
+		return read;
+	}
+
+	/**
+	 * Streaming the lemmas of an article into the counter gives the counts
+	 * collecting them first gave, with the suffix lemmatizer.
+	 */
+	@Test
+	public void testStreamsSameCountsAsCollecting() throws IOException {
+		TestUtils utils = new TestUtils(LemmaIndexMapredTest.class);
+		String article = utils.fileToString("Battle of Tsushima - text");
+		List<String> lines = Files.readAllLines(Paths.get("stopwords.csv"),
+				Charset.forName("UTF-8"));
+		Tokenizer tokenizer = new Tokenizer(new HashSet<>(lines), new SuffixLemmatizer());
+
+		Map<String, Integer> collected = LemmaIndexMapred.LemmaIndexMapper
+				.countLemmas(tokenizer.getLemmas(article));
+
+		LemmaCounter counter = new LemmaCounter();
+		tokenizer.countLemmas(article, counter);
+		StringIntegerList streamed = new StringIntegerList();
+		counter.writeTo(streamed);
+
+		assertEquals(collected, roundTrip(streamed).getMap());
+	}
+}
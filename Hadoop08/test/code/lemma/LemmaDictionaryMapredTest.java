@@ -0,0 +1,123 @@
+package code.lemma;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.Path;
+import org.apache.hadoop.io.SequenceFile;
+import org.apache.hadoop.io.Text;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import util.IdCountList;
+import code.inverted.InvertedIndexMapred;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class LemmaDictionaryMapredTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	// the lemma index as LemmaIndexMapred writes it
+	private static final List<String> LEMMA_INDEX = Arrays.asList(
+			"Dogg Catt : <woof,3>,<meow,1>",
+			"Bill Clinton : <Monica,10>,<Lewinsky,1>,<white,99>,<house,99>,<president,15>",
+			"Barack Obama : <white,80>,<house,82>,<president,20>,<black,5>",
+			"Will Smith : <house,7>,<music,25>,<black,5>");
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	/**
+	 * Builds the dictionary, encodes the lemma index with it and inverts both
+	 * indexes in local mode. The encoded one has to give the same inverted
+	 * index as the text one.
+	 */
+	@Test
+	public void testEncodedIndexInvertsLikeText() throws Exception {
+		File lemmaIndex = writeLemmaIndex("lemma_index", LEMMA_INDEX);
+		File dictionary = new File(temp.getRoot(), "dictionary");
+		File encoded = new File(temp.getRoot(), "encoded");
+		LemmaDictionaryMapred.main(new String[] { lemmaIndex.toString(), dictionary.toString(),
+				LemmaDictionaryMapred.ENCODE_OPTION + encoded });
+
+		// most frequent first
+		List<String> entries = readLines(new File(dictionary, "part-r-00000"));
+		assertEquals(9, entries.size());
+		assertEquals("0 : house,188", entries.get(0));
+		assertEquals("1 : white,179", entries.get(1));
+		assertFalse(new File(dictionary + "_counts").exists());
+
+		File textInverted = new File(temp.getRoot(), "text_inverted");
+		InvertedIndexMapred.main(new String[] { lemmaIndex.toString(), textInverted.toString() });
+		File encodedInverted = new File(temp.getRoot(), "encoded_inverted");
+		InvertedIndexMapred.main(new String[] { encoded.toString(), encodedInverted.toString(),
+				InvertedIndexMapred.DICTIONARY_OPTION + new File(dictionary, "part-r-00000") });
+
+		// the lemmas are shuffled in the order of their ids
+		List<String> expected = sorted(readLines(new File(textInverted, "part-r-00000")));
+		assertEquals(9, expected.size());
+		assertTrue(expected.contains(
+				"house : <Bill Clinton,99>,<Barack Obama,82>,<Will Smith,7>"));
+		assertEquals(expected, sorted(readLines(new File(encodedInverted, "part-r-00000"))));
+	}
+
+	/**
+	 * Lemmas missing from the dictionary, e.g. of another lemma index, are
+	 * skipped instead of failing the task.
+	 */
+	@Test
+	public void testEncodeSkipsUnknownLemmas() throws Exception {
+		File dictionary = new File(temp.getRoot(), "dictionary");
+		LemmaDictionaryMapred.main(new String[] {
+				writeLemmaIndex("lemma_index", LEMMA_INDEX).toString(), dictionary.toString() });
+
+		File other = writeLemmaIndex("other_index",
+				Arrays.asList("Hermann Hesse : <glass,3>,<house,2>,<bead,1>,<music,4>"));
+		File encoded = new File(temp.getRoot(), "encoded");
+		assertTrue(LemmaDictionaryMapred.encode(new Path(other.toString()), new Path(
+				new File(dictionary, "part-r-00000").toString()), new Path(encoded.toString())));
+
+		Configuration conf = new Configuration();
+		try (SequenceFile.Reader reader = new SequenceFile.Reader(conf,
+				SequenceFile.Reader.file(new Path(new File(encoded, "part-m-00000").toString())))) {
+			Text title = new Text();
+			IdCountList lemmaIds = new IdCountList();
+			assertTrue(reader.next(title, lemmaIds));
+			assertEquals("Hermann Hesse", title.toString());
+			// house and music
+			assertEquals("<0,2>,<3,4>", lemmaIds.toString());
+			assertFalse(reader.next(title, lemmaIds));
+		}
+	}
+
+	private File writeLemmaIndex(String name, List<String> lines) throws IOException {
+		File dir = temp.newFolder(name);
+		Files.write(new File(dir, "part-r-00000").toPath(), lines, UTF8);
+		return dir;
+	}
+
+	private static List<String> readLines(File file) throws IOException {
+		return Files.readAllLines(file.toPath(), UTF8);
+	}
+
+	private static List<String> sorted(List<String> lines) {
+		List<String> sorted = new ArrayList<>(lines);
+		Collections.sort(sorted);
+		return sorted;
+	}
+}
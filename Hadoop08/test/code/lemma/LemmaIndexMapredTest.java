@@ -1,13 +1,21 @@
 package code.lemma;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
+import java.io.File;
 import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
 import java.nio.file.Path;
+import java.util.List;
 
 import javax.xml.stream.XMLStreamException;
 
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import code.TestUtils;
 
@@ -17,8 +25,13 @@ import code.TestUtils;
  */
 public class LemmaIndexMapredTest {
 
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
 	TestUtils utils = new TestUtils(getClass());
 
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
 	@Test
 	public void testGetArticle() throws IOException, XMLStreamException {
 		Path testDir = new TestUtils(getClass()).getInputDir();
@@ -44,4 +57,65 @@ public class LemmaIndexMapredTest {
 
 		assertEquals(fileName, expected, actual);
 	}
+
+	/**
+	 * Runs the job in local mode on a dump of the test articles, once with a
+	 * single thread per map task and once with four. Uses the full CoreNLP
+	 * lemmatizer, as its pipeline is the one the threads share.
+	 */
+	@Test
+	public void testSameIndexForAnyNumberOfThreads() throws Exception {
+		Path dump = writeDump();
+
+		List<String> expected = runJob(dump, "-threads=1", "full");
+		assertEquals(4, expected.size());
+		assertEquals(expected, runJob(dump, "-threads=4", "full"));
+	}
+
+	@Test
+	public void testThreadsOption() {
+		assertEquals(4, LemmaIndexMapred.parseThreads("-threads=4"));
+
+		for (String invalid : new String[] { "-threads=0", "-threads=-2", "-threads=four",
+				"-threads=" })
+			try {
+				LemmaIndexMapred.parseThreads(invalid);
+				fail(invalid);
+			} catch (IllegalArgumentException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("at least 1"));
+			}
+	}
+
+	@Test
+	public void testLemmatizerOption() {
+		assertEquals(Lemmatizer.Mode.SUFFIX, LemmaIndexMapred.parseLemmatizer("-lemmatizer=Suffix"));
+
+		try {
+			LemmaIndexMapred.parseLemmatizer("-lemmatizer=sufix");
+			fail();
+		} catch (IllegalArgumentException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("[full, morphology, suffix]"));
+		}
+	}
+
+	private Path writeDump() throws IOException {
+		StringBuilder dump = new StringBuilder("<mediawiki>\n");
+		for (String fileName : utils.getInputDir().toFile().list())
+			if (!fileName.endsWith(" - text"))
+				dump.append(utils.fileToString(fileName)).append("\n");
+		dump.append("</mediawiki>\n");
+
+		Path file = temp.newFile("dump.xml").toPath();
+		Files.write(file, dump.toString().getBytes(UTF8));
+		return file;
+	}
+
+	private List<String> runJob(Path dump, String threadsOption, String lemmatizer)
+			throws Exception {
+		File output = new File(temp.getRoot(), threadsOption + lemmatizer);
+		LemmaIndexMapred.main(new String[] { dump.toString(), output.toString(),
+				threadsOption, LemmaIndexMapred.LEMMATIZER_OPTION + lemmatizer });
+
+		return Files.readAllLines(new File(output, "part-r-00000").toPath(), UTF8);
+	}
 }
@@ -0,0 +1,137 @@
+package code.lemma;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import code.TestUtils;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class LemmatizerTest {
+
+	@Test
+	public void testSuffixRules() {
+		String[] words = { "cats", "classes", "studies", "status", "this", "gives", "stopped",
+				"making", "visited", "falling", "sing", "red", "need", "carried", "Tōgō's", "was",
+				"does", "ships" };
+		String[] lemmas = { "cat", "class", "study", "status", "this", "give", "stop", "make",
+				"visit", "fall", "sing", "red", "need", "carry", "tōgō", "be", "do", "ship" };
+
+		assertEquals(Arrays.asList(lemmas),
+				lemmatize(new SuffixLemmatizer(), join(words) + " "));
+	}
+
+	@Test
+	public void testMorphologyAndFullShareCache() {
+		LemmaCache cache = new LemmaCache(100);
+		String text = "cats gives ships";
+
+		MorphologyLemmatizer morphology = new MorphologyLemmatizer(SharedPipeline.get(
+				MorphologyLemmatizer.ANNOTATORS, false), cache);
+		List<String> lemmas = lemmatize(morphology, text);
+		assertEquals(lemmas, lemmatize(morphology, text));
+		assertEquals(3, morphology.getCacheMisses());
+		assertEquals(3, morphology.getCacheHits());
+
+		// other tags, other entries
+		FullLemmatizer full = new FullLemmatizer(SharedPipeline.get(FullLemmatizer.ANNOTATORS,
+				false), cache);
+		lemmatize(full, text);
+		assertEquals(3, full.getCacheMisses());
+	}
+
+	/**
+	 * How many of the full mode's lemmas (counted per article, as in the lemma
+	 * index) each mode finds as well on the test articles.
+	 */
+	@Test
+	public void testAgreementOfModes() throws IOException {
+		TestUtils utils = new TestUtils(LemmaIndexMapredTest.class);
+		Path testDir = utils.getInputDir();
+		List<String> articles = new ArrayList<>();
+		for (String fileName : testDir.toFile().list())
+			if (fileName.endsWith(" - text"))
+				articles.add(Tokenizer.removeNoise(utils.fileToString(fileName)));
+
+		Map<Lemmatizer.Mode, Double> expected = new EnumMap<>(Lemmatizer.Mode.class);
+		expected.put(Lemmatizer.Mode.FULL, 1.0);
+		expected.put(Lemmatizer.Mode.MORPHOLOGY, 0.944);
+		expected.put(Lemmatizer.Mode.SUFFIX, 0.911);
+
+		List<Map<String, Integer>> fullCounts = null;
+		for (Lemmatizer.Mode mode : Lemmatizer.Mode.values()) {
+			Lemmatizer lemmatizer = create(mode);
+
+			List<Map<String, Integer>> counts = new ArrayList<>();
+			for (String article : articles)
+				counts.add(LemmaIndexMapred.LemmaIndexMapper.countLemmas(lemmatize(lemmatizer,
+						article)));
+			if (fullCounts == null)
+				fullCounts = counts;
+
+			assertEquals(mode.toString(), expected.get(mode), agreement(fullCounts, counts),
+					0.001);
+		}
+	}
+
+	private static List<String> lemmatize(Lemmatizer lemmatizer, String text) {
+		final List<String> lemmas = new ArrayList<>();
+		lemmatizer.lemmatize(text, new Lemmatizer.Sink() {
+			@Override
+			public void accept(String lemma) {
+				lemmas.add(lemma);
+			}
+		});
+		return lemmas;
+	}
+
+	private static Lemmatizer create(Lemmatizer.Mode mode) {
+		LemmaCache cache = new LemmaCache(LemmaCache.DEFAULT_CAPACITY);
+		switch (mode) {
+		case MORPHOLOGY:
+			return new MorphologyLemmatizer(SharedPipeline.get(MorphologyLemmatizer.ANNOTATORS,
+					true), cache);
+		case SUFFIX:
+			return new SuffixLemmatizer();
+		default:
+			return new FullLemmatizer(SharedPipeline.get(FullLemmatizer.ANNOTATORS, true), cache);
+		}
+	}
+
+	/**
+	 * @return the share of expected lemma occurrences found in the actual
+	 *         counts of the same article
+	 */
+	private static double agreement(List<Map<String, Integer>> expected,
+			List<Map<String, Integer>> actual) {
+		long total = 0;
+		long found = 0;
+		for (int i = 0; i < expected.size(); i++) {
+			for (Map.Entry<String, Integer> lemmaCount : expected.get(i).entrySet()) {
+				Integer actualCount = actual.get(i).get(lemmaCount.getKey());
+				total += lemmaCount.getValue();
+				if (actualCount != null)
+					found += Math.min(actualCount, lemmaCount.getValue());
+			}
+		}
+		return (double) found / total;
+	}
+
+	private static String join(String[] words) {
+		StringBuilder sb = new StringBuilder();
+		for (String word : words)
+			sb.append(word).append(' ');
+		return sb.toString().trim();
+	}
+}
@@ -0,0 +1,189 @@
+package code.lemma;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+import code.TestUtils;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class NoiseStripperTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final Pattern NOISE_PATTERN = Tokenizer.buildNoisePattern();
+
+	private static final String GREEDY_LINES = "greedy lines";
+
+	private final TestUtils utils = new TestUtils(getClass());
+
+	private final NoiseStripper stripper = new NoiseStripper();
+
+	/**
+	 * Compares with the regular expression line by line on all texts in
+	 * test_data. Where the regular expression reaches greedily beyond the
+	 * construct (infoboxes, references, file links, dates, attribute names)
+	 * the results differ on purpose, there the stripper's output is compared
+	 * with the one listed in {@value #GREEDY_LINES}.
+	 */
+	@Test
+	public void testMatchesRegexOnTestData() throws IOException {
+		Map<String, String> greedyLines = readGreedyLines();
+
+		for (File file : testDataFiles()) {
+			for (String line : Files.readAllLines(file.toPath(), UTF8)) {
+				String expected;
+				if (isGreedyForRegex(line)) {
+					expected = greedyLines.get(line);
+					assertNotNull(file + ": no expected output for " + line, expected);
+				} else {
+					expected = removeNoiseWithRegex(line);
+				}
+
+				assertEquals(file + ": " + line, expected, stripper.strip(line).toString());
+			}
+		}
+	}
+
+	private static boolean isGreedyForRegex(String line) {
+		int bar = line.indexOf('|');
+		return line.contains("{{Infobox") || line.contains("<ref") || line.contains("[[File:")
+				|| (bar >= 0 && line.indexOf('=', bar) >= 0);
+	}
+
+	/**
+	 * @return the lines of {@value #GREEDY_LINES}: each line of the test data
+	 *         the regular expression is greedy on, followed by the stripper's
+	 *         expected output for it
+	 */
+	private Map<String, String> readGreedyLines() throws IOException {
+		List<String> lines = Files.readAllLines(utils.getInputFilePath(GREEDY_LINES), UTF8);
+
+		Map<String, String> greedyLines = new HashMap<>();
+		for (int i = 0; i + 1 < lines.size(); i += 2)
+			greedyLines.put(lines.get(i), lines.get(i + 1));
+		return greedyLines;
+	}
+
+	@Test
+	public void testRemovesNestedInfoboxOnly() {
+		String doc = "{{Infobox person\n| name = {{flag|Japan}}\n| born = {{birth date|1848}}\n}}\n"
+				+ "Tōgō was an {{admiral}} of the Japanese Navy.";
+
+		assertEquals("Tōgō was an admiral of the Japanese Navy", stripper.strip(doc).toString());
+	}
+
+	@Test
+	public void testRemovesEachReference() {
+		String doc = "Tōgō<ref>Semenoff (1907) p. 70</ref> crossed<ref name=\"corbett\">Corbett p. 1</ref>"
+				+ " the T<ref name=\"corbett\" /> and won.<ref>Evans p. 2</ref>";
+
+		assertEquals("Tōgō crossed the T and won", stripper.strip(doc).toString());
+	}
+
+	@Test
+	public void testRemovesEachPicture() {
+		String doc = "[[File:a.jpg|thumb|250px|First picture]] between "
+				+ "[[File:b.jpg|thumb|left|Second [[picture]]]] after";
+
+		assertEquals("First picture between Second picture after", stripper.strip(doc).toString());
+	}
+
+	@Test
+	public void testRemovesAttributeNamesOnly() {
+		String doc = "[[Crossing the T|crossed]] it. {{cite book|title=Battle|author=Evans}} = end";
+
+		assertEquals("Crossing the T crossed it cite book Battle Evans end", stripper.strip(doc)
+				.toString());
+	}
+
+	@Test
+	public void testRemovesDatesOnly() {
+		String doc = "{{cite news|date=27 May 1905|title=Victory}} and {{x|accessdate=2014}}.";
+
+		assertEquals("cite news Victory and x", stripper.strip(doc).toString());
+	}
+
+	@Test
+	public void testReusesBuffer() {
+		assertEquals("first", stripper.strip(" first ").toString());
+		assertEquals("", stripper.strip("...").toString());
+		assertEquals("third", stripper.strip("third").toString());
+	}
+
+	/**
+	 * Each '|' lets the regular expression scan to the end of the text looking
+	 * for a '=', the stripper still removes the same.
+	 */
+	@Test
+	public void testManyPipes() {
+		StringBuilder pipes = new StringBuilder();
+		for (int i = 0; i < 1_000; i++)
+			pipes.append("|a ");
+		String doc = pipes.toString();
+
+		assertEquals(removeNoiseWithRegex(doc), stripper.strip(doc).toString());
+	}
+
+	/**
+	 * Unclosed infoboxes, file links and references are kept, and do not make
+	 * the stripper scan to the end of the text for each of them.
+	 */
+	@Test(timeout = 10_000)
+	public void testManyUnclosedOpeners() {
+		StringBuilder doc = new StringBuilder("{{Infobox a}} start ");
+		StringBuilder expected = new StringBuilder("start");
+		for (int i = 0; i < 50_000; i++) {
+			doc.append("{{Infobox x [[File:y <ref z ");
+			expected.append(" Infobox x File y ref z");
+		}
+
+		assertEquals(expected.toString(), stripper.strip(doc).toString());
+	}
+
+	/**
+	 * A failed scan for the end of an unclosed construct must not hide the
+	 * end of a later, closed one.
+	 */
+	@Test
+	public void testClosedAfterUnclosed() {
+		assertEquals("Infobox a c", stripper.strip("{{Infobox a {{Infobox b}} c").toString());
+		assertEquals("File a desc c",
+				stripper.strip("[[File:a [[File:b.jpg|thumb|desc]] c").toString());
+	}
+
+	private static String removeNoiseWithRegex(String documentText) {
+		documentText = NOISE_PATTERN.matcher(documentText).replaceAll(" ").trim();
+		return documentText.replaceAll("\\s+", " ");
+	}
+
+	private List<File> testDataFiles() {
+		List<File> files = new ArrayList<>();
+		addFiles(new File(TestUtils.TEST_DATA_DIR_NAME), files);
+		return files;
+	}
+
+	private void addFiles(File dir, List<File> files) {
+		for (File file : dir.listFiles())
+			if (file.equals(utils.getInputDir().toFile()))
+				continue; // the expected outputs themselves
+			else if (file.isDirectory())
+				addFiles(file, files);
+			else
+				files.add(file);
+	}
+}
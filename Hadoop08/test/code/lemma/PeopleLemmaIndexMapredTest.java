@@ -0,0 +1,99 @@
+package code.lemma;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import code.TestUtils;
+import code.articles.GetArticlesMapred;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class PeopleLemmaIndexMapredTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	private static final Pattern PAGE = Pattern.compile("<page>.*?</page>", Pattern.DOTALL);
+
+	// the articles of LemmaIndexMapredTest
+	TestUtils utils = new TestUtils(LemmaIndexMapredTest.class);
+
+	@Rule
+	public TemporaryFolder temp = new TemporaryFolder();
+
+	/**
+	 * Runs {@link GetArticlesMapred} followed by {@link LemmaIndexMapred} and
+	 * the fused job in local mode on a dump of the test articles, with a people
+	 * list of two of them and a title which is not in the dump.
+	 */
+	@Test
+	public void testSameAsGetArticlesAndLemmaIndex() throws Exception {
+		String dump = writeDump().toString();
+		File people = temp.newFile("people.txt");
+		Files.write(people.toPath(),
+				Arrays.asList("Battle of Tsushima", "Bishounen", "Hermann Hesse"), UTF8);
+		String peopleOption = GetArticlesMapred.PEOPLE_OPTION + people;
+		String lemmatizerOption = LemmaIndexMapred.LEMMATIZER_OPTION + "suffix";
+
+		File articles = new File(temp.getRoot(), "articles");
+		GetArticlesMapred.main(new String[] { dump, articles.toString(), peopleOption });
+		File index = new File(temp.getRoot(), "index");
+		LemmaIndexMapred.main(new String[] { articles.toString(), index.toString(),
+				lemmatizerOption });
+
+		File fused = new File(temp.getRoot(), "fused");
+		PeopleLemmaIndexMapred.main(new String[] { dump, fused.toString(), peopleOption,
+				lemmatizerOption, PeopleLemmaIndexMapred.KEEP_ARTICLES_OPTION });
+
+		List<String> expected = readLines(new File(index, "part-r-00000"));
+		assertEquals(2, expected.size());
+		assertEquals(expected, readLines(new File(fused, "part-r-00000")));
+
+		List<String> expectedPages = readPages(new File(articles, "part-r-00000"));
+		assertEquals(2, expectedPages.size());
+		assertEquals(expectedPages, readPages(new File(fused, "articles/part-m-00000")));
+	}
+
+	private Path writeDump() throws IOException {
+		StringBuilder dump = new StringBuilder("<mediawiki>\n");
+		for (String fileName : utils.getInputDir().toFile().list())
+			if (!fileName.endsWith(" - text"))
+				dump.append(utils.fileToString(fileName)).append("\n");
+		dump.append("</mediawiki>\n");
+
+		Path file = temp.newFile("dump.xml").toPath();
+		Files.write(file, dump.toString().getBytes(UTF8));
+		return file;
+	}
+
+	private static List<String> readLines(File file) throws IOException {
+		return Files.readAllLines(file.toPath(), UTF8);
+	}
+
+	private static List<String> readPages(File file) throws IOException {
+		String text = new String(Files.readAllBytes(file.toPath()), UTF8);
+		List<String> pages = new ArrayList<>();
+		Matcher matcher = PAGE.matcher(text);
+		while (matcher.find())
+			pages.add(matcher.group());
+		// the shuffle of GetArticlesMapred reorders them
+		Collections.sort(pages);
+		return pages;
+	}
+}
@@ -0,0 +1,70 @@
+package code.lemma;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import edu.stanford.nlp.pipeline.StanfordCoreNLP;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class SharedPipelineTest {
+
+	@Test
+	public void testSameConfigurationSharesPipeline() {
+		StanfordCoreNLP pipeline = SharedPipeline.get("tokenize, ssplit", false);
+
+		assertSame(pipeline, SharedPipeline.get("tokenize,ssplit", true));
+		assertNotSame(pipeline, SharedPipeline.get("tokenize, ssplit, pos", false));
+	}
+
+	@Test
+	public void testConcurrentRequestsLoadOnce() throws Exception {
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<StanfordCoreNLP>> pipelines = new ArrayList<>();
+			for (int i = 0; i < 8; i++)
+				pipelines.add(executor.submit(new Callable<StanfordCoreNLP>() {
+					@Override
+					public StanfordCoreNLP call() {
+						return SharedPipeline.get(SharedPipeline.DEFAULT_ANNOTATORS, true);
+					}
+				}));
+
+			for (Future<StanfordCoreNLP> pipeline : pipelines)
+				assertSame(pipelines.get(0).get(), pipeline.get());
+		} finally {
+			executor.shutdown();
+		}
+	}
+
+	@Test
+	public void testStartupOnlyOnce() {
+		assertEquals(0, SharedPipeline.getStartupMillis("tokenize, never requested"));
+
+		StanfordCoreNLP pipeline = SharedPipeline.get(SharedPipeline.DEFAULT_ANNOTATORS, true);
+		long startupMillis = SharedPipeline.getStartupMillis(SharedPipeline.DEFAULT_ANNOTATORS);
+		assertTrue(startupMillis > 0);
+
+		// neither loaded nor warmed up again
+		assertSame(pipeline, SharedPipeline.get("tokenize,ssplit,pos", true));
+		assertEquals(startupMillis, SharedPipeline.getStartupMillis("tokenize,ssplit,pos"));
+	}
+
+	@Test
+	public void testWarmupDocumentIsBundled() {
+		assertTrue(SharedPipeline.readWarmupDocument().length() > 100);
+	}
+}
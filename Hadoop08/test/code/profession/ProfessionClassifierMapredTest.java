@@ -1,20 +1,93 @@
 package code.profession;
 
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import code.TestUtils;
+import util.MembershipFilter;
+import util.StringIntegerCursor;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
 public class ProfessionClassifierMapredTest {
+
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	TestUtils utils = new TestUtils(getClass());
+
 	/**
 	 * <pre>
-	 * TODO Let DIR = test_data/ProfessionClassifierMapredTest. Run classifier on:
-	 * DIR/article_index.txt as input, 
-	 * DIR/profession_index.txt as PROFESSION_INDEX, and 
+	 * Let DIR = test_data/ProfessionClassifierMapredTest. Runs the classifier on:
+	 * DIR/article_index.txt as input,
+	 * DIR/profession_index.txt as PROFESSION_INDEX, and
 	 * DIR/wanted_people.txt as the list of people we care about.
-	 * 
+	 *
 	 * The expected output is:
 	 * Albert Einstein : scientist, teacher, actor
 	 * Bill Clinton : actor, doctor, soccer player
 	 * Mario Gömez : soccer player, soccer coach, doctor
 	 * Will Smith : actor, doctor, soccer player
-	 * 
+	 *
 	 * (see DIR/math.txt for details)
 	 * </pre>
 	 */
+	@Test
+	public void testClassify() throws IOException {
+		ProfessionModel model = new ProfessionModel(readLines("profession_index.txt"));
+		assertEquals(6, model.size());
+		MembershipFilter wantedPeople = MembershipFilter.build(readLines("wanted_people.txt"));
+
+		// as the mapper gets the lines from KeyValueTextInputFormat
+		List<String> actual = new ArrayList<>();
+		StringIntegerCursor lemmaCounts = StringIntegerCursor.forText();
+		for (String line : readLines("article_index.txt")) {
+			int separator = line.indexOf(':');
+			String person = line.substring(0, separator).trim();
+			if (!wantedPeople.contains(person))
+				continue;
+
+			byte[] value = line.substring(separator + 1).getBytes(UTF8);
+			lemmaCounts.reset(value, 0, value.length);
+			actual.add(person + " : "
+					+ ProfessionClassifierMapred.classify(lemmaCounts, model));
+		}
+
+		List<String> expected = new ArrayList<>();
+		expected.add("Will Smith : actor, doctor, soccer player");
+		expected.add("Bill Clinton : actor, doctor, soccer player");
+		expected.add("Mario Gömez : soccer player, soccer coach, doctor");
+		expected.add("Albert Einstein : scientist, teacher, actor");
+		assertEquals(expected, actual);
+	}
+
+	/**
+	 * The person's lemmas are looked up by their UTF-8 bytes, also when they
+	 * are listed more than once.
+	 */
+	@Test
+	public void testRepeatedLemmas() throws IOException {
+		List<String> lines = new ArrayList<>();
+		lines.add("skier : <schnee,0.5>,<berg,1.0>");
+		lines.add("cook : <küche,1.0>");
+		ProfessionModel model = new ProfessionModel(lines);
+
+		StringIntegerCursor lemmaCounts = StringIntegerCursor.forText();
+		Text value = new Text("<küche,2>,<schnee,1>,<küche,2>");
+		lemmaCounts.reset(value.getBytes(), 0, value.getLength());
+		assertEquals("cook, skier", ProfessionClassifierMapred.classify(lemmaCounts, model));
+	}
+
+	private List<String> readLines(String fileName) throws IOException {
+		return Files.readAllLines(utils.getInputFilePath(fileName), UTF8);
+	}
 }
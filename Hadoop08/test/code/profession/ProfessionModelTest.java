@@ -0,0 +1,172 @@
+package code.profession;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import util.StringInteger;
+import util.StringIntegerList;
+
+/**
+ *
+ * @author Georg Konwisser, gekonwi@brandeis.edu
+ */
+public class ProfessionModelTest {
+
+	/**
+	 * The scores accumulated over the postings of the person's lemmas have to
+	 * be the sums over each profession's lemmas.
+	 */
+	@Test
+	public void testScoresOfSparseModel() throws IOException {
+		final int PROFESSIONS = 2000;
+		final int LEMMAS = 50_000;
+		final int PEOPLE = 200;
+		Random random = new Random(7);
+
+		List<String> lines = new ArrayList<>(PROFESSIONS);
+		List<Map<String, Double>> probabilities = new ArrayList<>(PROFESSIONS);
+		for (int p = 0; p < PROFESSIONS; p++) {
+			Map<String, Double> lemmaProbs = new HashMap<>();
+			StringBuilder line = new StringBuilder("profession" + p + " : ");
+			for (int i = 0; i < 100; i++) {
+				String lemma = "lemma" + random.nextInt(LEMMAS);
+				double probability = random.nextInt(1000) / 1000.0;
+				lemmaProbs.put(lemma, probability);
+				line.append("<" + lemma + "," + probability + ">,");
+			}
+			lines.add(line.toString());
+			probabilities.add(lemmaProbs);
+		}
+		ProfessionModel model = new ProfessionModel(lines);
+		assertEquals(PROFESSIONS, model.size());
+
+		List<StringIntegerList> people = new ArrayList<>(PEOPLE);
+		for (int n = 0; n < PEOPLE; n++) {
+			StringIntegerList lemmaCounts = new StringIntegerList();
+			for (int i = 0; i < 300; i++) {
+				byte[] lemma = ("lemma" + random.nextInt(LEMMAS)).getBytes("UTF-8");
+				lemmaCounts.add(lemma, 0, lemma.length, 1 + random.nextInt(20));
+			}
+			people.add(lemmaCounts);
+		}
+
+		for (StringIntegerList lemmaCounts : people) {
+			double[] expected = scoreByProfession(lemmaCounts, probabilities);
+			double[] actual = model.score(lemmaCounts.cursor());
+			for (int p = 0; p < PROFESSIONS; p++)
+				assertEquals(expected[p], actual[p], 1e-9);
+		}
+	}
+
+	/**
+	 * A batch has to find the professions scoring person by person does, also
+	 * for people without any lemma of the model and for a partly filled
+	 * batch.
+	 */
+	@Test
+	public void testBatchScores() throws IOException {
+		Random random = new Random(11);
+		ProfessionModel model = new ProfessionModel(syntheticModel(2000, random));
+		List<StringIntegerList> people = syntheticPeople(1000, random);
+		people.add(100, new StringIntegerList());
+
+		List<String> expected = classifyByPerson(model, people);
+		for (int batchSize : new int[] { 2, 64, 256 })
+			assertEquals("batch size " + batchSize, expected,
+					classifyInBatches(model, people, batchSize));
+	}
+
+	static List<String> classifyByPerson(ProfessionModel model, List<StringIntegerList> people)
+			throws IOException {
+		List<String> professions = new ArrayList<>(people.size());
+		for (StringIntegerList lemmaCounts : people)
+			professions.add(Arrays.toString(model.classify(lemmaCounts.cursor())
+					.getProfessions()));
+		return professions;
+	}
+
+	static List<String> classifyInBatches(ProfessionModel model, List<StringIntegerList> people,
+			int batchSize) throws IOException {
+		List<String> professions = new ArrayList<>(people.size());
+		ProfessionModel.Batch batch = model.newBatch(batchSize);
+		Text person = new Text();
+		for (int n = 0; n < people.size(); n++) {
+			person.set("person" + n);
+			if (batch.add(person, people.get(n).cursor()) || n == people.size() - 1) {
+				batch.score();
+				for (int i = 0; i < batch.size(); i++)
+					professions.add(Arrays.toString(batch.getTopProfessions(i)
+							.getProfessions()));
+				batch.clear();
+			}
+		}
+		return professions;
+	}
+
+	/**
+	 * @return the lines of a model with 100 lemmas per profession
+	 */
+	static List<String> syntheticModel(int professions, Random random) {
+		List<String> lines = new ArrayList<>(professions);
+		for (int p = 0; p < professions; p++) {
+			Map<String, Double> lemmaProbs = new LinkedHashMap<>();
+			for (int i = 0; i < 100; i++)
+				lemmaProbs.put(randomLemma(random), random.nextInt(1000) / 1000.0);
+
+			StringBuilder line = new StringBuilder("profession" + p + " : ");
+			for (Map.Entry<String, Double> lemmaProb : lemmaProbs.entrySet())
+				line.append("<" + lemmaProb.getKey() + "," + lemmaProb.getValue() + ">,");
+			lines.add(line.toString());
+		}
+		return lines;
+	}
+
+	/**
+	 * @return the lemma counts of people with 300 lemmas each
+	 */
+	static List<StringIntegerList> syntheticPeople(int count, Random random) throws IOException {
+		List<StringIntegerList> people = new ArrayList<>(count);
+		for (int n = 0; n < count; n++) {
+			StringIntegerList lemmaCounts = new StringIntegerList();
+			for (int i = 0; i < 300; i++) {
+				byte[] lemma = randomLemma(random).getBytes("UTF-8");
+				lemmaCounts.add(lemma, 0, lemma.length, 1 + random.nextInt(20));
+			}
+			people.add(lemmaCounts);
+		}
+		return people;
+	}
+
+	/**
+	 * Frequent lemmas are more likely, as in real articles.
+	 */
+	private static String randomLemma(Random random) {
+		return "lemma" + (int) (50_000 * Math.pow(random.nextDouble(), 3));
+	}
+
+	/**
+	 * The original scoring, profession by profession.
+	 */
+	private static double[] scoreByProfession(StringIntegerList lemmaCounts,
+			List<Map<String, Double>> probabilities) {
+		double[] scores = new double[probabilities.size()];
+		for (int p = 0; p < scores.length; p++)
+			for (StringInteger count : lemmaCounts.getIndices()) {
+				Double probability = probabilities.get(p).get(count.getString());
+				if (probability != null)
+					scores[p] += count.getValue() * Math.log(probability + 1);
+			}
+		return scores;
+	}
+}